@@ -18,22 +18,22 @@ import static com.amazonaws.metrics.internal.cloudwatch.CloudWatchMetricConfig.N
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import com.amazonaws.metrics.AwsSdkMetrics;
+import com.amazonaws.metrics.MetricType;
 import com.amazonaws.metrics.RequestMetricCollector;
 import com.amazonaws.metrics.internal.cloudwatch.spi.Dimensions;
 import com.amazonaws.services.cloudwatch.model.Dimension;
 import com.amazonaws.services.cloudwatch.model.MetricDatum;
 import com.amazonaws.services.cloudwatch.model.PutMetricDataRequest;
+import com.amazonaws.services.cloudwatch.model.StandardUnit;
 import com.amazonaws.services.cloudwatch.model.StatisticSet;
 import com.amazonaws.util.AwsHostNameUtils;
-import com.amazonaws.util.json.Jackson;
 
 /**
  * An internal builder used to retrieve the next batch of requests to be sent to
@@ -43,81 +43,62 @@ import com.amazonaws.util.json.Jackson;
 class BlockingRequestBuilder {
     private static final String OS_METRIC_NAME = MachineMetric.getOSMetricName();
     private final MachineMetricFactory machineMetricFactory = new MachineMetricFactory();
-    private final BlockingQueue<MetricDatum> queue;
+    private final MetricAggregator aggregator;
     private final long timeoutNano;
+    /** The time at which the next batch is due, as per {@link System#nanoTime()}. */
+    private long deadlineNano;
+    /** The copies of the latency histograms taken at the last upload. */
+    private final Map<LatencyHistogram, LatencyHistogram> previousHistograms =
+        new IdentityHashMap<LatencyHistogram, LatencyHistogram>();
 
-    BlockingRequestBuilder(CloudWatchMetricConfig config, BlockingQueue<MetricDatum> queue) {
-        this.queue = queue;
+    BlockingRequestBuilder(CloudWatchMetricConfig config, MetricAggregator aggregator) {
+        this.aggregator = aggregator;
         this.timeoutNano = TimeUnit.MILLISECONDS.toNanos(config.getQueuePollTimeoutMilli());
+        this.deadlineNano = System.nanoTime() + timeoutNano;
     }
 
     /**
      * Returns the next batch of {@link PutMetricDataRequest} to be sent to
-     * Amazon CloudWatch, blocking as necessary to gather and accumulate the
-     * necessary statistics. If there is no metrics data, this call blocks
-     * indefinitely. If there is metrics data, this call will block up to about
+     * Amazon CloudWatch, blocking as necessary to accumulate the necessary
+     * statistics. If there is no metrics data, this call blocks until there
+     * is some, and then for up to about
      * {@link CloudWatchMetricConfig#getQueuePollTimeoutMilli()} number of
-     * milliseconds.
+     * milliseconds. Otherwise, it blocks until that number of milliseconds
+     * have elapsed since the previous batch was due, so that the time spent
+     * uploading a batch doesn't delay the next one.
      */
     Iterable<PutMetricDataRequest> nextUploadUnits() throws InterruptedException {
-        final Map<String,MetricDatum> uniqueMetrics = new HashMap<String,MetricDatum>();
-        long startNano = System.nanoTime();
-        
-        while(true) {
-            final long elapsedNano = System.nanoTime() - startNano;
-            if (elapsedNano >= timeoutNano) {
+        while (true) {
+            long remainingNano = deadlineNano - System.nanoTime();
+            if (remainingNano > 0)
+                TimeUnit.NANOSECONDS.sleep(remainingNano);
+            deadlineNano += timeoutNano;
+            Map<MetricKey, MetricDatum> uniqueMetrics = aggregator.snapshotAndReset();
+            // Unless machine metrics are enabled, there is nothing to upload
+            // without any AWS related metrics
+            if (uniqueMetrics.size() > 0 || !AwsSdkMetrics.isMachineMetricExcluded()) {
+                if (deadlineNano - System.nanoTime() < 0)
+                    deadlineNano = System.nanoTime() + timeoutNano;
                 return toPutMetricDataRequests(uniqueMetrics);
             }
-            MetricDatum datum = queue.poll(timeoutNano - elapsedNano, TimeUnit.NANOSECONDS);
-            if (datum == null) {
-                // timed out
-                if (uniqueMetrics.size() > 0) {
-                    // return whatever we have so far
-                    return toPutMetricDataRequests(uniqueMetrics);
-                }
-                // zero AWS related metrics
-                if (AwsSdkMetrics.isMachineMetricExcluded()) {
-                    // Short note: nothing to do, so just wait indefinitely.
-                    // (Long note: There exists a pedagogical case where the
-                    // next statement is executed followed by no subsequent AWS
-                    // traffic whatsoever, and then the machine metric is enabled 
-                    // via JMX.
-                    // In such case, we require the metric generation to be
-                    // disabled and then re-enabled (eg via JMX).
-                    // So why not always wake up periodically instead of going
-                    // into long wait ?
-                    // I (hchar@) think we should optimize for the most typical
-                    // cases instead of the edge cases. Going into long wait has
-                    // the benefit of relatively less runtime footprint.)
-                    datum = queue.take();   
-                    startNano = System.nanoTime();
-                }
-            }
-            // Note at this point datum is null if and only if there is no
-            // pending AWS related metrics but machine metrics is enabled
-            if (datum != null)
-                summarize(datum, uniqueMetrics);
+            // Nothing to do, so just wait for the next metric
+            aggregator.awaitRecord();
+            deadlineNano = System.nanoTime() + timeoutNano;
         }
     }
 
     /**
      * Summarizes the given datum into the statistics of the respective unique metric.
      */
-    private void summarize(MetricDatum datum, Map<String, MetricDatum> uniqueMetrics) {
+    private void summarize(MetricDatum datum, Map<MetricKey, MetricDatum> uniqueMetrics) {
         Double value = datum.getValue();
         if (value == null) {
             return;
         }
-        List<Dimension> dims = datum.getDimensions();
-        Collections.sort(dims, DimensionComparator.INSTANCE);
-        String metricName = datum.getMetricName();
-        String key = metricName + Jackson.toJsonString(dims);
+        MetricKey key = MetricKey.of(datum);
         MetricDatum statDatum = uniqueMetrics.get(key);
         if (statDatum == null) {
-            statDatum = new MetricDatum()
-                .withDimensions(datum.getDimensions())
-                .withMetricName(metricName)
-                .withUnit(datum.getUnit())
+            statDatum = key.newMetricDatum()
                 .withStatisticValues(new StatisticSet()
                     .withMaximum(value)
                     .withMinimum(value)
@@ -139,12 +120,13 @@ class BlockingRequestBuilder {
      * Consolidates the input metrics into a list of PutMetricDataRequest, each
      * within the maximum size limit imposed by CloudWatch.
      */
-    private Iterable<PutMetricDataRequest> toPutMetricDataRequests(Map<String, MetricDatum> uniqueMetrics) {
+    private Iterable<PutMetricDataRequest> toPutMetricDataRequests(Map<MetricKey, MetricDatum> uniqueMetrics) {
         // Opportunistically generates some machine metrics whenever there
         // is metrics consolidation
         for (MetricDatum datum: machineMetricFactory.generateMetrics()) {
             summarize(datum, uniqueMetrics);
         }
+        addLatencyPercentiles(uniqueMetrics);
         List<PutMetricDataRequest> list = new ArrayList<PutMetricDataRequest>();
         List<MetricDatum> data = new ArrayList<MetricDatum>();
         for (MetricDatum m: uniqueMetrics.values()) {
@@ -161,6 +143,34 @@ class BlockingRequestBuilder {
         return list;
     }
 
+    /**
+     * Adds the latency percentiles of the requests completed since the last
+     * call, for the latency metric types that are enabled.
+     */
+    private void addLatencyPercentiles(Map<MetricKey, MetricDatum> uniqueMetrics) {
+        final Set<MetricType> metrics = AwsSdkMetrics.getPredefinedMetrics();
+        for (LatencyHistograms.Entry entry: LatencyHistograms.getEntries()) {
+            LatencyHistogram current = entry.getHistogram().copy();
+            LatencyHistogram previous = previousHistograms.put(entry.getHistogram(), current);
+            if (!metrics.contains(entry.getMetricType()))
+                continue;
+            LatencyHistogram interval = previous == null ? current : current.minus(previous);
+            if (interval.getCount() == 0)
+                continue;
+            for (int i = 0; i < LatencyHistogram.PERCENTILES.length; i++) {
+                MetricDatum datum = new MetricDatum()
+                    .withMetricName(entry.getServiceName())
+                    .withDimensions(
+                        dimension(Dimensions.MetricType, entry.getMetricType().name()),
+                        dimension(Dimensions.RequestType, entry.getOperationName()),
+                        dimension(Dimensions.Percentile, LatencyHistogram.PERCENTILE_NAMES[i]))
+                    .withUnit(StandardUnit.Milliseconds)
+                    .withValue(interval.getValueAtPercentile(LatencyHistogram.PERCENTILES[i]) / 1000.0);
+                summarize(datum, uniqueMetrics);
+            }
+        }
+    }
+
     private List<PutMetricDataRequest> newPutMetricDataRequests(Collection<MetricDatum> data) {
         List<PutMetricDataRequest> list = new ArrayList<PutMetricDataRequest>();
         final String ns = AwsSdkMetrics.getMetricNameSpace();
@@ -65,9 +65,9 @@ public class CloudWatchMetricConfig {
      */
     static final int MAX_METRICS_DATUM_SIZE = 20;
     /**
-     * Default metrics queue size. If the queue size
-     * exceeds this value, then excessive metrics will be dropped to prevent
-     * resource exhaustion.
+     * Default metrics queue size, ie the maximum number of distinct metrics
+     * summarized between two uploads. Values of metrics beyond this number
+     * will be dropped to prevent resource exhaustion.
      */
     public static final int DEFAULT_METRICS_QSIZE = 1000;
     /**
@@ -158,8 +158,9 @@ public class CloudWatchMetricConfig {
     }
 
     /**
-     * Configure the metric queue size, overriding the default. Must be at
-     * least 1.
+     * Configure the metric queue size, ie the maximum number of distinct
+     * metrics summarized between two uploads, overriding the default. Must be
+     * at least 1.
      * 
      * @see #DEFAULT_METRICS_QSIZE
      */
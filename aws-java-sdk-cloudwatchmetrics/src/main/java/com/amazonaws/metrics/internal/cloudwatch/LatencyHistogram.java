@@ -0,0 +1,136 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics.internal.cloudwatch;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.http.annotation.ThreadSafe;
+
+/**
+ * A fixed-memory histogram of latencies in microseconds, from which
+ * percentiles can be computed.
+ * <p>
+ * Values below {@value #SUB_BUCKETS} are counted exactly; larger values are
+ * counted in logarithmic buckets, each power of two being divided in
+ * {@value #SUB_BUCKETS} linear sub-buckets, which bounds the relative error
+ * of the percentiles to about 3%. Values of more than about 19 hours are
+ * counted in the last bucket.
+ * <p>
+ * Recording a value neither takes a lock nor allocates any memory.
+ */
+@ThreadSafe
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** The highest power of two of the values that can be distinguished. */
+    private static final int MAX_EXPONENT = 35;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    private static final int BUCKETS =
+        SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    /** The percentiles reported for the latency histograms. */
+    static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+    static final String[] PERCENTILE_NAMES = { "p50", "p90", "p99", "p99.9" };
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Records the given latency in microseconds. Negative values are counted
+     * as zero.
+     */
+    void record(long micros) {
+        counts.incrementAndGet(bucketOf(micros));
+    }
+
+    /**
+     * Returns the total number of values recorded.
+     */
+    long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++)
+            count += counts.get(i);
+        return count;
+    }
+
+    /**
+     * Returns the latency in microseconds below which the given percentage of
+     * the recorded values fall, or zero if no value has been recorded.
+     *
+     * @param percentile
+     *            the percentage, between 0 and 100
+     */
+    long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("Invalid percentile: " + percentile);
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++)
+            count += snapshot[i] = counts.get(i);
+        if (count == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank)
+                return highestValueOf(i);
+        }
+        return highestValueOf(BUCKETS - 1);
+    }
+
+    /**
+     * Returns a copy of this histogram. Values recorded concurrently may or
+     * may not be accounted for in the copy.
+     */
+    LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram();
+        for (int i = 0; i < BUCKETS; i++)
+            copy.counts.set(i, counts.get(i));
+        return copy;
+    }
+
+    /**
+     * Returns a new histogram of the values recorded in this histogram but not
+     * in the given earlier copy of it.
+     */
+    LatencyHistogram minus(LatencyHistogram earlier) {
+        LatencyHistogram diff = new LatencyHistogram();
+        for (int i = 0; i < BUCKETS; i++)
+            diff.counts.set(i, Math.max(0, counts.get(i) - earlier.counts.get(i)));
+        return diff;
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS)
+            return value < 0 ? 0 : (int) value;
+        if (value > MAX_VALUE)
+            value = MAX_VALUE;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the highest value counted in the given bucket.
+     */
+    static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        long subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+}
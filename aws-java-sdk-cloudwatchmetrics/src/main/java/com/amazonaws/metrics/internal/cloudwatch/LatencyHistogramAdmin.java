@@ -0,0 +1,54 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics.internal.cloudwatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Administration of the latency histograms as an MBean, registered alongside
+ * the metric admin MBean of the AWS SDK.
+ */
+public class LatencyHistogramAdmin implements LatencyHistogramAdminMBean {
+    static final String MBEAN_OBJECT_NAME =
+        "com.amazonaws.management:type=" + LatencyHistograms.class.getSimpleName();
+
+    @Override
+    public String[] getLatencyPercentiles() {
+        List<LatencyHistograms.Entry> entries = LatencyHistograms.getEntries();
+        List<String> lines = new ArrayList<String>(entries.size());
+        for (LatencyHistograms.Entry entry: entries) {
+            LatencyHistogram histogram = entry.getHistogram().copy();
+            long count = histogram.getCount();
+            if (count == 0)
+                continue;
+            StringBuilder sb = new StringBuilder()
+                .append(entry.getServiceName()).append(' ')
+                .append(entry.getOperationName()).append(' ')
+                .append(entry.getMetricType().name())
+                .append(": count=").append(count);
+            for (int i = 0; i < LatencyHistogram.PERCENTILES.length; i++) {
+                sb.append(", ").append(LatencyHistogram.PERCENTILE_NAMES[i])
+                  .append('=')
+                  .append(histogram.getValueAtPercentile(LatencyHistogram.PERCENTILES[i]) / 1000.0)
+                  .append("ms");
+            }
+            lines.add(sb.toString());
+        }
+        Collections.sort(lines);
+        return lines.toArray(new String[lines.size()]);
+    }
+}
@@ -0,0 +1,26 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics.internal.cloudwatch;
+
+/**
+ * MBean interface for the latency histograms of the AWS SDK requests.
+ */
+public interface LatencyHistogramAdminMBean {
+    /**
+     * Returns the latency percentiles of the AWS SDK requests since the start
+     * of the JVM, one line per service, operation and metric type.
+     */
+    public String[] getLatencyPercentiles();
+}
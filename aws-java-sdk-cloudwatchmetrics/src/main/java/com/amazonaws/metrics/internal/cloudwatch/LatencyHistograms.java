@@ -0,0 +1,145 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics.internal.cloudwatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.annotation.ThreadSafe;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.Request;
+import com.amazonaws.metrics.MetricType;
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+import com.amazonaws.util.TimingInfo;
+
+/**
+ * The latency histograms of the AWS SDK requests, per service, operation and
+ * latency metric type, for the metric types in {@link #HISTOGRAM_METRICS}.
+ * <p>
+ * The histograms are filled from the {@link TimingInfo} of the requests by the
+ * {@link RequestMetricCollectorSupport}, and are cumulative since the start of
+ * the JVM; consumers interested in the values of a given interval can use
+ * {@link LatencyHistogram#minus(LatencyHistogram)}. Once the histograms of an
+ * operation have been created, recording a request allocates no memory.
+ */
+@ThreadSafe
+enum LatencyHistograms {
+    ;
+    /** The latency metric types for which histograms are maintained. */
+    static final List<Field> HISTOGRAM_METRICS;
+    static {
+        List<Field> metrics = new ArrayList<Field>();
+        metrics.add(Field.ClientExecuteTime);
+        metrics.add(Field.HttpRequestTime);
+        HISTOGRAM_METRICS = Collections.unmodifiableList(metrics);
+    }
+
+    private static final ConcurrentMap<Class<?>, Entry[]> entries =
+        new ConcurrentHashMap<Class<?>, Entry[]>();
+
+    /**
+     * Records the latency of the given metric type for the given request, if
+     * histograms are maintained for the metric type. The latency of
+     * {@link Field#ClientExecuteTime} is taken from the root timing of the
+     * request; every sub-measurement of other metric types is recorded.
+     */
+    static void record(MetricType metricType, Request<?> request) {
+        int index = HISTOGRAM_METRICS.indexOf(metricType);
+        AWSRequestMetrics m = request.getAWSRequestMetrics();
+        AmazonWebServiceRequest origReq = request.getOriginalRequest();
+        if (index < 0 || m == null || origReq == null)
+            return;
+        TimingInfo root = m.getTimingInfo();
+        LatencyHistogram histogram = histogramOf(origReq.getClass(),
+                request.getServiceName(), index);
+        if (metricType == Field.ClientExecuteTime) {
+            record(histogram, root);
+        } else {
+            List<TimingInfo> subMeasures =
+                root.getAllSubMeasurements(metricType.name());
+            if (subMeasures != null) {
+                for (int i = 0; i < subMeasures.size(); i++)
+                    record(histogram, subMeasures.get(i));
+            }
+        }
+    }
+
+    private static void record(LatencyHistogram histogram, TimingInfo ti) {
+        Long endTimeNano = ti.getEndTimeNanoIfKnown();
+        if (endTimeNano != null) { // being defensive
+            histogram.record(TimeUnit.NANOSECONDS.toMicros(
+                    endTimeNano.longValue() - ti.getStartTimeNano()));
+        }
+    }
+
+    private static LatencyHistogram histogramOf(Class<?> requestClass,
+            String serviceName, int index) {
+        Entry[] operation = entries.get(requestClass);
+        if (operation == null) {
+            Entry[] newOperation = new Entry[HISTOGRAM_METRICS.size()];
+            for (int i = 0; i < newOperation.length; i++) {
+                newOperation[i] = new Entry(serviceName,
+                        requestClass.getSimpleName(), HISTOGRAM_METRICS.get(i));
+            }
+            operation = entries.putIfAbsent(requestClass, newOperation);
+            if (operation == null)
+                operation = newOperation;
+        }
+        return operation[index].histogram;
+    }
+
+    /**
+     * Returns all the histograms maintained so far.
+     */
+    static List<Entry> getEntries() {
+        List<Entry> list = new ArrayList<Entry>();
+        for (Entry[] operation : entries.values()) {
+            for (Entry entry : operation)
+                list.add(entry);
+        }
+        return list;
+    }
+
+    /**
+     * The latency histogram of a metric type for an operation of a service.
+     */
+    static final class Entry {
+        private final String serviceName;
+        private final String operationName;
+        private final Field metricType;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private Entry(String serviceName, String operationName, Field metricType) {
+            this.serviceName = serviceName;
+            this.operationName = operationName;
+            this.metricType = metricType;
+        }
+
+        String getServiceName() { return serviceName; }
+
+        /** Returns the simple class name of the original request. */
+        String getOperationName() { return operationName; }
+
+        Field getMetricType() { return metricType; }
+
+        LatencyHistogram getHistogram() { return histogram; }
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics.internal.cloudwatch;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.annotation.ThreadSafe;
+
+import com.amazonaws.services.cloudwatch.model.MetricDatum;
+import com.amazonaws.services.cloudwatch.model.StatisticSet;
+
+/**
+ * Summarizes metric values into statistics as they are recorded, so that the
+ * uploader only has to periodically take a snapshot of the statistics.
+ * <p>
+ * Recording a value doesn't take any lock: the statistics of each metric are
+ * striped across a number of cells, updated with compare-and-set, and each
+ * thread records into the cell selected by its id. The cells are combined when
+ * a snapshot is taken, and the metrics are then removed, so that the number of
+ * distinct metrics recorded between two snapshots is bounded; values of new
+ * metrics are dropped once the bound is reached.
+ * <p>
+ * A snapshot first retires the statistics of each metric, which waits for the
+ * values being recorded into them and makes later values be recorded into new
+ * statistics, so that no value is lost or split across two snapshots.
+ */
+@ThreadSafe
+class MetricAggregator {
+    private static final Log log = LogFactory.getLog(MetricAggregator.class);
+    private static final int STRIPES;
+    static {
+        int n = 1;
+        int cpus = Runtime.getRuntime().availableProcessors();
+        while (n < cpus && n < 16)
+            n <<= 1;
+        STRIPES = n;
+    }
+
+    private final ConcurrentMap<MetricKey, Statistics> metrics =
+        new ConcurrentHashMap<MetricKey, Statistics>();
+    private final int maxMetrics;
+    /** The number of values dropped since the last snapshot. */
+    private final AtomicLong dropped = new AtomicLong();
+    /** Whether no value has been recorded since the last snapshot. */
+    private volatile boolean empty = true;
+
+    MetricAggregator(int maxMetrics) {
+        if (maxMetrics < 1)
+            throw new IllegalArgumentException();
+        this.maxMetrics = maxMetrics;
+    }
+
+    /**
+     * Records the value of the given datum, returning true if successful or
+     * false if the datum has no value, or the maximum number of distinct
+     * metrics has been reached.
+     */
+    boolean record(MetricDatum datum) {
+        Double value = datum.getValue();
+        if (value == null)
+            return false;
+        return record(MetricKey.probe(datum), value.doubleValue());
+    }
+
+    /**
+     * Records a value of the given metric, returning true if successful or
+     * false if the maximum number of distinct metrics has been reached since
+     * the last snapshot. The key may be a probe key, which is only copied if
+     * the metric is new.
+     */
+    boolean record(MetricKey key, double value) {
+        while (true) {
+            Statistics stats = metrics.get(key);
+            if (stats == null) {
+                if (metrics.size() >= maxMetrics) {
+                    dropped.incrementAndGet();
+                    return false;
+                }
+                Statistics newStats = new Statistics();
+                stats = metrics.putIfAbsent(key.toKey(), newStats);
+                if (stats == null)
+                    stats = newStats;
+            }
+            if (stats.record(value))
+                break;
+            // Retired by a concurrent snapshot, which is about to remove it
+            metrics.remove(key, stats);
+        }
+        if (empty) {
+            synchronized (this) {
+                empty = false;
+                notifyAll();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Blocks until a value has been recorded since the last snapshot.
+     */
+    synchronized void awaitRecord() throws InterruptedException {
+        while (empty)
+            wait();
+    }
+
+    /**
+     * Returns the number of values dropped since the last snapshot because the
+     * maximum number of distinct metrics had been reached.
+     */
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Returns the statistics of the metrics recorded since the last snapshot,
+     * and removes them. Values recorded concurrently are accounted for either
+     * in this snapshot or in the next one.
+     */
+    Map<MetricKey, MetricDatum> snapshotAndReset() {
+        empty = true;
+        long droppedCount = dropped.getAndSet(0);
+        if (droppedCount > 0) {
+            log.warn("Dropped " + droppedCount + " metric values beyond the maximum of "
+                    + maxMetrics + " distinct metrics per upload");
+        }
+        Map<MetricKey, MetricDatum> snapshot = new HashMap<MetricKey, MetricDatum>();
+        for (Map.Entry<MetricKey, Statistics> e : metrics.entrySet()) {
+            Statistics stats = e.getValue();
+            stats.retire();
+            metrics.remove(e.getKey(), stats);
+            StatisticSet stat = stats.summarize();
+            if (stat != null) {
+                snapshot.put(e.getKey(),
+                    e.getKey().newMetricDatum().withStatisticValues(stat));
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * The statistics of a metric, striped across cells of
+     * {@link Statistics#CELL_SIZE} longs, the first five of which hold the
+     * sample count, the bits of the sum, minimum and maximum, and the number
+     * of values being recorded into the cell, or -1 once the statistics are
+     * retired. The rest of each cell is padding to keep cells on separate
+     * cache lines.
+     */
+    private static final class Statistics {
+        private static final int CELL_SIZE = 8;
+        private static final int COUNT = 0, SUM = 1, MIN = 2, MAX = 3, WRITERS = 4;
+        private static final long ZERO_BITS = Double.doubleToRawLongBits(0.0);
+        private static final long MIN_BITS = Double.doubleToRawLongBits(Double.POSITIVE_INFINITY);
+        private static final long MAX_BITS = Double.doubleToRawLongBits(Double.NEGATIVE_INFINITY);
+
+        private final AtomicLongArray cells = new AtomicLongArray(STRIPES * CELL_SIZE);
+
+        Statistics() {
+            for (int i = 0; i < STRIPES; i++) {
+                int cell = i * CELL_SIZE;
+                cells.set(cell + SUM, ZERO_BITS);
+                cells.set(cell + MIN, MIN_BITS);
+                cells.set(cell + MAX, MAX_BITS);
+            }
+        }
+
+        /**
+         * Records the given value, returning false if the statistics have
+         * been retired.
+         */
+        boolean record(double value) {
+            int cell = ((int) Thread.currentThread().getId() & (STRIPES - 1)) * CELL_SIZE;
+            long bits;
+            do {
+                bits = cells.get(cell + WRITERS);
+                if (bits < 0)
+                    return false;
+            } while (!cells.compareAndSet(cell + WRITERS, bits, bits + 1));
+            do {
+                bits = cells.get(cell + SUM);
+            } while (!cells.compareAndSet(cell + SUM, bits,
+                    Double.doubleToRawLongBits(Double.longBitsToDouble(bits) + value)));
+            long newBits = Double.doubleToRawLongBits(value);
+            while (value < Double.longBitsToDouble(bits = cells.get(cell + MIN))
+                    && !cells.compareAndSet(cell + MIN, bits, newBits))
+                ;
+            while (value > Double.longBitsToDouble(bits = cells.get(cell + MAX))
+                    && !cells.compareAndSet(cell + MAX, bits, newBits))
+                ;
+            cells.incrementAndGet(cell + COUNT);
+            cells.decrementAndGet(cell + WRITERS);
+            return true;
+        }
+
+        /**
+         * Prevents further values from being recorded, waiting for the values
+         * being recorded to complete.
+         */
+        void retire() {
+            for (int i = 0; i < STRIPES; i++) {
+                int cell = i * CELL_SIZE;
+                while (!cells.compareAndSet(cell + WRITERS, 0, -1))
+                    Thread.yield();
+            }
+        }
+
+        /**
+         * Returns the statistics of the values recorded, or null if none has
+         * been. Must only be called once the statistics are retired.
+         */
+        StatisticSet summarize() {
+            long count = 0;
+            double sum = 0;
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < STRIPES; i++) {
+                int cell = i * CELL_SIZE;
+                if (cells.get(cell + COUNT) == 0)
+                    continue;
+                count += cells.get(cell + COUNT);
+                sum += Double.longBitsToDouble(cells.get(cell + SUM));
+                min = Math.min(min, Double.longBitsToDouble(cells.get(cell + MIN)));
+                max = Math.max(max, Double.longBitsToDouble(cells.get(cell + MAX)));
+            }
+            if (count == 0)
+                return null;
+            return new StatisticSet()
+                .withSampleCount((double) count)
+                .withSum(sum)
+                .withMinimum(min)
+                .withMaximum(max);
+        }
+    }
+}
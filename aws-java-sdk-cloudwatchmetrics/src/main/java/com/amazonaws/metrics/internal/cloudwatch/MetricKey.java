@@ -0,0 +1,166 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics.internal.cloudwatch;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.amazonaws.services.cloudwatch.model.Dimension;
+import com.amazonaws.services.cloudwatch.model.MetricDatum;
+import com.amazonaws.services.cloudwatch.model.StandardUnit;
+
+/**
+ * The identity of a metric, ie the metric name, unit and the set of
+ * dimensions, under which individual values are summarized into statistics.
+ * Keys are immutable, and can therefore be computed once and reused for every
+ * value of the same metric; the only exception are the probe keys returned by
+ * {@link #probe(MetricDatum)}, which are only meant to look keys up.
+ */
+final class MetricKey {
+    /** The probe key of each thread. */
+    private static final ThreadLocal<MetricKey> PROBES = new ThreadLocal<MetricKey>() {
+        @Override
+        protected MetricKey initialValue() {
+            return new MetricKey();
+        }
+    };
+
+    private final boolean isProbe;
+    private String metricName;
+    private String unit;
+    /**
+     * Sorted with the {@link DimensionComparator}; copies of the dimensions
+     * given, except for probe keys.
+     */
+    private Dimension[] dimensions;
+    private int hashCode;
+
+    /** Constructs an empty probe key. */
+    private MetricKey() {
+        this.isProbe = true;
+        this.dimensions = new Dimension[0];
+    }
+
+    MetricKey(String metricName, StandardUnit unit, Dimension... dimensions) {
+        this(metricName, unit == null ? null : unit.toString(), dimensions);
+    }
+
+    private MetricKey(String metricName, String unit, Dimension... dimensions) {
+        this.isProbe = false;
+        this.metricName = metricName;
+        this.unit = unit;
+        this.dimensions = new Dimension[dimensions.length];
+        for (int i = 0; i < dimensions.length; i++) {
+            // Copied, as dimensions are mutable
+            this.dimensions[i] = new Dimension()
+                .withName(dimensions[i].getName())
+                .withValue(dimensions[i].getValue());
+        }
+        Arrays.sort(this.dimensions, DimensionComparator.INSTANCE);
+        computeHashCode();
+    }
+
+    private void computeHashCode() {
+        int h = metricName == null ? 0 : metricName.hashCode();
+        h = 31 * h + (unit == null ? 0 : unit.hashCode());
+        this.hashCode = 31 * h + Arrays.hashCode(this.dimensions);
+    }
+
+    /**
+     * Returns the key of the metric of the given datum.
+     */
+    static MetricKey of(MetricDatum datum) {
+        List<Dimension> dims = datum.getDimensions();
+        return new MetricKey(datum.getMetricName(), datum.getUnit(),
+                dims.toArray(new Dimension[dims.size()]));
+    }
+
+    /**
+     * Returns the probe key of the calling thread, set to the metric of the
+     * given datum, to look up a key equal to it without allocating a new one.
+     * The probe key is only valid until the next call by the same thread, and
+     * must be turned into a key with {@link #toKey()} to be kept.
+     */
+    static MetricKey probe(MetricDatum datum) {
+        MetricKey probe = PROBES.get();
+        List<Dimension> dims = datum.getDimensions();
+        int n = dims.size();
+        if (probe.dimensions.length != n)
+            probe.dimensions = new Dimension[n];
+        Dimension[] sorted = probe.dimensions;
+        // Insertion sort, as there are few dimensions
+        for (int i = 0; i < n; i++) {
+            Dimension dim = dims.get(i);
+            int j = i;
+            for (; j > 0 && DimensionComparator.INSTANCE.compare(sorted[j - 1], dim) > 0; j--)
+                sorted[j] = sorted[j - 1];
+            sorted[j] = dim;
+        }
+        probe.metricName = datum.getMetricName();
+        probe.unit = datum.getUnit();
+        probe.computeHashCode();
+        return probe;
+    }
+
+    /**
+     * Returns this key, or a new immutable key equal to it if this is a
+     * probe key.
+     */
+    MetricKey toKey() {
+        return isProbe ? new MetricKey(metricName, unit, dimensions) : this;
+    }
+
+    String getMetricName() {
+        return metricName;
+    }
+
+    /**
+     * Returns a new metric datum, without any value, for this metric.
+     */
+    MetricDatum newMetricDatum() {
+        MetricDatum datum = new MetricDatum()
+            .withMetricName(metricName)
+            .withUnit(unit);
+        for (Dimension dim : dimensions) {
+            datum.withDimensions(new Dimension()
+                .withName(dim.getName())
+                .withValue(dim.getValue()));
+        }
+        return datum;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof MetricKey))
+            return false;
+        MetricKey that = (MetricKey) obj;
+        return hashCode == that.hashCode
+            && (metricName == null ? that.metricName == null : metricName.equals(that.metricName))
+            && (unit == null ? that.unit == null : unit.equals(that.unit))
+            && Arrays.equals(dimensions, that.dimensions);
+    }
+
+    @Override
+    public String toString() {
+        return metricName + Arrays.toString(dimensions) + " (" + unit + ")";
+    }
+}
@@ -40,17 +40,30 @@ public class RequestMetricCollectorSupport extends RequestMetricCollector
 {
     protected final static Log log = LogFactory.getLog(RequestMetricCollectorSupport.class);
     private final BlockingQueue<MetricDatum> queue;
+    private final MetricAggregator aggregator;
     private final PredefinedMetricTransformer transformer = new PredefinedMetricTransformer();
 
+    /**
+     * @deprecated the metrics added to the given queue are not uploaded by
+     *             the default uploader, which summarizes them as they are
+     *             collected instead.
+     */
+    @Deprecated
     protected RequestMetricCollectorSupport(BlockingQueue<MetricDatum> queue) {
         this.queue = queue;
+        this.aggregator = null;
+    }
+
+    RequestMetricCollectorSupport(MetricAggregator aggregator) {
+        this.queue = null;
+        this.aggregator = aggregator;
     }
 
     /**
      * Collects the metrics at the end of a request/response cycle, transforms
      * the metric data points into a cloud watch metric datum representation,
-     * and then adds it to a memory queue so it will get summarized into the
-     * necessary statistics and uploaded to Amazon CloudWatch.
+     * and then summarizes them into the necessary statistics to be uploaded
+     * to Amazon CloudWatch.
      */
     @Override
     public void collectMetrics(Request<?> request, Response<?> response) {
@@ -70,6 +83,7 @@ public class RequestMetricCollectorSupport extends RequestMetricCollector
         for (MetricType type: AwsSdkMetrics.getPredefinedMetrics()) {
             if (!(type instanceof RequestMetricType))
                 continue;
+            LatencyHistograms.record(type, request);
             PredefinedMetricTransformer transformer = getTransformer();
             for (MetricDatum datum : transformer.toMetricData(type, request, response)) {
                 try {
@@ -91,11 +105,12 @@ public class RequestMetricCollectorSupport extends RequestMetricCollector
     }
 
     /**
-     * Adds the given metric to the queue, returning true if successful or false
-     * if no space available.
+     * Adds the given metric to the statistics to be uploaded (or to the queue
+     * if one was specified at construction), returning true if successful or
+     * false if no space available.
      */
     protected boolean addMetricsToQueue(MetricDatum metric) {
-        return queue.offer(metric); 
+        return aggregator == null ? queue.offer(metric) : aggregator.record(metric);
     }
     /** Returns the predefined metrics transformer. */
     protected PredefinedMetricTransformer getTransformer() { return transformer; }
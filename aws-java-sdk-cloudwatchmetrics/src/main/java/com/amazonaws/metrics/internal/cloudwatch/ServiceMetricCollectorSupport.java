@@ -16,6 +16,8 @@ package com.amazonaws.metrics.internal.cloudwatch;
 
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
@@ -47,9 +49,25 @@ public class ServiceMetricCollectorSupport extends ServiceMetricCollector
     static final double NANO_PER_SEC = TimeUnit.SECONDS.toNanos(1);
     protected final static Log log = LogFactory.getLog(ServiceMetricCollectorSupport.class);
     private final BlockingQueue<MetricDatum> queue;
+    private final MetricAggregator aggregator;
+    /** The metric keys of the service metric types, computed on first use. */
+    private final ConcurrentMap<MetricType, MetricKey> metricKeys =
+        new ConcurrentHashMap<MetricType, MetricKey>();
 
+    /**
+     * @deprecated the metrics added to the given queue are not uploaded by
+     *             the default uploader, which summarizes them as they are
+     *             collected instead.
+     */
+    @Deprecated
     protected ServiceMetricCollectorSupport(BlockingQueue<MetricDatum> queue) {
         this.queue = queue;
+        this.aggregator = null;
+    }
+
+    ServiceMetricCollectorSupport(MetricAggregator aggregator) {
+        this.queue = null;
+        this.aggregator = aggregator;
     }
 
     @Override
@@ -95,27 +113,11 @@ public class ServiceMetricCollectorSupport extends ServiceMetricCollector
         double bytesPerSec = bytesPerSecond(byteCount, durationNano);
         if (metrics.contains(throughputType)) {
             // Throughput metric
-            final Dimension throughputDimension = new Dimension()
-                .withName(Dimensions.MetricType.name())
-                .withValue(throughputType.name());
-            final MetricDatum throughputDatum = new MetricDatum()
-                .withMetricName(throughputType.getServiceName())
-                .withDimensions(throughputDimension)
-                .withUnit(StandardUnit.BytesSecond)
-                .withValue(bytesPerSec);
-            safeAddMetricsToQueue(throughputDatum);
+            record(throughputType, StandardUnit.BytesSecond, bytesPerSec);
         }
         if (metrics.contains(byteCountType)) {
             // Byte count metric
-            final Dimension byteCountDimension = new Dimension()
-                .withName(Dimensions.MetricType.name())
-                .withValue(byteCountType.name());
-            final MetricDatum byteCountDatum = new MetricDatum()
-                .withMetricName(byteCountType.getServiceName())
-                .withDimensions(byteCountDimension)
-                .withUnit(StandardUnit.Bytes)
-                .withValue(byteCount);
-            safeAddMetricsToQueue(byteCountDatum);
+            record(byteCountType, StandardUnit.Bytes, byteCount);
         }
     }
 
@@ -124,15 +126,40 @@ public class ServiceMetricCollectorSupport extends ServiceMetricCollector
         final ServiceMetricType type = provider.getServiceMetricType();
         final Set<MetricType> metrics = AwsSdkMetrics.getPredefinedMetrics();
         if (metrics.contains(type)) {
+            record(type, StandardUnit.Milliseconds, provider.getDurationMilli());
+        }
+    }
+
+    /**
+     * Records a value of the given service metric type. Values are summarized
+     * directly under the interned key of the metric type, unless a queue was
+     * specified at construction.
+     */
+    private void record(ServiceMetricType type, StandardUnit unit, double value) {
+        if (aggregator == null) {
             final Dimension dim = new Dimension()
                 .withName(Dimensions.MetricType.name())
                 .withValue(type.name());
             final MetricDatum datum = new MetricDatum()
                 .withMetricName(type.getServiceName())
                 .withDimensions(dim)
-                .withUnit(StandardUnit.Milliseconds)
-                .withValue(provider.getDurationMilli());
+                .withUnit(unit)
+                .withValue(value);
             safeAddMetricsToQueue(datum);
+            return;
+        }
+        MetricKey key = metricKeys.get(type);
+        if (key == null) {
+            key = new MetricKey(type.getServiceName(), unit, new Dimension()
+                .withName(Dimensions.MetricType.name())
+                .withValue(type.name()));
+            metricKeys.put(type, key);
+        }
+        if (!aggregator.record(key, value)) {
+            if (log.isDebugEnabled()) {
+                log.debug("Failed to record the metric (due to no space available) for "
+                        + type.getServiceName());
+            }
         }
     }
 
@@ -150,10 +177,11 @@ public class ServiceMetricCollectorSupport extends ServiceMetricCollector
         }
     }
     /**
-     * Adds the given metric to the queue, returning true if successful or false
-     * if no space available.
+     * Adds the given metric to the statistics to be uploaded (or to the queue
+     * if one was specified at construction), returning true if successful or
+     * false if no space available.
      */
     protected boolean addMetricsToQueue(MetricDatum metric) {
-        return queue.offer(metric); 
+        return aggregator == null ? queue.offer(metric) : aggregator.record(metric);
     }
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics.internal.cloudwatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import com.amazonaws.services.cloudwatch.model.Dimension;
+import com.amazonaws.services.cloudwatch.model.MetricDatum;
+import com.amazonaws.services.cloudwatch.model.StandardUnit;
+import com.amazonaws.services.cloudwatch.model.StatisticSet;
+
+public class MetricAggregatorTest {
+    private static final MetricKey A = new MetricKey("A", StandardUnit.Count);
+    private static final MetricKey B = new MetricKey("B", StandardUnit.Count);
+    private static final MetricKey C = new MetricKey("C", StandardUnit.Count);
+
+    @Test
+    public void maxMetrics_AppliesPerSnapshot() {
+        MetricAggregator aggregator = new MetricAggregator(2);
+        assertTrue(aggregator.record(A, 1));
+        assertTrue(aggregator.record(B, 2));
+        assertFalse(aggregator.record(C, 3));
+        assertTrue(aggregator.record(A, 4));
+        assertEquals(1, aggregator.getDroppedCount());
+
+        Map<MetricKey, MetricDatum> snapshot = aggregator.snapshotAndReset();
+        assertEquals(2, snapshot.size());
+        assertEquals(2.0, snapshot.get(A).getStatisticValues().getSampleCount(), 0);
+        assertEquals(0, aggregator.getDroppedCount());
+
+        assertTrue(aggregator.record(C, 3));
+        snapshot = aggregator.snapshotAndReset();
+        assertEquals(1, snapshot.size());
+        assertEquals(3.0, snapshot.get(C).getStatisticValues().getSum(), 0);
+        assertTrue(aggregator.snapshotAndReset().isEmpty());
+    }
+
+    @Test
+    public void recordDatum_LooksUpMetricByIdentity() {
+        MetricAggregator aggregator = new MetricAggregator(10);
+        Dimension x = new Dimension().withName("x").withValue("1");
+        Dimension y = new Dimension().withName("y").withValue("2");
+        assertTrue(aggregator.record(new MetricDatum().withMetricName("A")
+                .withUnit(StandardUnit.Count).withDimensions(x, y).withValue(1.0)));
+        assertTrue(aggregator.record(new MetricDatum().withMetricName("A")
+                .withUnit(StandardUnit.Count).withDimensions(y, x).withValue(2.0)));
+        assertTrue(aggregator.record(new MetricDatum().withMetricName("A")
+                .withUnit(StandardUnit.Count).withDimensions(x).withValue(4.0)));
+        // The recorded metrics don't share the reused lookup key
+        x.setValue("3");
+
+        Map<MetricKey, MetricDatum> snapshot = aggregator.snapshotAndReset();
+        assertEquals(2, snapshot.size());
+        MetricKey xy = new MetricKey("A", StandardUnit.Count,
+                new Dimension().withName("x").withValue("1"), new Dimension().withName("y").withValue("2"));
+        assertEquals(3.0, snapshot.get(xy).getStatisticValues().getSum(), 0);
+        MetricKey xOnly = new MetricKey("A", StandardUnit.Count, new Dimension().withName("x").withValue("1"));
+        assertEquals(4.0, snapshot.get(xOnly).getStatisticValues().getSum(), 0);
+    }
+
+    @Test
+    public void snapshots_KeepObservedMinAndMax() {
+        MetricAggregator aggregator = new MetricAggregator(10);
+        aggregator.record(A, 5);
+        aggregator.record(A, -2);
+        aggregator.record(A, 7);
+        StatisticSet stat = aggregator.snapshotAndReset().get(A).getStatisticValues();
+        assertEquals(3.0, stat.getSampleCount(), 0);
+        assertEquals(10.0, stat.getSum(), 0);
+        assertEquals(-2.0, stat.getMinimum(), 0);
+        assertEquals(7.0, stat.getMaximum(), 0);
+    }
+
+    @Test
+    public void concurrentSnapshots_NeitherLoseNorSplitValues() throws Exception {
+        final MetricAggregator aggregator = new MetricAggregator(10);
+        final int threads = 4;
+        final int values = 100000;
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 1; i <= values; i++)
+                        aggregator.record(A, i);
+                    done.countDown();
+                }
+            }.start();
+        }
+        double count = 0, sum = 0;
+        boolean finished = false;
+        while (!finished) {
+            finished = done.getCount() == 0;
+            MetricDatum datum = aggregator.snapshotAndReset().get(A);
+            if (datum == null)
+                continue;
+            StatisticSet stat = datum.getStatisticValues();
+            assertTrue(stat.getMinimum() >= 1);
+            assertTrue(stat.getMaximum() <= values);
+            assertTrue(stat.getMinimum() <= stat.getMaximum());
+            count += stat.getSampleCount();
+            sum += stat.getSum();
+        }
+        assertEquals((double) threads * values, count, 0);
+        assertEquals(threads * (values * (values + 1.0) / 2), sum, 0);
+    }
+}
@@ -15,10 +15,14 @@
 package com.amazonaws;
 
 import java.net.InetAddress;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.http.annotation.NotThreadSafe;
 
 import com.amazonaws.http.IdleConnectionReaper;
+import com.amazonaws.http.SharedHttpTransport;
 import com.amazonaws.retry.PredefinedRetryPolicies;
 import com.amazonaws.retry.RetryPolicy;
 import com.amazonaws.util.VersionInfoUtils;
@@ -84,6 +88,11 @@ public class ClientConfiguration {
      */
     public static final int DEFAULT_RESPONSE_METADATA_CACHE_SIZE = 50;
 
+    /**
+     * The default on whether to cache response metadata.
+     */
+    public static final boolean DEFAULT_CACHE_RESPONSE_METADATA = true;
+
     /** The HTTP user agent header passed with all HTTP requests. */
     private String userAgent = DEFAULT_USER_AGENT;
 
@@ -136,6 +145,19 @@ public class ClientConfiguration {
     /** The maximum number of open HTTP connections. */
     private int maxConnections = DEFAULT_MAX_CONNECTIONS;
 
+    /**
+     * The maximum number of open HTTP connections per route, ie per target
+     * host, port and protocol; or -1 to let a single route use up to
+     * {@link #maxConnections}.
+     */
+    private int maxConnectionsPerRoute = -1;
+
+    /**
+     * The maximum number of open HTTP connections per route to specific hosts,
+     * overriding {@link #maxConnectionsPerRoute}.
+     */
+    private final Map<String, Integer> maxConnectionsPerHost = new HashMap<String, Integer>();
+
     /**
      * The amount of time to wait (in milliseconds) for data to be transfered
      * over an established, open connection before the connection is timed out.
@@ -209,11 +231,23 @@ public class ClientConfiguration {
      */
     private int responseMetadataCacheSize = DEFAULT_RESPONSE_METADATA_CACHE_SIZE;
 
+    /**
+     * Whether to cache response metadata.
+     */
+    private boolean cacheResponseMetadata = DEFAULT_CACHE_RESPONSE_METADATA;
+
     /**
      * Can be used to specify custom specific Apache HTTP client configurations.
      */
     private final ApacheHttpClientConfig apacheHttpClientConfig;
 
+    /**
+     * The HTTP transport shared with other clients, over which the requests of
+     * clients using this configuration are sent; or null if each client
+     * creates its own.
+     */
+    private SharedHttpTransport sharedHttpTransport;
+
     public ClientConfiguration() {
         apacheHttpClientConfig = new ApacheHttpClientConfig();
     }
@@ -221,6 +255,8 @@ public class ClientConfiguration {
     public ClientConfiguration(ClientConfiguration other) {
         this.connectionTimeout           = other.connectionTimeout;
         this.maxConnections              = other.maxConnections;
+        this.maxConnectionsPerRoute      = other.maxConnectionsPerRoute;
+        this.maxConnectionsPerHost.putAll(other.maxConnectionsPerHost);
         this.maxErrorRetry               = other.maxErrorRetry;
         this.retryPolicy                 = other.retryPolicy;
         this.localAddress                = other.localAddress;
@@ -240,8 +276,10 @@ public class ClientConfiguration {
         this.socketSendBufferSizeHint    = other.socketSendBufferSizeHint;
         this.signerOverride              = other.signerOverride;
         this.responseMetadataCacheSize   = other.responseMetadataCacheSize;
+        this.cacheResponseMetadata       = other.cacheResponseMetadata;
         this.apacheHttpClientConfig =
             new ApacheHttpClientConfig(other.apacheHttpClientConfig);
+        this.sharedHttpTransport         = other.sharedHttpTransport;
     }
 
     /**
@@ -335,6 +373,98 @@ public class ClientConfiguration {
         return this;
     }
 
+    /**
+     * Returns the maximum number of allowed open HTTP connections to a single
+     * route, ie a target host, port and protocol. Unless explicitly set, this
+     * is the {@link #getMaxConnections() maximum number of connections}.
+     *
+     * @return The maximum number of allowed open HTTP connections per route.
+     */
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute < 0 ? maxConnections : maxConnectionsPerRoute;
+    }
+
+    /**
+     * Sets the maximum number of allowed open HTTP connections to a single
+     * route, ie a target host, port and protocol. A client that talks to many
+     * endpoints, such as many S3 buckets, can use this to prevent a single
+     * busy endpoint from taking up all the connections of the pool.
+     *
+     * @param maxConnectionsPerRoute
+     *            The maximum number of allowed open HTTP connections per
+     *            route, or -1 to allow up to the maximum number of
+     *            connections.
+     */
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    /**
+     * Sets the maximum number of allowed open HTTP connections to a single
+     * route, and returns the updated ClientConfiguration object.
+     *
+     * @param maxConnectionsPerRoute
+     *            The maximum number of allowed open HTTP connections per
+     *            route, or -1 to allow up to the maximum number of
+     *            connections.
+     * @return The updated ClientConfiguration object with the new max HTTP
+     *         connections per route setting.
+     */
+    public ClientConfiguration withMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        setMaxConnectionsPerRoute(maxConnectionsPerRoute);
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of allowed open HTTP connections per route to
+     * specific hosts, by host name.
+     *
+     * @return An unmodifiable view of the maximum number of connections per
+     *         route to specific hosts.
+     */
+    public Map<String, Integer> getMaxConnectionsPerHost() {
+        return Collections.unmodifiableMap(maxConnectionsPerHost);
+    }
+
+    /**
+     * Sets the maximum number of allowed open HTTP connections per route to the
+     * given host, overriding the {@link #getMaxConnectionsPerRoute() maximum
+     * number of connections per route}. The limit applies to each route to the
+     * host, ie to each port and protocol.
+     *
+     * @param host
+     *            The name of the host, as used in the endpoint of the client.
+     * @param maxConnections
+     *            The maximum number of allowed open HTTP connections per route
+     *            to the host, or -1 to remove a previously set limit.
+     */
+    public void setMaxConnectionsForHost(String host, int maxConnections) {
+        if (host == null) {
+            throw new IllegalArgumentException("host must not be null");
+        }
+        if (maxConnections < 0) {
+            maxConnectionsPerHost.remove(host);
+        } else {
+            maxConnectionsPerHost.put(host, maxConnections);
+        }
+    }
+
+    /**
+     * Sets the maximum number of allowed open HTTP connections per route to the
+     * given host, and returns the updated ClientConfiguration object.
+     *
+     * @param host
+     *            The name of the host, as used in the endpoint of the client.
+     * @param maxConnections
+     *            The maximum number of allowed open HTTP connections per route
+     *            to the host, or -1 to remove a previously set limit.
+     * @return The updated ClientConfiguration object.
+     */
+    public ClientConfiguration withMaxConnectionsForHost(String host, int maxConnections) {
+        setMaxConnectionsForHost(host, maxConnections);
+        return this;
+    }
+
     /**
      * Returns the HTTP user agent header to send with all requests.
      *
@@ -1181,6 +1311,42 @@ public class ClientConfiguration {
         return this;
     }
 
+    /**
+     * Returns whether the response metadata of recently executed requests is
+     * cached for diagnostic purposes.
+     */
+    public boolean getCacheResponseMetadata() {
+        return cacheResponseMetadata;
+    }
+
+    /**
+     * Sets whether the response metadata of recently executed requests is
+     * cached for diagnostic purposes. When disabled, the response metadata of
+     * requests can't be retrieved from the client. By default, it is set to
+     * {@value #DEFAULT_CACHE_RESPONSE_METADATA}.
+     *
+     * @param cacheResponseMetadata
+     *            Whether to cache response metadata.
+     */
+    public void setCacheResponseMetadata(boolean cacheResponseMetadata) {
+        this.cacheResponseMetadata = cacheResponseMetadata;
+    }
+
+    /**
+     * Sets whether the response metadata of recently executed requests is
+     * cached for diagnostic purposes. When disabled, the response metadata of
+     * requests can't be retrieved from the client. By default, it is set to
+     * {@value #DEFAULT_CACHE_RESPONSE_METADATA}.
+     *
+     * @param cacheResponseMetadata
+     *            Whether to cache response metadata.
+     * @return The updated ClientConfiguration object.
+     */
+    public ClientConfiguration withCacheResponseMetadata(boolean cacheResponseMetadata) {
+        setCacheResponseMetadata(cacheResponseMetadata);
+        return this;
+    }
+
     /**
      * Returns a non-null object that can be used to specify Apache HTTP client
      * specific custom configurations.
@@ -1188,4 +1354,53 @@ public class ClientConfiguration {
     public ApacheHttpClientConfig getApacheHttpClientConfig() {
         return apacheHttpClientConfig;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the HTTP transport shared with other clients, over which the
+     * requests of clients using this configuration are sent; or null if each
+     * client creates its own HTTP client.
+     */
+    public SharedHttpTransport getSharedHttpTransport() {
+        return sharedHttpTransport;
+    }
+
+    /**
+     * Sets the HTTP transport shared with other clients, over which the
+     * requests of clients using this configuration are sent, so that they
+     * share the connection pool and its limits. When set, the connection,
+     * socket, proxy and SSL settings of the configuration the transport was
+     * created with apply, and those of this configuration are ignored; the
+     * other settings, such as the retry policy and user agent, still apply.
+     * The connections of the clients that disable strict hostname
+     * verification, such as the Amazon S3 client, are pooled apart from the
+     * others, but count towards the same total limit (see
+     * {@link SharedHttpTransport}).
+     * <p>
+     * Each client acquires a reference to the transport when it is created
+     * and releases it when it is shut down, so the transport must not have
+     * been shut down already.
+     *
+     * @param sharedHttpTransport
+     *            The shared transport, or null for each client to create its
+     *            own HTTP client.
+     */
+    public void setSharedHttpTransport(SharedHttpTransport sharedHttpTransport) {
+        this.sharedHttpTransport = sharedHttpTransport;
+    }
+
+    /**
+     * Sets the HTTP transport shared with other clients, over which the
+     * requests of clients using this configuration are sent, and returns the
+     * updated ClientConfiguration object.
+     *
+     * @param sharedHttpTransport
+     *            The shared transport, or null for each client to create its
+     *            own HTTP client.
+     * @return The updated ClientConfiguration object.
+     * @see #setSharedHttpTransport(SharedHttpTransport)
+     */
+    public ClientConfiguration withSharedHttpTransport(SharedHttpTransport sharedHttpTransport) {
+        setSharedHttpTransport(sharedHttpTransport);
+        return this;
+    }
+}
@@ -24,6 +24,9 @@ import static com.amazonaws.util.AWSRequestMetrics.Field.Exception;
 import static com.amazonaws.util.AWSRequestMetrics.Field.HttpClientPoolAvailableCount;
 import static com.amazonaws.util.AWSRequestMetrics.Field.HttpClientPoolLeasedCount;
 import static com.amazonaws.util.AWSRequestMetrics.Field.HttpClientPoolPendingCount;
+import static com.amazonaws.util.AWSRequestMetrics.Field.HttpClientPoolRouteAvailableCount;
+import static com.amazonaws.util.AWSRequestMetrics.Field.HttpClientPoolRouteLeasedCount;
+import static com.amazonaws.util.AWSRequestMetrics.Field.HttpClientPoolRoutePendingCount;
 import static com.amazonaws.util.AWSRequestMetrics.Field.HttpRequestTime;
 import static com.amazonaws.util.AWSRequestMetrics.Field.RedirectLocation;
 import static com.amazonaws.util.AWSRequestMetrics.Field.RequestCount;
@@ -47,6 +50,17 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.net.ssl.SSLContext;
 
@@ -60,7 +74,9 @@ import org.apache.http.StatusLine;
 import org.apache.http.annotation.ThreadSafe;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.ClientContext;
 import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.ssl.SSLSocketFactory;
@@ -96,6 +112,7 @@ import com.amazonaws.internal.ResettableInputStream;
 import com.amazonaws.internal.SdkBufferedInputStream;
 import com.amazonaws.metrics.AwsSdkMetrics;
 import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.retry.RetryBudget;
 import com.amazonaws.retry.RetryPolicy;
 import com.amazonaws.retry.RetryUtils;
 import com.amazonaws.retry.internal.AuthErrorRetryStrategy;
@@ -151,10 +168,28 @@ public class AmazonHttpClient {
     /** Internal client for sending HTTP requests */
     private final HttpClient httpClient;
 
+    /**
+     * The transport whose HTTP client this client shares with other clients;
+     * or null if this client owns its HTTP client.
+     */
+    private final SharedHttpTransport sharedHttpTransport;
+
+    /**
+     * Whether the requests of this client are made without strict hostname
+     * verification over the shared transport.
+     */
+    private volatile boolean relaxedHostnameVerification;
+
+    /** Whether this client has released its reference to the shared transport. */
+    private final AtomicBoolean sharedHttpTransportReleased = new AtomicBoolean();
+
     /** Client configuration options, such as proxy settings, max retries, etc. */
     private final ClientConfiguration config;
 
-    /** Cache of metadata for recently executed requests for diagnostic purposes */
+    /**
+     * Cache of metadata for recently executed requests for diagnostic
+     * purposes; or null if disabled.
+     */
     private final ResponseMetadataCache responseMetadataCache;
 
     /**
@@ -195,7 +230,19 @@ public class AmazonHttpClient {
      *            is none.
      */
     public AmazonHttpClient(ClientConfiguration config, RequestMetricCollector requestMetricCollector) {
-        this(config, httpClientFactory.createHttpClient(config), requestMetricCollector);
+        this(config, config.getSharedHttpTransport(), requestMetricCollector);
+    }
+
+    private AmazonHttpClient(
+            ClientConfiguration config,
+            SharedHttpTransport sharedHttpTransport,
+            RequestMetricCollector requestMetricCollector) {
+        this(config,
+             sharedHttpTransport == null
+                 ? httpClientFactory.createHttpClient(config)
+                 : sharedHttpTransport.acquire(),
+             sharedHttpTransport,
+             requestMetricCollector);
     }
 
     /**
@@ -205,11 +252,22 @@ public class AmazonHttpClient {
             ClientConfiguration config,
             HttpClient httpClient,
             RequestMetricCollector requestMetricCollector) {
+        this(config, httpClient, null, requestMetricCollector);
+    }
+
+    private AmazonHttpClient(
+            ClientConfiguration config,
+            HttpClient httpClient,
+            SharedHttpTransport sharedHttpTransport,
+            RequestMetricCollector requestMetricCollector) {
 
         this.config = config;
         this.httpClient = httpClient;
+        this.sharedHttpTransport = sharedHttpTransport;
         this.requestMetricCollector = requestMetricCollector;
-        this.responseMetadataCache = new ResponseMetadataCache(config.getResponseMetadataCacheSize());
+        this.responseMetadataCache = config.getCacheResponseMetadata()
+            ? new ResponseMetadataCache(config.getResponseMetadataCacheSize())
+            : null;
     }
 
     /**
@@ -227,13 +285,18 @@ public class AmazonHttpClient {
      *         if there is no response metadata available for the request.
      */
     public ResponseMetadata getResponseMetadataForRequest(AmazonWebServiceRequest request) {
-        return responseMetadataCache.get(request);
+        return responseMetadataCache == null ? null : responseMetadataCache.get(request);
     }
 
     /**
      * Disables the default strict hostname verification in this client and
      * instead uses a browser compatible hostname verification strategy (i.e.
      * cert hostname wildcards are evaulated more liberally).
+     * <p>
+     * If this client shares its HTTP transport with other clients, only the
+     * requests of this client are affected: their connections are pooled
+     * apart from those of the clients that haven't disabled strict hostname
+     * verification (see {@link SharedHttpTransport}).
      */
     public void disableStrictHostnameVerification() {
 
@@ -245,16 +308,29 @@ public class AmazonHttpClient {
             return;
         }
 
+        if (sharedHttpTransport != null) {
+            sharedHttpTransport.registerRelaxedHttpsScheme();
+            relaxedHostnameVerification = true;
+            return;
+        }
+
+        SchemeRegistry schemeRegistry = httpClient.getConnectionManager().getSchemeRegistry();
+        schemeRegistry.register(createBrowserCompatibleHttpsScheme("https", config));
+    }
+
+    /**
+     * Creates an HTTPS scheme with the given name, whose connections are
+     * verified with a browser compatible hostname verification strategy.
+     */
+    static Scheme createBrowserCompatibleHttpsScheme(String name, ClientConfiguration config) {
         try {
-            SchemeRegistry schemeRegistry = httpClient.getConnectionManager().getSchemeRegistry();
             SSLSocketFactory sf = config.getApacheHttpClientConfig().getSslSocketFactory();
             if (sf == null) {
                 sf = new SdkTLSSocketFactory(
                         SSLContext.getDefault(),
                         SSLSocketFactory.BROWSER_COMPATIBLE_HOSTNAME_VERIFIER);
             }
-            Scheme https = new Scheme("https", 443, sf);
-            schemeRegistry.register(https);
+            return new Scheme(name, 443, sf);
         } catch (NoSuchAlgorithmException e) {
             throw new AmazonClientException("Unable to access default SSL context to disable strict hostname verification");
         }
@@ -278,44 +354,56 @@ public class AmazonHttpClient {
             HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
             HttpResponseHandler<AmazonServiceException> errorResponseHandler,
             ExecutionContext executionContext) {
-        if (executionContext == null)
-            throw new AmazonClientException("Internal SDK Error: No execution context parameter specified.");
-        final List<RequestHandler2> requestHandler2s = requestHandler2s(request, executionContext);
-        AmazonWebServiceRequest awsreq = request.getOriginalRequest();
-        ProgressListener listener = awsreq.getGeneralProgressListener();
-        Map<String, String> customHeaders = awsreq.getCustomRequestHeaders();
-        if (customHeaders != null) {
-            request.getHeaders().putAll(customHeaders);
-        }
-        final AWSRequestMetrics awsRequestMetrics = executionContext.getAwsRequestMetrics();
-        Response<T> response = null;
-        final InputStream origContent = request.getContent();
-        final InputStream toBeClosed = beforeRequest(request); // for progress tracking
-        // make "notCloseable", so reset would work with retries
-        final InputStream notCloseable = (toBeClosed == null)
-            ? null
-            : ReleasableInputStream.wrap(toBeClosed).disableClose()
-            ;
-        request.setContent(notCloseable);
+        final Execution<T> execution = new Execution<T>(request,
+                responseHandler, errorResponseHandler, executionContext);
         try {
-            publishProgress(listener, ProgressEventType.CLIENT_REQUEST_STARTED_EVENT);
-            response = executeHelper(request, responseHandler,
-                    errorResponseHandler, executionContext);
-            publishProgress(listener, ProgressEventType.CLIENT_REQUEST_SUCCESS_EVENT);
-            TimingInfo timingInfo = awsRequestMetrics.getTimingInfo().endTiming();
-            afterResponse(request, requestHandler2s, response, timingInfo);
-            return response;
+            execution.start();
+            return execution.succeed(executeHelper(execution));
         } catch (AmazonClientException e) {
-            publishProgress(listener, ProgressEventType.CLIENT_REQUEST_FAILED_EVENT);
-            afterError(request, response, requestHandler2s, e);
-            throw e;
+            throw execution.fail(e);
         } finally {
-            // Always close so any progress tracking would get the final events propagated.
-            closeQuietly(toBeClosed, log);
-            request.setContent(origContent); // restore the original content
+            execution.close();
         }
     }
 
+    /**
+     * Executes the request asynchronously on the given executor, and returns
+     * a future for the result. Unlike {@link #execute}, no thread is blocked
+     * while backing off before a retry: the next attempt is scheduled on a
+     * shared scheduler, which hands it back to the executor once the delay
+     * has elapsed. The retry policy, backoff strategy and execution context
+     * are honored the same way as in {@link #execute}.
+     *
+     * @param request
+     *            The AmazonWebServices request to send to the remote server
+     * @param responseHandler
+     *            A response handler to accept a successful response from the
+     *            remote server
+     * @param errorResponseHandler
+     *            A response handler to accept an unsuccessful response from the
+     *            remote server
+     * @param executionContext
+     *            Additional information about the context of this web service
+     *            call
+     * @param executor
+     *            The executor on which each attempt of the request is executed
+     *
+     * @return A future for the response; failures are reported as the cause
+     *         of the {@link java.util.concurrent.ExecutionException} thrown by
+     *         the future.
+     */
+    public <T> Future<Response<T>> executeAsync(Request<?> request,
+            HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
+            HttpResponseHandler<AmazonServiceException> errorResponseHandler,
+            ExecutionContext executionContext,
+            Executor executor) {
+        AsyncExecution<T> future = new AsyncExecution<T>(request,
+                responseHandler, errorResponseHandler, executionContext,
+                executor);
+        future.submit(0);
+        return future;
+    }
+
     /**
      * Publishes the "request content length" event, and returns an input
      * stream, which will be made mark-and-resettable if possible, for progress
@@ -408,39 +496,137 @@ public class AmazonHttpClient {
     }
 
     /**
-     * Internal method to execute the HTTP method given.
+     * Internal method to execute the HTTP method given, pausing on the current
+     * thread before each retry.
      */
-    private <T> Response<T> executeHelper(final Request<?> request,
-            HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
-            HttpResponseHandler<AmazonServiceException> errorResponseHandler,
-            final ExecutionContext executionContext) {
-        /*
-         * add the service endpoint to the logs. You can infer service name from
-         * service endpoint
-         */
-        final AWSRequestMetrics awsRequestMetrics =
-            executionContext.getAwsRequestMetrics()
-            .addPropertyWith(ServiceName, request.getServiceName())
-            .addPropertyWith(ServiceEndpoint, request.getEndpoint())
-            ;
-        // Apply whatever request options we know how to handle, such as
-        // user-agent.
-        setUserAgent(request);
-        // Make a copy of the original request params and headers so that we can
-        // permute it in this loop and start over with the original every time.
-        final Map<String, List<String>> originalParameters =
-            new LinkedHashMap<String, List<String>>(request.getParameters());
-        final Map<String, String> originalHeaders =
-            new HashMap<String, String>(request.getHeaders());
-        // Always mark the input stream before execution.
-        final InputStream originalContent = request.getContent();
-        if (originalContent != null && originalContent.markSupported()) {
+    private <T> Response<T> executeHelper(final Execution<T> execution) {
+        while (true) {
+            Response<T> response = execution.attempt();
+            if (response != null)
+                return response;
+            final long delay = execution.beforeRetry();
+            try {
+                if (delay > 0)
+                    Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw execution.abort(new AmazonClientException(e.getMessage(), e));
+            } finally {
+                execution.afterRetryPause();
+            }
+        }
+    }
+
+    /**
+     * Used to perform a last reset on the content input stream (if
+     * mark-supported); this is so that, for backward compatibility reason, any
+     * "blind" retry (ie without calling reset) by user of this library with the
+     * same input stream (such as ByteArrayInputStream) could still succeed.
+     *
+     * @param t
+     *            the failure
+     * @param apacheRequest
+     *            the request, if known; or null otherwise.
+     * @return the failure as given
+     */
+    private <T extends Throwable> T lastReset(final T t,
+            final Request<?> req) {
+        try {
+            InputStream content = req.getContent();
+            if (content != null) {
+                if (content.markSupported())
+                    content.reset();
+            }
+        } catch (Exception ex) {
+            log.debug(
+                "FYI: failed to reset content inputstream before throwing up",
+                 ex);
+        }
+        return t;
+    }
+
+    /**
+     * The state of the execution of a request, across all its attempts.
+     * Attempts are made one at a time, but not necessarily on the same thread.
+     */
+    private final class Execution<T> {
+        private final Request<?> request;
+        private final HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler;
+        private final HttpResponseHandler<AmazonServiceException> errorResponseHandler;
+        private final ExecutionContext executionContext;
+        private final List<RequestHandler2> requestHandler2s;
+        private final ProgressListener listener;
+        private final AWSRequestMetrics awsRequestMetrics;
+        private final InputStream origContent;
+        private final InputStream toBeClosed;
+        private final ExecOneRequestParams p = new ExecOneRequestParams();
+        private Response<T> response;
+        // Copies of the original request params and headers, so that each
+        // attempt can permute them and start over with the original.
+        private Map<String, List<String>> originalParameters;
+        private Map<String, String> originalHeaders;
+        private InputStream originalContent;
+
+        Execution(Request<?> request,
+                HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
+                HttpResponseHandler<AmazonServiceException> errorResponseHandler,
+                ExecutionContext executionContext) {
+            if (executionContext == null)
+                throw new AmazonClientException("Internal SDK Error: No execution context parameter specified.");
+            this.request = request;
+            this.responseHandler = responseHandler;
+            this.errorResponseHandler = errorResponseHandler;
+            this.executionContext = executionContext;
+            this.requestHandler2s = requestHandler2s(request, executionContext);
             AmazonWebServiceRequest awsreq = request.getOriginalRequest();
-            final int readLimit = awsreq.getRequestClientOptions().getReadLimit();
-            originalContent.mark(readLimit);
+            this.listener = awsreq.getGeneralProgressListener();
+            Map<String, String> customHeaders = awsreq.getCustomRequestHeaders();
+            if (customHeaders != null) {
+                request.getHeaders().putAll(customHeaders);
+            }
+            this.awsRequestMetrics = executionContext.getAwsRequestMetrics();
+            this.origContent = request.getContent();
+            this.toBeClosed = beforeRequest(request); // for progress tracking
+            // make "notCloseable", so reset would work with retries
+            final InputStream notCloseable = (toBeClosed == null)
+                ? null
+                : ReleasableInputStream.wrap(toBeClosed).disableClose()
+                ;
+            request.setContent(notCloseable);
         }
-        final ExecOneRequestParams p = new ExecOneRequestParams();
-        while (true) {
+
+        /**
+         * Prepares the request for its first attempt.
+         */
+        void start() {
+            publishProgress(listener, ProgressEventType.CLIENT_REQUEST_STARTED_EVENT);
+            /*
+             * add the service endpoint to the logs. You can infer service name from
+             * service endpoint
+             */
+            awsRequestMetrics
+                .addPropertyWith(ServiceName, request.getServiceName())
+                .addPropertyWith(ServiceEndpoint, request.getEndpoint())
+                ;
+            // Apply whatever request options we know how to handle, such as
+            // user-agent.
+            setUserAgent(request);
+            originalParameters = new LinkedHashMap<String, List<String>>(request.getParameters());
+            originalHeaders = new HashMap<String, String>(request.getHeaders());
+            // Always mark the input stream before execution.
+            originalContent = request.getContent();
+            if (originalContent != null && originalContent.markSupported()) {
+                AmazonWebServiceRequest awsreq = request.getOriginalRequest();
+                final int readLimit = awsreq.getRequestClientOptions().getReadLimit();
+                originalContent.mark(readLimit);
+            }
+        }
+
+        /**
+         * Makes one attempt at executing the request, and returns the
+         * response; or null if the request is to be retried.
+         */
+        Response<T> attempt() {
             p.initPerRetry();
             if (p.redirectedURI != null) {
                 /*
@@ -464,17 +650,18 @@ public class AmazonHttpClient {
                 request.setContent(originalContent);
             }
             try {
-                Response<T> response = executeOneRequest(request, responseHandler,
+                return executeOneRequest(request, responseHandler,
                     errorResponseHandler, executionContext, awsRequestMetrics,
                     p);
-                if (response != null)
-                    return response;
             } catch (IOException ioe) {
                 if (log.isInfoEnabled()) {
                     log.info("Unable to execute HTTP request: " + ioe.getMessage(), ioe);
                 }
                 captureExceptionMetrics(ioe, awsRequestMetrics);
                 awsRequestMetrics.addProperty(AWSRequestID, null);
+                RetryBudget retryBudget = config.getRetryPolicy().getRetryBudget();
+                if (retryBudget != null)
+                    retryBudget.onFailure(request.getEndpoint());
                 AmazonClientException ace = new AmazonClientException(
                         "Unable to execute HTTP request: " + ioe.getMessage(),
                         ioe);
@@ -487,14 +674,11 @@ public class AmazonHttpClient {
                 }
                 // Cache the retryable exception
                 p.retriedException = ace;
+                return null;
             } catch(RuntimeException e) {
-                throw lastReset(
-                        captureExceptionMetrics(e, awsRequestMetrics),
-                        request);
+                throw abort(e);
             } catch(Error e) {
-                throw lastReset(
-                        captureExceptionMetrics(e, awsRequestMetrics),
-                        request);
+                throw abort(e);
             } finally {
                 /*
                  * Some response handlers need to manually manage the HTTP
@@ -516,35 +700,272 @@ public class AmazonHttpClient {
                     }
                 }
             }
-        } /* end while (true) */
+        }
+
+        /**
+         * Notifies the retry of the request, and returns the delay in
+         * milliseconds before the next attempt, which must be followed by a
+         * call to {@link #afterRetryPause()}.
+         */
+        long beforeRetry() {
+            // Notify the progress listener of the retry
+            publishProgress(listener, ProgressEventType.CLIENT_REQUEST_RETRY_EVENT);
+            awsRequestMetrics.startEvent(RetryPauseTime);
+            // don't pause if the retry was not due to a redirection
+            // ie when retried exception is null
+            if (p.retriedException == null)
+                return 0;
+            return delayBeforeNextRetry(request.getOriginalRequest(),
+                    p.retriedException, p.requestCount + 1,
+                    config.getRetryPolicy());
+        }
+
+        void afterRetryPause() {
+            awsRequestMetrics.endEvent(RetryPauseTime);
+        }
+
+        /**
+         * Records the given failure of the request, which is not retried.
+         */
+        <X extends Throwable> X abort(X t) {
+            return lastReset(captureExceptionMetrics(t, awsRequestMetrics), request);
+        }
+
+        /**
+         * Notifies the success of the request, and returns the response.
+         */
+        Response<T> succeed(Response<T> response) {
+            this.response = response;
+            publishProgress(listener, ProgressEventType.CLIENT_REQUEST_SUCCESS_EVENT);
+            TimingInfo timingInfo = awsRequestMetrics.getTimingInfo().endTiming();
+            afterResponse(request, requestHandler2s, response, timingInfo);
+            return response;
+        }
+
+        /**
+         * Notifies the failure of the request, and returns the failure.
+         */
+        AmazonClientException fail(AmazonClientException e) {
+            publishProgress(listener, ProgressEventType.CLIENT_REQUEST_FAILED_EVENT);
+            afterError(request, response, requestHandler2s, e);
+            return e;
+        }
+
+        void close() {
+            // Always close so any progress tracking would get the final events propagated.
+            closeQuietly(toBeClosed, log);
+            request.setContent(origContent); // restore the original content
+        }
     }
 
     /**
-     * Used to perform a last reset on the content input stream (if
-     * mark-supported); this is so that, for backward compatibility reason, any
-     * "blind" retry (ie without calling reset) by user of this library with the
-     * same input stream (such as ByteArrayInputStream) could still succeed.
-     *
-     * @param t
-     *            the failure
-     * @param apacheRequest
-     *            the request, if known; or null otherwise.
-     * @return the failure as given
+     * The future of a request executed asynchronously, each attempt of which
+     * runs on the executor given by the caller, and each backoff of which is
+     * scheduled on the shared {@link RetryScheduler}.
      */
-    private <T extends Throwable> T lastReset(final T t,
-            final Request<?> req) {
-        try {
-            InputStream content = req.getContent();
-            if (content != null) {
-                if (content.markSupported())
-                    content.reset();
+    private final class AsyncExecution<T> implements Future<Response<T>>, Runnable {
+        private final Request<?> request;
+        private final HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler;
+        private final HttpResponseHandler<AmazonServiceException> errorResponseHandler;
+        private final ExecutionContext executionContext;
+        private final Executor executor;
+        /** Null until the first attempt. */
+        private volatile Execution<T> execution;
+        // The following fields are guarded by this
+        private boolean running;
+        private boolean done;
+        private boolean cancelled;
+        private Thread runner;
+        private Future<?> pendingRetry;
+        private Response<T> result;
+        private Throwable failure;
+
+        AsyncExecution(Request<?> request,
+                HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
+                HttpResponseHandler<AmazonServiceException> errorResponseHandler,
+                ExecutionContext executionContext,
+                Executor executor) {
+            this.request = request;
+            this.responseHandler = responseHandler;
+            this.errorResponseHandler = errorResponseHandler;
+            this.executionContext = executionContext;
+            this.executor = executor;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (done)
+                    return;
+                running = true;
+                runner = Thread.currentThread();
+            }
+            Response<T> response = null;
+            Throwable error = null;
+            long retryDelay = -1;
+            try {
+                if (execution == null) {
+                    execution = new Execution<T>(request, responseHandler,
+                            errorResponseHandler, executionContext);
+                    execution.start();
+                } else {
+                    execution.afterRetryPause();
+                }
+                response = execution.attempt();
+                if (response == null)
+                    retryDelay = execution.beforeRetry();
+                else
+                    response = execution.succeed(response);
+            } catch (AmazonClientException e) {
+                error = execution == null ? e : execution.fail(e);
+            } catch (Throwable t) {
+                error = t;
+            }
+            final boolean cancelledWhileRunning;
+            synchronized (this) {
+                running = false;
+                runner = null;
+                cancelledWhileRunning = done;
+            }
+            if (cancelledWhileRunning) {
+                if (execution != null)
+                    execution.close();
+            } else if (retryDelay >= 0) {
+                submit(retryDelay);
+            } else {
+                complete(response, error);
             }
-        } catch (Exception ex) {
-            log.debug(
-                "FYI: failed to reset content inputstream before throwing up",
-                 ex);
         }
-        return t;
+
+        /**
+         * Hands the next attempt to the executor after the given delay.
+         */
+        void submit(long delay) {
+            try {
+                if (delay <= 0) {
+                    executor.execute(this);
+                    return;
+                }
+                Future<?> retry = RetryScheduler.INSTANCE.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            executor.execute(AsyncExecution.this);
+                        } catch (RejectedExecutionException e) {
+                            rejected(e);
+                        }
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+                synchronized (this) {
+                    pendingRetry = retry;
+                }
+            } catch (RejectedExecutionException e) {
+                rejected(e);
+            }
+        }
+
+        private void rejected(RejectedExecutionException e) {
+            AmazonClientException ace = new AmazonClientException(
+                    "Unable to execute HTTP request: " + e.getMessage(), e);
+            Execution<T> execution = this.execution;
+            complete(null, execution == null ? ace : execution.fail(execution.abort(ace)));
+        }
+
+        /**
+         * Completes this future with the given response or failure, unless
+         * already completed, and releases the resources of the execution.
+         */
+        private void complete(Response<T> response, Throwable error) {
+            synchronized (this) {
+                if (done)
+                    return;
+                done = true;
+                result = response;
+                failure = error;
+                notifyAll();
+            }
+            if (execution != null)
+                execution.close();
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            synchronized (this) {
+                if (done)
+                    return false;
+                done = cancelled = true;
+                notifyAll();
+                if (running) {
+                    // The running attempt releases the execution when it ends
+                    if (mayInterruptIfRunning)
+                        runner.interrupt();
+                    return true;
+                }
+                if (pendingRetry != null)
+                    pendingRetry.cancel(false);
+            }
+            if (execution != null)
+                execution.close();
+            return true;
+        }
+
+        @Override
+        public synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public synchronized boolean isDone() {
+            return done;
+        }
+
+        @Override
+        public synchronized Response<T> get()
+                throws InterruptedException, ExecutionException {
+            while (!done)
+                wait();
+            return getResult();
+        }
+
+        @Override
+        public synchronized Response<T> get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException,
+                TimeoutException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (!done) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0)
+                    throw new TimeoutException();
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return getResult();
+        }
+
+        private Response<T> getResult() throws ExecutionException {
+            if (cancelled)
+                throw new CancellationException();
+            if (failure != null)
+                throw new ExecutionException(failure);
+            return result;
+        }
+    }
+
+    /**
+     * Holder of the scheduler shared by all clients for the backoff of
+     * asynchronously executed requests, which is only created when first
+     * needed. The scheduler thread never runs a request; it only hands each
+     * retry back to the executor of the request once its delay has elapsed.
+     */
+    private static final class RetryScheduler {
+        static final ScheduledExecutorService INSTANCE =
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "aws-sdk-retry-scheduler");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
     }
 
     /**
@@ -632,6 +1053,12 @@ public class AmazonHttpClient {
             final AWSRequestMetrics awsRequestMetrics,
             ExecOneRequestParams execParams)
             throws IOException {
+        final RetryBudget retryBudget = config.getRetryPolicy().getRetryBudget();
+        if (retryBudget != null && !retryBudget.allowRequest(request.getEndpoint())) {
+            throw new AmazonClientException("Unable to execute HTTP request: "
+                    + "the circuit breaker of " + request.getEndpoint()
+                    + " is open");
+        }
         // Reset the request input stream
         if (execParams.isRetry()) {
             InputStream requestInputStream = request.getContent();
@@ -651,23 +1078,6 @@ public class AmazonHttpClient {
         final AmazonWebServiceRequest awsreq = request.getOriginalRequest();
         final ProgressListener listener = awsreq.getGeneralProgressListener();
 
-        if (execParams.isRetry()) {
-            publishProgress(listener, ProgressEventType.CLIENT_REQUEST_RETRY_EVENT);
-            // Notify the progress listener of the retry
-            awsRequestMetrics.startEvent(RetryPauseTime);
-            try {
-                // don't pause if the retry was not due to a redirection
-                // ie when retried exception is null
-                if (execParams.retriedException != null) {
-                    pauseBeforeNextRetry(request.getOriginalRequest(),
-                        execParams.retriedException, execParams.requestCount,
-                        config.getRetryPolicy());
-                }
-            } finally {
-                awsRequestMetrics.endEvent(RetryPauseTime);
-            }
-        }
-
         // Sign the request if a signer was provided
         execParams.newSigner(request, execContext);
         if (execParams.signer != null && credentials != null) {
@@ -696,6 +1106,9 @@ public class AmazonHttpClient {
         httpContext.setAttribute(
             AWSRequestMetrics.class.getSimpleName(),
             awsRequestMetrics);
+        if (relaxedHostnameVerification) {
+            httpContext.setAttribute(SharedHttpTransport.RELAXED_HOSTNAME_VERIFICATION, Boolean.TRUE);
+        }
         execParams.resetBeforeHttpRequest();
         publishProgress(listener, ProgressEventType.HTTP_REQUEST_STARTED_EVENT);
         awsRequestMetrics.startEvent(HttpRequestTime);
@@ -704,6 +1117,7 @@ public class AmazonHttpClient {
         final boolean isHeaderReqIdAvail;
         try {
             execParams.apacheResponse = httpClient.execute(execParams.apacheRequest, httpContext);
+            captureRouteConnectionPoolMetrics(httpClient.getConnectionManager(), httpContext, awsRequestMetrics);
             isHeaderReqIdAvail = logHeaderRequestId(execParams.apacheResponse);
         } finally {
             awsRequestMetrics.endEvent(HttpRequestTime);
@@ -714,6 +1128,8 @@ public class AmazonHttpClient {
         final int statusCode = statusLine == null ? -1 : statusLine.getStatusCode();
         if (isRequestSuccessful(execParams.apacheResponse)) {
             awsRequestMetrics.addProperty(StatusCode, statusCode);
+            if (retryBudget != null)
+                retryBudget.onSuccess(request.getEndpoint());
             /*
              * If we get back any 2xx status code, then we know we should
              * treat the service call as successful.
@@ -751,6 +1167,10 @@ public class AmazonHttpClient {
             .addPropertyWith(AWSRequestID, ase.getRequestId())
             .addPropertyWith(AWSErrorCode, ase.getErrorCode())
             .addPropertyWith(StatusCode, ase.getStatusCode());
+        if (retryBudget != null && (ase.getStatusCode() >= 500
+                || RetryUtils.isThrottlingException(ase))) {
+            retryBudget.onFailure(request.getEndpoint());
+        }
         // Check whether we should internally retry the auth error
         execParams.authRetryParam = null;
         AuthErrorRetryStrategy authRetry = execContext.getAuthErrorRetryStrategy();
@@ -852,6 +1272,28 @@ public class AmazonHttpClient {
         }
     }
 
+    /**
+     * Captures the connection pool metrics of the route the request has just
+     * been executed on, as recorded in the given context by the http client.
+     */
+    private void captureRouteConnectionPoolMetrics(ClientConnectionManager connectionManager,
+            HttpContext httpContext, AWSRequestMetrics awsRequestMetrics) {
+        if (awsRequestMetrics.isEnabled()
+                && connectionManager instanceof ConnPoolControl) {
+            Object route = httpContext.getAttribute(ClientContext.ROUTE);
+            if (route instanceof HttpRoute) {
+                @SuppressWarnings("unchecked")
+                ConnPoolControl<HttpRoute> control = (ConnPoolControl<HttpRoute>) connectionManager;
+                PoolStats stats = control.getStats((HttpRoute) route);
+                awsRequestMetrics
+                    .withCounter(HttpClientPoolRouteAvailableCount, stats.getAvailable())
+                    .withCounter(HttpClientPoolRouteLeasedCount, stats.getLeased())
+                    .withCounter(HttpClientPoolRoutePendingCount, stats.getPending())
+                    ;
+            }
+        }
+    }
+
     /**
      * Capture the metrics for the given throwable.
      */
@@ -908,8 +1350,18 @@ public class AmazonHttpClient {
      * held open. This is an optional method, and callers are not expected to
      * call it, but can if they want to explicitly release any open resources.
      * Once a client has been shutdown, it cannot be used to make more requests.
+     * <p>
+     * If this client shares its HTTP client with other clients, its reference
+     * to the shared transport is released instead, and the connections are
+     * only closed once the transport is no longer used.
      */
     public void shutdown() {
+        if (sharedHttpTransport != null) {
+            if (sharedHttpTransportReleased.compareAndSet(false, true)) {
+                sharedHttpTransport.release();
+            }
+            return;
+        }
         IdleConnectionReaper.removeConnectionManager(httpClient.getConnectionManager());
         httpClient.getConnectionManager().shutdown();
     }
@@ -961,9 +1413,21 @@ public class AmazonHttpClient {
 
         // Pass all the context information to the RetryCondition and let it
         // decide whether it should be retried.
-        return retryPolicy.getRetryCondition().shouldRetry(originalRequest,
-                                                           exception,
-                                                           retries);
+        if (!retryPolicy.getRetryCondition().shouldRetry(originalRequest,
+                                                         exception,
+                                                         retries)) {
+            return false;
+        }
+
+        // Finally, the retry must fit in the retry budget, if any
+        RetryBudget retryBudget = retryPolicy.getRetryBudget();
+        if (retryBudget != null && !retryBudget.acquireRetry()) {
+            if (log.isDebugEnabled()) {
+                log.debug("Retry budget exhausted");
+            }
+            return false;
+        }
+        return true;
     }
 
     private static boolean isTemporaryRedirect(org.apache.http.HttpResponse response) {
@@ -1061,7 +1525,8 @@ public class AmazonHttpClient {
                 throw new RuntimeException("Unable to unmarshall response metadata. Response Code: " +
                         httpResponse.getStatusCode() + ", Response Text: " + httpResponse.getStatusText());
 
-            responseMetadataCache.add(request.getOriginalRequest(), awsResponse.getResponseMetadata());
+            if (responseMetadataCache != null)
+                responseMetadataCache.add(request.getOriginalRequest(), awsResponse.getResponseMetadata());
             final String awsRequestId = awsResponse.getRequestId();
 
             if (requestLog.isDebugEnabled()) {
@@ -1194,8 +1659,8 @@ public class AmazonHttpClient {
     }
 
     /**
-     * Sleep for a period of time on failed request to avoid flooding a service
-     * with retries.
+     * Returns the period of time to wait on failed request before the next
+     * retry, to avoid flooding a service with retries.
      *
      * @param originalRequest
      *            The original service request that is being executed.
@@ -1205,8 +1670,10 @@ public class AmazonHttpClient {
      *            current request count (including the next attempt after the delay)
      * @param retryPolicy
      *            The retry policy configured in this http client.
+     *
+     * @return The delay before the next retry, in milliseconds.
      */
-    private void pauseBeforeNextRetry(AmazonWebServiceRequest originalRequest,
+    private long delayBeforeNextRetry(AmazonWebServiceRequest originalRequest,
                                     AmazonClientException previousException,
                                     int requestCount,
                                     RetryPolicy retryPolicy) {
@@ -1221,13 +1688,7 @@ public class AmazonHttpClient {
             log.debug("Retriable error detected, " +
                     "will retry in " + delay + "ms, attempt number: " + retries);
         }
-
-        try {
-            Thread.sleep(delay);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new AmazonClientException(e.getMessage(), e);
-        }
+        return delay;
     }
 
     // SWF: Signature not yet current: 20140819T173921Z is still later than 20140819T173829Z (20140819T173329Z + 5 min.)
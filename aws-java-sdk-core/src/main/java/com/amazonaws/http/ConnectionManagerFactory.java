@@ -21,15 +21,17 @@ import org.apache.http.impl.conn.SchemeRegistryFactory;
 import org.apache.http.params.HttpParams;
 
 import com.amazonaws.ClientConfiguration;
+import com.amazonaws.http.conn.SdkPoolingClientConnectionManager;
 
 /** Responsible for creating and configuring instances of Apache HttpClient4's Connection Manager. */
 class ConnectionManagerFactory {
 
     public static PoolingClientConnectionManager createPoolingClientConnManager( ClientConfiguration config, HttpParams httpClientParams ) {
-        PoolingClientConnectionManager connectionManager = new PoolingClientConnectionManager(
+        PoolingClientConnectionManager connectionManager = new SdkPoolingClientConnectionManager(
                 SchemeRegistryFactory.createDefault(),
-                config.getConnectionTTL(), TimeUnit.MILLISECONDS);
-        connectionManager.setDefaultMaxPerRoute(config.getMaxConnections());
+                config.getConnectionTTL(), TimeUnit.MILLISECONDS,
+                config.getMaxConnectionsPerHost());
+        connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerRoute());
         connectionManager.setMaxTotal(config.getMaxConnections());
         if (config.useReaper()) {
             IdleConnectionReaper.registerConnectionManager(connectionManager);
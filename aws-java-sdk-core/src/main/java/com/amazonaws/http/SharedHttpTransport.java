@@ -0,0 +1,196 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.annotation.ThreadSafe;
+import org.apache.http.client.HttpClient;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.routing.HttpRoutePlanner;
+import org.apache.http.impl.client.AbstractHttpClient;
+import org.apache.http.protocol.HttpContext;
+
+import com.amazonaws.ClientConfiguration;
+
+/**
+ * An HTTP client, with its connection pool, that several service clients can
+ * share by being built with a {@link ClientConfiguration} referencing it (see
+ * {@link ClientConfiguration#setSharedHttpTransport(SharedHttpTransport)}).
+ * <p>
+ * Clients sharing a transport share its connections, so that connections kept
+ * alive to a host are reused by all of them, and a single limit on the total
+ * number of connections (as well as the limits per route) applies to all of
+ * them; they also share a single SSL socket factory and its TLS session cache,
+ * and a single registration with the {@link IdleConnectionReaper}. The
+ * connection, socket, proxy and SSL settings of the configuration the
+ * transport is created with apply to all the clients.
+ * <p>
+ * The requests of the clients that disable strict hostname verification
+ * (such as the Amazon S3 client) are routed to their hosts with a separate
+ * HTTPS scheme, so that connections verified with the relaxed strategy are
+ * kept apart in the pool and only ever reused by clients that accept it. They
+ * still count towards the total limit on the number of connections, while
+ * the limits per route apply to them separately.
+ * <p>
+ * The transport is reference counted: each client acquires a reference when
+ * it is created and releases it when it is shut down, and the creator of the
+ * transport releases its own reference via {@link #shutdown()}. The
+ * connection pool is shut down once all the references have been released.
+ */
+@ThreadSafe
+public class SharedHttpTransport {
+    /**
+     * The name of the scheme of the routes of the requests made without
+     * strict hostname verification.
+     */
+    static final String RELAXED_HTTPS_SCHEME = "https-relaxed";
+
+    /**
+     * The HTTP context attribute marking the requests to be made without
+     * strict hostname verification.
+     */
+    static final String RELAXED_HOSTNAME_VERIFICATION =
+        SharedHttpTransport.class.getName() + ".relaxedHostnameVerification";
+
+    private final ClientConfiguration config;
+    private final HttpClient httpClient;
+
+    /* Whether the relaxed HTTPS scheme has been registered. */
+    private boolean relaxedSchemeRegistered;
+
+    /* The number of references to this transport, including its creator's. */
+    private int referenceCount = 1;
+    private boolean shutdown;
+
+    /**
+     * Creates a transport with the default client configuration.
+     */
+    public SharedHttpTransport() {
+        this(new ClientConfiguration());
+    }
+
+    /**
+     * Creates a transport with the connection, socket, proxy and SSL settings
+     * of the given client configuration.
+     *
+     * @param config
+     *            The client configuration to create the transport with.
+     */
+    public SharedHttpTransport(ClientConfiguration config) {
+        this.config = new ClientConfiguration(config);
+        this.httpClient = new HttpClientFactory().createHttpClient(this.config);
+        AbstractHttpClient client = (AbstractHttpClient) httpClient;
+        client.setRoutePlanner(new RelaxedHttpsRoutePlanner(client.getRoutePlanner()));
+    }
+
+    /**
+     * Acquires a reference to this transport, and returns its HTTP client.
+     *
+     * @throws IllegalStateException
+     *             if all the references to this transport have already been
+     *             released.
+     */
+    synchronized HttpClient acquire() {
+        if (referenceCount == 0) {
+            throw new IllegalStateException("The shared HTTP transport has been shut down");
+        }
+        referenceCount++;
+        return httpClient;
+    }
+
+    /**
+     * Registers the HTTPS scheme with a browser compatible hostname
+     * verification strategy used by the requests marked with the
+     * {@link #RELAXED_HOSTNAME_VERIFICATION} attribute, if not done yet.
+     */
+    synchronized void registerRelaxedHttpsScheme() {
+        if (!relaxedSchemeRegistered) {
+            httpClient.getConnectionManager().getSchemeRegistry().register(
+                    AmazonHttpClient.createBrowserCompatibleHttpsScheme(RELAXED_HTTPS_SCHEME, config));
+            relaxedSchemeRegistered = true;
+        }
+    }
+
+    /**
+     * Releases a reference to this transport, shutting down its connection
+     * pool if it was the last one.
+     */
+    void release() {
+        synchronized (this) {
+            if (referenceCount == 0 || --referenceCount > 0) {
+                return;
+            }
+        }
+        IdleConnectionReaper.removeConnectionManager(httpClient.getConnectionManager());
+        httpClient.getConnectionManager().shutdown();
+    }
+
+    /**
+     * Releases the reference of the creator of this transport. The connection
+     * pool is shut down right away if no client is using the transport, or
+     * else once the last client using it is shut down. Calling this method
+     * more than once has no effect.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (shutdown) {
+                return;
+            }
+            shutdown = true;
+        }
+        release();
+    }
+
+    /**
+     * Returns the number of clients currently using this transport.
+     */
+    public synchronized int getClientCount() {
+        return shutdown ? referenceCount : referenceCount - 1;
+    }
+
+    /**
+     * Routes the HTTPS requests marked with the
+     * {@link #RELAXED_HOSTNAME_VERIFICATION} attribute to their target with
+     * the {@link #RELAXED_HTTPS_SCHEME}, so that their connections are opened
+     * with it and pooled apart from the others.
+     */
+    private static final class RelaxedHttpsRoutePlanner implements HttpRoutePlanner {
+        private final HttpRoutePlanner routePlanner;
+
+        RelaxedHttpsRoutePlanner(HttpRoutePlanner routePlanner) {
+            this.routePlanner = routePlanner;
+        }
+
+        public HttpRoute determineRoute(HttpHost target, HttpRequest request, HttpContext context)
+                throws HttpException {
+            HttpRoute route = routePlanner.determineRoute(target, request, context);
+            if (context == null
+                    || context.getAttribute(RELAXED_HOSTNAME_VERIFICATION) == null
+                    || !"https".equalsIgnoreCase(route.getTargetHost().getSchemeName())) {
+                return route;
+            }
+            HttpHost relaxedTarget = new HttpHost(route.getTargetHost().getHostName(),
+                    route.getTargetHost().getPort(), RELAXED_HTTPS_SCHEME);
+            HttpHost[] proxies = new HttpHost[route.getHopCount() - 1];
+            for (int i = 0; i < proxies.length; i++) {
+                proxies[i] = route.getHopTarget(i);
+            }
+            return new HttpRoute(relaxedTarget, route.getLocalAddress(), proxies,
+                    route.isSecure(), route.getTunnelType(), route.getLayerType());
+        }
+    }
+}
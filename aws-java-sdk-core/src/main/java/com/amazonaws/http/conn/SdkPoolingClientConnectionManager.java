@@ -0,0 +1,238 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.conn;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+/**
+ * A pooling connection manager that supports connection limits per target
+ * host, and keeps statistics of the time spent waiting to lease connections
+ * from the pool, per route.
+ * <p>
+ * The connection limits of the routes to a host are applied the first time a
+ * connection is requested for each route, as routes also depend on the port,
+ * protocol and proxy, and so can't be known in advance.
+ * <p>
+ * The statistics of all the connection managers in use can be retrieved with
+ * {@link #getStatisticsReport()}, which is exposed via JMX by the metric admin
+ * MBean.
+ */
+public class SdkPoolingClientConnectionManager extends PoolingClientConnectionManager {
+    /**
+     * The upper bounds, in milliseconds, of the buckets of the lease wait time
+     * histograms; the last bucket counts the longer waits.
+     */
+    public static final long[] LEASE_WAIT_BUCKET_MILLIS = {1, 5, 10, 50, 100, 500, 1000, 5000};
+
+    /** Bounds the number of routes with their own statistics. */
+    private static final int MAX_ROUTE_STATISTICS = 1000;
+
+    /** The connection managers which haven't been shut down. */
+    private static final Map<SdkPoolingClientConnectionManager, Boolean> managers =
+        Collections.synchronizedMap(new WeakHashMap<SdkPoolingClientConnectionManager, Boolean>());
+
+    private final Map<String, Integer> maxConnectionsPerHost;
+
+    /** The routes whose connection limit has been applied. */
+    private final ConcurrentMap<HttpRoute, Boolean> limitedRoutes =
+        new ConcurrentHashMap<HttpRoute, Boolean>();
+
+    private final LeaseWaitHistogram totalLeaseWaits = new LeaseWaitHistogram();
+    private final ConcurrentMap<HttpRoute, LeaseWaitHistogram> routeLeaseWaits =
+        new ConcurrentHashMap<HttpRoute, LeaseWaitHistogram>();
+
+    /**
+     * @param schemeRegistry
+     *            The registry of the supported protocol schemes.
+     * @param connectionTTL
+     *            The maximum time to live of the connections.
+     * @param unit
+     *            The unit of the time to live.
+     * @param maxConnectionsPerHost
+     *            The maximum number of connections per route to specific hosts,
+     *            by host name; copied, so that later changes to the given map
+     *            have no effect on this connection manager.
+     */
+    public SdkPoolingClientConnectionManager(SchemeRegistry schemeRegistry, long connectionTTL,
+            TimeUnit unit, Map<String, Integer> maxConnectionsPerHost) {
+        super(schemeRegistry, connectionTTL, unit);
+        this.maxConnectionsPerHost = new HashMap<String, Integer>(maxConnectionsPerHost);
+        managers.put(this, Boolean.TRUE);
+    }
+
+    @Override
+    public ClientConnectionRequest requestConnection(final HttpRoute route, Object state) {
+        if (!maxConnectionsPerHost.isEmpty() && !limitedRoutes.containsKey(route)) {
+            Integer max = maxConnectionsPerHost.get(route.getTargetHost().getHostName());
+            if (max != null && limitedRoutes.putIfAbsent(route, Boolean.TRUE) == null) {
+                setMaxPerRoute(route, max);
+            }
+        }
+        final ClientConnectionRequest request = super.requestConnection(route, state);
+        return new ClientConnectionRequest() {
+            @Override
+            public ManagedClientConnection getConnection(long timeout, TimeUnit tunit)
+                    throws InterruptedException, ConnectionPoolTimeoutException {
+                long start = System.nanoTime();
+                try {
+                    return request.getConnection(timeout, tunit);
+                } finally {
+                    recordLeaseWait(route, System.nanoTime() - start);
+                }
+            }
+
+            @Override
+            public void abortRequest() {
+                request.abortRequest();
+            }
+        };
+    }
+
+    private void recordLeaseWait(HttpRoute route, long nanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        totalLeaseWaits.record(millis);
+        LeaseWaitHistogram histogram = routeLeaseWaits.get(route);
+        if (histogram == null) {
+            if (routeLeaseWaits.size() >= MAX_ROUTE_STATISTICS)
+                return;
+            LeaseWaitHistogram newHistogram = new LeaseWaitHistogram();
+            histogram = routeLeaseWaits.putIfAbsent(route, newHistogram);
+            if (histogram == null)
+                histogram = newHistogram;
+        }
+        histogram.record(millis);
+    }
+
+    @Override
+    public void shutdown() {
+        managers.remove(this);
+        super.shutdown();
+    }
+
+    /**
+     * Returns the current statistics of the pool for each route a connection
+     * has been requested for.
+     */
+    public Map<HttpRoute, PoolStats> getRouteStats() {
+        Map<HttpRoute, PoolStats> stats = new LinkedHashMap<HttpRoute, PoolStats>();
+        for (HttpRoute route : routeLeaseWaits.keySet()) {
+            stats.put(route, getStats(route));
+        }
+        return stats;
+    }
+
+    /**
+     * Returns the number of connection leases by lease wait time, in the
+     * buckets bounded by {@link #LEASE_WAIT_BUCKET_MILLIS}, for all the routes.
+     */
+    public long[] getLeaseWaitHistogram() {
+        return totalLeaseWaits.snapshot();
+    }
+
+    /**
+     * Returns the number of connection leases by lease wait time, in the
+     * buckets bounded by {@link #LEASE_WAIT_BUCKET_MILLIS}, for the given
+     * route; or null if no statistics are kept for the route.
+     */
+    public long[] getLeaseWaitHistogram(HttpRoute route) {
+        LeaseWaitHistogram histogram = routeLeaseWaits.get(route);
+        return histogram == null ? null : histogram.snapshot();
+    }
+
+    /**
+     * Returns a human readable report of the pool and lease wait statistics of
+     * all the connection managers which haven't been shut down.
+     */
+    public static String getStatisticsReport() {
+        List<SdkPoolingClientConnectionManager> list;
+        synchronized (managers) {
+            list = new ArrayList<SdkPoolingClientConnectionManager>(managers.keySet());
+        }
+        StringBuilder sb = new StringBuilder();
+        for (SdkPoolingClientConnectionManager manager : list) {
+            manager.appendStatistics(sb);
+        }
+        return sb.toString();
+    }
+
+    private void appendStatistics(StringBuilder sb) {
+        sb.append("pool@").append(Integer.toHexString(System.identityHashCode(this)))
+          .append(": ");
+        appendStats(sb, getTotalStats(), totalLeaseWaits.snapshot());
+        for (Map.Entry<HttpRoute, PoolStats> e : getRouteStats().entrySet()) {
+            sb.append("  ").append(e.getKey()).append(": ");
+            appendStats(sb, e.getValue(), getLeaseWaitHistogram(e.getKey()));
+        }
+    }
+
+    private static void appendStats(StringBuilder sb, PoolStats stats, long[] leaseWaits) {
+        sb.append("leased=").append(stats.getLeased())
+          .append(" available=").append(stats.getAvailable())
+          .append(" pending=").append(stats.getPending())
+          .append(" max=").append(stats.getMax())
+          .append(" leaseWaitMillis={");
+        for (int i = 0; i < leaseWaits.length; i++) {
+            if (i > 0)
+                sb.append(", ");
+            if (i < LEASE_WAIT_BUCKET_MILLIS.length) {
+                sb.append("<=").append(LEASE_WAIT_BUCKET_MILLIS[i]);
+            } else {
+                sb.append(">").append(LEASE_WAIT_BUCKET_MILLIS[i - 1]);
+            }
+            sb.append(':').append(leaseWaits[i]);
+        }
+        sb.append("}\n");
+    }
+
+    /**
+     * Counts of lease wait times, by bucket.
+     */
+    private static final class LeaseWaitHistogram {
+        private final AtomicLongArray counts =
+            new AtomicLongArray(LEASE_WAIT_BUCKET_MILLIS.length + 1);
+
+        void record(long millis) {
+            int i = 0;
+            while (i < LEASE_WAIT_BUCKET_MILLIS.length && millis > LEASE_WAIT_BUCKET_MILLIS[i])
+                i++;
+            counts.incrementAndGet(i);
+        }
+
+        long[] snapshot() {
+            long[] snapshot = new long[counts.length()];
+            for (int i = 0; i < snapshot.length; i++)
+                snapshot[i] = counts.get(i);
+            return snapshot;
+        }
+    }
+}
@@ -17,6 +17,7 @@ package com.amazonaws.metrics;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 
+import com.amazonaws.http.conn.SdkPoolingClientConnectionManager;
 import com.amazonaws.regions.Regions;
 
 /**
@@ -50,6 +51,10 @@ public class MetricAdmin implements MetricAdminMBean {
              ;
     }
     @Override
+    public String getConnectionPoolStatistics() {
+        return SdkPoolingClientConnectionManager.getStatisticsReport();
+    }
+    @Override
     public boolean isMetricsEnabled() {
         return AwsSdkMetrics.isMetricsEnabled();
     }
@@ -40,6 +40,14 @@ public interface MetricAdminMBean {
      */
     public String getServiceMetricCollector();
 
+    /**
+     * Returns the current statistics of the HTTP connection pools of the AWS
+     * SDK clients in use: the number of leased, available and pending
+     * connections, and a histogram of the time spent waiting to lease a
+     * connection, both overall and per route.
+     */
+    public String getConnectionPoolStatistics();
+
     /**
      * Starts the default AWS SDK metric collector, but only if no metric
      * collector is currently in use at the AWS SDK level.
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.retry;
+
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.annotation.ThreadSafe;
+
+/**
+ * A circuit breaker per endpoint host. The circuit of an endpoint opens after
+ * a number of consecutive transient failures of requests to the endpoint,
+ * after which requests to the endpoint fail fast. Once the open interval has
+ * elapsed, a single request is let through to probe the endpoint: the circuit
+ * closes if it succeeds, or stays open for another interval if it fails.
+ * <p>
+ * Only endpoints with recent failures are tracked. This class is thread safe,
+ * and lock-free.
+ *
+ * @see RetryBudget
+ */
+@ThreadSafe
+public final class EndpointCircuitBreaker {
+    private final int failureThreshold;
+    private final long openIntervalNanos;
+    private final ConcurrentMap<String, Circuit> circuits =
+        new ConcurrentHashMap<String, Circuit>();
+    private final AtomicLong tripCount = new AtomicLong();
+    private final AtomicLong failedFastRequestCount = new AtomicLong();
+
+    /**
+     * @param failureThreshold
+     *            The number of consecutive failures after which the circuit of
+     *            an endpoint opens.
+     * @param openIntervalMillis
+     *            The time, in milliseconds, during which requests fail fast
+     *            once the circuit of their endpoint has opened.
+     */
+    public EndpointCircuitBreaker(int failureThreshold, long openIntervalMillis) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("The failure threshold must be at least 1");
+        }
+        if (openIntervalMillis < 0) {
+            throw new IllegalArgumentException("The open interval must not be negative");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openIntervalNanos = TimeUnit.MILLISECONDS.toNanos(openIntervalMillis);
+    }
+
+    /**
+     * Returns true if a request may be sent to the given endpoint; or false if
+     * the request should fail fast, as the circuit of the endpoint is open.
+     */
+    public boolean allowRequest(URI endpoint) {
+        Circuit circuit = circuits.get(keyOf(endpoint));
+        if (circuit == null || circuit.allowRequest())
+            return true;
+        failedFastRequestCount.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Closes the circuit of the given endpoint upon a successful request.
+     */
+    public void onSuccess(URI endpoint) {
+        if (!circuits.isEmpty())
+            circuits.remove(keyOf(endpoint));
+    }
+
+    /**
+     * Records a transient failure of a request to the given endpoint, which
+     * opens its circuit once the failure threshold is reached.
+     */
+    public void onFailure(URI endpoint) {
+        String host = keyOf(endpoint);
+        Circuit circuit = circuits.get(host);
+        if (circuit == null) {
+            Circuit newCircuit = new Circuit();
+            circuit = circuits.putIfAbsent(host, newCircuit);
+            if (circuit == null)
+                circuit = newCircuit;
+        }
+        if (circuit.onFailure())
+            tripCount.incrementAndGet();
+    }
+
+    /** Returns the number of times a circuit has been opened so far. */
+    public long getTripCount() {
+        return tripCount.get();
+    }
+
+    /** Returns the number of requests failed fast so far. */
+    public long getFailedFastRequestCount() {
+        return failedFastRequestCount.get();
+    }
+
+    /** Returns the number of endpoints whose circuit is currently open. */
+    public int getOpenCircuitCount() {
+        int count = 0;
+        for (Circuit circuit : circuits.values()) {
+            if (circuit.open.get())
+                count++;
+        }
+        return count;
+    }
+
+    /** Returns the number of consecutive failures opening a circuit. */
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    /** Returns the time, in milliseconds, during which a circuit stays open. */
+    public long getOpenIntervalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(openIntervalNanos);
+    }
+
+    private static String keyOf(URI endpoint) {
+        String host = endpoint.getHost();
+        return host == null ? endpoint.toString() : host;
+    }
+
+    /**
+     * The circuit of an endpoint with recent failures.
+     */
+    private final class Circuit {
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicBoolean open = new AtomicBoolean();
+        /** The time, in nanoseconds, from which a probe may be sent. */
+        private final AtomicLong probeTime = new AtomicLong();
+
+        boolean allowRequest() {
+            if (!open.get())
+                return true;
+            long time = probeTime.get();
+            long now = System.nanoTime();
+            // Only a single probe is let through per interval
+            return now - time >= 0
+                && probeTime.compareAndSet(time, now + openIntervalNanos);
+        }
+
+        /**
+         * Returns true if the failure opened the circuit.
+         */
+        boolean onFailure() {
+            if (failures.incrementAndGet() < failureThreshold)
+                return false;
+            probeTime.set(System.nanoTime() + openIntervalNanos);
+            return open.compareAndSet(false, true);
+        }
+    }
+}
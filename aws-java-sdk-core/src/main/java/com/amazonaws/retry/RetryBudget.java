@@ -0,0 +1,240 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.retry;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.annotation.ThreadSafe;
+
+import com.amazonaws.jmx.MBeans;
+
+/**
+ * A budget of retries, shared by all the requests of the clients configured
+ * with a {@link RetryPolicy} that includes it, so that a failing service or
+ * endpoint isn't flooded with retries. The budget is a token bucket: each
+ * retry takes a number of tokens, each successful request returns some, and a
+ * retry is not attempted when there are not enough tokens left. The budget
+ * may also include an {@link EndpointCircuitBreaker}, which fails requests
+ * fast while their endpoint is failing.
+ * <p>
+ * This class is thread safe, and lock-free.
+ *
+ * @see RetryPolicy#getRetryBudget()
+ */
+@ThreadSafe
+public final class RetryBudget implements RetryBudgetMBean {
+    /** The default maximum number of tokens of a budget. */
+    public static final int DEFAULT_MAX_TOKENS = 500;
+    /** The default number of tokens taken by each retry. */
+    public static final int DEFAULT_RETRY_COST = 5;
+    /** The default number of tokens returned by each successful request. */
+    public static final int DEFAULT_SUCCESS_REFILL = 1;
+
+    private static final String MBEAN_OBJECT_NAME_PREFIX =
+        "com.amazonaws.management:type=RetryBudget,name=";
+
+    private final int maxTokens;
+    private final int retryCost;
+    private final int successRefill;
+    private final EndpointCircuitBreaker circuitBreaker;
+    private final AtomicInteger tokens;
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong rejectedRetryCount = new AtomicLong();
+
+    /**
+     * Constructs a budget with the default number of tokens, retry cost and
+     * refill, and no circuit breaker.
+     */
+    public RetryBudget() {
+        this(DEFAULT_MAX_TOKENS, DEFAULT_RETRY_COST, DEFAULT_SUCCESS_REFILL);
+    }
+
+    /**
+     * Constructs a budget without circuit breaker.
+     *
+     * @param maxTokens
+     *            The maximum number of tokens of the budget, which starts full.
+     * @param retryCost
+     *            The number of tokens taken by each retry.
+     * @param successRefill
+     *            The number of tokens returned by each successful request.
+     */
+    public RetryBudget(int maxTokens, int retryCost, int successRefill) {
+        this(maxTokens, retryCost, successRefill, null);
+    }
+
+    /**
+     * Constructs a budget.
+     *
+     * @param maxTokens
+     *            The maximum number of tokens of the budget, which starts full.
+     * @param retryCost
+     *            The number of tokens taken by each retry.
+     * @param successRefill
+     *            The number of tokens returned by each successful request.
+     * @param circuitBreaker
+     *            The circuit breaker consulted before sending each request;
+     *            or null if there is none.
+     */
+    public RetryBudget(int maxTokens, int retryCost, int successRefill,
+            EndpointCircuitBreaker circuitBreaker) {
+        if (maxTokens < 0 || retryCost < 0 || successRefill < 0) {
+            throw new IllegalArgumentException(
+                "The number of tokens, the retry cost and the refill must not be negative");
+        }
+        this.maxTokens = maxTokens;
+        this.retryCost = retryCost;
+        this.successRefill = successRefill;
+        this.circuitBreaker = circuitBreaker;
+        this.tokens = new AtomicInteger(maxTokens);
+    }
+
+    /**
+     * Takes the tokens of a retry from the budget, returning true if
+     * successful, or false if there are not enough tokens left, in which case
+     * the request should not be retried.
+     */
+    public boolean acquireRetry() {
+        for (;;) {
+            int available = tokens.get();
+            if (available < retryCost) {
+                rejectedRetryCount.incrementAndGet();
+                return false;
+            }
+            if (tokens.compareAndSet(available, available - retryCost)) {
+                retryCount.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns tokens to the budget upon a successful request, and closes the
+     * circuit of the given endpoint, if any.
+     */
+    public void onSuccess(URI endpoint) {
+        if (circuitBreaker != null)
+            circuitBreaker.onSuccess(endpoint);
+        for (;;) {
+            int available = tokens.get();
+            if (available >= maxTokens)
+                return;
+            int refilled = (int) Math.min(maxTokens, (long) available + successRefill);
+            if (tokens.compareAndSet(available, refilled))
+                return;
+        }
+    }
+
+    /**
+     * Records a transient failure of a request to the given endpoint, such as
+     * an I/O error, a server error or throttling.
+     */
+    public void onFailure(URI endpoint) {
+        if (circuitBreaker != null)
+            circuitBreaker.onFailure(endpoint);
+    }
+
+    /**
+     * Returns true if a request may be sent to the given endpoint; or false if
+     * it should fail fast, as the circuit of the endpoint is open.
+     */
+    public boolean allowRequest(URI endpoint) {
+        return circuitBreaker == null || circuitBreaker.allowRequest(endpoint);
+    }
+
+    /**
+     * Returns the circuit breaker of this budget, or null if there is none.
+     */
+    public EndpointCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /** Returns the number of tokens taken by each retry. */
+    public int getRetryCost() {
+        return retryCost;
+    }
+
+    /** Returns the number of tokens returned by each successful request. */
+    public int getSuccessRefill() {
+        return successRefill;
+    }
+
+    @Override
+    public int getAvailableTokens() {
+        return tokens.get();
+    }
+
+    @Override
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    @Override
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    @Override
+    public long getRejectedRetryCount() {
+        return rejectedRetryCount.get();
+    }
+
+    @Override
+    public long getCircuitBreakerTripCount() {
+        return circuitBreaker == null ? 0 : circuitBreaker.getTripCount();
+    }
+
+    @Override
+    public long getFailedFastRequestCount() {
+        return circuitBreaker == null ? 0 : circuitBreaker.getFailedFastRequestCount();
+    }
+
+    @Override
+    public int getOpenCircuitCount() {
+        return circuitBreaker == null ? 0 : circuitBreaker.getOpenCircuitCount();
+    }
+
+    /**
+     * Registers this budget as an MBean under the object name
+     * "com.amazonaws.management:type=RetryBudget,name=<i>name</i>".
+     *
+     * @return true if the registration succeeded, or false if an MBean already
+     *         exists under the given name.
+     */
+    public boolean registerMBean(String name) {
+        try {
+            return MBeans.registerMBean(MBEAN_OBJECT_NAME_PREFIX + name, this);
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Unregisters the MBean of the given name, registered with
+     * {@link #registerMBean(String)}.
+     *
+     * @return true if the unregistration succeeded, or false if there is no
+     *         MBean under the given name.
+     */
+    public boolean unregisterMBean(String name) {
+        try {
+            return MBeans.unregisterMBean(MBEAN_OBJECT_NAME_PREFIX + name);
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
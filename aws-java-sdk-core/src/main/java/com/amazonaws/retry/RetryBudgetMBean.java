@@ -0,0 +1,50 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.retry;
+
+/**
+ * Management interface of a {@link RetryBudget}.
+ */
+public interface RetryBudgetMBean {
+    /** Returns the number of tokens currently available for retries. */
+    public int getAvailableTokens();
+
+    /** Returns the maximum number of tokens of the budget. */
+    public int getMaxTokens();
+
+    /** Returns the number of retries allowed by the budget so far. */
+    public long getRetryCount();
+
+    /** Returns the number of retries rejected for lack of tokens so far. */
+    public long getRejectedRetryCount();
+
+    /**
+     * Returns the number of times the circuit of an endpoint has been opened
+     * so far, or zero if there is no circuit breaker.
+     */
+    public long getCircuitBreakerTripCount();
+
+    /**
+     * Returns the number of requests failed fast because the circuit of their
+     * endpoint was open, or zero if there is no circuit breaker.
+     */
+    public long getFailedFastRequestCount();
+
+    /**
+     * Returns the number of endpoints whose circuit is currently open, or zero
+     * if there is no circuit breaker.
+     */
+    public int getOpenCircuitCount();
+}
@@ -54,6 +54,12 @@ public final class RetryPolicy {
      */
     private final boolean honorMaxErrorRetryInClientConfig;
 
+    /**
+     * The retry budget shared with other retry policies, if any; or null if
+     * retries are only bounded per request.
+     */
+    private final RetryBudget retryBudget;
+
     /**
      * Constructs a new retry policy. See {@link PredefinedRetryPolicies} for
      * some pre-defined policy components, and also the default policies used by
@@ -79,6 +85,38 @@ public final class RetryPolicy {
                        BackoffStrategy backoffStrategy,
                        int maxErrorRetry,
                        boolean honorMaxErrorRetryInClientConfig) {
+        this(retryCondition, backoffStrategy, maxErrorRetry,
+                honorMaxErrorRetryInClientConfig, null);
+    }
+
+    /**
+     * Constructs a new retry policy, whose retries are also bounded by the
+     * given retry budget. The budget can be shared by the retry policies of
+     * multiple clients, to bound the retries across all of them.
+     *
+     * @param retryCondition
+     *            Retry condition on whether a specific request and exception
+     *            should be retried. If null value is specified, the SDK'
+     *            default retry condition is used.
+     * @param backoffStrategy
+     *            Back-off strategy for controlling how long the next retry
+     *            should wait. If null value is specified, the SDK' default
+     *            exponential back-off strategy is used.
+     * @param maxErrorRetry
+     *            Maximum number of retry attempts for failed requests.
+     * @param honorMaxErrorRetryInClientConfig
+     *            Whether this retry policy should honor the max error retry set
+     *            by {@link ClientConfiguration#setMaxErrorRetry(int)}
+     * @param retryBudget
+     *            The retry budget consulted before each retry, which may
+     *            include a circuit breaker; or null if there is none.
+     * @see RetryBudget
+     */
+    public RetryPolicy(RetryCondition retryCondition,
+                       BackoffStrategy backoffStrategy,
+                       int maxErrorRetry,
+                       boolean honorMaxErrorRetryInClientConfig,
+                       RetryBudget retryBudget) {
         if (retryCondition == null) {
             retryCondition = PredefinedRetryPolicies.DEFAULT_RETRY_CONDITION;
         }
@@ -93,6 +131,7 @@ public final class RetryPolicy {
         this.backoffStrategy = backoffStrategy;
         this.maxErrorRetry = maxErrorRetry;
         this.honorMaxErrorRetryInClientConfig = honorMaxErrorRetryInClientConfig;
+        this.retryBudget = retryBudget;
     };
 
     /**
@@ -134,6 +173,16 @@ public final class RetryPolicy {
         return honorMaxErrorRetryInClientConfig;
     }
     
+    /**
+     * Returns the retry budget of this retry policy, if any.
+     * 
+     * @return The retry budget of this retry policy, or null if retries are
+     *         only bounded per request.
+     */
+    public RetryBudget getRetryBudget() {
+        return retryBudget;
+    }
+    
     /**
      * The hook for providing custom condition on whether a failed request
      * should be retried.
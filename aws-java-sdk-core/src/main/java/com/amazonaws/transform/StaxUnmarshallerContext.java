@@ -14,17 +14,28 @@
  */
 package com.amazonaws.transform;
 
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.EmptyStackException;
 
+import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLEventFactory;
 import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Characters;
+import javax.xml.stream.events.EndElement;
+import javax.xml.stream.events.StartElement;
 import javax.xml.stream.events.XMLEvent;
 
 /**
@@ -34,14 +45,75 @@ import javax.xml.stream.events.XMLEvent;
  * response. It also tracks the current position and element depth of the
  * document being parsed and provides utilties for accessing the next XML event
  * from the parser, reading element text, handling attribute XML events, etc.
+ * <p>
+ * The XML document can either be read as XML events from an
+ * {@link XMLEventReader}, or with the cursor of an {@link XMLStreamReader}. In
+ * the latter case, no event object is allocated per XML token: the events
+ * returned by {@link #nextEvent()} are shared per event type, and their
+ * content (element name, attribute or text) is only accessible until the next
+ * call to this context.
  */
 public class StaxUnmarshallerContext {
 
     private XMLEvent currentEvent;
     private final XMLEventReader eventReader;
 
-    public final Stack<String> stack = new Stack<String>();
-    private String stackString = "";
+    /**
+     * The cursor over the XML document; or null if reading XML events from the
+     * {@link #eventReader}.
+     */
+    private final XMLStreamReader streamReader;
+
+    /**
+     * True if the current token of the {@link #streamReader} has been peeked
+     * at, but not yet returned by {@link #nextEvent()}.
+     */
+    private boolean streamTokenPending;
+
+    /**
+     * The shared events returned by {@link #nextEvent()} in cursor mode, by
+     * event type.
+     */
+    private CursorEvent[] cursorEvents;
+
+    /**
+     * The local names and values of the attributes of the last start element
+     * read in cursor mode, and the index of the current one.
+     */
+    private String[] attributeNames = new String[0];
+    private String[] attributeValues = new String[0];
+    private int attributeCount;
+    private int attributeIndex = -1;
+
+    /** The local name of the last end element read in cursor mode. */
+    private String endElementName;
+
+    /**
+     * The keys of the metadata expressions matched by the last event in cursor
+     * mode, under which to store the text that follows.
+     */
+    private final List<String> pendingMetadataKeys = new ArrayList<String>();
+
+    private XMLEventFactory eventFactory;
+
+    /**
+     * The local names of the elements enclosing the current position, from
+     * the root element; updated without synchronization.
+     */
+    private final ElementStack elements = new ElementStack();
+
+    /**
+     * The local names of the elements enclosing the current position, from
+     * the root element.
+     *
+     * @deprecated Only meant to be read; use {@link #getCurrentDepth()} and
+     *             the testExpression methods instead.
+     */
+    @Deprecated
+    public final Stack<String> stack = elements;
+
+    /** The local name of the current attribute, or null. */
+    private String currentAttribute;
 
     private Map<String, String> metadata = new HashMap<String, String>();
     private List<MetadataExpression> metadataExpressions = new ArrayList<MetadataExpression>();
@@ -71,6 +143,24 @@ public class StaxUnmarshallerContext {
      */
     public StaxUnmarshallerContext(XMLEventReader eventReader, Map<String, String> headers) {
         this.eventReader = eventReader;
+        this.streamReader = null;
+        this.headers = headers;
+    }
+
+    /**
+     * Constructs a new unmarshaller context reading the XML document with the
+     * cursor of the specified stream reader, and a set of response headers.
+     *
+     * @param streamReader
+     *            The stream reader, positioned at the start of the document.
+     * @param headers
+     *            The set of response headers associated with this unmarshaller
+     *            context.
+     */
+    public StaxUnmarshallerContext(XMLStreamReader streamReader, Map<String, String> headers) {
+        this.eventReader = null;
+        this.streamReader = streamReader;
+        this.streamTokenPending = true;
         this.headers = headers;
     }
 
@@ -97,6 +187,9 @@ public class StaxUnmarshallerContext {
      * @throws XMLStreamException
      */
     public String readText() throws XMLStreamException {
+        if (streamReader != null) {
+            return readCursorText();
+        }
         if (currentEvent.isAttribute()) {
             Attribute attribute = (Attribute)currentEvent;
             return attribute.getValue();
@@ -124,7 +217,7 @@ public class StaxUnmarshallerContext {
      *         document being parsed.
      */
     public int getCurrentDepth() {
-        return stack.size();
+        return elements.depth();
     }
 
     /**
@@ -138,7 +231,7 @@ public class StaxUnmarshallerContext {
      */
     public boolean testExpression(String expression) {
         if (expression.equals(".")) return true;
-        return stackString.endsWith(expression);
+        return getPath().endsWith(expression);
     }
 
     /**
@@ -156,19 +249,7 @@ public class StaxUnmarshallerContext {
      *         the XML document, starting from the specified depth.
      */
     public boolean testExpression(String expression, int startingStackDepth) {
-        if (expression.equals(".")) return true;
-
-        int index = -1;
-        while ((index = expression.indexOf("/", index + 1)) > -1) {
-            // Don't consider attributes a new depth level
-            if (expression.charAt(index + 1) != '@') {
-                startingStackDepth++;
-            }
-        }
-
-
-        return (startingStackDepth == getCurrentDepth()
-                && stackString.endsWith("/" + expression));
+        return PathExpression.forExpression(expression).matches(this, startingStackDepth);
     }
 
     /**
@@ -180,6 +261,9 @@ public class StaxUnmarshallerContext {
      *         yet).
      */
     public boolean isStartOfDocument() throws XMLStreamException {
+        if (streamReader != null) {
+            return peekCursorToken() == XMLStreamConstants.START_DOCUMENT;
+        }
         return eventReader.peek().isStartDocument();
     }
 
@@ -191,6 +275,9 @@ public class StaxUnmarshallerContext {
      * @throws XMLStreamException
      */
     public XMLEvent nextEvent() throws XMLStreamException {
+        if (streamReader != null) {
+            return nextCursorEvent();
+        }
         if (attributeIterator != null && attributeIterator.hasNext()) {
             currentEvent = (XMLEvent)attributeIterator.next();
         } else {
@@ -201,7 +288,13 @@ public class StaxUnmarshallerContext {
             attributeIterator = currentEvent.asStartElement().getAttributes();
         }
 
-        updateContext(currentEvent);
+        if (currentEvent.isEndElement()) {
+            updateContext(XMLStreamConstants.END_ELEMENT, null);
+        } else if (currentEvent.isStartElement()) {
+            updateContext(XMLStreamConstants.START_ELEMENT, currentEvent.asStartElement().getName().getLocalPart());
+        } else if (currentEvent.isAttribute()) {
+            updateContext(XMLStreamConstants.ATTRIBUTE, ((Attribute)currentEvent).getName().getLocalPart());
+        }
 
         if (eventReader.hasNext()) {
             XMLEvent nextEvent = eventReader.peek();
@@ -267,25 +360,444 @@ public class StaxUnmarshallerContext {
         }
     }
 
-    private void updateContext(XMLEvent event) {
-        if (event == null) return;
+    private void updateContext(int eventType, String localName) {
+        if (eventType == XMLStreamConstants.END_ELEMENT) {
+            elements.popElement();
+            currentAttribute = null;
+        } else if (eventType == XMLStreamConstants.START_ELEMENT) {
+            elements.pushElement(localName);
+            currentAttribute = null;
+        } else if (eventType == XMLStreamConstants.ATTRIBUTE) {
+            currentAttribute = localName;
+        }
+    }
+
+    /**
+     * Returns the path of the current position in the XML document, eg
+     * "/Response/items/item/@id". Only built for expressions that can't be
+     * matched against the elements directly.
+     */
+    private String getPath() {
+        StringBuilder path = new StringBuilder();
+        for (int i = 0; i < elements.depth(); i++) {
+            path.append('/').append(elements.element(i));
+        }
+        if (currentAttribute != null) {
+            path.append("/@").append(currentAttribute);
+        }
+        return path.toString();
+    }
+
+    /**
+     * A pseudo-xpath expression, such as "item/name" or "item/@id", parsed
+     * once into the element names and the attribute name it must end with, so
+     * that matching it against the current position only compares names,
+     * without building the path of the position.
+     * <p>
+     * Element names returned by the XML parsers and expression literals are
+     * usually interned, in which case the name comparisons don't even have to
+     * look at the characters.
+     */
+    private static final class PathExpression {
+        /** Bounds the cache, should expressions ever be built dynamically. */
+        private static final int MAX_CACHED_EXPRESSIONS = 10000;
+
+        private static final ConcurrentMap<String, PathExpression> expressions =
+            new ConcurrentHashMap<String, PathExpression>();
+
+        private final String expression;
+        private final boolean matchesAnything;
+        /** The number of levels of the expression below its starting depth. */
+        private final int depthOffset;
+        /** The element names, or null if only matched against the path. */
+        private final String[] elementNames;
+        private final String attributeName;
+
+        static PathExpression forExpression(String expression) {
+            PathExpression pathExpression = expressions.get(expression);
+            if (pathExpression == null) {
+                pathExpression = new PathExpression(expression);
+                if (expressions.size() < MAX_CACHED_EXPRESSIONS) {
+                    expressions.putIfAbsent(expression, pathExpression);
+                }
+            }
+            return pathExpression;
+        }
+
+        private PathExpression(String expression) {
+            this.expression = expression;
+            this.matchesAnything = expression.equals(".");
+
+            int offset = 0;
+            int index = -1;
+            while ((index = expression.indexOf("/", index + 1)) > -1) {
+                // Don't consider attributes a new depth level
+                if (index + 1 < expression.length() && expression.charAt(index + 1) != '@') {
+                    offset++;
+                }
+            }
+            this.depthOffset = offset;
 
-        if (event.isEndElement()) {
-            stack.pop();
-            stackString = "";
-            for (String s : stack) {
-                stackString += "/" + s;
+            String[] names = expression.split("/", -1);
+            String attribute = null;
+            int elementCount = names.length;
+            if (names[elementCount - 1].startsWith("@")) {
+                attribute = names[--elementCount].substring(1);
             }
-        } else if (event.isStartElement()) {
-            stack.push(event.asStartElement().getName().getLocalPart());
-            stackString += "/" + event.asStartElement().getName().getLocalPart();
-        } else if (event.isAttribute()) {
-            Attribute attribute = (Attribute)event;
-            stackString = "";
-            for (String s : stack) {
-                stackString += "/" + s;
+            boolean simple = !matchesAnything;
+            for (int i = 0; i < elementCount; i++) {
+                if (names[i].length() == 0 || names[i].startsWith("@")) {
+                    simple = false;
+                }
             }
-            stackString += "/@" + attribute.getName().getLocalPart();
+            if (simple) {
+                this.elementNames = new String[elementCount];
+                System.arraycopy(names, 0, elementNames, 0, elementCount);
+                this.attributeName = attribute;
+            } else {
+                this.elementNames = null;
+                this.attributeName = null;
+            }
+        }
+
+        boolean matches(StaxUnmarshallerContext context, int startingDepth) {
+            if (matchesAnything) {
+                return true;
+            }
+            int depth = context.elements.depth();
+            if (startingDepth + depthOffset != depth) {
+                return false;
+            }
+            if (elementNames == null) {
+                return context.getPath().endsWith("/" + expression);
+            }
+            if (attributeName == null
+                    ? context.currentAttribute != null
+                    : !attributeName.equals(context.currentAttribute)) {
+                return false;
+            }
+            int n = elementNames.length;
+            if (n > depth) {
+                return false;
+            }
+            ElementStack elements = context.elements;
+            int base = depth - n;
+            for (int i = n - 1; i >= 0; i--) {
+                if (!elementNames[i].equals(elements.element(base + i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The stack of the names of the enclosing elements. The context pushes
+     * and pops them without the synchronization of {@link Stack}, directly in
+     * the storage of the vector, so that the deprecated {@link #stack} field
+     * reads them at no cost to the parsing.
+     */
+    @SuppressWarnings("serial")
+    private static final class ElementStack extends Stack<String> {
+        ElementStack() {
+            elementData = new Object[16];
+        }
+
+        void pushElement(String name) {
+            if (elementCount == elementData.length) {
+                Object[] newElementData = new Object[elementCount * 2];
+                System.arraycopy(elementData, 0, newElementData, 0, elementCount);
+                elementData = newElementData;
+            }
+            elementData[elementCount++] = name;
+            modCount++;
+        }
+
+        void popElement() {
+            if (elementCount == 0) throw new EmptyStackException();
+            elementData[--elementCount] = null;
+            modCount++;
+        }
+
+        int depth() {
+            return elementCount;
+        }
+
+        String element(int index) {
+            return (String) elementData[index];
+        }
+    }
+
+    /*
+     * Cursor mode
+     */
+
+    private XMLEvent nextCursorEvent() throws XMLStreamException {
+        if (attributeIndex + 1 < attributeCount) {
+            attributeIndex++;
+            currentEvent = cursorEvent(XMLStreamConstants.ATTRIBUTE);
+            updateContext(XMLStreamConstants.ATTRIBUTE, attributeNames[attributeIndex]);
+        } else {
+            attributeCount = 0;
+            attributeIndex = -1;
+            if (!streamTokenPending) {
+                advanceCursor();
+            }
+            streamTokenPending = false;
+            int eventType = streamReader.getEventType();
+            currentEvent = cursorEvent(eventType);
+            if (eventType == XMLStreamConstants.START_ELEMENT) {
+                readAttributes();
+                updateContext(eventType, streamReader.getLocalName());
+            } else if (eventType == XMLStreamConstants.END_ELEMENT) {
+                endElementName = streamReader.getLocalName();
+                updateContext(eventType, null);
+            }
+        }
+
+        // The text of a matching element is only known once the cursor
+        // moves past the current token
+        for (MetadataExpression metadataExpression : metadataExpressions) {
+            if (testExpression(metadataExpression.expression, metadataExpression.targetDepth)) {
+                pendingMetadataKeys.add(metadataExpression.key);
+            }
+        }
+        return currentEvent;
+    }
+
+    private String readCursorText() throws XMLStreamException {
+        if (attributeIndex >= 0) {
+            return attributeValues[attributeIndex];
+        }
+        String text = null;
+        StringBuilder sb = null;
+        while (true) {
+            int eventType = peekCursorToken();
+            if (isCharacters(eventType)) {
+                streamTokenPending = false;
+                if (text == null) {
+                    text = streamReader.getText();
+                } else {
+                    if (sb == null) {
+                        sb = new StringBuilder(text);
+                    }
+                    sb.append(streamReader.getText());
+                }
+            } else if (eventType == XMLStreamConstants.END_ELEMENT) {
+                return sb != null ? sb.toString() : text != null ? text : "";
+            } else {
+                throw new RuntimeException("Encountered unexpected event: " + cursorEvent(eventType).toString());
+            }
+        }
+    }
+
+    /**
+     * Returns the type of the next token, moving the cursor to it if it
+     * hasn't already been peeked at.
+     */
+    private int peekCursorToken() throws XMLStreamException {
+        if (!streamTokenPending) {
+            advanceCursor();
+            streamTokenPending = true;
+        }
+        return streamReader.getEventType();
+    }
+
+    private void advanceCursor() throws XMLStreamException {
+        streamReader.next();
+        resolvePendingMetadata();
+    }
+
+    private void resolvePendingMetadata() {
+        if (pendingMetadataKeys.isEmpty()) {
+            return;
+        }
+        if (isCharacters(streamReader.getEventType())) {
+            String text = streamReader.getText();
+            for (String key : pendingMetadataKeys) {
+                metadata.put(key, text);
+            }
+        }
+        pendingMetadataKeys.clear();
+    }
+
+    private void readAttributes() {
+        attributeCount = streamReader.getAttributeCount();
+        if (attributeNames.length < attributeCount) {
+            attributeNames = new String[attributeCount];
+            attributeValues = new String[attributeCount];
+        }
+        for (int i = 0; i < attributeCount; i++) {
+            attributeNames[i] = streamReader.getAttributeLocalName(i);
+            attributeValues[i] = streamReader.getAttributeValue(i);
+        }
+    }
+
+    private static boolean isCharacters(int eventType) {
+        return eventType == XMLStreamConstants.CHARACTERS
+            || eventType == XMLStreamConstants.CDATA
+            || eventType == XMLStreamConstants.SPACE;
+    }
+
+    private CursorEvent cursorEvent(int eventType) {
+        if (cursorEvents == null) {
+            cursorEvents = new CursorEvent[XMLStreamConstants.END_ELEMENT + 16];
+        }
+        if (eventType < 0 || eventType >= cursorEvents.length) {
+            throw new IllegalStateException("Unexpected event type: " + eventType);
+        }
+        CursorEvent event = cursorEvents[eventType];
+        if (event == null) {
+            event = eventType == XMLStreamConstants.ATTRIBUTE
+                  ? new CursorAttribute()
+                  : new CursorEvent(eventType);
+            cursorEvents[eventType] = event;
+        }
+        return event;
+    }
+
+    /**
+     * Returns a standalone copy of the current event in cursor mode.
+     */
+    private XMLEvent copyCurrentEvent(CursorEvent event) {
+        if (event != currentEvent) {
+            throw new IllegalStateException("The content of an event is only accessible while it is the current event");
+        }
+        if (eventFactory == null) {
+            eventFactory = XMLEventFactory.newInstance();
+        }
+        switch (event.eventType) {
+        case XMLStreamConstants.START_ELEMENT:
+            List<Attribute> attributes = new ArrayList<Attribute>(attributeCount);
+            for (int i = 0; i < attributeCount; i++) {
+                attributes.add(eventFactory.createAttribute(attributeNames[i], attributeValues[i]));
+            }
+            return eventFactory.createStartElement(new QName(elements.element(elements.depth() - 1)), attributes.iterator(), null);
+        case XMLStreamConstants.END_ELEMENT:
+            return eventFactory.createEndElement(new QName(endElementName), null);
+        case XMLStreamConstants.ATTRIBUTE:
+            return eventFactory.createAttribute(attributeNames[attributeIndex], attributeValues[attributeIndex]);
+        case XMLStreamConstants.START_DOCUMENT:
+            return eventFactory.createStartDocument();
+        case XMLStreamConstants.END_DOCUMENT:
+            return eventFactory.createEndDocument();
+        default:
+            if (isCharacters(event.eventType) && !streamTokenPending) {
+                return eventFactory.createCharacters(streamReader.getText());
+            }
+            throw new IllegalStateException("The content of the event is no longer accessible");
+        }
+    }
+
+    /**
+     * An event returned in cursor mode, shared by all the tokens of the same
+     * type. The type of an event never changes, but its content is only
+     * accessible while it is the current event of the context.
+     */
+    private class CursorEvent implements XMLEvent {
+        final int eventType;
+
+        CursorEvent(int eventType) {
+            this.eventType = eventType;
+        }
+
+        public int getEventType() {
+            return eventType;
+        }
+
+        public Location getLocation() {
+            return streamReader.getLocation();
+        }
+
+        public boolean isStartElement() {
+            return eventType == XMLStreamConstants.START_ELEMENT;
+        }
+
+        public boolean isAttribute() {
+            return eventType == XMLStreamConstants.ATTRIBUTE;
+        }
+
+        public boolean isNamespace() {
+            return eventType == XMLStreamConstants.NAMESPACE;
+        }
+
+        public boolean isEndElement() {
+            return eventType == XMLStreamConstants.END_ELEMENT;
+        }
+
+        public boolean isEntityReference() {
+            return eventType == XMLStreamConstants.ENTITY_REFERENCE;
+        }
+
+        public boolean isProcessingInstruction() {
+            return eventType == XMLStreamConstants.PROCESSING_INSTRUCTION;
+        }
+
+        public boolean isCharacters() {
+            return StaxUnmarshallerContext.isCharacters(eventType);
+        }
+
+        public boolean isStartDocument() {
+            return eventType == XMLStreamConstants.START_DOCUMENT;
+        }
+
+        public boolean isEndDocument() {
+            return eventType == XMLStreamConstants.END_DOCUMENT;
+        }
+
+        public StartElement asStartElement() {
+            return copyCurrentEvent(this).asStartElement();
+        }
+
+        public EndElement asEndElement() {
+            return copyCurrentEvent(this).asEndElement();
+        }
+
+        public Characters asCharacters() {
+            return copyCurrentEvent(this).asCharacters();
+        }
+
+        public QName getSchemaType() {
+            return null;
+        }
+
+        public void writeAsEncodedUnicode(Writer writer) throws XMLStreamException {
+            copyCurrentEvent(this).writeAsEncodedUnicode(writer);
+        }
+
+        @Override
+        public String toString() {
+            if (this == currentEvent) {
+                try {
+                    return copyCurrentEvent(this).toString();
+                } catch (IllegalStateException e) {
+                    // fall through
+                }
+            }
+            return "XMLEvent[type=" + eventType + "]";
+        }
+    }
+
+    private final class CursorAttribute extends CursorEvent implements Attribute {
+
+        CursorAttribute() {
+            super(XMLStreamConstants.ATTRIBUTE);
+        }
+
+        public QName getName() {
+            return ((Attribute)copyCurrentEvent(this)).getName();
+        }
+
+        public String getValue() {
+            return ((Attribute)copyCurrentEvent(this)).getValue();
+        }
+
+        public String getDTDType() {
+            return "CDATA";
+        }
+
+        public boolean isSpecified() {
+            return true;
         }
     }
 
@@ -130,6 +130,21 @@ public class AWSRequestMetrics {
          * /apidocs/org/apache/http/pool/PoolStats.html
          */
         HttpClientPoolPendingCount,
+        /**
+         * The number of idle persistent connections of the route of the
+         * request, ie its target host, port and protocol.
+         */
+        HttpClientPoolRouteAvailableCount,
+        /**
+         * The number of persistent connections of the route of the request
+         * currently being used to execute requests.
+         */
+        HttpClientPoolRouteLeasedCount,
+        /**
+         * The number of connection requests for the route of the request being
+         * blocked awaiting a free connection.
+         */
+        HttpClientPoolRoutePendingCount,
         RetryPauseTime,
 //      S3DownloadThroughput, // migrated to S3RequestMetric in the S3 clint library
 //      S3UploadThroughput,   // migrated to S3RequestMetric in the S3 clint library
@@ -17,6 +17,7 @@ package com.amazonaws.util;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -37,14 +38,32 @@ import com.amazonaws.metrics.RequestMetricCollector;
  * This class is instantiated instead of {@link AWSRequestMetrics} when request
  * metric collection is required during a particular service request/response
  * cycle.
+ * <p>
+ * Events and counters of the predefined {@link AWSRequestMetrics.Field}s are
+ * recorded as primitive values in arrays indexed by the field ordinal, and
+ * properties are recorded in the order they are added; the lists and
+ * {@link TimingInfo} instances returned by the accessors are only created when
+ * read, so that collecting the predefined metrics of a request allocates little
+ * more than this object.
  */
 @NotThreadSafe
 public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
-    /* Stores some key value pairs. */
-    private final Map<String, List<Object>> properties = new HashMap<String, List<Object>>();
-    
-    /* A map to store events that are being profiled. */
-    private final Map<String, TimingInfo> eventsBeingProfiled = new HashMap<String, TimingInfo>();
+    private static final int FIELD_COUNT = Field.values().length;
+
+    /* The timing info, which also holds the sub-measurements and counters. */
+    private final TimingInfoFieldSupport fieldTimingInfo;
+
+    /* The names and values of the properties, in the order they were added. */
+    private String[] propertyNames = new String[8];
+    private Object[] propertyValues = new Object[8];
+    private int propertyCount;
+
+    /* Start times of the predefined events being profiled, by field ordinal. */
+    private final long[] eventStartNanos = new long[FIELD_COUNT];
+    private final boolean[] eventsStarted = new boolean[FIELD_COUNT];
+
+    /* A map to store other events that are being profiled; created lazily. */
+    private Map<String, TimingInfo> eventsBeingProfiled;
     /* Latency Logger */
     private static final Log latencyLogger = LogFactory.getLog("com.amazonaws.latency");
     private static final Object KEY_VALUE_SEPARATOR = "=";
@@ -57,7 +76,13 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
      * @see AWSRequestMetricsFullSupport
      */
     public AWSRequestMetricsFullSupport() {
-        super(TimingInfo.startTimingFullSupport());
+        this(new TimingInfoFieldSupport(
+                Long.valueOf(System.currentTimeMillis()), System.nanoTime(), null));
+    }
+
+    private AWSRequestMetricsFullSupport(TimingInfoFieldSupport timingInfo) {
+        super(timingInfo);
+        this.fieldTimingInfo = timingInfo;
     }
     
     /**
@@ -81,6 +106,14 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
      */
     @Override
     public void startEvent(String eventName) {
+        Field f = TimingInfoFieldSupport.fieldOf(eventName);
+        if (f != null) {
+            startEvent(f);
+            return;
+        }
+        if (eventsBeingProfiled == null) {
+            eventsBeingProfiled = new HashMap<String, TimingInfo>();
+        }
         /* This will overwrite past events */
         eventsBeingProfiled.put // ignoring the wall clock time
             (eventName, TimingInfo.startTimingFullSupport(System.nanoTime()));
@@ -88,7 +121,14 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
 
     @Override
     public void startEvent(MetricType f) {
-        startEvent(f.name());
+        if (f instanceof Field) {
+            int ordinal = ((Field) f).ordinal();
+            /* This will overwrite past events */
+            eventStartNanos[ordinal] = System.nanoTime();
+            eventsStarted[ordinal] = true;
+        } else {
+            startEvent(f.name());
+        }
     }
 
     /**
@@ -101,7 +141,14 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
      */
     @Override
     public void endEvent(String eventName) {
-        TimingInfo event = eventsBeingProfiled.get(eventName);
+        Field f = TimingInfoFieldSupport.fieldOf(eventName);
+        if (f != null) {
+            endEvent(f);
+            return;
+        }
+        TimingInfo event = eventsBeingProfiled == null
+                         ? null
+                         : eventsBeingProfiled.get(eventName);
         /* Somebody tried to end an event that was not started. */
         if (event == null) {
             LogFactory.getLog(getClass()).warn
@@ -118,7 +165,19 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
 
     @Override
     public void endEvent(MetricType f) {
-        endEvent(f.name());
+        if (!(f instanceof Field)) {
+            endEvent(f.name());
+            return;
+        }
+        int ordinal = ((Field) f).ordinal();
+        /* Somebody tried to end an event that was not started. */
+        if (!eventsStarted[ordinal]) {
+            LogFactory.getLog(getClass()).warn
+                ("Trying to end an event which was never started: " + f.name());
+            return;
+        }
+        fieldTimingInfo.addSubMeasurement(
+            (Field) f, eventStartNanos[ordinal], System.nanoTime());
     }
 
     /**
@@ -140,7 +199,11 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
 
     @Override
     public void incrementCounter(MetricType f) {
-        incrementCounter(f.name());
+        if (f instanceof Field) {
+            fieldTimingInfo.incrementCounter((Field) f);
+        } else {
+            incrementCounter(f.name());
+        }
     }
     
     @Override
@@ -150,7 +213,11 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
 
     @Override
     public void setCounter(MetricType f, long count) {
-        setCounter(f.name(), count);
+        if (f instanceof Field) {
+            fieldTimingInfo.setCounter((Field) f, count);
+        } else {
+            setCounter(f.name(), count);
+        }
     }
     
     /**
@@ -169,13 +236,18 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
      */
     @Override
     public void addProperty(String propertyName, Object value) {
-        List<Object> propertyList = properties.get(propertyName);
-        if (propertyList == null) {
-            propertyList = new ArrayList<Object>();
-            properties.put(propertyName, propertyList);
+        int i = propertyCount;
+        if (i == propertyNames.length) {
+            String[] names = new String[i << 1];
+            System.arraycopy(propertyNames, 0, names, 0, i);
+            propertyNames = names;
+            Object[] values = new Object[i << 1];
+            System.arraycopy(propertyValues, 0, values, 0, i);
+            propertyValues = values;
         }
-        
-        propertyList.add(value);
+        propertyNames[i] = propertyName;
+        propertyValues[i] = value;
+        propertyCount = i + 1;
     }
 
     @Override
@@ -188,6 +260,15 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
         if (latencyLogger.isInfoEnabled()) {
             StringBuilder builder = new StringBuilder();
 
+            Map<String, List<Object>> properties = new LinkedHashMap<String, List<Object>>();
+            for (int i = 0; i < propertyCount; i++) {
+                List<Object> propertyList = properties.get(propertyNames[i]);
+                if (propertyList == null) {
+                    propertyList = new ArrayList<Object>();
+                    properties.put(propertyNames[i], propertyList);
+                }
+                propertyList.add(propertyValues[i]);
+            }
             for (Entry<String, List<Object>> entry : properties.entrySet()) {
                 keyValueFormat(entry.getKey(), entry.getValue(), builder);
             }
@@ -210,7 +291,16 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
 
     @Override
     public List<Object> getProperty(String propertyName){
-    	return properties.get(propertyName);
+        List<Object> propertyList = null;
+        for (int i = 0; i < propertyCount; i++) {
+            if (propertyName.equals(propertyNames[i])) {
+                if (propertyList == null) {
+                    propertyList = new ArrayList<Object>();
+                }
+                propertyList.add(propertyValues[i]);
+            }
+        }
+        return propertyList;
     }
 
     @Override
@@ -14,8 +14,10 @@
  */
 package com.amazonaws.util;
 
-import java.util.LinkedHashMap;
-import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.http.annotation.ThreadSafe;
 
 import com.amazonaws.ResponseMetadata;
 
@@ -23,10 +25,15 @@ import com.amazonaws.ResponseMetadata;
  * Cache of response metadata for recently executed requests for diagnostic
  * purposes. This cache has a max size and as entries are added, the oldest
  * entry is aged out once the max size has been reached.
+ * <p>
+ * Entries are kept in a ring buffer, so that adding an entry doesn't take
+ * any lock; looking up an entry scans the buffer from the newest entry.
  */
+@ThreadSafe
 public class ResponseMetadataCache {
-    private final InternalCache internalCache;
-
+    private final AtomicReferenceArray<Entry> entries;
+    /** The total number of entries added so far. */
+    private final AtomicLong count = new AtomicLong();
 
     /**
      * Creates a new cache that will contain, at most the specified number of
@@ -36,7 +43,7 @@ public class ResponseMetadataCache {
      *            The maximum size of this cache.
      */
     public ResponseMetadataCache(int maxEntries) {
-        internalCache = new InternalCache(maxEntries);
+        entries = new AtomicReferenceArray<Entry>(Math.max(0, maxEntries));
     }
 
     /**
@@ -48,9 +55,10 @@ public class ResponseMetadataCache {
      * @param metadata
      *            The metadata for this entry.
      */
-    public synchronized void add(Object obj, ResponseMetadata metadata) {
-        if (obj == null) return;
-        internalCache.put(System.identityHashCode(obj), metadata);
+    public void add(Object obj, ResponseMetadata metadata) {
+        if (obj == null || entries.length() == 0) return;
+        int index = (int) (count.getAndIncrement() % entries.length());
+        entries.set(index, new Entry(System.identityHashCode(obj), metadata));
     }
 
     /**
@@ -68,26 +76,27 @@ public class ResponseMetadataCache {
         // on all platforms, but should be reasonable enough to use
         // for a few requests at a time.  We can always easily move
         // to our own unique IDs if needed.
-        return internalCache.get(System.identityHashCode(obj));
+        final int key = System.identityHashCode(obj);
+        final int length = entries.length();
+        final long newest = count.get() - 1;
+        for (long i = newest; i >= 0 && i > newest - length; i--) {
+            Entry entry = entries.get((int) (i % length));
+            if (entry != null && entry.key == key)
+                return entry.metadata;
+        }
+        return null;
     }
 
-
     /**
-     * Simple implementation of LinkedHashMap that overrides the
-     * <code>removeEldestEntry</code> method to turn LinkedHashMap into a
-     * LRU(ish) cache that automatically evicts old entries.
+     * An immutable entry of the cache.
      */
-    private static final class InternalCache extends LinkedHashMap<Integer, ResponseMetadata> {
-        private int maxSize;
-
-        public InternalCache(int maxSize) {
-            super(maxSize);
-            this.maxSize = maxSize;
-        }
+    private static final class Entry {
+        final int key;
+        final ResponseMetadata metadata;
 
-        @Override
-        protected boolean removeEldestEntry(Entry eldest) {
-            return size() > maxSize;
+        Entry(int key, ResponseMetadata metadata) {
+            this.key = key;
+            this.metadata = metadata;
         }
     }
 }
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.annotation.NotThreadSafe;
+
+import com.amazonaws.util.AWSRequestMetrics.Field;
+
+/**
+ * The full support of timing info used by {@link AWSRequestMetricsFullSupport}
+ * to collect request metrics. Sub-measurements and counters of the predefined
+ * {@link Field}s are kept as primitive values in arrays indexed by the field
+ * ordinal, and the {@link TimingInfo} instances and maps of the
+ * {@link TimingInfo} API are only created when they are read. Any other
+ * sub-measurements and counters are handled as in
+ * {@link TimingInfoFullSupport}.
+ * <p>
+ * Instances are not reset or pooled for reuse, since a request metric
+ * collector may keep the metrics of a request and read them later on another
+ * thread.
+ */
+@NotThreadSafe
+class TimingInfoFieldSupport extends TimingInfoFullSupport {
+    private static final Field[] FIELDS = Field.values();
+    private static final Map<String, Field> FIELDS_BY_NAME = new HashMap<String, Field>();
+    static {
+        for (Field f : FIELDS) {
+            FIELDS_BY_NAME.put(f.name(), f);
+        }
+    }
+
+    private final long[] counters = new long[FIELDS.length];
+    private final boolean[] countersSet = new boolean[FIELDS.length];
+
+    /*
+     * The sub-measurements of the predefined fields in the order they were
+     * added: the field ordinal, start and end time of each, and the timing
+     * info if one was given or has already been read.
+     */
+    private int[] subMeasurementFields = new int[16];
+    private long[] subMeasurementStartNanos = new long[16];
+    private long[] subMeasurementEndNanos = new long[16];
+    private TimingInfo[] subMeasurements = new TimingInfo[16];
+    private int subMeasurementCount;
+    /* Fields for which a sub-measurement was added, even if skipped. */
+    private final boolean[] subMeasured = new boolean[FIELDS.length];
+
+    TimingInfoFieldSupport(Long startEpochTimeMilli, long startTimeNano, Long endTimeNano) {
+        super(startEpochTimeMilli, startTimeNano, endTimeNano);
+    }
+
+    /**
+     * Returns the predefined field of the given name, or null if none.
+     */
+    static Field fieldOf(String name) {
+        return FIELDS_BY_NAME.get(name);
+    }
+
+    /**
+     * Adds a sub-measurement of the given field, which started and ended at
+     * the given times in nanoseconds.
+     */
+    void addSubMeasurement(Field f, long startTimeNano, long endTimeNano) {
+        addSubMeasurement(f, startTimeNano, endTimeNano, null);
+    }
+
+    private void addSubMeasurement(Field f, long startTimeNano,
+            long endTimeNano, TimingInfo ti) {
+        int i = subMeasurementCount;
+        if (i == subMeasurementFields.length) {
+            int n = i << 1;
+            int[] fields = new int[n];
+            System.arraycopy(subMeasurementFields, 0, fields, 0, i);
+            subMeasurementFields = fields;
+            long[] starts = new long[n];
+            System.arraycopy(subMeasurementStartNanos, 0, starts, 0, i);
+            subMeasurementStartNanos = starts;
+            long[] ends = new long[n];
+            System.arraycopy(subMeasurementEndNanos, 0, ends, 0, i);
+            subMeasurementEndNanos = ends;
+            TimingInfo[] infos = new TimingInfo[n];
+            System.arraycopy(subMeasurements, 0, infos, 0, i);
+            subMeasurements = infos;
+        }
+        subMeasurementFields[i] = f.ordinal();
+        subMeasurementStartNanos[i] = startTimeNano;
+        subMeasurementEndNanos[i] = endTimeNano;
+        subMeasurements[i] = ti;
+        subMeasurementCount = i + 1;
+        subMeasured[f.ordinal()] = true;
+    }
+
+    /**
+     * Returns the sub-measurement at the given position in the order they
+     * were added, creating its timing info if necessary.
+     */
+    private TimingInfo subMeasurementAt(int i) {
+        TimingInfo ti = subMeasurements[i];
+        if (ti == null) {
+            ti = TimingInfo.unmodifiableTimingInfo(
+                    subMeasurementStartNanos[i],
+                    Long.valueOf(subMeasurementEndNanos[i]));
+            subMeasurements[i] = ti;
+        }
+        return ti;
+    }
+
+    @Override
+    public void addSubMeasurement(String subMeasurementName, TimingInfo ti) {
+        Field f = fieldOf(subMeasurementName);
+        if (f == null) {
+            super.addSubMeasurement(subMeasurementName, ti);
+        } else if (ti.isEndTimeKnown()) {
+            addSubMeasurement(f, ti.getStartTimeNano(), ti.getEndTimeNano(), ti);
+        } else {
+            subMeasured[f.ordinal()] = true;
+            LogFactory.getLog(getClass()).debug(
+                "Skip submeasurement timing info with no end time for "
+                + subMeasurementName);
+        }
+    }
+
+    @Override
+    public TimingInfo getSubMeasurement(String subMesurementName, int index) {
+        Field f = fieldOf(subMesurementName);
+        if (f == null) {
+            return super.getSubMeasurement(subMesurementName, index);
+        }
+        if (index < 0) {
+            return null;
+        }
+        int ordinal = f.ordinal();
+        for (int i = 0; i < subMeasurementCount; i++) {
+            if (subMeasurementFields[i] == ordinal && index-- == 0) {
+                return subMeasurementAt(i);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public TimingInfo getLastSubMeasurement(String subMeasurementName) {
+        Field f = fieldOf(subMeasurementName);
+        if (f == null) {
+            return super.getLastSubMeasurement(subMeasurementName);
+        }
+        int ordinal = f.ordinal();
+        for (int i = subMeasurementCount - 1; i >= 0; i--) {
+            if (subMeasurementFields[i] == ordinal) {
+                return subMeasurementAt(i);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<TimingInfo> getAllSubMeasurements(String subMeasurementName) {
+        Field f = fieldOf(subMeasurementName);
+        if (f == null) {
+            return super.getAllSubMeasurements(subMeasurementName);
+        }
+        return subMeasured[f.ordinal()] ? subMeasurementsOf(f.ordinal()) : null;
+    }
+
+    private List<TimingInfo> subMeasurementsOf(int ordinal) {
+        List<TimingInfo> timings = new ArrayList<TimingInfo>();
+        for (int i = 0; i < subMeasurementCount; i++) {
+            if (subMeasurementFields[i] == ordinal) {
+                timings.add(subMeasurementAt(i));
+            }
+        }
+        return timings;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The returned map is a snapshot of the sub-measurements taken at the time
+     * of the call.
+     */
+    @Override
+    public Map<String, List<TimingInfo>> getSubMeasurementsByName() {
+        Map<String, List<TimingInfo>> byName = new HashMap<String, List<TimingInfo>>(
+                super.getSubMeasurementsByName());
+        for (int ordinal = 0; ordinal < FIELDS.length; ordinal++) {
+            if (subMeasured[ordinal]) {
+                byName.put(FIELDS[ordinal].name(), subMeasurementsOf(ordinal));
+            }
+        }
+        return byName;
+    }
+
+    @Override
+    public Number getCounter(String key) {
+        Field f = fieldOf(key);
+        if (f == null) {
+            return super.getCounter(key);
+        }
+        return countersSet[f.ordinal()] ? Long.valueOf(counters[f.ordinal()]) : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The returned map is a snapshot of the counters taken at the time of the
+     * call.
+     */
+    @Override
+    public Map<String, Number> getAllCounters() {
+        Map<String, Number> byName = new HashMap<String, Number>(super.getAllCounters());
+        for (int ordinal = 0; ordinal < FIELDS.length; ordinal++) {
+            if (countersSet[ordinal]) {
+                byName.put(FIELDS[ordinal].name(), Long.valueOf(counters[ordinal]));
+            }
+        }
+        return byName;
+    }
+
+    @Override
+    public void setCounter(String key, long count) {
+        Field f = fieldOf(key);
+        if (f == null) {
+            super.setCounter(key, count);
+        } else {
+            setCounter(f, count);
+        }
+    }
+
+    void setCounter(Field f, long count) {
+        counters[f.ordinal()] = count;
+        countersSet[f.ordinal()] = true;
+    }
+
+    @Override
+    public void incrementCounter(String key) {
+        Field f = fieldOf(key);
+        if (f == null) {
+            super.incrementCounter(key);
+        } else {
+            incrementCounter(f);
+        }
+    }
+
+    void incrementCounter(Field f) {
+        counters[f.ordinal()]++;
+        countersSet[f.ordinal()] = true;
+    }
+}
@@ -26,7 +26,11 @@ package com.amazonaws.util.json;
 import java.io.IOException;
 import java.io.Writer;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import com.amazonaws.util.BinaryUtils;
 import com.amazonaws.util.DateUtils;
@@ -88,9 +92,16 @@ public class JSONWriter {
     protected char mode;
 
     /**
-     * The object/array stack.
+     * The object/array stack: 'k' for an object, 'a' for an array.
      */
-    private JSONObject stack[];
+    private final char stack[];
+
+    /**
+     * The keys already written in each object of the stack, used to detect
+     * duplicate keys. The sets are reused from one object to the next at the
+     * same depth.
+     */
+    private final List<Set<String>> keys = new ArrayList<Set<String>>();
 
     /**
      * The stack top index. A value of 0 indicates that the stack is empty.
@@ -108,7 +119,7 @@ public class JSONWriter {
     public JSONWriter(Writer w) {
         this.comma = false;
         this.mode = 'i';
-        this.stack = new JSONObject[maxdepth];
+        this.stack = new char[maxdepth];
         this.top = 0;
         this.writer = w;
     }
@@ -120,6 +131,17 @@ public class JSONWriter {
      * @throws JSONException If the value is out of sequence.
      */
     private JSONWriter append(String s) throws JSONException {
+        return this.append(s, false);
+    }
+
+    /**
+     * Append a value, quoted as a JSON string if requested.
+     * @param s A string value.
+     * @param quote Whether to write the value as a quoted JSON string.
+     * @return this
+     * @throws JSONException If the value is out of sequence.
+     */
+    private JSONWriter append(String s, boolean quote) throws JSONException {
         if (s == null) {
             throw new JSONException("Null pointer");
         }
@@ -128,7 +150,11 @@ public class JSONWriter {
                 if (this.comma && this.mode == 'a') {
                     this.writer.write(',');
                 }
-                this.writer.write(s);
+                if (quote) {
+                    this.writeQuoted(s);
+                } else {
+                    this.writer.write(s);
+                }
             } catch (IOException e) {
                 throw new JSONException(e);
             }
@@ -141,6 +167,61 @@ public class JSONWriter {
         throw new JSONException("Value out of sequence.");
     }
 
+    /**
+     * Write a string as a quoted JSON string, escaped exactly as by
+     * {@link JSONObject#quote(String)}, but without building the quoted string
+     * first.
+     */
+    private void writeQuoted(String s) throws IOException {
+        Writer w = this.writer;
+        w.write('"');
+        int len = s.length();
+        int start = 0;
+        char c = 0;
+        for (int i = 0; i < len; i++) {
+            char b = c;
+            c = s.charAt(i);
+            String escape;
+            if (c == '"') {
+                escape = "\\\"";
+            } else if (c == '\\') {
+                escape = "\\\\";
+            } else if (c == '/') {
+                if (b != '<') {
+                    continue;
+                }
+                escape = "\\/";
+            } else if (c >= ' ' && (c < '\u0080' || c >= '\u00a0')) {
+                continue;
+            } else {
+                escape = escapeControl(c);
+            }
+            w.write(s, start, i - start);
+            w.write(escape);
+            start = i + 1;
+        }
+        w.write(s, start, len - start);
+        w.write('"');
+    }
+
+    private static String escapeControl(char c) {
+        switch (c) {
+        case '\b':
+            return "\\b";
+        case '\t':
+            return "\\t";
+        case '\n':
+            return "\\n";
+        case '\f':
+            return "\\f";
+        case '\r':
+            return "\\r";
+        default:
+            String t = "000" + Integer.toHexString(c);
+            return "\\u" + t.substring(t.length() - 4);
+        }
+    }
+
     /**
      * Begin appending a new array. All values until the balancing
      * <code>endArray</code> will be appended to this array. The
@@ -152,7 +233,7 @@ public class JSONWriter {
      */
     public JSONWriter array() throws JSONException {
         if (this.mode == 'i' || this.mode == 'o' || this.mode == 'a') {
-            this.push(null);
+            this.push('a');
             this.append("[");
             this.comma = false;
             return this;
@@ -216,11 +297,13 @@ public class JSONWriter {
         }
         if (this.mode == 'k') {
             try {
-                stack[top - 1].putOnce(s, Boolean.TRUE);
+                if (!keys.get(top - 1).add(s)) {
+                    throw new JSONException("Duplicate key \"" + s + "\"");
+                }
                 if (this.comma) {
                     this.writer.write(',');
                 }
-                this.writer.write(JSONObject.quote(s));
+                this.writeQuoted(s);
                 this.writer.write(':');
                 this.comma = false;
                 this.mode = 'o';
@@ -248,7 +331,7 @@ public class JSONWriter {
         }
         if (this.mode == 'o' || this.mode == 'a') {
             this.append("{");
-            this.push(new JSONObject());
+            this.push('k');
             this.comma = false;
             return this;
         }
@@ -266,25 +349,37 @@ public class JSONWriter {
         if (this.top <= 0) {
             throw new JSONException("Nesting error.");
         }
-        char m = this.stack[this.top - 1] == null ? 'a' : 'k';
+        char m = this.stack[this.top - 1];
         if (m != c) {
             throw new JSONException("Nesting error.");
         }
         this.top -= 1;
-        this.mode = this.top == 0 ? 'd' : this.stack[this.top - 1] == null ? 'a' : 'k';
+        this.mode = this.top == 0 ? 'd' : this.stack[this.top - 1];
     }
 
     /**
      * Push an array or object scope.
-     * @param c The scope to open.
+     * @param m The scope to open, 'a' or 'k'.
      * @throws JSONException If nesting is too deep.
      */
-    private void push(JSONObject jo) throws JSONException {
+    private void push(char m) throws JSONException {
         if (this.top >= maxdepth) {
             throw new JSONException("Nesting too deep.");
         }
-        this.stack[this.top] = jo;
-        this.mode = jo == null ? 'a' : 'k';
+        if (m == 'k') {
+            while (this.keys.size() <= this.top) {
+                this.keys.add(null);
+            }
+            Set<String> objectKeys = this.keys.get(this.top);
+            if (objectKeys == null || objectKeys.size() > 64) {
+                // Don't keep clearing the large table of a big object
+                this.keys.set(this.top, new HashSet<String>());
+            } else {
+                objectKeys.clear();
+            }
+        }
+        this.stack[this.top] = m;
+        this.mode = m;
         this.top += 1;
     }
 
@@ -356,6 +451,9 @@ public class JSONWriter {
      * @throws JSONException If the value is out of sequence.
      */
     public JSONWriter value(Object o) throws JSONException {
+        if (o instanceof String) {
+            return this.append((String) o, true);
+        }
         return this.append(JSONObject.valueToString(o));
     }
 }
@@ -14,6 +14,7 @@
  */
 package com.amazonaws;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
@@ -62,4 +63,18 @@ public class ClientConfigurationTest {
             config2.getApacheHttpClientConfig().getSslSocketFactory());
     }
 
+    @Test
+    public void connectionLimits() {
+        ClientConfiguration config = new ClientConfiguration().withMaxConnections(20);
+        assertEquals(20, config.getMaxConnectionsPerRoute());
+
+        config.withMaxConnectionsPerRoute(5).withMaxConnectionsForHost("s3.amazonaws.com", 10);
+        ClientConfiguration config2 = new ClientConfiguration(config);
+        assertEquals(5, config2.getMaxConnectionsPerRoute());
+        assertEquals(Integer.valueOf(10), config2.getMaxConnectionsPerHost().get("s3.amazonaws.com"));
+
+        config.setMaxConnectionsForHost("s3.amazonaws.com", -1);
+        assertNull(config.getMaxConnectionsPerHost().get("s3.amazonaws.com"));
+        assertEquals(Integer.valueOf(10), config2.getMaxConnectionsPerHost().get("s3.amazonaws.com"));
+    }
 }
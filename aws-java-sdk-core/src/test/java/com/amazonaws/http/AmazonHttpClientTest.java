@@ -22,6 +22,11 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.http.ProtocolVersion;
 import org.apache.http.client.HttpClient;
@@ -37,10 +42,14 @@ import org.junit.Before;
 import org.junit.Test;
 
 import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonWebServiceRequest;
 import com.amazonaws.AmazonWebServiceResponse;
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.DefaultRequest;
 import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.retry.PredefinedRetryPolicies;
+import com.amazonaws.retry.RetryPolicy;
 
 public class AmazonHttpClientTest {
 
@@ -96,6 +105,15 @@ public class AmazonHttpClientTest {
         EasyMock.verify(httpClient);
     }
 
+    @Test
+    public void testResponseMetadataCacheDisabled() {
+        ClientConfiguration config = new ClientConfiguration()
+            .withCacheResponseMetadata(false);
+        client = new AmazonHttpClient(config, httpClient, null);
+        Assert.assertNull(client.getResponseMetadataForRequest(
+                new AmazonWebServiceRequest() {}));
+    }
+
     @Test
     public void testRetryIOExceptionFromHandler() throws Exception {
         final IOException exception = new IOException("BOOM");
@@ -159,6 +177,121 @@ public class AmazonHttpClientTest {
         EasyMock.verify(httpClient);
     }
 
+    @Test
+    public void testExecuteAsyncRetriesIOException() throws Exception {
+        IOException exception = new IOException("BOOM");
+
+        EasyMock.reset(httpClient);
+
+        EasyMock
+            .expect(httpClient.getConnectionManager())
+            .andReturn(null)
+            .anyTimes();
+
+        EasyMock
+            .expect(httpClient.execute(EasyMock.<HttpUriRequest>anyObject(),
+                                       EasyMock.<HttpContext>anyObject()))
+            .andThrow(exception)
+            .times(4);
+
+        EasyMock.replay(httpClient);
+
+        ClientConfiguration config = new ClientConfiguration()
+            .withRetryPolicy(new RetryPolicy(
+                PredefinedRetryPolicies.DEFAULT_RETRY_CONDITION,
+                new FixedDelay(10), 3, false));
+        client = new AmazonHttpClient(config, httpClient, null);
+
+        Request<?> request = new DefaultRequest<Object>("testsvc");
+        request.setEndpoint(java.net.URI.create(
+                "http://testsvc.region.amazonaws.com"));
+        request.setContent(new ByteArrayInputStream(new byte[0]));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Response<Object>> future = client.executeAsync(request,
+                    null, null, new ExecutionContext(), executor);
+            future.get();
+            Assert.fail("No exception when request repeatedly fails!");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof AmazonClientException);
+            Assert.assertSame(exception, e.getCause().getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Verify that we called execute 4 times.
+        EasyMock.verify(httpClient);
+    }
+
+    @Test
+    public void testExecuteAsyncReleasesThreadDuringBackoff() throws Exception {
+        EasyMock.reset(httpClient);
+
+        EasyMock
+            .expect(httpClient.getConnectionManager())
+            .andReturn(null)
+            .anyTimes();
+
+        EasyMock
+            .expect(httpClient.execute(EasyMock.<HttpUriRequest>anyObject(),
+                                       EasyMock.<HttpContext>anyObject()))
+            .andThrow(new IOException("BOOM"))
+            .times(2);
+
+        EasyMock.replay(httpClient);
+
+        ClientConfiguration config = new ClientConfiguration()
+            .withRetryPolicy(new RetryPolicy(
+                PredefinedRetryPolicies.DEFAULT_RETRY_CONDITION,
+                new FixedDelay(500), 1, false));
+        client = new AmazonHttpClient(config, httpClient, null);
+
+        Request<?> request = new DefaultRequest<Object>("testsvc");
+        request.setEndpoint(java.net.URI.create(
+                "http://testsvc.region.amazonaws.com"));
+        request.setContent(new ByteArrayInputStream(new byte[0]));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Response<Object>> future = client.executeAsync(request,
+                    null, null, new ExecutionContext(), executor);
+            // The only worker thread must be available while the request
+            // is backing off
+            Thread.sleep(100);
+            Future<?> other = executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+            other.get(250, TimeUnit.MILLISECONDS);
+            Assert.assertFalse(future.isDone());
+            try {
+                future.get();
+                Assert.fail("No exception when request repeatedly fails!");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof AmazonClientException);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        EasyMock.verify(httpClient);
+    }
+
+    private static class FixedDelay implements RetryPolicy.BackoffStrategy {
+        private final long delay;
+
+        FixedDelay(long delay) {
+            this.delay = delay;
+        }
+
+        @Override
+        public long delayBeforeNextRetry(AmazonWebServiceRequest originalRequest,
+                AmazonClientException exception, int retriesAttempted) {
+            return delay;
+        }
+    }
+
     @Test
     public void testPutRetryNoCL() throws Exception {
         Request<?> request = new DefaultRequest<Object>(null, "testsvc");
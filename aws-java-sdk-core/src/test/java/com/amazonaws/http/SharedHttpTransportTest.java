@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.routing.HttpRoutePlanner;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.client.AbstractHttpClient;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.ClientConfiguration;
+
+public class SharedHttpTransportTest {
+    @Before
+    public void init() {
+        IdleConnectionReaper.shutdown();
+    }
+
+    @Test
+    public void referenceCountedShutdown() {
+        SharedHttpTransport transport = new SharedHttpTransport();
+        ClientConfiguration config = new ClientConfiguration()
+            .withSharedHttpTransport(transport);
+        AmazonHttpClient client1 = new AmazonHttpClient(config);
+        AmazonHttpClient client2 = new AmazonHttpClient(new ClientConfiguration(config));
+        assertEquals(2, transport.getClientCount());
+        assertEquals(1, IdleConnectionReaper.size());
+
+        client1.shutdown();
+        client1.shutdown();
+        assertEquals(1, transport.getClientCount());
+
+        transport.shutdown();
+        transport.shutdown();
+        assertEquals(1, transport.getClientCount());
+        assertEquals(1, IdleConnectionReaper.size());
+
+        client2.shutdown();
+        assertEquals(0, transport.getClientCount());
+        assertEquals(0, IdleConnectionReaper.size());
+
+        try {
+            new AmazonHttpClient(config);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void shutdownWithoutClients() {
+        SharedHttpTransport transport = new SharedHttpTransport();
+        assertEquals(1, IdleConnectionReaper.size());
+        transport.shutdown();
+        assertEquals(0, IdleConnectionReaper.size());
+    }
+
+    @Test
+    public void relaxedHostnameVerificationRoutedApart() throws Exception {
+        SharedHttpTransport transport = new SharedHttpTransport();
+        HttpClient httpClient = transport.acquire();
+        SchemeRegistry schemeRegistry = httpClient.getConnectionManager().getSchemeRegistry();
+        Scheme https = schemeRegistry.get("https");
+
+        AmazonHttpClient client = new AmazonHttpClient(
+                new ClientConfiguration().withSharedHttpTransport(transport));
+        client.disableStrictHostnameVerification();
+        assertSame(https, schemeRegistry.get("https"));
+        assertNotNull(schemeRegistry.get(SharedHttpTransport.RELAXED_HTTPS_SCHEME));
+        assertEquals(1, IdleConnectionReaper.size());
+
+        HttpRoutePlanner routePlanner = ((AbstractHttpClient) httpClient).getRoutePlanner();
+        HttpHost target = new HttpHost("s3.amazonaws.com", 443, "https");
+        HttpRequest request = new HttpGet("https://s3.amazonaws.com/");
+        HttpContext context = new BasicHttpContext();
+        assertEquals("https", routePlanner.determineRoute(target, request, context)
+                .getTargetHost().getSchemeName());
+
+        context.setAttribute(SharedHttpTransport.RELAXED_HOSTNAME_VERIFICATION, Boolean.TRUE);
+        HttpRoute route = routePlanner.determineRoute(target, request, context);
+        assertEquals(SharedHttpTransport.RELAXED_HTTPS_SCHEME, route.getTargetHost().getSchemeName());
+        assertEquals("s3.amazonaws.com", route.getTargetHost().getHostName());
+        assertTrue(route.isSecure());
+
+        HttpHost plainTarget = new HttpHost("s3.amazonaws.com", 80, "http");
+        assertEquals("http", routePlanner.determineRoute(plainTarget, request, context)
+                .getTargetHost().getSchemeName());
+
+        client.shutdown();
+        transport.release();
+        transport.shutdown();
+        assertEquals(0, IdleConnectionReaper.size());
+    }
+}
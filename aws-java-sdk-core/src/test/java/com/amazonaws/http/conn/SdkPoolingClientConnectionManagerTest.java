@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.conn;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SdkPoolingClientConnectionManagerTest {
+    private static final HttpRoute LIMITED = new HttpRoute(new HttpHost("limited.example.com", 443, "https"));
+    private static final HttpRoute OTHER = new HttpRoute(new HttpHost("other.example.com", 443, "https"));
+
+    private SdkPoolingClientConnectionManager manager;
+
+    @Before
+    public void setup() {
+        manager = new SdkPoolingClientConnectionManager(SchemeRegistryFactory.createDefault(),
+                -1, TimeUnit.MILLISECONDS, Collections.singletonMap("limited.example.com", 1));
+        manager.setDefaultMaxPerRoute(5);
+        manager.setMaxTotal(10);
+    }
+
+    @After
+    public void tearDown() {
+        manager.shutdown();
+    }
+
+    @Test
+    public void hostLimitAppliedOnFirstRequest() throws Exception {
+        assertEquals(5, manager.getMaxPerRoute(LIMITED));
+        ManagedClientConnection conn = manager.requestConnection(LIMITED, null)
+                .getConnection(0, TimeUnit.MILLISECONDS);
+        assertEquals(1, manager.getMaxPerRoute(LIMITED));
+        assertEquals(5, manager.getMaxPerRoute(OTHER));
+        manager.releaseConnection(conn, 0, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void hostLimitsFixedWhenCreated() throws Exception {
+        Map<String, Integer> limits = new HashMap<String, Integer>();
+        SdkPoolingClientConnectionManager fixed = new SdkPoolingClientConnectionManager(
+                SchemeRegistryFactory.createDefault(), -1, TimeUnit.MILLISECONDS, limits);
+        fixed.setDefaultMaxPerRoute(5);
+        limits.put("other.example.com", 1);
+        try {
+            fixed.releaseConnection(fixed.requestConnection(OTHER, null)
+                    .getConnection(0, TimeUnit.MILLISECONDS), 0, TimeUnit.MILLISECONDS);
+            assertEquals(5, fixed.getMaxPerRoute(OTHER));
+        } finally {
+            fixed.shutdown();
+        }
+    }
+
+    @Test
+    public void leaseWaitsRecordedPerRoute() throws Exception {
+        assertNull(manager.getLeaseWaitHistogram(OTHER));
+        ManagedClientConnection conn = manager.requestConnection(OTHER, null)
+                .getConnection(0, TimeUnit.MILLISECONDS);
+
+        long[] histogram = manager.getLeaseWaitHistogram(OTHER);
+        assertEquals(SdkPoolingClientConnectionManager.LEASE_WAIT_BUCKET_MILLIS.length + 1, histogram.length);
+        assertEquals(1, sum(histogram));
+        assertEquals(1, sum(manager.getLeaseWaitHistogram()));
+        assertEquals(1, manager.getRouteStats().get(OTHER).getLeased());
+        manager.releaseConnection(conn, 0, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void statisticsReportCoversLiveManagers() throws Exception {
+        manager.releaseConnection(manager.requestConnection(OTHER, null)
+                .getConnection(0, TimeUnit.MILLISECONDS), 0, TimeUnit.MILLISECONDS);
+        assertTrue(SdkPoolingClientConnectionManager.getStatisticsReport().contains("other.example.com"));
+
+        manager.shutdown();
+        assertFalse(SdkPoolingClientConnectionManager.getStatisticsReport().contains("other.example.com"));
+    }
+
+    private static long sum(long[] counts) {
+        long sum = 0;
+        for (long count : counts)
+            sum += count;
+        return sum;
+    }
+}
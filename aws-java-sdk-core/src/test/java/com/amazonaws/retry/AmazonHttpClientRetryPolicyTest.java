@@ -151,6 +151,75 @@ public class AmazonHttpClientRetryPolicyTest extends RetryPolicyTestBase {
                         .getTimingInfo().getCounter(AWSRequestMetrics.Field.RequestCount.toString()).intValue());
     }
     
+    /**
+     * Tests that retries stop once the retry budget is exhausted, even if the
+     * max retry limit isn't reached.
+     */
+    @Test
+    public void testRetryBudgetExhausted() {
+        RetryBudget retryBudget = new RetryBudget(10, 5, 1);
+        clientConfiguration.setRetryPolicy(
+                new RetryPolicy(retryCondition,
+                                backoffStrategy,
+                                EXPECTED_RETRY_COUNT,
+                                false,
+                                retryBudget));
+        IOException simulatedIOException = new IOException("fake IOException");
+        injectMockHttpClient(testedClient, new ThrowingExceptionHttpClient(simulatedIOException));
+
+        ExecutionContext context = new ExecutionContext(true);
+        try {
+            testedClient.execute(getSampleRequestWithRepeatableContent(originalRequest),
+                                 null,
+                                 errorResponseHandler,
+                                 context);
+            Assert.fail("AmazonClientException is expected.");
+        } catch (AmazonClientException ace) {
+            Assert.assertTrue(simulatedIOException == ace.getCause());
+        }
+        // Only two retries fit in the budget
+        Assert.assertEquals(3,
+                context.getAwsRequestMetrics()
+                        .getTimingInfo().getCounter(AWSRequestMetrics.Field.RequestCount.toString()).intValue());
+        Assert.assertEquals(0, retryBudget.getAvailableTokens());
+        Assert.assertEquals(2, retryBudget.getRetryCount());
+        Assert.assertEquals(1, retryBudget.getRejectedRetryCount());
+    }
+
+    /**
+     * Tests that requests fail fast once the circuit of their endpoint opens.
+     */
+    @Test
+    public void testCircuitBreakerFailsFast() {
+        RetryBudget retryBudget = new RetryBudget(100, 1, 1,
+                new EndpointCircuitBreaker(2, 60 * 1000));
+        clientConfiguration.setRetryPolicy(
+                new RetryPolicy(retryCondition,
+                                backoffStrategy,
+                                EXPECTED_RETRY_COUNT,
+                                false,
+                                retryBudget));
+        injectMockHttpClient(testedClient, new ThrowingExceptionHttpClient(new IOException("fake IOException")));
+
+        ExecutionContext context = new ExecutionContext(true);
+        try {
+            testedClient.execute(getSampleRequestWithRepeatableContent(originalRequest),
+                                 null,
+                                 errorResponseHandler,
+                                 context);
+            Assert.fail("AmazonClientException is expected.");
+        } catch (AmazonClientException ace) {
+            Assert.assertNull(ace.getCause());
+        }
+        // The third attempt failed fast
+        Assert.assertEquals(3,
+                context.getAwsRequestMetrics()
+                        .getTimingInfo().getCounter(AWSRequestMetrics.Field.RequestCount.toString()).intValue());
+        Assert.assertEquals(1, retryBudget.getCircuitBreakerTripCount());
+        Assert.assertEquals(1, retryBudget.getFailedFastRequestCount());
+        Assert.assertEquals(1, retryBudget.getOpenCircuitCount());
+    }
+
     /**
      * Tests AmazonHttpClient's behavior upon simulated service exceptions when the
      * request payload is not repeatable.
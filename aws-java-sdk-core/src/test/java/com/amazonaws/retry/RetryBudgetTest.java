@@ -0,0 +1,87 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.retry;
+
+import java.net.URI;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RetryBudgetTest {
+    private static final URI ENDPOINT = URI.create("https://testsvc.us-east-1.amazonaws.com");
+    private static final URI OTHER_ENDPOINT = URI.create("https://testsvc.us-west-2.amazonaws.com");
+
+    @Test
+    public void testDrainAndRefill() {
+        RetryBudget budget = new RetryBudget(10, 5, 2);
+        Assert.assertTrue(budget.acquireRetry());
+        Assert.assertTrue(budget.acquireRetry());
+        Assert.assertFalse(budget.acquireRetry());
+        Assert.assertEquals(0, budget.getAvailableTokens());
+
+        budget.onSuccess(ENDPOINT);
+        budget.onSuccess(ENDPOINT);
+        Assert.assertEquals(4, budget.getAvailableTokens());
+        Assert.assertFalse(budget.acquireRetry());
+        budget.onSuccess(ENDPOINT);
+        Assert.assertTrue(budget.acquireRetry());
+
+        for (int i = 0; i < 10; i++)
+            budget.onSuccess(ENDPOINT);
+        Assert.assertEquals(10, budget.getAvailableTokens());
+        Assert.assertEquals(3, budget.getRetryCount());
+        Assert.assertEquals(2, budget.getRejectedRetryCount());
+    }
+
+    @Test
+    public void testCircuitOpensAfterConsecutiveFailures() {
+        EndpointCircuitBreaker breaker = new EndpointCircuitBreaker(3, 60 * 1000);
+        RetryBudget budget = new RetryBudget(10, 1, 1, breaker);
+
+        budget.onFailure(ENDPOINT);
+        budget.onFailure(ENDPOINT);
+        budget.onSuccess(ENDPOINT);
+        budget.onFailure(ENDPOINT);
+        budget.onFailure(ENDPOINT);
+        Assert.assertTrue(budget.allowRequest(ENDPOINT));
+
+        budget.onFailure(ENDPOINT);
+        Assert.assertFalse(budget.allowRequest(ENDPOINT));
+        Assert.assertTrue(budget.allowRequest(OTHER_ENDPOINT));
+        Assert.assertEquals(1, budget.getCircuitBreakerTripCount());
+        Assert.assertEquals(1, budget.getFailedFastRequestCount());
+        Assert.assertEquals(1, budget.getOpenCircuitCount());
+
+        budget.onSuccess(ENDPOINT);
+        Assert.assertTrue(budget.allowRequest(ENDPOINT));
+        Assert.assertEquals(0, budget.getOpenCircuitCount());
+    }
+
+    @Test
+    public void testSingleProbeOnceOpenIntervalElapsed() throws Exception {
+        EndpointCircuitBreaker breaker = new EndpointCircuitBreaker(1, 50);
+        breaker.onFailure(ENDPOINT);
+        Assert.assertFalse(breaker.allowRequest(ENDPOINT));
+
+        Thread.sleep(100);
+        Assert.assertTrue(breaker.allowRequest(ENDPOINT));
+        Assert.assertFalse(breaker.allowRequest(ENDPOINT));
+
+        // A failed probe keeps the circuit open
+        breaker.onFailure(ENDPOINT);
+        Assert.assertFalse(breaker.allowRequest(ENDPOINT));
+        Assert.assertEquals(1, breaker.getTripCount());
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.events.XMLEvent;
+
+import org.junit.Test;
+
+public class StaxUnmarshallerContextTest {
+
+    private static final String XML =
+            "<DescribeResponse xmlns=\"http://example.com/doc/\">"
+            + "<requestId>request-1</requestId>"
+            + "<items>"
+            + "<item id=\"i-1\" state=\"running\"><name>first</name><size>10</size></item>"
+            + "<item id=\"i-2\"><name>a &amp; b <![CDATA[<c>]]></name><size/></item>"
+            + "</items>"
+            + "<ResponseMetadata><RequestId>request-2</RequestId></ResponseMetadata>"
+            + "</DescribeResponse>";
+
+    private static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+
+    @Test
+    public void cursorContext_MatchesEventContext() throws Exception {
+        StaxUnmarshallerContext eventContext = new StaxUnmarshallerContext(
+                FACTORY.createXMLEventReader(new StringReader(XML)));
+        StaxUnmarshallerContext cursorContext = new StaxUnmarshallerContext(
+                FACTORY.createXMLStreamReader(new StringReader(XML)), null);
+
+        List<String> expected = unmarshall(eventContext);
+        assertEquals(expected, unmarshall(cursorContext));
+        assertTrue(expected.contains("name=a & b <c>"));
+        assertTrue(expected.contains("@state=running"));
+        assertTrue(expected.contains("name=first"));
+        assertEquals(eventContext.getMetadata(), cursorContext.getMetadata());
+    }
+
+    @Test
+    public void cursorContext_CollectsMetadata() throws Exception {
+        StaxUnmarshallerContext context = new StaxUnmarshallerContext(
+                FACTORY.createXMLStreamReader(new StringReader(XML)), null);
+        context.registerMetadataExpression("requestId", 2, "requestId");
+        context.registerMetadataExpression("ResponseMetadata/RequestId", 2, "RequestId");
+        unmarshall(context);
+
+        assertEquals("request-1", context.getMetadata().get("requestId"));
+        assertEquals("request-2", context.getMetadata().get("RequestId"));
+    }
+
+    @Test
+    public void testExpression_MatchesAtDepth() throws Exception {
+        StaxUnmarshallerContext context = new StaxUnmarshallerContext(
+                FACTORY.createXMLStreamReader(new StringReader(XML)), null);
+        List<String> read = new ArrayList<String>();
+        int targetDepth = 4;
+
+        while (true) {
+            XMLEvent xmlEvent = context.nextEvent();
+            if (xmlEvent.isEndDocument()) break;
+
+            if (xmlEvent.isAttribute() || xmlEvent.isStartElement()) {
+                if (context.testExpression("items/item/@id", targetDepth - 2)) {
+                    read.add(context.readText());
+                } else if (context.testExpression("name", targetDepth)) {
+                    read.add(context.readText());
+                } else if (context.testExpression("item/name", targetDepth)) {
+                    read.add("wrong depth");
+                } else if (context.testExpression("ResponseMetadata/RequestId", 2)) {
+                    read.add(context.readText());
+                }
+            }
+        }
+        assertEquals(Arrays.asList("i-1", "first", "i-2", "a & b <c>", "request-2"), read);
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void deprecatedStack_TracksElements() throws Exception {
+        StaxUnmarshallerContext context = new StaxUnmarshallerContext(
+                FACTORY.createXMLStreamReader(new StringReader(XML)), null);
+        while (true) {
+            XMLEvent xmlEvent = context.nextEvent();
+            if (xmlEvent.isEndDocument()) break;
+            assertEquals(context.getCurrentDepth(), context.stack.size());
+            if (context.testExpression("item/name", 4)) {
+                assertEquals(Arrays.asList("DescribeResponse", "items", "item", "name"),
+                        context.stack);
+            }
+        }
+        assertTrue(context.stack.isEmpty());
+    }
+
+    /**
+     * Walks the document the way generated unmarshallers do, and returns what
+     * was read.
+     */
+    private static List<String> unmarshall(StaxUnmarshallerContext context) throws Exception {
+        context.registerMetadataExpression("requestId", 2, "requestId");
+        context.registerMetadataExpression("ResponseMetadata/RequestId", 2, "RequestId");
+
+        List<String> read = new ArrayList<String>();
+        assertTrue(context.isStartOfDocument());
+
+        while (true) {
+            XMLEvent xmlEvent = context.nextEvent();
+            if (xmlEvent.isEndDocument()) return read;
+
+            if (xmlEvent.isAttribute() || xmlEvent.isStartElement()) {
+                if (context.testExpression("item/@id")) {
+                    read.add("@id=" + context.readText());
+                } else if (context.testExpression("item/@state")) {
+                    read.add("@state=" + context.readText());
+                } else if (context.testExpression("item/name")) {
+                    read.add("name=" + context.readText());
+                } else if (context.testExpression("item/size")) {
+                    read.add("size=" + context.readText());
+                } else if (xmlEvent.isStartElement()) {
+                    read.add("<" + context.getCurrentDepth());
+                }
+            } else if (xmlEvent.isEndElement()) {
+                read.add(">" + context.getCurrentDepth());
+            }
+        }
+    }
+}
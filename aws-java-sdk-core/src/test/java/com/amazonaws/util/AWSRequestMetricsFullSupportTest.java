@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.amazonaws.metrics.SimpleMetricType;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+
+public class AWSRequestMetricsFullSupportTest {
+
+    @Test
+    public void fieldEvents() {
+        AWSRequestMetricsFullSupport metrics = new AWSRequestMetricsFullSupport();
+        for (int i = 0; i < 20; i++) {
+            metrics.startEvent(Field.HttpRequestTime);
+            metrics.endEvent(Field.HttpRequestTime);
+        }
+        metrics.startEvent("RequestSigningTime");
+        metrics.endEvent(Field.RequestSigningTime);
+
+        TimingInfo ti = metrics.getTimingInfo();
+        List<TimingInfo> timings = ti.getAllSubMeasurements(Field.HttpRequestTime.name());
+        assertEquals(20, timings.size());
+        for (TimingInfo timing : timings) {
+            assertTrue(timing.getEndTimeNano() >= timing.getStartTimeNano());
+        }
+        assertSame(timings.get(0), ti.getSubMeasurement(Field.HttpRequestTime.name()));
+        assertSame(timings.get(19), ti.getLastSubMeasurement(Field.HttpRequestTime.name()));
+        assertNull(ti.getSubMeasurement(Field.HttpRequestTime.name(), 20));
+        assertNotNull(ti.getSubMeasurement(Field.RequestSigningTime.name()));
+        assertNull(ti.getAllSubMeasurements(Field.ResponseProcessingTime.name()));
+        assertEquals(2, ti.getSubMeasurementsByName().size());
+    }
+
+    @Test
+    public void endEventNeverStarted() {
+        AWSRequestMetricsFullSupport metrics = new AWSRequestMetricsFullSupport();
+        metrics.endEvent(Field.HttpRequestTime);
+        metrics.endEvent("Other");
+        assertTrue(metrics.getTimingInfo().getSubMeasurementsByName().isEmpty());
+    }
+
+    @Test
+    public void otherEvents() {
+        AWSRequestMetricsFullSupport metrics = new AWSRequestMetricsFullSupport();
+        SimpleMetricType other = new SimpleMetricType() {
+            @Override
+            public String name() {
+                return "Other";
+            }
+        };
+        metrics.startEvent(other);
+        metrics.endEvent("Other");
+        metrics.incrementCounter(other);
+        metrics.incrementCounter(other);
+
+        TimingInfo ti = metrics.getTimingInfo();
+        assertEquals(1, ti.getAllSubMeasurements("Other").size());
+        assertEquals(2, ti.getCounter("Other").intValue());
+        assertEquals(2, ti.getAllCounters().get("Other").intValue());
+    }
+
+    @Test
+    public void counters() {
+        AWSRequestMetricsFullSupport metrics = new AWSRequestMetricsFullSupport();
+        metrics.incrementCounter(Field.RequestCount);
+        metrics.incrementCounter(Field.RequestCount.name());
+        metrics.setCounter(Field.HttpClientPoolLeasedCount, 7);
+        metrics.setCounter("Other", 3);
+
+        TimingInfo ti = metrics.getTimingInfo();
+        assertEquals(2, ti.getCounter(Field.RequestCount.name()).intValue());
+        assertEquals(7, ti.getCounter(Field.HttpClientPoolLeasedCount.name()).intValue());
+        assertNull(ti.getCounter(Field.HttpClientRetryCount.name()));
+        assertEquals(3, ti.getAllCounters().size());
+        assertEquals(3, ti.getAllCounters().get("Other").intValue());
+    }
+
+    @Test
+    public void properties() {
+        AWSRequestMetricsFullSupport metrics = new AWSRequestMetricsFullSupport();
+        for (int i = 0; i < 10; i++) {
+            metrics.addProperty(Field.StatusCode, i);
+        }
+        metrics.addProperty(Field.ServiceName, "Amazon S3");
+        metrics.addProperty("Other", "value");
+
+        assertEquals(Arrays.<Object>asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9),
+                metrics.getProperty(Field.StatusCode));
+        assertEquals(Arrays.<Object>asList("Amazon S3"),
+                metrics.getProperty(Field.ServiceName.name()));
+        assertEquals(Arrays.<Object>asList("value"), metrics.getProperty("Other"));
+        assertNull(metrics.getProperty(Field.AWSRequestID));
+    }
+}
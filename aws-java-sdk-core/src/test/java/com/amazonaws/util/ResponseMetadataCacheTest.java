@@ -78,6 +78,46 @@ public class ResponseMetadataCacheTest {
         assertNull(cache.get(key));
     }
 
+    /** Tests that the newest metadata added for a key is returned. */
+    @Test
+    public void testNewestEntryWins() {
+        ResponseMetadataCache cache = new ResponseMetadataCache(3);
+
+        AmazonWebServiceRequest key = new TestRequest();
+        ResponseMetadata metadata1 = newResponseMetadata();
+        ResponseMetadata metadata2 = newResponseMetadata();
+        cache.add(key, metadata1);
+        cache.add(key, metadata2);
+        assertEquals(metadata2, cache.get(key));
+    }
+
+    /** Tests that concurrent additions keep the most recent entries. */
+    @Test
+    public void testConcurrentAdd() throws Exception {
+        final ResponseMetadataCache cache = new ResponseMetadataCache(50);
+        final int threads = 8;
+        final int additions = 10000;
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread() {
+                @Override
+                public void run() {
+                    ResponseMetadata metadata = newResponseMetadata();
+                    for (int j = 0; j < additions; j++)
+                        cache.add(new TestRequest(), metadata);
+                }
+            };
+            workers[i].start();
+        }
+        for (Thread worker : workers)
+            worker.join();
+
+        AmazonWebServiceRequest key = new TestRequest();
+        ResponseMetadata metadata = newResponseMetadata();
+        cache.add(key, metadata);
+        assertEquals(metadata, cache.get(key));
+    }
+
     private class TestRequest extends AmazonWebServiceRequest {}
 
     private ResponseMetadata newResponseMetadata() {
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.util.json;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+public class JSONWriterTest {
+
+    @Test
+    public void stringsQuotedAsByJSONObject() throws Exception {
+        StringBuilder all = new StringBuilder();
+        for (char c = 0; c < 0x2100; c++) {
+            all.append(c);
+        }
+        String[] values = {"", "plain", "</script>", "a/b", "\"quoted\" \\ back", all.toString()};
+        for (String value : values) {
+            StringWriter sw = new StringWriter();
+            new JSONWriter(sw).array().value(value).endArray();
+            assertEquals("[" + JSONObject.quote(value) + "]", sw.toString());
+
+            sw = new StringWriter();
+            new JSONWriter(sw).object().key(value).value(1).endObject();
+            assertEquals("{" + JSONObject.quote(value) + ":1}", sw.toString());
+        }
+    }
+
+    @Test
+    public void nestedStructure() throws Exception {
+        StringWriter sw = new StringWriter();
+        new JSONWriter(sw).object()
+            .key("a").array().value(1).value(true).value((Object) null).endArray()
+            .key("b").object().key("a").value("x").endObject()
+            .key("c").object().key("a").value(2.5).endObject()
+            .endObject();
+        assertEquals("{\"a\":[1,true,null],\"b\":{\"a\":\"x\"},\"c\":{\"a\":2.5}}", sw.toString());
+    }
+
+    @Test(expected = JSONException.class)
+    public void duplicateKey() throws Exception {
+        new JSONWriter(new StringWriter()).object()
+            .key("a").object().key("b").value(1).endObject()
+            .key("a");
+    }
+}
@@ -29,6 +29,8 @@ import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -184,6 +186,12 @@ public class DynamoDBMapper {
 
     /** The max number of items allowed in a BatchWrite request */
     static final int MAX_ITEMS_PER_BATCH = 25;
+
+    /** The default max number of concurrent BatchWrite requests of an asynchronous batch write */
+    static final int DEFAULT_MAX_IN_FLIGHT_BATCH_WRITES = 4;
+
+    /** The default max number of pending pages per segment of a parallel scan iterator */
+    static final int DEFAULT_MAX_PENDING_SCAN_PAGES = 2;
     /**
      * This retry count is applicable only when every batch get item request
      * results in no data retrieved from server and the un processed keys is
@@ -1519,11 +1527,158 @@ public class DynamoDBMapper {
 
         List<FailedBatch> totalFailedBatches = new LinkedList<FailedBatch>();
 
+        List<ValueUpdate> inMemoryUpdates = new LinkedList<ValueUpdate>();
+        Map<String, List<WriteRequest>> requestItems =
+                toWriteRequests(objectsToWrite, objectsToDelete, config, inMemoryUpdates);
+
+        // Break into chunks of 25 items and make service requests to DynamoDB
+        while ( !requestItems.isEmpty() ) {
+
+            HashMap<String, List<WriteRequest>> batch =
+                    new HashMap<String, List<WriteRequest>>();
+
+            int i = 0;
+
+            Iterator<Entry<String, List<WriteRequest>>> tableIter = requestItems.entrySet().iterator();
+            while ( tableIter.hasNext() && i < MAX_ITEMS_PER_BATCH ) {
+
+                Entry<String, List<WriteRequest>> tableRequest = tableIter.next();
+
+                batch.put(tableRequest.getKey(), new LinkedList<WriteRequest>());
+                Iterator<WriteRequest> writeRequestIter = tableRequest.getValue().iterator();
+
+                while ( writeRequestIter.hasNext() && i++ < MAX_ITEMS_PER_BATCH ) {
+                    WriteRequest writeRequest = writeRequestIter.next();
+                    batch.get(tableRequest.getKey()).add(writeRequest);
+                    writeRequestIter.remove();
+                }
+
+                // If we've processed all the write requests for this table,
+                // remove it from the parent iterator.
+                if ( !writeRequestIter.hasNext() ) {
+                    tableIter.remove();
+                }
+            }
+
+            List<FailedBatch> failedBatches = writeOneBatch(batch);
+            if (failedBatches != null) {
+                totalFailedBatches.addAll(failedBatches);
+
+                // If contains throttling exception, we do a backoff
+                if (containsThrottlingException(failedBatches)) {
+                    try {
+                        Thread.sleep(1000 * 2);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new AmazonClientException(e.getMessage(), e);
+                    }
+                }
+            }
+        }
+
+
+
+        // Once the entire batch is processed, update assigned keys in memory
+        for ( ValueUpdate update : inMemoryUpdates ) {
+            update.apply();
+        }
+
+        return totalFailedBatches;
+    }
+
+    /**
+     * Asynchronously saves and deletes the objects given using concurrent
+     * calls to the {@link AmazonDynamoDB#batchWriteItem(BatchWriteItemRequest)}
+     * API, with at most {@value #DEFAULT_MAX_IN_FLIGHT_BATCH_WRITES} requests
+     * in flight at once.
+     *
+     * @see DynamoDBMapper#batchWriteAsync(List, List, DynamoDBMapperConfig,
+     *      ExecutorService, int)
+     */
+    public Future<List<FailedBatch>> batchWriteAsync(
+            List<? extends Object> objectsToWrite,
+            List<? extends Object> objectsToDelete,
+            ExecutorService executor) {
+        return batchWriteAsync(objectsToWrite, objectsToDelete, this.config,
+                executor, DEFAULT_MAX_IN_FLIGHT_BATCH_WRITES);
+    }
+
+    /**
+     * Asynchronously saves and deletes the objects given using concurrent
+     * calls to the {@link AmazonDynamoDB#batchWriteItem(BatchWriteItemRequest)}
+     * API. This is a non-blocking alternative to
+     * {@link #batchWrite(List, List, DynamoDBMapperConfig)}.
+     * <p>
+     * Up to <code>maxInFlightRequests</code> requests are sent concurrently
+     * on the given executor. Unprocessed items returned by DynamoDB are
+     * written by later requests, after an exponential backoff with jitter
+     * that only applies to the table the items belong to, so that a throttled
+     * table does not hold up the writes to other tables.
+     * <p>
+     * The objects are converted before this method returns; the values of
+     * auto-generated keys are set on the objects once all the items have been
+     * processed, before the returned future completes.
+     *
+     * @param objectsToWrite
+     *            A list of objects to save to DynamoDB. <b>No version checks
+     *            are performed</b>, as required by the
+     *            {@link AmazonDynamoDB#batchWriteItem(BatchWriteItemRequest)}
+     *            API.
+     * @param objectsToDelete
+     *            A list of objects to delete from DynamoDB. <b>No version
+     *            checks are performed</b>, as required by the
+     *            {@link AmazonDynamoDB#batchWriteItem(BatchWriteItemRequest)}
+     *            API.
+     * @param config
+     *            Only {@link DynamoDBMapperConfig#getTableNameOverride()} is
+     *            considered, as in
+     *            {@link #batchWrite(List, List, DynamoDBMapperConfig)}.
+     * @param executor
+     *            The executor used to send the requests.
+     * @param maxInFlightRequests
+     *            The maximum number of requests in flight at once.
+     * @return A future of the list of failed batches, which includes the
+     *         unprocessed items and the exceptions causing the failure.
+     *         Cancelling the future stops sending new requests.
+     */
+    public Future<List<FailedBatch>> batchWriteAsync(
+            List<? extends Object> objectsToWrite,
+            List<? extends Object> objectsToDelete,
+            DynamoDBMapperConfig config, ExecutorService executor,
+            int maxInFlightRequests) {
+        config = mergeConfig(config);
+
+        final List<ValueUpdate> inMemoryUpdates = new LinkedList<ValueUpdate>();
+        Map<String, List<WriteRequest>> requestItems =
+                toWriteRequests(objectsToWrite, objectsToDelete, config, inMemoryUpdates);
+
+        return new PipelinedBatchWriter(db, executor, maxInFlightRequests,
+                requestItems, new Runnable() {
+                    @Override
+                    public void run() {
+                        // Once the entire batch is processed, update assigned keys in memory
+                        for ( ValueUpdate update : inMemoryUpdates ) {
+                            update.apply();
+                        }
+                    }
+                }).start();
+    }
+
+    /**
+     * Converts the objects to save and delete into the write requests of a
+     * batch write, grouped by table name. The values of auto-generated keys
+     * are recorded in the given list, to be applied to the objects once the
+     * batch write has been processed.
+     */
+    private Map<String, List<WriteRequest>> toWriteRequests(
+            List<? extends Object> objectsToWrite,
+            List<? extends Object> objectsToDelete,
+            DynamoDBMapperConfig config,
+            List<ValueUpdate> inMemoryUpdates) {
         HashMap<String, List<WriteRequest>> requestItems = new HashMap<String, List<WriteRequest>>();
 
         ItemConverter converter = getConverter(config);
 
-        List<ValueUpdate> inMemoryUpdates = new LinkedList<ValueUpdate>();
         for ( Object toWrite : objectsToWrite ) {
             Class<?> clazz = toWrite.getClass();
             String tableName = getTableName(clazz, toWrite, config);
@@ -1578,59 +1733,7 @@ public class DynamoDBMapper {
                     new WriteRequest().withDeleteRequest(new DeleteRequest().withKey(key)));
         }
 
-        // Break into chunks of 25 items and make service requests to DynamoDB
-        while ( !requestItems.isEmpty() ) {
-
-            HashMap<String, List<WriteRequest>> batch =
-                    new HashMap<String, List<WriteRequest>>();
-
-            int i = 0;
-
-            Iterator<Entry<String, List<WriteRequest>>> tableIter = requestItems.entrySet().iterator();
-            while ( tableIter.hasNext() && i < MAX_ITEMS_PER_BATCH ) {
-
-                Entry<String, List<WriteRequest>> tableRequest = tableIter.next();
-
-                batch.put(tableRequest.getKey(), new LinkedList<WriteRequest>());
-                Iterator<WriteRequest> writeRequestIter = tableRequest.getValue().iterator();
-
-                while ( writeRequestIter.hasNext() && i++ < MAX_ITEMS_PER_BATCH ) {
-                    WriteRequest writeRequest = writeRequestIter.next();
-                    batch.get(tableRequest.getKey()).add(writeRequest);
-                    writeRequestIter.remove();
-                }
-
-                // If we've processed all the write requests for this table,
-                // remove it from the parent iterator.
-                if ( !writeRequestIter.hasNext() ) {
-                    tableIter.remove();
-                }
-            }
-
-            List<FailedBatch> failedBatches = writeOneBatch(batch);
-            if (failedBatches != null) {
-                totalFailedBatches.addAll(failedBatches);
-
-                // If contains throttling exception, we do a backoff
-                if (containsThrottlingException(failedBatches)) {
-                    try {
-                        Thread.sleep(1000 * 2);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        throw new AmazonClientException(e.getMessage(), e);
-                    }
-                }
-            }
-        }
-
-
-
-        // Once the entire batch is processed, update assigned keys in memory
-        for ( ValueUpdate update : inMemoryUpdates ) {
-            update.apply();
-        }
-
-        return totalFailedBatches;
+        return requestItems;
     }
 
     /**
@@ -2117,6 +2220,72 @@ public class DynamoDBMapper {
         return new PaginatedParallelScanList<T>(this, clazz, db, parallelScanTask, config.getPaginationLoadingStrategy(), config);
     }
 
+    /**
+     * Scans through an Amazon DynamoDB table on logically partitioned segments
+     * in parallel, and returns an iterator over the matching results, using
+     * the default configuration and allowing up to
+     * {@value #DEFAULT_MAX_PENDING_SCAN_PAGES} pending pages per segment.
+     *
+     * @see DynamoDBMapper#parallelScanIterator(Class, DynamoDBScanExpression,
+     *      int, DynamoDBMapperConfig, ExecutorService, int)
+     */
+    public <T> ParallelScanIterator<T> parallelScanIterator(Class<T> clazz,
+            DynamoDBScanExpression scanExpression, int totalSegments,
+            ExecutorService executor) {
+        return parallelScanIterator(clazz, scanExpression, totalSegments,
+                config, executor, totalSegments * DEFAULT_MAX_PENDING_SCAN_PAGES);
+    }
+
+    /**
+     * Scans through an Amazon DynamoDB table on logically partitioned segments
+     * in parallel, and returns an iterator over the matching results. Unlike
+     * {@link #parallelScan(Class, DynamoDBScanExpression, int, DynamoDBMapperConfig)},
+     * each segment is scanned page by page independently of the others, on
+     * the given executor, and the items of each page can be consumed as soon
+     * as that page has been returned, without waiting for the other segments.
+     * The results are therefore returned in no particular order.
+     * <p>
+     * The number of pages requested but not yet consumed is limited to
+     * {@code maxPendingPages}; once the limit is reached, the scan of the
+     * segments is suspended until the consumer catches up. Suspended segments
+     * do not hold a thread of the executor. Callers that stop iterating before
+     * the end of the scan should call {@link ParallelScanIterator#close()}.
+     *
+     * @param <T>
+     *            The type of the objects being returned.
+     * @param clazz
+     *            The class annotated with DynamoDB annotations describing how
+     *            to store the object data in Amazon DynamoDB.
+     * @param scanExpression
+     *            Details on how to run the scan, including any filters to apply
+     *            to limit results.
+     * @param totalSegments
+     *            Number of total parallel scan segments.
+     *            <b>Range: </b>1 - 4096
+     * @param config
+     *            The configuration to use for this scan, which overrides the
+     *            default provided at object construction.
+     * @param executor
+     *            The executor used to scan the segments.
+     * @param maxPendingPages
+     *            The maximum number of pages requested but not yet consumed.
+     * @return An iterator over the objects constructed from the results of the
+     *         scan operation.
+     */
+    public <T> ParallelScanIterator<T> parallelScanIterator(Class<T> clazz,
+            DynamoDBScanExpression scanExpression, int totalSegments,
+            DynamoDBMapperConfig config, ExecutorService executor,
+            int maxPendingPages) {
+        if (executor == null) {
+            throw new IllegalArgumentException("The executor must not be null");
+        }
+        config = mergeConfig(config);
+
+        List<ScanRequest> parallelScanRequests = createParallelScanRequestsFromExpression(clazz, scanExpression, totalSegments, config);
+        return new ParallelScanIterator<T>(this, clazz, db, parallelScanRequests,
+                executor, maxPendingPages, config);
+    }
+
     /**
      * Scans through an Amazon DynamoDB table and returns a single page of matching
      * results. The table to scan is determined by looking at the annotations on
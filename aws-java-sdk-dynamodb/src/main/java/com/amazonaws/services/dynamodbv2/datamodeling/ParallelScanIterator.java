@@ -0,0 +1,269 @@
+/*
+ * Copyright 2015 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+
+/**
+ * An iterator over the results of a parallel scan, where each segment is
+ * scanned page by page independently of the others, and the items of a page
+ * are available to the consumer as soon as the page has been returned,
+ * whichever segment it belongs to.
+ * <p>
+ * The segments are scanned on a caller-supplied executor. The number of pages
+ * that have been requested but not yet consumed is bounded: once the limit is
+ * reached, segments are parked, without holding an executor thread, until the
+ * consumer catches up. Items are therefore not returned in any particular
+ * order.
+ * <p>
+ * An exception thrown while scanning a segment stops the scan, and is
+ * rethrown to the consumer by {@link #hasNext()} or {@link #next()} once the
+ * pages returned before the failure have been consumed. Consumers that stop
+ * iterating before the end of the scan should call {@link #close()}.
+ *
+ * @param <T>
+ *            The type of the objects being returned.
+ */
+public class ParallelScanIterator<T> implements Iterator<T> {
+
+    /** Marks the end of the scan in the queue of pages. */
+    private static final Object END_OF_SCAN = new Object();
+
+    private final DynamoDBMapper mapper;
+    private final Class<T> clazz;
+    private final AmazonDynamoDB dynamo;
+    private final Executor executor;
+    private final DynamoDBMapperConfig config;
+
+    /**
+     * The marshalled pages ready to be consumed, followed by either
+     * {@link #END_OF_SCAN} or the exception that stopped the scan.
+     */
+    private final BlockingQueue<Object> pages = new LinkedBlockingQueue<Object>();
+
+    /** The segments waiting for a page to be consumed before they resume. */
+    private final LinkedList<SegmentScan> parkedSegments = new LinkedList<SegmentScan>();
+
+    /**
+     * The number of pages that may still be requested before the segments
+     * have to wait for the consumer.
+     */
+    private int availablePages;
+
+    /** The number of segments that have not been scanned to the end. */
+    private int remainingSegments;
+
+    private volatile boolean closed;
+
+    private Iterator<T> currentPage = Collections.<T>emptyList().iterator();
+    private boolean endOfScan;
+
+    ParallelScanIterator(DynamoDBMapper mapper, Class<T> clazz,
+            AmazonDynamoDB dynamo, List<ScanRequest> parallelScanRequests,
+            Executor executor, int maxPendingPages, DynamoDBMapperConfig config) {
+        if (maxPendingPages < 1) {
+            throw new IllegalArgumentException(
+                    "The maximum number of pending pages must be positive");
+        }
+        this.mapper = mapper;
+        this.clazz = clazz;
+        this.dynamo = dynamo;
+        this.executor = executor;
+        this.config = config;
+        this.availablePages = maxPendingPages;
+        this.remainingSegments = parallelScanRequests.size();
+
+        List<SegmentScan> toStart = new LinkedList<SegmentScan>();
+        synchronized (this) {
+            for (ScanRequest scanRequest : parallelScanRequests) {
+                SegmentScan segment = new SegmentScan(scanRequest);
+                if (availablePages > 0) {
+                    availablePages--;
+                    toStart.add(segment);
+                } else {
+                    parkedSegments.add(segment);
+                }
+            }
+        }
+        if (remainingSegments == 0)
+            pages.add(END_OF_SCAN);
+        for (SegmentScan segment : toStart) {
+            submit(segment);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!currentPage.hasNext()) {
+            if (endOfScan)
+                return false;
+            Object page;
+            try {
+                page = pages.take();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new AmazonClientException("Parallel scan interrupted by other thread.", ie);
+            }
+            if (page == END_OF_SCAN) {
+                endOfScan = true;
+                return false;
+            } else if (page instanceof RuntimeException) {
+                endOfScan = true;
+                throw (RuntimeException) page;
+            }
+            @SuppressWarnings("unchecked")
+            List<T> items = (List<T>) page;
+            currentPage = items.iterator();
+            pageConsumed();
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        return currentPage.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException(
+                "The results of a parallel scan cannot be modified");
+    }
+
+    /**
+     * Stops the scan; the pages being fetched are discarded, and no further
+     * page is requested.
+     */
+    public void close() {
+        closed = true;
+        synchronized (this) {
+            parkedSegments.clear();
+        }
+    }
+
+    /**
+     * Returns the permit of a consumed page, resuming a parked segment if any.
+     */
+    private void pageConsumed() {
+        SegmentScan segment;
+        synchronized (this) {
+            segment = parkedSegments.poll();
+            if (segment == null) {
+                availablePages++;
+                return;
+            }
+        }
+        submit(segment);
+    }
+
+    /**
+     * Schedules the next page of the given segment if a permit is available,
+     * or parks the segment otherwise.
+     */
+    private void scheduleNextPage(SegmentScan segment) {
+        synchronized (this) {
+            if (closed)
+                return;
+            if (availablePages == 0) {
+                parkedSegments.add(segment);
+                return;
+            }
+            availablePages--;
+        }
+        submit(segment);
+    }
+
+    private void submit(SegmentScan segment) {
+        try {
+            executor.execute(segment);
+        } catch (RejectedExecutionException e) {
+            fail(new AmazonClientException(
+                    "Unable to schedule the parallel scan on segment #"
+                            + segment.scanRequest.getSegment(), e));
+        }
+    }
+
+    private void segmentCompleted() {
+        boolean done;
+        synchronized (this) {
+            done = --remainingSegments == 0;
+        }
+        if (done)
+            pages.add(END_OF_SCAN);
+    }
+
+    private void fail(RuntimeException e) {
+        if (!closed) {
+            close();
+            pages.add(e);
+        }
+    }
+
+    /**
+     * Scans one page of a segment each time it is run.
+     */
+    private final class SegmentScan implements Runnable {
+        private final ScanRequest scanRequest;
+
+        private SegmentScan(ScanRequest scanRequest) {
+            this.scanRequest = scanRequest;
+        }
+
+        @Override
+        public void run() {
+            if (closed)
+                return;
+            List<T> items;
+            ScanResult scanResult;
+            try {
+                scanResult = dynamo.scan(DynamoDBMapper.applyUserAgent(scanRequest));
+                items = mapper.marshallIntoObjects(mapper.toParameters(
+                        scanResult.getItems(), clazz,
+                        scanRequest.getTableName(), config));
+            } catch (AmazonClientException e) {
+                fail(e);
+                return;
+            } catch (RuntimeException e) {
+                fail(new AmazonClientException("Internal error during the scan on segment #"
+                        + scanRequest.getSegment() + ".", e));
+                return;
+            }
+            if (closed)
+                return;
+            pages.add(items);
+            if (scanResult.getLastEvaluatedKey() == null) {
+                segmentCompleted();
+            } else {
+                scanRequest.setExclusiveStartKey(scanResult.getLastEvaluatedKey());
+                scheduleNextPage(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,411 @@
+/*
+ * Copyright 2015 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import static com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.MAX_BACKOFF_IN_MILLISECONDS;
+import static com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.MAX_ITEMS_PER_BATCH;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+
+/**
+ * Writes a set of items with several BatchWriteItem requests in flight at
+ * once, without blocking the calling thread.
+ * <p>
+ * Items are queued per table, and each request is filled with up to 25 items
+ * taken from the tables that are not currently backing off. Unprocessed items
+ * returned by DynamoDB are put back at the head of their table queue and sent
+ * with later requests, and the table is backed off exponentially with full
+ * jitter; a throttled table therefore never holds up the writes to the other
+ * tables. Throttling errors are handled the same way up to
+ * {@link #MAX_THROTTLING_RETRIES} consecutive times for a table, after which
+ * the items are reported as a {@link FailedBatch}.
+ */
+final class PipelinedBatchWriter {
+
+    /** The maximum number of consecutive throttling errors for a table. */
+    static final int MAX_THROTTLING_RETRIES = 10;
+
+    /** The base delay of the exponential backoff of a table. */
+    private static final long BASE_BACKOFF_IN_MILLISECONDS = 50;
+
+    /**
+     * Timer used to resume the dispatching of requests once a table backoff
+     * has elapsed; no request is ever sent from this thread.
+     */
+    private static final ScheduledExecutorService timer =
+            new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "dynamodb-mapper-batch-write-timer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final AmazonDynamoDB db;
+    private final ExecutorService executor;
+    private final int maxInFlightRequests;
+    private final Runnable completionHook;
+    private final Random random = new Random();
+
+    /** The items left to write, per table. */
+    private final Map<String, TableQueue> tables = new LinkedHashMap<String, TableQueue>();
+
+    /**
+     * Batches that must be sent as they are, such as the halves of a batch
+     * that was too large.
+     */
+    private final LinkedList<Map<String, List<WriteRequest>>> splitBatches =
+            new LinkedList<Map<String, List<WriteRequest>>>();
+
+    private final List<FailedBatch> failedBatches = new LinkedList<FailedBatch>();
+
+    private final FutureTask<List<FailedBatch>> future =
+            new FutureTask<List<FailedBatch>>(new Callable<List<FailedBatch>>() {
+                @Override
+                public List<FailedBatch> call() {
+                    // Run as part of the future so that a failure of the hook
+                    // fails the future rather than leaving it incomplete
+                    if (completionHook != null)
+                        completionHook.run();
+                    synchronized (PipelinedBatchWriter.this) {
+                        return new ArrayList<FailedBatch>(failedBatches);
+                    }
+                }
+            });
+
+    private int inFlightRequests;
+    /** The pending dispatch of the timer, if any. */
+    private ScheduledFuture<?> timerTask;
+    /** The time at which the pending dispatch of the timer is due. */
+    private long timerTime;
+    private boolean completed;
+
+    /**
+     * @param requestItems
+     *            the items to write, grouped by table name.
+     * @param completionHook
+     *            invoked once all the items have been processed, before the
+     *            returned future completes, which fails with the exception
+     *            thrown by the hook if any; may be null.
+     */
+    PipelinedBatchWriter(AmazonDynamoDB db, ExecutorService executor,
+            int maxInFlightRequests, Map<String, List<WriteRequest>> requestItems,
+            Runnable completionHook) {
+        if (maxInFlightRequests < 1) {
+            throw new IllegalArgumentException(
+                    "The maximum number of in-flight requests must be positive");
+        }
+        this.db = db;
+        this.executor = executor;
+        this.maxInFlightRequests = maxInFlightRequests;
+        this.completionHook = completionHook;
+        for (Entry<String, List<WriteRequest>> entry : requestItems.entrySet()) {
+            TableQueue queue = new TableQueue();
+            queue.items.addAll(entry.getValue());
+            tables.put(entry.getKey(), queue);
+        }
+    }
+
+    /**
+     * Starts writing the items, and returns a future that completes with the
+     * batches that could not be written once all the items have been
+     * processed. Cancelling the future stops sending new requests.
+     */
+    Future<List<FailedBatch>> start() {
+        dispatch();
+        return future;
+    }
+
+    /**
+     * Sends as many requests as allowed, and completes the future if there
+     * is nothing left to write.
+     */
+    private void dispatch() {
+        List<Map<String, List<WriteRequest>>> toSend =
+                new LinkedList<Map<String, List<WriteRequest>>>();
+        boolean done;
+        synchronized (this) {
+            if (completed)
+                return;
+            if (future.isCancelled()) {
+                clearPendingItems();
+            }
+            long now = System.currentTimeMillis();
+            while (inFlightRequests < maxInFlightRequests) {
+                Map<String, List<WriteRequest>> batch = nextBatch(now);
+                if (batch == null)
+                    break;
+                inFlightRequests++;
+                toSend.add(batch);
+            }
+            if (toSend.isEmpty() && inFlightRequests == 0) {
+                long nextEligibleTime = nextEligibleTime();
+                if (nextEligibleTime < 0) {
+                    completed = true;
+                } else {
+                    scheduleDispatch(nextEligibleTime, now);
+                }
+            } else if (inFlightRequests < maxInFlightRequests) {
+                long nextEligibleTime = nextEligibleTime();
+                if (nextEligibleTime >= 0)
+                    scheduleDispatch(nextEligibleTime, now);
+            }
+            done = completed;
+        }
+        for (Map<String, List<WriteRequest>> batch : toSend) {
+            send(batch);
+        }
+        if (done)
+            future.run();
+    }
+
+    /**
+     * Returns the next batch of at most 25 items from the tables that are
+     * not backing off; or null if there is no such item.
+     */
+    private Map<String, List<WriteRequest>> nextBatch(long now) {
+        if (!splitBatches.isEmpty())
+            return splitBatches.removeFirst();
+        Map<String, List<WriteRequest>> batch = null;
+        int count = 0;
+        for (Entry<String, TableQueue> entry : tables.entrySet()) {
+            TableQueue queue = entry.getValue();
+            if (queue.items.isEmpty() || queue.eligibleTime > now)
+                continue;
+            List<WriteRequest> tableItems = new LinkedList<WriteRequest>();
+            while (!queue.items.isEmpty() && count < MAX_ITEMS_PER_BATCH) {
+                tableItems.add(queue.items.removeFirst());
+                count++;
+            }
+            if (batch == null)
+                batch = new HashMap<String, List<WriteRequest>>();
+            batch.put(entry.getKey(), tableItems);
+            if (count == MAX_ITEMS_PER_BATCH)
+                break;
+        }
+        return batch;
+    }
+
+    /**
+     * Returns the earliest time at which a table with pending items stops
+     * backing off; or -1 if there are no pending items.
+     */
+    private long nextEligibleTime() {
+        long next = -1;
+        for (TableQueue queue : tables.values()) {
+            if (!queue.items.isEmpty()
+                    && (next < 0 || queue.eligibleTime < next))
+                next = queue.eligibleTime;
+        }
+        return next;
+    }
+
+    /**
+     * Schedules a dispatch at the given time, unless one is already scheduled
+     * by then; a later dispatch is rescheduled.
+     */
+    private void scheduleDispatch(final long time, long now) {
+        if (timerTask != null) {
+            if (timerTime <= time)
+                return;
+            timerTask.cancel(false);
+        }
+        timerTime = time;
+        timerTask = timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (PipelinedBatchWriter.this) {
+                    if (timerTime == time)
+                        timerTask = null;
+                }
+                dispatch();
+            }
+        }, Math.max(time - now, 0), TimeUnit.MILLISECONDS);
+    }
+
+    private void send(final Map<String, List<WriteRequest>> batch) {
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    BatchWriteItemResult result;
+                    try {
+                        result = db.batchWriteItem(
+                                DynamoDBMapper.applyBatchOperationUserAgent(
+                                        new BatchWriteItemRequest().withRequestItems(batch)));
+                    } catch (Exception e) {
+                        onFailure(batch, e);
+                        return;
+                    }
+                    onSuccess(batch, result.getUnprocessedItems());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            onFailure(batch, e);
+        }
+    }
+
+    private void onSuccess(Map<String, List<WriteRequest>> batch,
+            Map<String, List<WriteRequest>> unprocessedItems) {
+        synchronized (this) {
+            inFlightRequests--;
+            long now = System.currentTimeMillis();
+            for (String tableName : batch.keySet()) {
+                List<WriteRequest> unprocessed = unprocessedItems == null
+                        ? null : unprocessedItems.get(tableName);
+                TableQueue queue = tables.get(tableName);
+                if (unprocessed == null || unprocessed.isEmpty()) {
+                    queue.attempts = 0;
+                } else {
+                    queue.requeue(unprocessed);
+                    backOff(queue, now);
+                }
+            }
+        }
+        dispatch();
+    }
+
+    private void onFailure(Map<String, List<WriteRequest>> batch, Exception e) {
+        synchronized (this) {
+            inFlightRequests--;
+            if (e instanceof AmazonServiceException) {
+                AmazonServiceException ase = (AmazonServiceException) e;
+                if (RetryUtils.isThrottlingException(ase)) {
+                    onThrottled(batch, ase);
+                } else if (RetryUtils.isRequestEntityTooLargeException(ase)
+                        && countItems(batch) > 1) {
+                    splitBatch(batch);
+                } else {
+                    addFailedBatch(batch, e);
+                }
+            } else {
+                addFailedBatch(batch, e);
+            }
+        }
+        dispatch();
+    }
+
+    private void onThrottled(Map<String, List<WriteRequest>> batch,
+            AmazonServiceException e) {
+        long now = System.currentTimeMillis();
+        for (Entry<String, List<WriteRequest>> entry : batch.entrySet()) {
+            TableQueue queue = tables.get(entry.getKey());
+            if (queue.attempts >= MAX_THROTTLING_RETRIES) {
+                Map<String, List<WriteRequest>> failed =
+                        new HashMap<String, List<WriteRequest>>();
+                failed.put(entry.getKey(), entry.getValue());
+                addFailedBatch(failed, e);
+            } else {
+                queue.requeue(entry.getValue());
+                backOff(queue, now);
+            }
+        }
+    }
+
+    /**
+     * Backs off the given table exponentially with full jitter.
+     */
+    private void backOff(TableQueue queue, long now) {
+        long ceiling = Math.min(MAX_BACKOFF_IN_MILLISECONDS,
+                BASE_BACKOFF_IN_MILLISECONDS << Math.min(queue.attempts, 16));
+        queue.attempts++;
+        queue.eligibleTime = now + (long) (random.nextDouble() * ceiling);
+    }
+
+    /**
+     * Divides the given batch into two batches, each containing half of the
+     * items of every table.
+     */
+    private void splitBatch(Map<String, List<WriteRequest>> batch) {
+        Map<String, List<WriteRequest>> firstHalf = new HashMap<String, List<WriteRequest>>();
+        Map<String, List<WriteRequest>> secondHalf = new HashMap<String, List<WriteRequest>>();
+        for (Entry<String, List<WriteRequest>> entry : batch.entrySet()) {
+            List<WriteRequest> requests = entry.getValue();
+            int half = requests.size() / 2;
+            if (half > 0)
+                firstHalf.put(entry.getKey(), requests.subList(0, half));
+            secondHalf.put(entry.getKey(), requests.subList(half, requests.size()));
+        }
+        // The first half must be sent first to keep writes to a key in order
+        splitBatches.addFirst(secondHalf);
+        if (!firstHalf.isEmpty())
+            splitBatches.addFirst(firstHalf);
+    }
+
+    private void addFailedBatch(Map<String, List<WriteRequest>> batch, Exception e) {
+        FailedBatch failedBatch = new FailedBatch();
+        failedBatch.setUnprocessedItems(batch);
+        failedBatch.setException(e);
+        failedBatches.add(failedBatch);
+    }
+
+    /**
+     * Drops all the items that have not been sent yet.
+     */
+    private void clearPendingItems() {
+        for (TableQueue queue : tables.values())
+            queue.items.clear();
+        splitBatches.clear();
+    }
+
+    private static int countItems(Map<String, List<WriteRequest>> batch) {
+        int count = 0;
+        for (List<WriteRequest> requests : batch.values())
+            count += requests.size();
+        return count;
+    }
+
+    /**
+     * The pending items and backoff state of a table.
+     */
+    private static final class TableQueue {
+        private final LinkedList<WriteRequest> items = new LinkedList<WriteRequest>();
+        /** The number of consecutive requests that were not fully processed. */
+        private int attempts;
+        /** The time before which no request is sent to the table. */
+        private long eligibleTime;
+
+        /** Puts the given items back at the head of the queue. */
+        private void requeue(List<WriteRequest> unprocessed) {
+            items.addAll(0, unprocessed);
+        }
+    }
+}
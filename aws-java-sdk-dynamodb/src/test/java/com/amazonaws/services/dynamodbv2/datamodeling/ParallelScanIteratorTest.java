@@ -0,0 +1,191 @@
+/*
+ * Copyright 2015 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+
+public class ParallelScanIteratorTest {
+
+    private static final int PAGES_PER_SEGMENT = 3;
+    private static final int ITEMS_PER_PAGE = 2;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @DynamoDBTable(tableName="nonexisting-test-tablename")
+    public static class Item {
+        private String id;
+
+        @DynamoDBHashKey
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * A fake client returning {@value #PAGES_PER_SEGMENT} pages per segment.
+     * The scan of segment 0 can be held until a latch is released.
+     */
+    private static class FakeDynamoDB implements InvocationHandler {
+        final CountDownLatch releaseSegmentZero = new CountDownLatch(1);
+        final AtomicInteger scans = new AtomicInteger();
+        volatile int failingSegment = -1;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!method.getName().equals("scan"))
+                throw new UnsupportedOperationException(method.getName());
+            ScanRequest request = (ScanRequest) args[0];
+            int segment = request.getSegment();
+            if (segment == 0)
+                releaseSegmentZero.await();
+            if (segment == failingSegment)
+                throw new AmazonServiceException("scan failed");
+            scans.incrementAndGet();
+
+            int page = request.getExclusiveStartKey() == null ? 0
+                    : Integer.parseInt(request.getExclusiveStartKey().get("id").getS()) + 1;
+            List<Map<String, AttributeValue>> items = new ArrayList<Map<String, AttributeValue>>();
+            for (int i = 0; i < ITEMS_PER_PAGE; i++) {
+                Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+                item.put("id", new AttributeValue(segment + "/" + page + "/" + i));
+                items.add(item);
+            }
+            ScanResult result = new ScanResult().withItems(items);
+            if (page < PAGES_PER_SEGMENT - 1) {
+                result.setLastEvaluatedKey(Collections.singletonMap(
+                        "id", new AttributeValue(Integer.toString(page))));
+            }
+            return result;
+        }
+    }
+
+    private static DynamoDBMapper mapper(FakeDynamoDB fake) {
+        return new DynamoDBMapper((AmazonDynamoDB) Proxy.newProxyInstance(
+                AmazonDynamoDB.class.getClassLoader(),
+                new Class<?>[] { AmazonDynamoDB.class }, fake));
+    }
+
+    @Test
+    public void testSegmentsProgressIndependently() throws Exception {
+        FakeDynamoDB fake = new FakeDynamoDB();
+        ParallelScanIterator<Item> iterator = mapper(fake).parallelScanIterator(
+                Item.class, new DynamoDBScanExpression(), 3, executor);
+
+        // Every item of segments 1 and 2 is returned while segment 0 is held
+        Set<String> ids = new HashSet<String>();
+        int otherSegmentsItems = 2 * PAGES_PER_SEGMENT * ITEMS_PER_PAGE;
+        for (int i = 0; i < otherSegmentsItems; i++) {
+            String id = iterator.next().getId();
+            assertFalse(id.startsWith("0/"));
+            assertTrue(ids.add(id));
+        }
+        fake.releaseSegmentZero.countDown();
+        while (iterator.hasNext())
+            assertTrue(ids.add(iterator.next().getId()));
+
+        assertEquals(3 * PAGES_PER_SEGMENT * ITEMS_PER_PAGE, ids.size());
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testPendingPagesAreBounded() throws Exception {
+        FakeDynamoDB fake = new FakeDynamoDB();
+        fake.releaseSegmentZero.countDown();
+        ParallelScanIterator<Item> iterator = mapper(fake).parallelScanIterator(
+                Item.class, new DynamoDBScanExpression(), 4,
+                null, executor, 2);
+
+        Thread.sleep(200);
+        assertEquals(2, fake.scans.get());
+
+        int count = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        assertEquals(4 * PAGES_PER_SEGMENT * ITEMS_PER_PAGE, count);
+        assertEquals(4 * PAGES_PER_SEGMENT, fake.scans.get());
+    }
+
+    @Test
+    public void testFailureIsRethrownToConsumer() throws Exception {
+        FakeDynamoDB fake = new FakeDynamoDB();
+        fake.releaseSegmentZero.countDown();
+        fake.failingSegment = 1;
+        ParallelScanIterator<Item> iterator = mapper(fake).parallelScanIterator(
+                Item.class, new DynamoDBScanExpression(), 2, executor);
+        try {
+            while (iterator.hasNext())
+                iterator.next();
+            fail("Expected the scan failure to be rethrown");
+        } catch (AmazonServiceException expected) {
+            assertEquals("scan failed", expected.getErrorMessage());
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = AmazonClientException.class)
+    public void testRejectedExecutionIsReported() {
+        FakeDynamoDB fake = new FakeDynamoDB();
+        executor.shutdown();
+        mapper(fake).parallelScanIterator(Item.class,
+                new DynamoDBScanExpression(), 2, executor).hasNext();
+    }
+}
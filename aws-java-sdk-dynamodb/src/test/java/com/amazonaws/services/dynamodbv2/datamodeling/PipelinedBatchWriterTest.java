@@ -0,0 +1,187 @@
+/*
+ * Copyright 2015 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.PutRequest;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+
+public class PipelinedBatchWriterTest {
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(8);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A fake client that leaves the first item of the "throttled" table
+     * unprocessed every other request, and records the written items.
+     */
+    private static class FakeDynamoDB implements InvocationHandler {
+        final Set<String> written = Collections.synchronizedSet(new HashSet<String>());
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final AtomicInteger requests = new AtomicInteger();
+        volatile int throttlingErrors;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!method.getName().equals("batchWriteItem"))
+                throw new UnsupportedOperationException(method.getName());
+            int current = inFlight.incrementAndGet();
+            try {
+                synchronized (this) {
+                    if (current > maxInFlight.get())
+                        maxInFlight.set(current);
+                }
+                Thread.sleep(5);
+                BatchWriteItemRequest request = (BatchWriteItemRequest) args[0];
+                assertTrue(countItems(request.getRequestItems()) <= DynamoDBMapper.MAX_ITEMS_PER_BATCH);
+                int n = requests.incrementAndGet();
+                if (throttlingErrors > 0) {
+                    synchronized (this) {
+                        if (throttlingErrors > 0) {
+                            throttlingErrors--;
+                            AmazonServiceException ase = new AmazonServiceException("throttled");
+                            ase.setErrorCode("ProvisionedThroughputExceededException");
+                            throw ase;
+                        }
+                    }
+                }
+                Map<String, List<WriteRequest>> unprocessed = new HashMap<String, List<WriteRequest>>();
+                for (Map.Entry<String, List<WriteRequest>> entry : request.getRequestItems().entrySet()) {
+                    List<WriteRequest> items = entry.getValue();
+                    int start = 0;
+                    if (entry.getKey().equals("throttled") && n % 2 == 0) {
+                        unprocessed.put(entry.getKey(), new ArrayList<WriteRequest>(items.subList(0, 1)));
+                        start = 1;
+                    }
+                    for (WriteRequest item : items.subList(start, items.size())) {
+                        assertTrue(written.add(entry.getKey() + "/"
+                                + item.getPutRequest().getItem().get("id").getS()));
+                    }
+                }
+                return new BatchWriteItemResult().withUnprocessedItems(unprocessed);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    private static int countItems(Map<String, List<WriteRequest>> batch) {
+        int count = 0;
+        for (List<WriteRequest> items : batch.values())
+            count += items.size();
+        return count;
+    }
+
+    private static Map<String, List<WriteRequest>> items(String... tables) {
+        Map<String, List<WriteRequest>> requestItems = new HashMap<String, List<WriteRequest>>();
+        for (String table : tables) {
+            List<WriteRequest> items = new ArrayList<WriteRequest>();
+            for (int i = 0; i < 100; i++) {
+                Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+                item.put("id", new AttributeValue(Integer.toString(i)));
+                items.add(new WriteRequest().withPutRequest(new PutRequest().withItem(item)));
+            }
+            requestItems.put(table, items);
+        }
+        return requestItems;
+    }
+
+    private static AmazonDynamoDB proxy(FakeDynamoDB fake) {
+        return (AmazonDynamoDB) Proxy.newProxyInstance(
+                AmazonDynamoDB.class.getClassLoader(),
+                new Class<?>[] { AmazonDynamoDB.class }, fake);
+    }
+
+    @Test
+    public void testUnprocessedItemsAreRewritten() throws Exception {
+        FakeDynamoDB fake = new FakeDynamoDB();
+        final AtomicInteger hookCalls = new AtomicInteger();
+        List<FailedBatch> failed = new PipelinedBatchWriter(proxy(fake), executor, 3,
+                items("throttled", "fast"), new Runnable() {
+                    @Override
+                    public void run() {
+                        hookCalls.incrementAndGet();
+                    }
+                }).start().get(30, TimeUnit.SECONDS);
+
+        assertTrue(failed.isEmpty());
+        assertEquals(200, fake.written.size());
+        assertEquals(1, hookCalls.get());
+        assertTrue(fake.maxInFlight.get() <= 3);
+    }
+
+    @Test
+    public void testThrottlingErrorsAreRetried() throws Exception {
+        FakeDynamoDB fake = new FakeDynamoDB();
+        fake.throttlingErrors = 3;
+        List<FailedBatch> failed = new PipelinedBatchWriter(proxy(fake), executor, 2,
+                items("fast"), null).start().get(30, TimeUnit.SECONDS);
+
+        assertTrue(failed.isEmpty());
+        assertEquals(100, fake.written.size());
+    }
+
+    @Test
+    public void testPersistentThrottlingIsReported() throws Exception {
+        FakeDynamoDB fake = new FakeDynamoDB();
+        fake.throttlingErrors = Integer.MAX_VALUE;
+        List<FailedBatch> failed = new PipelinedBatchWriter(proxy(fake), executor, 1,
+                items("fast"), null).start().get(60, TimeUnit.SECONDS);
+
+        int failedItems = 0;
+        for (FailedBatch batch : failed) {
+            assertTrue(batch.getException() instanceof AmazonServiceException);
+            failedItems += countItems(batch.getUnprocessedItems());
+        }
+        assertEquals(100, failedItems);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.glacier.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An input stream over a part of a file, read with positional reads from a
+ * file channel, so that several parts of the same file can be read
+ * concurrently from a single channel. The stream supports mark and reset, and
+ * closing it doesn't close the channel.
+ */
+public class FilePartInputStream extends InputStream {
+    private final FileChannel channel;
+    private final long start;
+    private final long end;
+    private long position;
+    private long mark;
+
+    /**
+     * @param channel
+     *            The channel of the file, which is left open.
+     * @param offset
+     *            The offset of the part in the file.
+     * @param length
+     *            The length of the part.
+     */
+    public FilePartInputStream(FileChannel channel, long offset, long length) {
+        this.channel = channel;
+        this.start = offset;
+        this.end = offset + length;
+        this.position = offset;
+        this.mark = offset;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int n = read(b, 0, 1);
+        return n == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        if (position >= end)
+            return -1;
+        int toRead = (int) Math.min(len, end - position);
+        int n = channel.read(ByteBuffer.wrap(b, off, toRead), position);
+        if (n == -1)
+            return -1;
+        position += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) {
+        long skipped = Math.max(0, Math.min(n, end - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, end - position);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public void mark(int readlimit) {
+        mark = position;
+    }
+
+    @Override
+    public void reset() {
+        position = mark;
+    }
+
+    /** Returns the length of the part. */
+    public long getLength() {
+        return end - start;
+    }
+}
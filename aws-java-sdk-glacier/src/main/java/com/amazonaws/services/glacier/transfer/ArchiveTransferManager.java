@@ -27,9 +27,18 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.NoSuchAlgorithmException;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -46,6 +55,7 @@ import com.amazonaws.internal.StaticCredentialsProvider;
 import com.amazonaws.services.glacier.AmazonGlacier;
 import com.amazonaws.services.glacier.AmazonGlacierClient;
 import com.amazonaws.services.glacier.TreeHashGenerator;
+import com.amazonaws.services.glacier.internal.FilePartInputStream;
 import com.amazonaws.services.glacier.internal.TreeHashInputStream;
 import com.amazonaws.services.glacier.model.AbortMultipartUploadRequest;
 import com.amazonaws.services.glacier.model.CompleteMultipartUploadRequest;
@@ -62,7 +72,6 @@ import com.amazonaws.services.glacier.model.JobParameters;
 import com.amazonaws.services.glacier.model.UploadArchiveRequest;
 import com.amazonaws.services.glacier.model.UploadArchiveResult;
 import com.amazonaws.services.glacier.model.UploadMultipartPartRequest;
-import com.amazonaws.services.s3.internal.InputSubstream;
 import com.amazonaws.services.sns.AmazonSNSClient;
 import com.amazonaws.services.sqs.AmazonSQSClient;
 import com.amazonaws.util.BinaryUtils;
@@ -87,6 +96,12 @@ public class ArchiveTransferManager {
     /** Default retry time when downloading in multiple chunks using range retrieval */
     private static final int DEFAULT_MAX_RETRIES = 3;
 
+    /** Default number of parts or chunks transferred concurrently */
+    private static final int DEFAULT_PARALLELISM = 4;
+
+    /** Maximum number of attempts to upload a part of a multipart upload */
+    private static final int MAX_PART_UPLOAD_ATTEMPTS = 5;
+
     /** Glacier client used for making all requests. */
     private final AmazonGlacier glacier;
 
@@ -98,6 +113,9 @@ public class ArchiveTransferManager {
 
     private final AmazonSNSClient sns;
 
+    /** The number of parts or chunks transferred concurrently. */
+    private volatile int parallelism = DEFAULT_PARALLELISM;
+
     private static final Log log = LogFactory.getLog(ArchiveTransferManager.class);
 
     /**
@@ -197,6 +215,31 @@ public class ArchiveTransferManager {
         this.sns = sns;
     }
 
+    /**
+     * Returns the number of parts of a multipart upload, or of chunks of a
+     * download, that are transferred concurrently.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the number of parts of a multipart upload, or of chunks of a
+     * download, that are transferred concurrently. Each transfer uses up to
+     * this number of threads, including the calling thread. Defaults to
+     * {@value #DEFAULT_PARALLELISM}.
+     *
+     * @param parallelism
+     *            The number of parts or chunks transferred concurrently; must
+     *            be at least 1.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+    }
+
     /**
      * Uploads the specified file to Amazon Glacier for archival storage in the
      * specified vault for the user's current account. For small archives, this
@@ -460,8 +503,9 @@ public class ArchiveTransferManager {
      * Downloads the job output for the specified job (which must be ready to
      * download already, and must be a complete archive retrieval, not a partial
      * range retrieval), into the specified file. This method will request
-     * individual chunks of the data, one at a time, in order to handle any
-     * transient errors along the way.
+     * individual chunks of the data, several at a time (see
+     * {@link #setParallelism(int)}), and retry each chunk independently in
+     * order to handle any transient errors along the way.
      *
      * @param accountId
      *            The account ID containing the job output to download (or null
@@ -482,9 +526,11 @@ public class ArchiveTransferManager {
      * Downloads the job output for the specified job (which must be ready to
      * download already, and must be a complete archive retrieval, not a partial
      * range retrieval), into the specified file. This method will request
-     * individual chunks of the data, one at a time, in order to handle any
-     * transient errors along the way. You can also add an optional progress
-     * listener for receiving updates about the download status.
+     * individual chunks of the data, several at a time (see
+     * {@link #setParallelism(int)}), and retry each chunk independently in
+     * order to handle any transient errors along the way. You can also add an
+     * optional progress listener for receiving updates about the download
+     * status.
      *
      * @param accountId
      *            The account ID containing the job output to download (or null
@@ -500,12 +546,10 @@ public class ArchiveTransferManager {
      *            The optional progress listener for receiving updates about the
      *            download status.
      */
-    public void downloadJobOutput(String accountId, String vaultName,
-            String jobId, File file, ProgressListener progressListener) {
+    public void downloadJobOutput(final String accountId, final String vaultName,
+            final String jobId, File file, final ProgressListener progressListener) {
         long archiveSize = 0;
         long chunkSize = DEFAULT_DOWNLOAD_CHUNK_SIZE;
-        long currentPosition = 0;
-        long endPosition = 0;
 
         RandomAccessFile output = null;
         String customizedChunkSize = null;
@@ -533,22 +577,27 @@ public class ArchiveTransferManager {
 
         try {
             publishProgress(progressListener, ProgressEventType.TRANSFER_STARTED_EVENT);
-            while (currentPosition < archiveSize) {
-                if (currentPosition + chunkSize > archiveSize) {
-                    endPosition = archiveSize - 1;
-                } else {
-                    endPosition = currentPosition + chunkSize - 1;
-                }
-    
-                // Download the chunk
-                try {
-                    downloadOneChunk(accountId, vaultName, jobId, output,
-                            currentPosition, endPosition, progressListener);
-                } catch (Throwable t) {
-                    publishProgress(progressListener, ProgressEventType.TRANSFER_FAILED_EVENT);
-                    throw failure(t);
-                }
-                currentPosition += chunkSize;
+            final FileChannel channel = output.getChannel();
+            List<Callable<Void>> chunks = new ArrayList<Callable<Void>>();
+            for (long currentPosition = 0; currentPosition < archiveSize; currentPosition += chunkSize) {
+                final long startPosition = currentPosition;
+                final long endPosition = Math.min(currentPosition + chunkSize, archiveSize) - 1;
+                chunks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        downloadOneChunk(accountId, vaultName, jobId, channel,
+                                startPosition, endPosition, progressListener);
+                        return null;
+                    }
+                });
+            }
+            try {
+                // Drop any stale content beyond the archive
+                output.setLength(archiveSize);
+                execute(chunks);
+            } catch (Throwable t) {
+                publishProgress(progressListener, ProgressEventType.TRANSFER_FAILED_EVENT);
+                throw failure(t);
             }
             publishProgress(progressListener, ProgressEventType.TRANSFER_COMPLETED_EVENT);
         } finally {
@@ -556,6 +605,55 @@ public class ArchiveTransferManager {
         }
     }
 
+    /**
+     * Runs the given tasks on up to {@link #getParallelism()} threads,
+     * including the calling thread, and returns their results in order. If
+     * any task fails, the remaining tasks are cancelled and the failure is
+     * rethrown.
+     */
+    private <T> List<T> execute(List<Callable<T>> tasks) throws Exception {
+        List<T> results = new ArrayList<T>(tasks.size());
+        int numThreads = Math.min(parallelism, tasks.size()) - 1;
+        if (numThreads <= 0) {
+            for (Callable<T> task : tasks)
+                results.add(task.call());
+            return results;
+        }
+        ExecutorService threadPool = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger();
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r);
+                thread.setName("glacier-transfer-worker-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            List<FutureTask<T>> futures = new ArrayList<FutureTask<T>>(tasks.size());
+            for (Callable<T> task : tasks) {
+                FutureTask<T> future = new FutureTask<T>(task);
+                futures.add(future);
+                threadPool.execute(future);
+            }
+            for (FutureTask<T> future : futures) {
+                // Help with the tasks not yet picked up by the thread pool
+                future.run();
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Exception)
+                        throw (Exception) cause;
+                    throw failure(cause);
+                }
+            }
+            return results;
+        } finally {
+            threadPool.shutdownNow();
+        }
+    }
+
     private void validateChunkSize(long chunkSize) {
         if (chunkSize <= 0) {
             throw new AmazonClientException("Invalid chunk size, chunk size must be great than 0");
@@ -572,7 +670,7 @@ public class ArchiveTransferManager {
      * errors are encountered while streaming the data from Amazon Glacier.
      */
     private void downloadOneChunk(String accountId, String vaultName,
-            String jobId, RandomAccessFile output, long currentPosition,
+            String jobId, FileChannel output, long currentPosition,
             long endPosition, ProgressListener progressListener) {
         final long chunkSize = endPosition - currentPosition + 1;
         TreeHashInputStream input = null;
@@ -589,7 +687,7 @@ public class ArchiveTransferManager {
                 GetJobOutputResult jobOutputResult = glacier.getJobOutput(req);
                 try {
                     input = new TreeHashInputStream(new BufferedInputStream(jobOutputResult.getBody()));
-                    appendToFile(output, input);
+                    writeToFile(output, currentPosition, input);
                 } catch (NoSuchAlgorithmException e) {
                     throw failure(e, "Unable to compute hash for data integrity");
                 } finally {
@@ -624,11 +722,6 @@ public class ArchiveTransferManager {
                                 + currentPosition + " endPosition="
                                 + endPosition);
                     }
-                    try {
-                        output.seek(currentPosition);
-                    } catch (IOException e) {
-                        throw new AmazonClientException("Unable to download the archive: " + ioe.getMessage(), e);
-                    }
                 } else {
                     throw new AmazonClientException("Unable to download the archive: " + ioe.getMessage(), ioe);
                 }
@@ -637,9 +730,10 @@ public class ArchiveTransferManager {
     }
 
     /**
-     * Writes the data from the given input stream to the given output stream.
+     * Writes the data from the given input stream to the given file channel,
+     * starting at the given position.
      */
-    private void appendToFile(RandomAccessFile output, InputStream input)
+    private void writeToFile(FileChannel output, long position, InputStream input)
             throws IOException {
         byte[] buffer = new byte[1024 * 1024];
         int bytesRead = 0;
@@ -647,7 +741,9 @@ public class ArchiveTransferManager {
             bytesRead = input.read(buffer);
             if (bytesRead < 0)
                 break;
-            output.write(buffer, 0, bytesRead);
+            ByteBuffer bb = ByteBuffer.wrap(buffer, 0, bytesRead);
+            while (bb.hasRemaining())
+                position += output.write(bb, position);
         } while (bytesRead > 0);
         return;
     }
@@ -676,7 +772,7 @@ public class ArchiveTransferManager {
 
     private UploadResult uploadInMultipleParts(final String accountId,
             final String vaultName, final String archiveDescription,
-            final File file, ProgressListener progressListener) {
+            final File file, final ProgressListener progressListener) {
         final long partSize = calculatePartSize(file.length());
         String partSizeString = Long.toString(partSize);
 
@@ -694,56 +790,30 @@ public class ArchiveTransferManager {
             throw failure(t);
         }
         publishProgress(progressListener, ProgressEventType.TRANSFER_STARTED_EVENT);
-        final String fileNotFoundMsg = "Unable to find file '"
-                + file.getAbsolutePath() + "'";
+        RandomAccessFile input = null;
         try {
-            List<byte[]> binaryChecksums = new LinkedList<byte[]>();
-
-            long currentPosition = 0;
-            while (currentPosition < file.length()) {
-                long length = partSize;
-                if (currentPosition + partSize > file.length()) {
-                    length = file.length() - currentPosition;
-                }
-
-                Exception failedException = null;
-                boolean completed = false;
-                int tries = 0;
-                    while (!completed && tries < 5){
-                        tries++;
-                        InputSubstream inputSubStream = null;
-                        try {
-                            inputSubStream = new InputSubstream(
-                                    newResettableInputStream(file, fileNotFoundMsg)
-                                        .disableClose(), // requires explicit release
-                                    currentPosition, length, true);
-                            String checksum = TreeHashGenerator.calculateTreeHash(inputSubStream);
-                            byte[] binaryChecksum = BinaryUtils.fromHex(checksum);
-                            inputSubStream.reset();
-                            UploadMultipartPartRequest req = new UploadMultipartPartRequest()
-                                .withAccountId(accountId)
-                                .withChecksum(checksum)
-                                .withBody(inputSubStream)
-                                .withRange("bytes " + currentPosition + "-" + (currentPosition + length - 1) + "/*")
-                                .withUploadId(uploadId)
-                                .withVaultName(vaultName)
-                                .withGeneralProgressListener(progressListener)
-                                ;
-                            
-                            glacier.uploadMultipartPart(req);
-                            completed = true;
-                            binaryChecksums.add(binaryChecksum);
-                        } catch (Exception e){
-                            failedException = e;
-                        } finally {
-                            // We opened the file underneath; so need to release it
-                            release(inputSubStream, log);
-                        }
-                    } // end inner while
-                if (!completed && failedException!=null)
-                    throw failedException;
-                currentPosition += partSize;
-            } // end outer while
+            try {
+                input = new RandomAccessFile(file, "r");
+            } catch (FileNotFoundException e) {
+                throw new AmazonClientException("Unable to find file '"
+                        + file.getAbsolutePath() + "'", e);
+            }
+            final FileChannel channel = input.getChannel();
+            final String multipartUploadId = uploadId;
+            List<Callable<byte[]>> parts = new ArrayList<Callable<byte[]>>();
+            for (long currentPosition = 0; currentPosition < file.length(); currentPosition += partSize) {
+                final long position = currentPosition;
+                final long length = Math.min(partSize, file.length() - currentPosition);
+                parts.add(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws Exception {
+                        return uploadOnePart(accountId, vaultName, multipartUploadId,
+                                channel, position, length, progressListener);
+                    }
+                });
+            }
+            // The checksums of the parts, in order
+            List<byte[]> binaryChecksums = execute(parts);
 
             String checksum = TreeHashGenerator.calculateTreeHash(binaryChecksums);
 
@@ -763,7 +833,46 @@ public class ArchiveTransferManager {
             publishProgress(progressListener, ProgressEventType.TRANSFER_FAILED_EVENT);
             glacier.abortMultipartUpload(new AbortMultipartUploadRequest(accountId, vaultName, uploadId));
             throw failure(t, "Unable to finish the upload");
+        } finally {
+            closeQuietly(input, log);
+        }
+    }
+
+    /**
+     * Uploads one part of a multipart upload, read from the given channel,
+     * retrying independently of the other parts.
+     *
+     * @return The binary tree hash of the part.
+     */
+    private byte[] uploadOnePart(String accountId, String vaultName,
+            String uploadId, FileChannel channel, long position, long length,
+            ProgressListener progressListener) throws Exception {
+        Exception failedException = null;
+        for (int tries = 0; tries < MAX_PART_UPLOAD_ATTEMPTS; tries++) {
+            try {
+                FilePartInputStream partStream = new FilePartInputStream(channel, position, length);
+                String checksum = TreeHashGenerator.calculateTreeHash(partStream);
+                byte[] binaryChecksum = BinaryUtils.fromHex(checksum);
+                partStream.reset();
+                UploadMultipartPartRequest req = new UploadMultipartPartRequest()
+                    .withAccountId(accountId)
+                    .withChecksum(checksum)
+                    .withBody(partStream)
+                    .withRange("bytes " + position + "-" + (position + length - 1) + "/*")
+                    .withUploadId(uploadId)
+                    .withVaultName(vaultName)
+                    .withGeneralProgressListener(progressListener)
+                    ;
+
+                glacier.uploadMultipartPart(req);
+                return binaryChecksum;
+            } catch (Exception e) {
+                if (Thread.currentThread().isInterrupted())
+                    throw e;
+                failedException = e;
+            }
         }
+        throw failedException;
     }
 
     private UploadResult uploadInSinglePart(final String accountId,
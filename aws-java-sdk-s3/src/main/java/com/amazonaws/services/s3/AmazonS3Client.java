@@ -1280,7 +1280,10 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
 
             @Override
             public boolean needIntegrityCheck() {
-                return !ServiceUtils.skipMd5CheckPerRequest(getObjectRequest);
+                // The content returned by getObject is already checked
+                // against the MD5 of the object as it is read, unless the
+                // check is skipped for the request
+                return false;
             }
 
         }, ServiceUtils.OVERWRITE_MODE);
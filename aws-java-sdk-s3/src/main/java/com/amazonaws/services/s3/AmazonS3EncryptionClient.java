@@ -16,6 +16,7 @@ package com.amazonaws.services.s3;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
@@ -35,6 +36,7 @@ import com.amazonaws.regions.Region;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.kms.AWSKMSClient;
 import com.amazonaws.services.s3.internal.MultiFileOutputStream;
+import com.amazonaws.services.s3.internal.MultiPartBufferOutputStream;
 import com.amazonaws.services.s3.internal.PartCreationEvent;
 import com.amazonaws.services.s3.internal.S3Direct;
 import com.amazonaws.services.s3.internal.crypto.CryptoModuleDispatcher;
@@ -683,7 +685,10 @@ public class AmazonS3EncryptionClient extends AmazonS3Client implements
      * <li>A {@link MultiFileOutputStream} is constructed (or retrieved from the
      * request) which serves as the pipeline for incremental (but serial)
      * encryption to disk with concurrent multipart uploads to S3 whenever the
-     * parts on the disk are ready</li>
+     * parts on the disk are ready; or, if a
+     * {@link UploadObjectRequest#getMemoryLimit() memory limit} is specified,
+     * a {@link MultiPartBufferOutputStream} which holds the parts in memory
+     * instead</li>
      * <li>Initialize the <code>MultiFileOutputStream</code></li>
      * <li>Kicks off the pipeline for incremental encryption to disk with
      * pipelined concurrent multi-part uploads to S3</li>
@@ -719,15 +724,26 @@ public class AmazonS3EncryptionClient extends AmazonS3Client implements
         // Initiate upload
         final String uploadId = observer.onUploadInitiation(req);
         final List<PartETag> partETags = new ArrayList<PartETag>();
-        MultiFileOutputStream mfos = req.getMultiFileOutputStream();
-        if (mfos == null)
-            mfos = new MultiFileOutputStream();
+        // Parts are held in memory if a memory limit is specified;
+        // otherwise they are written to temporary files
+        final boolean inMemory = req.getMemoryLimit() > 0;
+        MultiFileOutputStream mfos = null;
+        MultiPartBufferOutputStream mpbos = null;
+        if (inMemory) {
+            mpbos = new MultiPartBufferOutputStream();
+        } else {
+            mfos = req.getMultiFileOutputStream();
+            if (mfos == null)
+                mfos = new MultiFileOutputStream();
+        }
         try {
-            // initialize the multi-file output stream
-            mfos.init(observer, req.getPartSize(), req.getDiskLimit());
+            // initialize the multi-part output stream
+            final OutputStream os = inMemory
+                ? mpbos.init(observer, req.getPartSize(), req.getMemoryLimit())
+                : mfos.init(observer, req.getPartSize(), req.getDiskLimit());
             // Kicks off the encryption-upload pipeline;
-            // Note mfos is automatically closed upon method completion.
-            crypto.putLocalObjectSecurely(req, uploadId, mfos);
+            // Note os is automatically closed upon method completion.
+            crypto.putLocalObjectSecurely(req, uploadId, os);
             // block till all part have been uploaded
             for (Future<UploadPartResult> future: observer.getFutures()) {
                 UploadPartResult partResult = future.get();
@@ -746,7 +762,10 @@ public class AmazonS3EncryptionClient extends AmazonS3Client implements
         } finally {
             if (defaultExecutorService)
                 es.shutdownNow();   // shut down the locally created thread pool
-            mfos.cleanup();       // delete left-over temp files
+            if (inMemory)
+                mpbos.cleanup();  // release the pooled part buffers
+            else
+                mfos.cleanup();   // delete left-over temp files
         }
         // Complete upload
         return observer.onCompletion(partETags);
@@ -15,6 +15,7 @@
 package com.amazonaws.services.s3;
 
 import java.io.File;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
@@ -25,6 +26,7 @@ import org.apache.commons.logging.LogFactory;
 
 import com.amazonaws.AmazonWebServiceRequest;
 import com.amazonaws.services.s3.internal.MultiFileOutputStream;
+import com.amazonaws.services.s3.internal.MultiPartBufferOutputStream;
 import com.amazonaws.services.s3.internal.PartCreationEvent;
 import com.amazonaws.services.s3.internal.S3DirectSpi;
 import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
@@ -119,11 +121,14 @@ public class UploadObjectObserver {
 
     /**
      * Notified from {@link MultiFileOutputStream#fos()} when a part ready for
-     * upload has been successfully created on disk. By default, this method
-     * performs the following:
+     * upload has been successfully created on disk, or from
+     * {@link MultiPartBufferOutputStream} when it has been created in memory.
+     * By default, this method performs the following:
      * <ol>
-     * <li>calls {@link #newUploadPartRequest(PartCreationEvent, File)} to
-     * create an upload-part request for the newly created ciphertext file</li>
+     * <li>calls {@link #newUploadPartRequest(PartCreationEvent, File)}, or
+     * {@link #newUploadPartRequest(PartCreationEvent, InputStream)} for a part
+     * in memory, to create an upload-part request for the newly created
+     * ciphertext part</li>
      * <li>call {@link #appendUserAgent(AmazonWebServiceRequest, String)} to
      * append the necessary user agent string to the request</li>
      * <li>and finally submit a concurrent task, which calls the method
@@ -138,6 +143,10 @@ public class UploadObjectObserver {
      *            which is ready for multipart upload to S3.
      */
     public void onPartCreate(PartCreationEvent event) {
+        if (event.isInMemory()) {
+            onPartCreateInMemory(event);
+            return;
+        }
         final File part = event.getPart();
         final UploadPartRequest reqUploadPart =
             newUploadPartRequest(event, part);
@@ -164,6 +173,32 @@ public class UploadObjectObserver {
         }));
     }
 
+    /**
+     * Uploads a part held in memory, releasing its buffer for reuse once the
+     * upload has completed or failed.
+     */
+    private void onPartCreateInMemory(final PartCreationEvent event) {
+        final UploadPartRequest reqUploadPart;
+        try {
+            reqUploadPart = newUploadPartRequest(event, event.newPartInputStream());
+            appendUserAgent(reqUploadPart, AmazonS3EncryptionClient.USER_AGENT);
+        } catch (RuntimeException e) {
+            event.releasePartBuffer();
+            throw e;
+        }
+        futures.add(es.submit(new Callable<UploadPartResult>() {
+            @Override public UploadPartResult call() {
+                // Upload the ciphertext directly via the non-encrypting
+                // s3 client
+                try {
+                    return uploadPart(reqUploadPart);
+                } finally {
+                    event.releasePartBuffer();
+                }
+            }
+        }));
+    }
+
     /**
      * Notified from
      * {@link AmazonS3EncryptionClient#uploadObject(UploadObjectRequest)} when
@@ -226,6 +261,31 @@ public class UploadObjectObserver {
         return reqUploadPart;
     }
 
+    /**
+     * Creates and returns an upload-part request corresponding to a ciphertext
+     * part held in memory.
+     *
+     * @param event
+     *            the part-creation event of the ciphertext part.
+     * @param part
+     *            a stream over the ciphertext part, which supports mark and
+     *            reset
+     */
+    protected UploadPartRequest newUploadPartRequest(PartCreationEvent event,
+            final InputStream part) {
+        final UploadPartRequest reqUploadPart = new UploadPartRequest()
+            .withBucketName(req.getBucketName())
+            .withInputStream(part)
+            .withKey(req.getKey())
+            .withPartNumber(event.getPartNumber())
+            .withPartSize(event.getPartSize())
+            .withLastPart(event.isLastPart())
+            .withUploadId(uploadId)
+            .withObjectMetadata(req.getUploadPartMetadata())
+            ;
+        return reqUploadPart;
+    }
+
     /**
      * Uploads the ciphertext via the non-encrypting s3 client.
      * @param reqUploadPart part upload request
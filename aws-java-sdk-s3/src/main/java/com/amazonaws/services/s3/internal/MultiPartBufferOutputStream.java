@@ -0,0 +1,217 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.internal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.services.s3.UploadObjectObserver;
+
+/**
+ * Used to split an output stream into multiple parts held in memory for
+ * purposes such as parallel uploads, without spooling the parts to temporary
+ * files. Each part is handed over to the observer as soon as it is full, while
+ * the next part is being written.
+ * <p>
+ * At most <code>memoryLimit/partSize</code> parts are held in memory at any
+ * time; writing blocks as necessary until the buffer of a part is released via
+ * {@link PartCreationEvent#releasePartBuffer()}. Released buffers are reused
+ * for subsequent parts.
+ */
+public class MultiPartBufferOutputStream extends OutputStream {
+    private int partSize = MultiFileOutputStream.DEFAULT_PART_SIZE;
+    private long memoryLimit;
+    private UploadObjectObserver observer;
+    private final Queue<byte[]> freeBuffers = new ConcurrentLinkedQueue<byte[]>();
+    private Semaphore bufferPermits;
+    private int partsCreated;
+    /**
+     * The part currently being written, or null if none.
+     */
+    private byte[] buf;
+    /**
+     * Number of bytes that have been written to the current part.
+     */
+    private int count;
+    /**
+     * Total number of bytes written to all parts so far.
+     */
+    private long totalBytesWritten;
+    private boolean closed;
+
+    /**
+     * Used to initialized this stream. This method is an SPI (service provider
+     * interface) that is called from <code>AmazonS3EncryptionClient</code>.
+     * <p>
+     * Implementation of this method should never block.
+     *
+     * @param observer
+     *            the upload object observer
+     * @param partSize
+     *            part size for multi-part upload
+     * @param memoryLimit
+     *            the maximum memory to be used for buffering the parts of this
+     *            multi-part upload
+     *
+     * @return this object
+     */
+    public MultiPartBufferOutputStream init(UploadObjectObserver observer,
+            long partSize, long memoryLimit) {
+        if (observer == null)
+            throw new IllegalArgumentException("Observer must be specified");
+        if (partSize <= 0 || partSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                "Part size must be positive and at most " + Integer.MAX_VALUE
+                + " bytes to be buffered in memory: partSize=" + partSize);
+        }
+        if (memoryLimit < partSize << 1) {
+            throw new IllegalArgumentException(
+                "Maximum memory must be at least twice as large as the part size: partSize="
+                + partSize + ", memoryLimit=" + memoryLimit);
+        }
+        this.observer = observer;
+        this.partSize = (int) partSize;
+        this.memoryLimit = memoryLimit;
+        this.bufferPermits = new Semaphore(
+                (int) Math.min(Integer.MAX_VALUE, memoryLimit / partSize));
+        return this;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        buf()[count++] = (byte) b;
+        totalBytesWritten++;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * This method would block as necessary if running out of memory.
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            byte[] dest = buf();
+            int n = Math.min(len, partSize - count);
+            System.arraycopy(b, off, dest, count, n);
+            count += n;
+            off += n;
+            len -= n;
+            totalBytesWritten += n;
+        }
+    }
+
+    /**
+     * Returns the buffer of the part to be written to, blocking if necessary
+     * if running out of memory. A full part is only handed over to the
+     * observer once more data is written, so that the last part can be
+     * identified as such on close.
+     */
+    private byte[] buf() throws IOException {
+        if (closed)
+            throw new IOException("Output stream is already closed");
+        if (buf == null || count >= partSize) {
+            if (buf != null) {
+                // notify about the new part ready for processing
+                observer.onPartCreate(new PartCreationEvent(
+                        buf, count, partsCreated, false, this));
+            }
+            buf = null;
+            count = 0;
+            blockIfNecessary();
+            partsCreated++;
+            byte[] free = freeBuffers.poll();
+            buf = free == null ? new byte[partSize] : free;
+        }
+        return buf;
+    }
+
+    /**
+     * Blocks the running thread until a part can be held in memory.
+     *
+     * @throws AbortedException
+     *             if the running thread is interrupted while acquiring a
+     *             semaphore
+     */
+    private void blockIfNecessary() {
+        try {
+            bufferPermits.acquire();
+        } catch (InterruptedException e) {
+            // don't want to re-interrupt so it won't cause SDK stream to be
+            // closed in case the thread is reused for a different request
+            throw new AbortedException(e);
+        }
+    }
+
+    /**
+     * Releases the given part buffer for reuse, unblocking a writer waiting
+     * for memory if any.
+     */
+    void release(byte[] partBuffer) {
+        freeBuffers.offer(partBuffer);
+        bufferPermits.release();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        if (buf != null) {
+            if (count == 0) {
+                release(buf);
+            } else {
+                // notify about the new part ready for processing
+                observer.onPartCreate(new PartCreationEvent(
+                        buf, count, partsCreated, true, this));
+            }
+            buf = null;
+        }
+    }
+
+    /**
+     * Releases all the buffers retained for reuse.
+     */
+    public void cleanup() {
+        freeBuffers.clear();
+    }
+
+    /**
+     * @return the number of parts created so far.
+     */
+    public int getNumPartsCreated() {
+        return partsCreated;
+    }
+
+    public long getPartSize() {
+        return partSize;
+    }
+
+    public long getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    public long getTotalBytesWritten() {
+        return totalBytesWritten;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+}
@@ -14,12 +14,22 @@
  */
 package com.amazonaws.services.s3.internal;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.InputStream;
 
 import com.amazonaws.services.s3.OnFileDelete;
 
+/**
+ * The creation of a ciphertext part ready for multi-part upload, either in the
+ * form of a file created by a {@link MultiFileOutputStream}, or held in memory
+ * by a {@link MultiPartBufferOutputStream}.
+ */
 public class PartCreationEvent {
     private final File part;
+    private final byte[] partBuffer;
+    private final int partBufferLength;
+    private final MultiPartBufferOutputStream partBufferOwner;
     private final int partNumber;
     private final boolean isLastPart;
     private final OnFileDelete fileDeleteObserver;
@@ -29,18 +39,71 @@ public class PartCreationEvent {
         if (part == null)
             throw new IllegalArgumentException("part must not be specified");
         this.part = part;
+        this.partBuffer = null;
+        this.partBufferLength = 0;
+        this.partBufferOwner = null;
         this.partNumber = partNumber;
         this.isLastPart = isLastPart;
         this.fileDeleteObserver = fileDeleteObserver;
     }
 
+    PartCreationEvent(byte[] partBuffer, int length, int partNumber,
+            boolean isLastPart, MultiPartBufferOutputStream partBufferOwner) {
+        if (partBuffer == null)
+            throw new IllegalArgumentException("part buffer must be specified");
+        this.part = null;
+        this.partBuffer = partBuffer;
+        this.partBufferLength = length;
+        this.partBufferOwner = partBufferOwner;
+        this.partNumber = partNumber;
+        this.isLastPart = isLastPart;
+        this.fileDeleteObserver = null;
+    }
+
     /**
-     * Returns a non-null part (in the form of a file) for multi-part upload.
+     * Returns the part (in the form of a file) for multi-part upload; or null
+     * if the part is held in memory.
+     *
+     * @see #isInMemory()
      */
     public File getPart() {
         return part;
     }
 
+    /**
+     * Returns true if the part is held in memory rather than in a file.
+     */
+    public boolean isInMemory() {
+        return partBuffer != null;
+    }
+
+    /**
+     * Returns a new input stream over the part held in memory, which supports
+     * mark and reset; or null if the part is a file.
+     */
+    public InputStream newPartInputStream() {
+        return partBuffer == null
+             ? null
+             : new ByteArrayInputStream(partBuffer, 0, partBufferLength);
+    }
+
+    /**
+     * Returns the size of the part in bytes.
+     */
+    public long getPartSize() {
+        return partBuffer == null ? part.length() : partBufferLength;
+    }
+
+    /**
+     * Releases the memory buffer of a part held in memory, so that it can be
+     * reused for another part. Must be called exactly once after the part has
+     * been uploaded, or has failed to be; does nothing if the part is a file.
+     */
+    public void releasePartBuffer() {
+        if (partBufferOwner != null)
+            partBufferOwner.release(partBuffer);
+    }
+
     public int getPartNumber() {
         return partNumber;
     }
@@ -24,10 +24,13 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.SocketException;
 import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
@@ -41,6 +44,7 @@ import org.apache.commons.logging.LogFactory;
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonWebServiceRequest;
 import com.amazonaws.Request;
+import com.amazonaws.internal.SdkDigestInputStream;
 import com.amazonaws.services.s3.AmazonS3Client;
 import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.ObjectMetadata;
@@ -51,7 +55,6 @@ import com.amazonaws.services.s3.transfer.exception.FileLockException;
 import com.amazonaws.util.BinaryUtils;
 import com.amazonaws.util.DateUtils;
 import com.amazonaws.util.HttpUtils;
-import com.amazonaws.util.Md5Utils;
 
 /**
  * General utility methods used throughout the AWS S3 Java client.
@@ -273,11 +276,18 @@ public class ServiceUtils {
             }
         }
 
+        // Multipart Uploads don't have an MD5 calculated on the service side.
+        // Server Side encryption with AWS KMS enabled objects has MD5 of
+        // cipher text. So the MD5 validation needs to be skipped.
+        final byte[] serverSideHash = performIntegrityCheck
+                ? getServerSideHash(s3Object.getObjectMetadata())
+                : null;
         if (!FileLocks.lock(dstfile)) {
             throw new FileLockException("Fail to lock " + dstfile
                     + " for appendData=" + appendData);
         }
         OutputStream outputStream = null;
+        MessageDigest digest = null;
         try {
             final long actualLen = dstfile.length();
             if (appendData && actualLen != expectedFileLength) {
@@ -287,11 +297,23 @@ public class ServiceUtils {
                             + expectedFileLength + " but actual length is "
                             + actualLen + " for file " + dstfile);
             }
+            InputStream content = s3Object.getObjectContent();
+            if (serverSideHash != null) {
+                // The digest is computed as the content is streamed to disk;
+                // when appending, it is first seeded with the content
+                // already in the file, which is only read this once.
+                digest = newMd5Digest();
+                if (digest != null) {
+                    if (appendData)
+                        updateDigest(digest, dstfile);
+                    content = new SdkDigestInputStream(content, digest);
+                }
+            }
             outputStream = new BufferedOutputStream(new FileOutputStream(
                     dstfile, appendData));
             byte[] buffer = new byte[1024*10];
             int bytesRead;
-            while ((bytesRead = s3Object.getObjectContent().read(buffer)) > -1) {
+            while ((bytesRead = content.read(buffer)) > -1) {
                 outputStream.write(buffer, 0, bytesRead);
             }
         } catch (IOException e) {
@@ -304,31 +326,57 @@ public class ServiceUtils {
             closeQuietly(s3Object.getObjectContent(), log);
         }
 
-        byte[] clientSideHash = null;
-        byte[] serverSideHash = null;
+        if (digest != null && !Arrays.equals(digest.digest(), serverSideHash)) {
+            throw new AmazonClientException("Unable to verify integrity of data download.  " +
+                    "Client calculated content hash didn't match hash calculated by Amazon S3.  " +
+                    "The data stored in '" + dstfile.getAbsolutePath() + "' may be corrupt.");
+        }
+    }
+
+    /**
+     * Returns the MD5 of the object content as given by its ETag; or null if
+     * the ETag is not the MD5 of the content, as for multipart uploads and
+     * server side encrypted objects.
+     */
+    private static byte[] getServerSideHash(ObjectMetadata metadata) {
+        if (metadata == null)
+            return null;
+        final String etag = metadata.getETag();
+        if (etag == null || isMultipartUploadETag(etag)
+        ||  skipMd5CheckPerResponse(metadata))
+            return null;
         try {
-            // Multipart Uploads don't have an MD5 calculated on the service
-            // side
-            // Server Side encryption with AWS KMS enabled objects has MD5 of
-            // cipher text. So the MD5 validation needs to be skipped.
-            final ObjectMetadata metadata = s3Object.getObjectMetadata();
-            if (metadata != null) {
-                final String etag = metadata.getETag();
-                if (!ServiceUtils.isMultipartUploadETag(etag)
-                &&  !skipMd5CheckPerResponse(metadata))
-                {
-                    clientSideHash = Md5Utils.computeMD5Hash(new FileInputStream(dstfile));
-                    serverSideHash = BinaryUtils.fromHex(etag);
-                }
-            }
+            return BinaryUtils.fromHex(etag);
         } catch (Exception e) {
-            log.warn("Unable to calculate MD5 hash to validate download: " + e.getMessage(), e);
+            log.warn("Unable to decode MD5 hash to validate download: " + e.getMessage(), e);
+            return null;
         }
+    }
 
-        if (performIntegrityCheck && clientSideHash != null && serverSideHash != null && !Arrays.equals(clientSideHash, serverSideHash)) {
-            throw new AmazonClientException("Unable to verify integrity of data download.  " +
-                    "Client calculated content hash didn't match hash calculated by Amazon S3.  " +
-                    "The data stored in '" + dstfile.getAbsolutePath() + "' may be corrupt.");
+    private static MessageDigest newMd5Digest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            log.warn("No MD5 digest algorithm available.  Unable to calculate "
+                    + "checksum and verify data integrity.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Updates the given digest with the current content of the given file.
+     */
+    private static void updateDigest(MessageDigest digest, File file)
+            throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[1024*10];
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) > -1) {
+                digest.update(buffer, 0, bytesRead);
+            }
+        } finally {
+            closeQuietly(in, log);
         }
     }
 
@@ -448,14 +496,11 @@ public class ServiceUtils {
      */
     public static boolean skipMd5CheckPerRequest(AmazonWebServiceRequest request) {
         if (request instanceof GetObjectRequest) {
-            if (System.getProperty("com.amazonaws.services.s3.disableGetObjectMD5Validation") != null)
-                return true;
             GetObjectRequest getObjectRequest = (GetObjectRequest)request;
             // Skip MD5 check for range get
             if (getObjectRequest.getRange() != null)
                 return true;
-            if (getObjectRequest.getSSECustomerKey() != null)
-                return true;
+            return skipMd5CheckPerObjectContent(getObjectRequest);
         } else if (request instanceof PutObjectRequest) {
             PutObjectRequest putObjectRequest = (PutObjectRequest)request;
             return putObjectRequest.getSSECustomerKey() != null
@@ -466,4 +511,22 @@ public class ServiceUtils {
         }
         return false;
     }
+
+    /**
+     * Returns whether the MD5 check should be skipped on the content of the
+     * object requested by the given request, irrespective of whether the
+     * content is retrieved as a whole or in ranges. Specifically, MD5 check
+     * should be skipped if the system property
+     *
+     * <pre>
+     * -Dcom.amazonaws.services.s3.disableGetObjectMD5Validation
+     * </pre>
+     *
+     * is specified, or the request involves SSE-C.
+     */
+    public static boolean skipMd5CheckPerObjectContent(GetObjectRequest getObjectRequest) {
+        if (System.getProperty("com.amazonaws.services.s3.disableGetObjectMD5Validation") != null)
+            return true;
+        return getObjectRequest.getSSECustomerKey() != null;
+    }
 }
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.internal.crypto;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.amazonaws.services.s3.model.CryptoConfiguration;
+
+/**
+ * A bounded cache of KMS data keys, so that a data key generated by KMS can
+ * be reused as the content encrypting key of several objects, and the data key
+ * of an object doesn't have to be decrypted by KMS again for every get.
+ * <p>
+ * A data key used for encryption is reused only within the limits of age,
+ * number of uses and number of bytes encrypted configured in the
+ * {@link CryptoConfiguration}; a decrypted data key only within the limit of
+ * age. The least recently used keys are evicted beyond the maximum number of
+ * entries. The plaintext keys held by the cache are zeroed when evicted.
+ * <p>
+ * Instances of this class are thread-safe.
+ */
+final class KMSDataKeyCache {
+    private final int maxEntries;
+    private final long maxAgeNanos;
+    private final long maxUses;
+    private final long maxBytes;
+
+    /** Data keys for encryption, keyed by master key id, encryption context and key spec. */
+    private final Map<CacheKey, Entry> encryptionKeys;
+    /** Decrypted data keys, keyed by encrypted key blob and encryption context. */
+    private final Map<CacheKey, Entry> decryptionKeys;
+
+    /**
+     * Returns a new cache configured with the given crypto configuration, or
+     * null if data key caching is disabled.
+     */
+    static KMSDataKeyCache from(CryptoConfiguration config) {
+        if (config.getKmsDataKeyCacheSize() <= 0)
+            return null;
+        return new KMSDataKeyCache(config.getKmsDataKeyCacheSize(),
+                config.getKmsDataKeyMaxAgeMillis(),
+                config.getKmsDataKeyMaxUses(),
+                config.getKmsDataKeyMaxBytes());
+    }
+
+    KMSDataKeyCache(int maxEntries, long maxAgeMillis, long maxUses, long maxBytes) {
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("maxEntries must be positive");
+        this.maxEntries = maxEntries;
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAgeMillis);
+        this.maxUses = maxUses;
+        this.maxBytes = maxBytes;
+        this.encryptionKeys = newLruMap();
+        this.decryptionKeys = newLruMap();
+    }
+
+    private Map<CacheKey, Entry> newLruMap() {
+        return new LinkedHashMap<CacheKey, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, Entry> eldest) {
+                if (size() <= maxEntries)
+                    return false;
+                eldest.getValue().destroy();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns a data key previously generated for the given master key,
+     * encryption context and key spec, accounting for one more use to encrypt
+     * the given number of bytes; or null if there is no such key within the
+     * limits of age, uses and bytes.
+     */
+    synchronized DataKey getForEncryption(String keyId,
+            Map<String, String> encryptionContext, String keySpec, long bytes) {
+        CacheKey key = new CacheKey(keyId, keySpec, encryptionContext);
+        Entry entry = encryptionKeys.get(key);
+        if (entry == null)
+            return null;
+        if (isExpired(entry) || entry.uses >= maxUses) {
+            encryptionKeys.remove(key).destroy();
+            return null;
+        }
+        if (bytes > maxBytes - entry.bytes)
+            return null;
+        entry.uses++;
+        entry.bytes += bytes;
+        return new DataKey(entry.plaintext.clone(), entry.ciphertextBlob.clone());
+    }
+
+    /**
+     * Caches a data key newly generated for the given master key, encryption
+     * context and key spec, which has been used once to encrypt the given
+     * number of bytes. The key is also cached for decryption.
+     */
+    synchronized void putForEncryption(String keyId,
+            Map<String, String> encryptionContext, String keySpec,
+            DataKey dataKey, long bytes) {
+        pruneExpired(encryptionKeys);
+        Entry entry = new Entry(dataKey.plaintext.clone(), dataKey.ciphertextBlob.clone());
+        entry.uses = 1;
+        entry.bytes = bytes;
+        Entry old = encryptionKeys.put(new CacheKey(keyId, keySpec, encryptionContext), entry);
+        if (old != null)
+            old.destroy();
+        putForDecryption(dataKey.ciphertextBlob, encryptionContext, dataKey.plaintext);
+    }
+
+    /**
+     * Returns a copy of the plaintext data key of the given encrypted key blob
+     * and encryption context, or null if not cached.
+     */
+    synchronized byte[] getForDecryption(byte[] ciphertextBlob,
+            Map<String, String> encryptionContext) {
+        CacheKey key = new CacheKey(ciphertextBlob, encryptionContext);
+        Entry entry = decryptionKeys.get(key);
+        if (entry == null)
+            return null;
+        if (isExpired(entry)) {
+            decryptionKeys.remove(key).destroy();
+            return null;
+        }
+        return entry.plaintext.clone();
+    }
+
+    /**
+     * Caches the plaintext data key of the given encrypted key blob and
+     * encryption context.
+     */
+    synchronized void putForDecryption(byte[] ciphertextBlob,
+            Map<String, String> encryptionContext, byte[] plaintext) {
+        pruneExpired(decryptionKeys);
+        Entry old = decryptionKeys.put(new CacheKey(ciphertextBlob, encryptionContext),
+                new Entry(plaintext.clone(), ciphertextBlob.clone()));
+        if (old != null)
+            old.destroy();
+    }
+
+    private boolean isExpired(Entry entry) {
+        return System.nanoTime() - entry.createdNanos > maxAgeNanos;
+    }
+
+    private void pruneExpired(Map<CacheKey, Entry> map) {
+        // Iterates from the least recently used entry
+        for (Iterator<Entry> it = map.values().iterator(); it.hasNext();) {
+            Entry e = it.next();
+            if (isExpired(e)) {
+                e.destroy();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * A plaintext data key and its encrypted key blob.
+     */
+    static final class DataKey {
+        final byte[] plaintext;
+        final byte[] ciphertextBlob;
+
+        DataKey(byte[] plaintext, byte[] ciphertextBlob) {
+            this.plaintext = plaintext;
+            this.ciphertextBlob = ciphertextBlob;
+        }
+    }
+
+    private static final class Entry {
+        final byte[] plaintext;
+        final byte[] ciphertextBlob;
+        final long createdNanos = System.nanoTime();
+        long uses;
+        long bytes;
+
+        Entry(byte[] plaintext, byte[] ciphertextBlob) {
+            this.plaintext = plaintext;
+            this.ciphertextBlob = ciphertextBlob;
+        }
+
+        void destroy() {
+            Arrays.fill(plaintext, (byte) 0);
+        }
+    }
+
+    private static final class CacheKey {
+        private final String keyId;
+        private final String keySpec;
+        private final byte[] ciphertextBlob;
+        private final Map<String, String> encryptionContext;
+        private final int hashCode;
+
+        CacheKey(String keyId, String keySpec, Map<String, String> encryptionContext) {
+            this(keyId, keySpec, null, encryptionContext);
+        }
+
+        CacheKey(byte[] ciphertextBlob, Map<String, String> encryptionContext) {
+            this(null, null, ciphertextBlob.clone(), encryptionContext);
+        }
+
+        private CacheKey(String keyId, String keySpec, byte[] ciphertextBlob,
+                Map<String, String> encryptionContext) {
+            this.keyId = keyId;
+            this.keySpec = keySpec;
+            this.ciphertextBlob = ciphertextBlob;
+            this.encryptionContext = encryptionContext == null
+                ? Collections.<String, String>emptyMap()
+                : new HashMap<String, String>(encryptionContext);
+            int h = keyId == null ? 0 : keyId.hashCode();
+            h = 31 * h + (keySpec == null ? 0 : keySpec.hashCode());
+            h = 31 * h + Arrays.hashCode(ciphertextBlob);
+            this.hashCode = 31 * h + this.encryptionContext.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof CacheKey))
+                return false;
+            CacheKey that = (CacheKey) obj;
+            return hashCode == that.hashCode
+                && (keyId == null ? that.keyId == null : keyId.equals(that.keyId))
+                && (keySpec == null ? that.keySpec == null : keySpec.equals(that.keySpec))
+                && Arrays.equals(ciphertextBlob, that.ciphertextBlob)
+                && encryptionContext.equals(that.encryptionContext);
+        }
+    }
+}
@@ -34,6 +34,7 @@ import java.io.OutputStream;
 import java.security.KeyPair;
 import java.security.NoSuchAlgorithmException;
 import java.security.Provider;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -107,6 +108,8 @@ public abstract class S3CryptoModuleBase<T extends MultipartUploadCryptoContext>
         Collections.synchronizedMap(new HashMap<String,T>());
     protected final S3Direct s3;
     protected final AWSKMSClient kms;
+    /** Cache of KMS data keys; or null if data keys are not cached. */
+    protected final KMSDataKeyCache kmsDataKeyCache;
 
     /**
      * @param cryptoConfig a read-only copy of the crypto configuration.
@@ -123,6 +126,7 @@ public abstract class S3CryptoModuleBase<T extends MultipartUploadCryptoContext>
         this.cryptoScheme = S3CryptoScheme.from(cryptoConfig.getCryptoMode());
         this.contentCryptoScheme = cryptoScheme.getContentCryptoScheme();
         this.kms = kms;
+        this.kmsDataKeyCache = KMSDataKeyCache.from(cryptoConfig);
     }
 
     /**
@@ -138,6 +142,7 @@ public abstract class S3CryptoModuleBase<T extends MultipartUploadCryptoContext>
         this.cryptoScheme = S3CryptoScheme.from(cryptoConfig.getCryptoMode());
         this.contentCryptoScheme = cryptoScheme.getContentCryptoScheme();
         this.kms = null;
+        this.kmsDataKeyCache = null;
     }
 
     /**
@@ -519,22 +524,14 @@ public abstract class S3CryptoModuleBase<T extends MultipartUploadCryptoContext>
         cryptoScheme.getSecureRandom().nextBytes(iv);
 
         if (kekMaterials.isKMSEnabled()) {
-            GenerateDataKeyRequest keyGenReq = new GenerateDataKeyRequest()
-                .withEncryptionContext(kekMaterials.getMaterialsDescription())
-                .withKeyId(kekMaterials.getCustomerMasterKeyId())
-                .withKeySpec(contentCryptoScheme.getKeySpec());
-            keyGenReq
-                .withGeneralProgressListener(req.getGeneralProgressListener())
-                .withRequestMetricCollector(req.getRequestMetricCollector())
-                ;
-            GenerateDataKeyResult keyGenRes = kms.generateDataKey(keyGenReq);
+            KMSDataKeyCache.DataKey dataKey = generateDataKey(kekMaterials, req);
             final SecretKey cek =
-                new SecretKeySpec(copyAllBytesFrom(keyGenRes.getPlaintext()),
+                new SecretKeySpec(dataKey.plaintext,
                         contentCryptoScheme.getKeyGeneratorAlgorithm());
-            byte[] keyBlob = copyAllBytesFrom(keyGenRes.getCiphertextBlob());
+            Arrays.fill(dataKey.plaintext, (byte) 0);
             return ContentCryptoMaterial.wrap(cek, iv,
                     kekMaterials, contentCryptoScheme, provider,
-                    new KMSSecuredCEK(keyBlob));
+                    new KMSSecuredCEK(dataKey.ciphertextBlob));
         } else {
             // Generate a one-time use symmetric key and initialize a cipher to encrypt object data
             return ContentCryptoMaterial.create(
@@ -543,6 +540,47 @@ public abstract class S3CryptoModuleBase<T extends MultipartUploadCryptoContext>
         }
     }
 
+    /**
+     * Returns a data key generated by KMS for the given KMS encryption
+     * materials, or reused from the data key cache if enabled and the size of
+     * the object to be encrypted is known.
+     */
+    private KMSDataKeyCache.DataKey generateDataKey(
+            EncryptionMaterials kekMaterials, AmazonWebServiceRequest req) {
+        final String keyId = kekMaterials.getCustomerMasterKeyId();
+        final Map<String, String> encryptionContext = kekMaterials.getMaterialsDescription();
+        final String keySpec = contentCryptoScheme.getKeySpec();
+        long bytes = -1;
+        if (kmsDataKeyCache != null && req instanceof PutObjectRequest) {
+            PutObjectRequest putReq = (PutObjectRequest) req;
+            bytes = plaintextLength(putReq, putReq.getMetadata() == null
+                    ? new ObjectMetadata() : putReq.getMetadata());
+        }
+        if (bytes >= 0) {
+            KMSDataKeyCache.DataKey dataKey = kmsDataKeyCache.getForEncryption(
+                    keyId, encryptionContext, keySpec, bytes);
+            if (dataKey != null)
+                return dataKey;
+        }
+        GenerateDataKeyRequest keyGenReq = new GenerateDataKeyRequest()
+            .withEncryptionContext(encryptionContext)
+            .withKeyId(keyId)
+            .withKeySpec(keySpec);
+        keyGenReq
+            .withGeneralProgressListener(req.getGeneralProgressListener())
+            .withRequestMetricCollector(req.getRequestMetricCollector())
+            ;
+        GenerateDataKeyResult keyGenRes = kms.generateDataKey(keyGenReq);
+        KMSDataKeyCache.DataKey dataKey = new KMSDataKeyCache.DataKey(
+                copyAllBytesFrom(keyGenRes.getPlaintext()),
+                copyAllBytesFrom(keyGenRes.getCiphertextBlob()));
+        if (bytes >= 0) {
+            kmsDataKeyCache.putForEncryption(keyId, encryptionContext,
+                    keySpec, dataKey, bytes);
+        }
+        return dataKey;
+    }
+
     /**
      * @param kekMaterials non-null encryption materials
      */
@@ -851,7 +889,8 @@ public abstract class S3CryptoModuleBase<T extends MultipartUploadCryptoContext>
                     kekMaterialsProvider,
                     cryptoConfig.getCryptoProvider(),
                     false,   // existing CEK not necessarily key-wrapped
-                    kms
+                    kms,
+                    kmsDataKeyCache
                 );
         }
         S3ObjectWrapper orig_ifile =
@@ -877,7 +916,8 @@ public abstract class S3CryptoModuleBase<T extends MultipartUploadCryptoContext>
             kekMaterialsProvider,
             cryptoConfig.getCryptoProvider(),
             false,   // existing CEK not necessarily key-wrapped
-            kms
+            kms,
+            kmsDataKeyCache
         );
     }
 
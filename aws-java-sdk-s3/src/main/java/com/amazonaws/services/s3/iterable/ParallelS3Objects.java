@@ -0,0 +1,541 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.iterable;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+/**
+ * Provides a way to iterate over a large number of Amazon S3 objects faster
+ * than {@link S3Objects}, by listing several partitions of the keyspace
+ * concurrently. For example:
+ *
+ * <pre class="brush: java">
+ * ParallelS3Objects objects = ParallelS3Objects.withPrefix(s3, &quot;my-bucket&quot;, &quot;photos/&quot;)
+ *     .withDelimiter(&quot;/&quot;)
+ *     .withParallelism(16);
+ * for ( S3ObjectSummary summary : objects ) {
+ *     System.out.printf(&quot;Object with key '%s'\n&quot;, summary.getKey());
+ * }
+ * </pre>
+ * <p>
+ * The keyspace is partitioned either by the common prefixes discovered by
+ * listing with a delimiter (see {@link #withDelimiter(String)}), or by the
+ * given key range splits (see {@link #withKeyRangeSplits(String...)}).
+ * Without either, the keyspace is a single partition, whose next page is
+ * fetched ahead of time.
+ * <p>
+ * Up to {@link #getParallelism()} partitions are listed at a time, and each
+ * of them may be ahead of the caller by at most two pages, so that the number
+ * of listed but not yet iterated object summaries is bounded. By default,
+ * the object summaries are returned in key order; when the order doesn't
+ * matter, {@link #withOrdered(boolean)} allows them to be returned as soon as
+ * they are listed.
+ * <p>
+ * The iterators of this class must be closed if they are not iterated until
+ * the end, so as to release their resources.
+ */
+public class ParallelS3Objects implements Iterable<S3ObjectSummary> {
+
+    /** The default number of partitions listed concurrently. */
+    public static final int DEFAULT_PARALLELISM = 8;
+
+    /** The maximum number of listed pages not yet iterated, per partition. */
+    private static final int MAX_PENDING_PAGES_PER_PARTITION = 2;
+
+    private final AmazonS3 s3;
+    private final String bucketName;
+    private String prefix = null;
+    private Integer batchSize = null;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private String delimiter = null;
+    private List<String> keyRangeSplits = null;
+    private boolean ordered = true;
+    private ExecutorService executorService = null;
+
+    private ParallelS3Objects(AmazonS3 s3, String bucketName) {
+        this.s3 = s3;
+        this.bucketName = bucketName;
+    }
+
+    /**
+     * Constructs an iterable that covers all the objects in an Amazon S3
+     * bucket.
+     *
+     * @param s3
+     *            The Amazon S3 client.
+     * @param bucketName
+     *            The bucket name.
+     * @return An iterable for object summaries.
+     */
+    public static ParallelS3Objects inBucket(AmazonS3 s3, String bucketName) {
+        return new ParallelS3Objects(s3, bucketName);
+    }
+
+    /**
+     * Constructs an iterable that covers the objects in an Amazon S3 bucket
+     * where the key begins with the given prefix.
+     *
+     * @param s3
+     *            The Amazon S3 client.
+     * @param bucketName
+     *            The bucket name.
+     * @param prefix
+     *            The prefix.
+     * @return An iterable for object summaries.
+     */
+    public static ParallelS3Objects withPrefix(AmazonS3 s3, String bucketName, String prefix) {
+        ParallelS3Objects objects = new ParallelS3Objects(s3, bucketName);
+        objects.prefix = prefix;
+        return objects;
+    }
+
+    /**
+     * Sets the batch size, i.e., how many {@link S3ObjectSummary}s will be
+     * fetched at once.
+     *
+     * @param batchSize
+     *            How many object summaries to fetch at once.
+     */
+    public ParallelS3Objects withBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of partitions listed concurrently.
+     *
+     * @param parallelism
+     *            The maximum number of partitions listed concurrently; must
+     *            be at least 1.
+     */
+    public ParallelS3Objects withParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Partitions the keyspace by the common prefixes of the keys, up to the
+     * first occurrence of the given delimiter after the prefix. The common
+     * prefixes are discovered by listing with the delimiter before listing
+     * the partitions, so this works best when there are few keys without
+     * the delimiter after the prefix.
+     *
+     * @param delimiter
+     *            The delimiter, such as "/".
+     */
+    public ParallelS3Objects withDelimiter(String delimiter) {
+        this.delimiter = delimiter;
+        return this;
+    }
+
+    /**
+     * Partitions the keyspace by the given keys, each of which is the last
+     * key (inclusive) of a partition; the first partition starts at the
+     * beginning of the keyspace, and the last one ends at its end. The keys
+     * need not exist, and are typically picked from a previous listing or an
+     * inventory, so that the partitions have a similar number of keys.
+     *
+     * @param splitKeys
+     *            The keys at which the keyspace is split.
+     */
+    public ParallelS3Objects withKeyRangeSplits(String... splitKeys) {
+        List<String> splits = new ArrayList<String>(Arrays.asList(splitKeys));
+        Collections.sort(splits);
+        this.keyRangeSplits = splits;
+        return this;
+    }
+
+    /**
+     * Sets whether the object summaries are returned in key order, which is
+     * the default, or as soon as they are listed.
+     *
+     * @param ordered
+     *            Whether to return the object summaries in key order.
+     */
+    public ParallelS3Objects withOrdered(boolean ordered) {
+        this.ordered = ordered;
+        return this;
+    }
+
+    /**
+     * Sets the executor service on which the partitions are listed. By
+     * default, each iterator uses its own thread pool, which is shut down
+     * when the iterator reaches its end or is closed.
+     *
+     * @param executorService
+     *            The executor service on which the partitions are listed.
+     */
+    public ParallelS3Objects withExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+        return this;
+    }
+
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public String getBucketName() {
+        return bucketName;
+    }
+
+    public AmazonS3 getS3() {
+        return s3;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public String getDelimiter() {
+        return delimiter;
+    }
+
+    public List<String> getKeyRangeSplits() {
+        return keyRangeSplits == null ? null : Collections.unmodifiableList(keyRangeSplits);
+    }
+
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    @Override
+    public ParallelS3ObjectIterator iterator() {
+        if (delimiter != null && keyRangeSplits != null) {
+            throw new IllegalStateException(
+                "The keyspace can be partitioned either by delimiter or by key range splits, not both");
+        }
+        return new ParallelS3ObjectIterator();
+    }
+
+    /**
+     * An iterator over the object summaries of partitions listed concurrently.
+     * Instances are not safe for use by multiple threads.
+     */
+    public final class ParallelS3ObjectIterator implements Iterator<S3ObjectSummary>, Closeable {
+        /** Guards the state of the partitions, and is notified of new pages. */
+        private final Object lock = new Object();
+        /** The partitions, in key order; null until discovered. */
+        private List<Partition> partitions;
+        /** The index of the next partition to start listing. */
+        private int nextPartition;
+        /** The started partitions not yet fully iterated, in key order. */
+        private final LinkedList<Partition> window = new LinkedList<Partition>();
+        private Iterator<S3ObjectSummary> currentPage;
+        private ExecutorService executor;
+        private boolean ownsExecutor;
+        private RuntimeException failure;
+        private boolean closed;
+
+        private ParallelS3ObjectIterator() {
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (currentPage == null || !currentPage.hasNext()) {
+                if (closed)
+                    return false;
+                if (partitions == null)
+                    start();
+                currentPage = nextPage();
+                if (currentPage == null) {
+                    close();
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public S3ObjectSummary next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return currentPage.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Stops listing the partitions, and releases the resources of this
+         * iterator. Pages being listed are discarded once listed.
+         */
+        @Override
+        public void close() {
+            currentPage = null;
+            synchronized (lock) {
+                if (closed)
+                    return;
+                closed = true;
+                for (Partition partition : window)
+                    partition.pages.clear();
+                window.clear();
+            }
+            if (ownsExecutor)
+                executor.shutdown();
+        }
+
+        /**
+         * Discovers the partitions and starts listing them.
+         */
+        private void start() {
+            try {
+                partitions = discoverPartitions();
+            } catch (RuntimeException e) {
+                close();
+                throw e;
+            }
+            if (executorService == null) {
+                executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+                    private final AtomicInteger threadCount = new AtomicInteger(0);
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r);
+                        thread.setName("s3-parallel-listing-worker-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+                ownsExecutor = true;
+            } else {
+                executor = executorService;
+            }
+            synchronized (lock) {
+                startPartitions();
+            }
+        }
+
+        private List<Partition> discoverPartitions() {
+            List<Partition> result = new ArrayList<Partition>();
+            if (keyRangeSplits != null) {
+                String marker = null;
+                for (String splitKey : keyRangeSplits) {
+                    result.add(new Partition(prefix, marker, splitKey));
+                    marker = splitKey;
+                }
+                result.add(new Partition(prefix, marker, null));
+                return result;
+            }
+            if (delimiter == null) {
+                result.add(new Partition(prefix, null, null));
+                return result;
+            }
+            ObjectListing listing = s3.listObjects(new ListObjectsRequest(
+                    bucketName, prefix, null, delimiter, batchSize));
+            List<S3ObjectSummary> summaries = new ArrayList<S3ObjectSummary>();
+            List<String> commonPrefixes = new ArrayList<String>();
+            while (true) {
+                summaries.addAll(listing.getObjectSummaries());
+                commonPrefixes.addAll(listing.getCommonPrefixes());
+                if (!listing.isTruncated())
+                    break;
+                listing = s3.listNextBatchOfObjects(listing);
+            }
+            // Interleave the partitions of the common prefixes with those of
+            // the keys without delimiter, which are already listed, in key
+            // order. No such key starts with a common prefix, so comparing
+            // it with the prefix orders it relative to all keys of the prefix.
+            Collections.sort(commonPrefixes);
+            int i = 0;
+            for (String commonPrefix : commonPrefixes) {
+                int start = i;
+                while (i < summaries.size() && summaries.get(i).getKey().compareTo(commonPrefix) < 0)
+                    i++;
+                if (i > start)
+                    result.add(new Partition(summaries.subList(start, i)));
+                result.add(new Partition(commonPrefix, null, null));
+            }
+            if (i < summaries.size())
+                result.add(new Partition(summaries.subList(i, summaries.size())));
+            return result;
+        }
+
+        /**
+         * Starts listing partitions until the window is full. Must be called
+         * with the lock held.
+         */
+        private void startPartitions() {
+            while (!closed && window.size() < parallelism && nextPartition < partitions.size()) {
+                Partition partition = partitions.get(nextPartition);
+                partitions.set(nextPartition++, null); // no longer needed
+                window.add(partition);
+                if (!partition.done)
+                    schedule(partition);
+            }
+        }
+
+        /**
+         * Returns the next page to iterate over, waiting for it to be listed
+         * if necessary; or null if there is none left.
+         */
+        private Iterator<S3ObjectSummary> nextPage() {
+            synchronized (lock) {
+                scan:
+                while (true) {
+                    if (failure != null) {
+                        RuntimeException e = failure;
+                        failure = null;
+                        close();
+                        throw e;
+                    }
+                    for (Iterator<Partition> it = window.iterator(); it.hasNext();) {
+                        Partition partition = it.next();
+                        if (!partition.pages.isEmpty()) {
+                            List<S3ObjectSummary> page = partition.pages.removeFirst();
+                            if (!partition.done && !partition.running)
+                                schedule(partition);
+                            return page.iterator();
+                        }
+                        if (partition.done) {
+                            it.remove();
+                            startPartitions();
+                            continue scan;
+                        }
+                        if (ordered)
+                            break;
+                    }
+                    if (window.isEmpty())
+                        return null;
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        close();
+                        throw new AmazonClientException("Interrupted while waiting for the listing", e);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Lists the next page of the given partition on the executor. Must be
+         * called with the lock held.
+         */
+        private void schedule(Partition partition) {
+            partition.running = true;
+            try {
+                executor.execute(partition);
+            } catch (RejectedExecutionException e) {
+                partition.running = false;
+                failure = new AmazonClientException("Unable to list the partition", e);
+                lock.notifyAll();
+            }
+        }
+
+        /**
+         * A partition of the keyspace, listed one page per run.
+         */
+        private final class Partition implements Runnable {
+            private final String partitionPrefix;
+            /** The key after which the partition starts, if any. */
+            private final String marker;
+            /** The last key (inclusive) of the partition, if any. */
+            private final String lastKey;
+            /** The listed pages not yet iterated. Guarded by the lock. */
+            private final LinkedList<List<S3ObjectSummary>> pages =
+                new LinkedList<List<S3ObjectSummary>>();
+            /** Guarded by the lock. */
+            private boolean running;
+            /** Whether the last page has been listed. Guarded by the lock. */
+            private boolean done;
+            /** Only accessed by the run of the partition. */
+            private ObjectListing listing;
+
+            Partition(String partitionPrefix, String marker, String lastKey) {
+                this.partitionPrefix = partitionPrefix;
+                this.marker = marker;
+                this.lastKey = lastKey;
+            }
+
+            /**
+             * Constructs a partition of the given already listed summaries.
+             */
+            Partition(List<S3ObjectSummary> summaries) {
+                this(null, null, null);
+                pages.add(summaries);
+                done = true;
+            }
+
+            @Override
+            public void run() {
+                try {
+                    listing = listing == null
+                        ? s3.listObjects(new ListObjectsRequest(
+                                bucketName, partitionPrefix, marker, null, batchSize))
+                        : s3.listNextBatchOfObjects(listing);
+                } catch (RuntimeException e) {
+                    synchronized (lock) {
+                        running = false;
+                        if (!closed && failure == null)
+                            failure = e;
+                        lock.notifyAll();
+                    }
+                    return;
+                }
+                List<S3ObjectSummary> page = listing.getObjectSummaries();
+                boolean last = !listing.isTruncated();
+                if (lastKey != null) {
+                    int end = page.size();
+                    while (end > 0 && page.get(end - 1).getKey().compareTo(lastKey) > 0)
+                        end--;
+                    if (end < page.size()) {
+                        page = page.subList(0, end);
+                        last = true;
+                    }
+                }
+                synchronized (lock) {
+                    running = false;
+                    if (closed)
+                        return;
+                    if (!page.isEmpty())
+                        pages.add(page);
+                    done = last;
+                    if (!done && pages.size() < MAX_PENDING_PAGES_PER_PARTITION)
+                        schedule(this);
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+}
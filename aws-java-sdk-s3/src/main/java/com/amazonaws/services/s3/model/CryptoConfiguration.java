@@ -44,6 +44,27 @@ public class CryptoConfiguration implements Cloneable {
      */
     private Regions kmsRegion;
 
+    /** Data key caching is disabled by default. */
+    public static final int DEFAULT_KMS_DATA_KEY_CACHE_SIZE = 0;
+    /** One minute. */
+    public static final long DEFAULT_KMS_DATA_KEY_MAX_AGE_MILLIS = 60 * 1000;
+    /** 100 objects. */
+    public static final long DEFAULT_KMS_DATA_KEY_MAX_USES = 100;
+    /** 1 GiB. */
+    public static final long DEFAULT_KMS_DATA_KEY_MAX_BYTES = 1L << 30;
+
+    /**
+     * The maximum number of KMS data keys cached for encryption, and for
+     * decryption; or zero if data keys are not cached.
+     */
+    private int kmsDataKeyCacheSize = DEFAULT_KMS_DATA_KEY_CACHE_SIZE;
+    /** The maximum time a cached KMS data key is used. */
+    private long kmsDataKeyMaxAgeMillis = DEFAULT_KMS_DATA_KEY_MAX_AGE_MILLIS;
+    /** The maximum number of objects encrypted with a cached KMS data key. */
+    private long kmsDataKeyMaxUses = DEFAULT_KMS_DATA_KEY_MAX_USES;
+    /** The maximum number of bytes encrypted with a cached KMS data key. */
+    private long kmsDataKeyMaxBytes = DEFAULT_KMS_DATA_KEY_MAX_BYTES;
+
     /**
      * Creates a new CryptoConfiguration object with default storage mode and
      * crypto provider settings. The default storage mode is the Object Metadata
@@ -283,6 +304,30 @@ public class CryptoConfiguration implements Cloneable {
         @Override public CryptoConfiguration withKmsRegion(Regions kmsRegion) {
             throw new UnsupportedOperationException();
         }
+        @Override public void setKmsDataKeyCacheSize(int kmsDataKeyCacheSize) {
+            throw new UnsupportedOperationException();
+        }
+        @Override public CryptoConfiguration withKmsDataKeyCacheSize(int kmsDataKeyCacheSize) {
+            throw new UnsupportedOperationException();
+        }
+        @Override public void setKmsDataKeyMaxAgeMillis(long kmsDataKeyMaxAgeMillis) {
+            throw new UnsupportedOperationException();
+        }
+        @Override public CryptoConfiguration withKmsDataKeyMaxAgeMillis(long kmsDataKeyMaxAgeMillis) {
+            throw new UnsupportedOperationException();
+        }
+        @Override public void setKmsDataKeyMaxUses(long kmsDataKeyMaxUses) {
+            throw new UnsupportedOperationException();
+        }
+        @Override public CryptoConfiguration withKmsDataKeyMaxUses(long kmsDataKeyMaxUses) {
+            throw new UnsupportedOperationException();
+        }
+        @Override public void setKmsDataKeyMaxBytes(long kmsDataKeyMaxBytes) {
+            throw new UnsupportedOperationException();
+        }
+        @Override public CryptoConfiguration withKmsDataKeyMaxBytes(long kmsDataKeyMaxBytes) {
+            throw new UnsupportedOperationException();
+        }
     }
 
     /**
@@ -305,6 +350,10 @@ public class CryptoConfiguration implements Cloneable {
         that.cryptoProvider = this.cryptoProvider;
         that.ignoreMissingInstructionFile = this.ignoreMissingInstructionFile;
         that.kmsRegion = this.kmsRegion;
+        that.kmsDataKeyCacheSize = this.kmsDataKeyCacheSize;
+        that.kmsDataKeyMaxAgeMillis = this.kmsDataKeyMaxAgeMillis;
+        that.kmsDataKeyMaxUses = this.kmsDataKeyMaxUses;
+        that.kmsDataKeyMaxBytes = this.kmsDataKeyMaxBytes;
         return that;
     }
 
@@ -342,4 +391,117 @@ public class CryptoConfiguration implements Cloneable {
         this.kmsRegion = kmsRegion;
         return this;
     }
+
+    /**
+     * Returns the maximum number of KMS data keys cached for encryption, and
+     * for decryption; or zero, the default, if data keys are not cached.
+     */
+    public int getKmsDataKeyCacheSize() {
+        return kmsDataKeyCacheSize;
+    }
+
+    /**
+     * Sets the maximum number of KMS data keys cached for encryption, and for
+     * decryption; or zero to disable caching, which is the default.
+     * <p>
+     * When enabled, the data key generated by KMS for an object encrypted with
+     * a KMS customer master key is reused as the content encrypting key of
+     * other objects encrypted with the same master key and material
+     * description, within the limits of age, uses and bytes of the data keys.
+     * Objects whose size isn't known upfront, such as multipart uploads,
+     * always get a new data key. Similarly, a data key decrypted by KMS when
+     * getting an object is reused to get other objects with the same
+     * encrypted data key and material description, within the limit of age.
+     * This saves a KMS request per object, at the cost of holding plaintext
+     * data keys in memory for longer.
+     */
+    public void setKmsDataKeyCacheSize(int kmsDataKeyCacheSize) {
+        this.kmsDataKeyCacheSize = kmsDataKeyCacheSize;
+    }
+
+    /**
+     * Fluent API for setting the maximum number of KMS data keys cached for
+     * encryption, and for decryption; or zero to disable caching.
+     *
+     * @see #setKmsDataKeyCacheSize(int)
+     */
+    public CryptoConfiguration withKmsDataKeyCacheSize(int kmsDataKeyCacheSize) {
+        this.kmsDataKeyCacheSize = kmsDataKeyCacheSize;
+        return this;
+    }
+
+    /**
+     * Returns the maximum time in milliseconds a cached KMS data key is used,
+     * since it was generated or decrypted by KMS. Default is one minute.
+     */
+    public long getKmsDataKeyMaxAgeMillis() {
+        return kmsDataKeyMaxAgeMillis;
+    }
+
+    /**
+     * Sets the maximum time in milliseconds a cached KMS data key is used,
+     * since it was generated or decrypted by KMS.
+     */
+    public void setKmsDataKeyMaxAgeMillis(long kmsDataKeyMaxAgeMillis) {
+        this.kmsDataKeyMaxAgeMillis = kmsDataKeyMaxAgeMillis;
+    }
+
+    /**
+     * Fluent API for setting the maximum time in milliseconds a cached KMS
+     * data key is used.
+     */
+    public CryptoConfiguration withKmsDataKeyMaxAgeMillis(long kmsDataKeyMaxAgeMillis) {
+        this.kmsDataKeyMaxAgeMillis = kmsDataKeyMaxAgeMillis;
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of objects encrypted with the same cached KMS
+     * data key. Default is 100.
+     */
+    public long getKmsDataKeyMaxUses() {
+        return kmsDataKeyMaxUses;
+    }
+
+    /**
+     * Sets the maximum number of objects encrypted with the same cached KMS
+     * data key.
+     */
+    public void setKmsDataKeyMaxUses(long kmsDataKeyMaxUses) {
+        this.kmsDataKeyMaxUses = kmsDataKeyMaxUses;
+    }
+
+    /**
+     * Fluent API for setting the maximum number of objects encrypted with the
+     * same cached KMS data key.
+     */
+    public CryptoConfiguration withKmsDataKeyMaxUses(long kmsDataKeyMaxUses) {
+        this.kmsDataKeyMaxUses = kmsDataKeyMaxUses;
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of plaintext bytes encrypted with the same
+     * cached KMS data key. Default is 1 GiB.
+     */
+    public long getKmsDataKeyMaxBytes() {
+        return kmsDataKeyMaxBytes;
+    }
+
+    /**
+     * Sets the maximum number of plaintext bytes encrypted with the same
+     * cached KMS data key.
+     */
+    public void setKmsDataKeyMaxBytes(long kmsDataKeyMaxBytes) {
+        this.kmsDataKeyMaxBytes = kmsDataKeyMaxBytes;
+    }
+
+    /**
+     * Fluent API for setting the maximum number of plaintext bytes encrypted
+     * with the same cached KMS data key.
+     */
+    public CryptoConfiguration withKmsDataKeyMaxBytes(long kmsDataKeyMaxBytes) {
+        this.kmsDataKeyMaxBytes = kmsDataKeyMaxBytes;
+        return this;
+    }
 }
@@ -70,6 +70,14 @@ public class UploadObjectRequest extends AbstractPutObjectRequest implements
      */
     private long diskLimit = Long.MAX_VALUE;
 
+    /**
+     * Limitation (in bytes) on the memory used for holding the ciphertext
+     * parts of this request in memory instead of in temporary files; must be
+     * at least twice the amount of the specified {@link #partSize}. The
+     * default is zero, which means the parts are written to temporary files.
+     */
+    private long memoryLimit;
+
     public UploadObjectRequest(String bucketName, String key, File file) {
         super(bucketName, key, file);
     }
@@ -124,6 +132,32 @@ public class UploadObjectRequest extends AbstractPutObjectRequest implements
         return this;
     }
 
+    /**
+     * Returns the maximum size (in bytes) of memory that will be used for
+     * holding the ciphertext parts of this request; or zero if the parts are
+     * written to temporary files instead.
+     */
+    public long getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    /**
+     * Configures the maximum memory (in bytes) that will be used for holding
+     * the ciphertext parts of this request in memory, so that each part is
+     * uploaded as soon as it has been encrypted without being written to a
+     * temporary file. The maximum memory must be at least twice the size of
+     * {@link #partSize}, and the part size must then be at most
+     * {@link Integer#MAX_VALUE}. Zero, the default, means the parts are
+     * written to temporary files subject to the {@link #getDiskLimit() disk
+     * limit}.
+     *
+     * @return this object for method chaining purposes
+     */
+    public UploadObjectRequest withMemoryLimit(long memoryLimit) {
+        this.memoryLimit = memoryLimit;
+        return this;
+    }
+
     /**
      * Returns a custom executor service for concurrent uploads; or null there
      * is no customization.
@@ -250,6 +284,7 @@ public class UploadObjectRequest extends AbstractPutObjectRequest implements
                     : new HashMap<String, String>(materialsDescription))
                 .withDiskLimit(getDiskLimit())
                 .withExecutorService(getExecutorService())
+                .withMemoryLimit(getMemoryLimit())
                 .withMultiFileOutputStream(getMultiFileOutputStream())
                 .withPartSize(getPartSize())
                 .withUploadObjectObserver(getUploadObjectObserver())
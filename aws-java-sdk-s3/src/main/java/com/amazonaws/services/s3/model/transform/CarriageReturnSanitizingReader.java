@@ -0,0 +1,137 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.model.transform;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A reader replacing any carriage return (\r) character with an explicit XML
+ * character entity as the characters are read, to prevent the SAX parser from
+ * misinterpreting 0x0D characters as 0x0A and being unable to parse the XML,
+ * without having to read the whole document in memory first.
+ * <p>
+ * The characters of the underlying reader are read in chunks, so there is no
+ * need to buffer it.
+ */
+class CarriageReturnSanitizingReader extends FilterReader {
+    private static final char[] CR_ENTITY = "&#013;".toCharArray();
+    private static final int BUFFER_SIZE = 8192;
+
+    private final char[] buf = new char[BUFFER_SIZE];
+    /** The position of the next character to read from the buffer. */
+    private int pos;
+    /** The number of characters in the buffer. */
+    private int limit;
+    /** The position of the next character of the entity to emit, if any. */
+    private int entityPos = CR_ENTITY.length;
+
+    CarriageReturnSanitizingReader(Reader in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (entityPos < CR_ENTITY.length)
+            return CR_ENTITY[entityPos++];
+        if (pos == limit && !fill())
+            return -1;
+        char c = buf[pos++];
+        if (c != '\r')
+            return c;
+        entityPos = 1;
+        return CR_ENTITY[0];
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        int n = 0;
+        while (n < len) {
+            if (entityPos < CR_ENTITY.length) {
+                int count = Math.min(len - n, CR_ENTITY.length - entityPos);
+                System.arraycopy(CR_ENTITY, entityPos, cbuf, off + n, count);
+                entityPos += count;
+                n += count;
+                continue;
+            }
+            if (pos == limit) {
+                // Don't block for more once some characters are available
+                if (n > 0 && !in.ready())
+                    break;
+                if (!fill())
+                    break;
+            }
+            // Copy up to the next carriage return
+            int end = Math.min(limit, pos + len - n);
+            int start = pos;
+            while (pos < end && buf[pos] != '\r')
+                pos++;
+            System.arraycopy(buf, start, cbuf, off + n, pos - start);
+            n += pos - start;
+            if (pos < end) {
+                pos++;
+                entityPos = 0;
+            }
+        }
+        return n == 0 ? -1 : n;
+    }
+
+    /**
+     * Reads the next chunk of characters into the buffer, returning false at
+     * the end of the underlying reader.
+     */
+    private boolean fill() throws IOException {
+        int read;
+        do {
+            read = in.read(buf, 0, buf.length);
+        } while (read == 0);
+        if (read < 0)
+            return false;
+        pos = 0;
+        limit = read;
+        return true;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && read() != -1)
+            skipped++;
+        return skipped;
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+        return entityPos < CR_ENTITY.length || pos < limit || in.ready();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readAheadLimit) throws IOException {
+        throw new IOException("mark() not supported");
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("reset() not supported");
+    }
+}
@@ -24,6 +24,7 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
@@ -146,9 +147,7 @@ public class XmlResponsesSaxParser {
 
             BufferedReader breader = new BufferedReader(new InputStreamReader(inputStream,
                 Constants.DEFAULT_ENCODING));
-            xr.setContentHandler(handler);
-            xr.setErrorHandler(handler);
-            xr.parse(new InputSource(breader));
+            parseXmlReader(handler, breader);
 
         } catch (IOException e) {
             throw e;
@@ -166,6 +165,64 @@ public class XmlResponsesSaxParser {
         }
     }
 
+    /**
+     * Parses an XML document from an input stream using a document handler,
+     * after replacing any carriage return (\r) characters with explicit XML
+     * character entities, unless sanitizing is disabled. The characters are
+     * replaced as the document is parsed, so the document is never held in
+     * memory as a whole.
+     *
+     * @param handler
+     *            the handler for the XML document
+     * @param inputStream
+     *            an input stream containing the XML document to parse
+     *
+     * @throws IOException
+     *             on error reading from the input stream (ie connection reset)
+     * @throws AmazonClientException
+     *             on error with malformed XML, etc
+     */
+    protected void parseSanitizedXmlInputStream(DefaultHandler handler, InputStream inputStream)
+            throws IOException {
+        if (!sanitizeXmlDocument) {
+            parseXmlInputStream(handler, inputStream);
+            return;
+        }
+        try {
+            if (log.isDebugEnabled()) {
+                log.debug("Parsing sanitized XML response document with handler: " + handler.getClass());
+            }
+            parseXmlReader(handler, new CarriageReturnSanitizingReader(
+                new InputStreamReader(inputStream, Constants.DEFAULT_ENCODING)));
+        } catch (IOException e) {
+            throw e;
+
+        } catch (Throwable t) {
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+                if (log.isErrorEnabled()) {
+                    log.error("Unable to close response InputStream up after XML parse failure", e);
+                }
+            }
+            throw new AmazonClientException("Failed to parse XML document with handler "
+                + handler.getClass(), t);
+        }
+    }
+
+    private void parseXmlReader(DefaultHandler handler, Reader reader)
+            throws IOException, SAXException {
+        xr.setContentHandler(handler);
+        xr.setErrorHandler(handler);
+        xr.parse(new InputSource(reader));
+    }
+
+    /**
+     * @deprecated The listing responses are now sanitized as they are parsed,
+     *             by {@link #parseSanitizedXmlInputStream(DefaultHandler, InputStream)},
+     *             instead of being read in memory first.
+     */
+    @Deprecated
     protected InputStream sanitizeXmlDocument(DefaultHandler handler, InputStream inputStream)
             throws IOException {
 
@@ -296,7 +353,7 @@ public class XmlResponsesSaxParser {
     public ListBucketHandler parseListBucketObjectsResponse(InputStream inputStream)
             throws IOException {
         ListBucketHandler handler = new ListBucketHandler();
-        parseXmlInputStream(handler, sanitizeXmlDocument(handler, inputStream));
+        parseSanitizedXmlInputStream(handler, inputStream);
         return handler;
     }
 
@@ -312,7 +369,7 @@ public class XmlResponsesSaxParser {
     public ListVersionsHandler parseListVersionsResponse(InputStream inputStream)
             throws IOException {
         ListVersionsHandler handler = new ListVersionsHandler();
-        parseXmlInputStream(handler, sanitizeXmlDocument(handler, inputStream));
+        parseSanitizedXmlInputStream(handler, inputStream);
         return handler;
     }
 
@@ -328,7 +385,7 @@ public class XmlResponsesSaxParser {
     public ListAllMyBucketsHandler parseListMyBucketsResponse(InputStream inputStream)
             throws IOException {
         ListAllMyBucketsHandler handler = new ListAllMyBucketsHandler();
-        parseXmlInputStream(handler, sanitizeXmlDocument(handler, inputStream));
+        parseSanitizedXmlInputStream(handler, inputStream);
         return handler;
     }
 
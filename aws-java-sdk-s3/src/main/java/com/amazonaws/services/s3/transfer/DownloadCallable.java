@@ -48,6 +48,7 @@ final class DownloadCallable implements Callable<File> {
     private final DownloadImpl download;
     private final File dstfile;
     private final long origStartingByte;
+    private final boolean isWholeObjectDownload;
     
     private long expectedFileLength;
 
@@ -55,7 +56,7 @@ final class DownloadCallable implements Callable<File> {
             GetObjectRequest req,
             boolean resumeExistingDownload,
             DownloadImpl download, File dstfile, long origStartingByte,
-            long expectedFileLength) 
+            long expectedFileLength, boolean isWholeObjectDownload)
     {
         if (s3 == null || latch == null || req == null || dstfile == null || download == null)
             throw new IllegalArgumentException();
@@ -67,6 +68,7 @@ final class DownloadCallable implements Callable<File> {
         this.dstfile = dstfile;
         this.origStartingByte = origStartingByte;
         this.expectedFileLength = expectedFileLength;
+        this.isWholeObjectDownload = isWholeObjectDownload;
     }
 
     /**
@@ -82,7 +84,7 @@ final class DownloadCallable implements Callable<File> {
             latch.await();
             download.setState(TransferState.InProgress);
             S3Object s3Object = retryableDownloadS3ObjectToFile(dstfile,
-                new DownloadTaskImpl(s3, download, req), 
+                new DownloadTaskImpl(s3, download, req, isWholeObjectDownload),
                 resumeExistingDownload);
 
             if (s3Object == null) {
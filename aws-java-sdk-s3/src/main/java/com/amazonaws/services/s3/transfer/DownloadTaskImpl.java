@@ -15,6 +15,7 @@
 package com.amazonaws.services.s3.transfer;
 
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3Client;
 import com.amazonaws.services.s3.AmazonS3Encryption;
 import com.amazonaws.services.s3.internal.ServiceUtils;
 import com.amazonaws.services.s3.model.GetObjectRequest;
@@ -27,12 +28,19 @@ final class DownloadTaskImpl implements
     private final AmazonS3 s3;
     private final DownloadImpl download;
     private final GetObjectRequest getObjectRequest;
+    /**
+     * True if the whole object is being downloaded to the file, even though
+     * the request may carry a range to skip the bytes already downloaded by
+     * a resumed download.
+     */
+    private final boolean isWholeObjectDownload;
 
     DownloadTaskImpl(AmazonS3 s3, DownloadImpl download,
-            GetObjectRequest getObjectRequest) {
+            GetObjectRequest getObjectRequest, boolean isWholeObjectDownload) {
         this.s3 = s3;
         this.download = download;
         this.getObjectRequest = getObjectRequest;
+        this.isWholeObjectDownload = isWholeObjectDownload;
     }
 
     @Override
@@ -45,7 +53,17 @@ final class DownloadTaskImpl implements
     @Override
     public boolean needIntegrityCheck() {
         // Don't perform the integrity check if the checksum won't matchup.
-        return !(s3 instanceof AmazonS3Encryption)
-            && !ServiceUtils.skipMd5CheckPerRequest(getObjectRequest);
+        if (s3 instanceof AmazonS3Encryption)
+            return false;
+        // Without a range, the content returned by the client is already
+        // checked against the MD5 of the object as it is read
+        if (s3 instanceof AmazonS3Client
+                && !ServiceUtils.skipMd5CheckPerRequest(getObjectRequest))
+            return false;
+        // The content appended to a resumed download is checked together
+        // with the content already in the file.
+        return isWholeObjectDownload
+            ? !ServiceUtils.skipMd5CheckPerObjectContent(getObjectRequest)
+            : !ServiceUtils.skipMd5CheckPerRequest(getObjectRequest);
     }
 }
\ No newline at end of file
@@ -0,0 +1,329 @@
+/*
+ * Copyright 2015-2015 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.s3.transfer;
+
+import static com.amazonaws.event.SDKProgressPublisher.publishResponseBytesTransferred;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.net.ssl.SSLProtocolException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.event.ProgressListener;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.internal.FileLocks;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.amazonaws.services.s3.transfer.Transfer.TransferState;
+import com.amazonaws.services.s3.transfer.exception.FileLockException;
+import com.amazonaws.services.s3.transfer.internal.AbstractTransfer;
+import com.amazonaws.services.s3.transfer.internal.DownloadImpl;
+import com.amazonaws.util.IOUtils;
+
+/**
+ * Downloads an object as a number of byte ranges fetched concurrently, each
+ * written at its offset in the destination file.
+ * <p>
+ * The parts are claimed from a shared queue both by this callable and by the
+ * workers it submits to the transfer manager thread pool. Since this callable
+ * keeps fetching parts itself until the queue is drained, and then only waits
+ * for parts that are actively being fetched by running workers, the download
+ * always makes progress even if the thread pool is saturated.
+ * <p>
+ * The content is not verified against the MD5 of the object, which can only
+ * be computed by reading the object in order: objects whose ETag is a plain
+ * MD5 are downloaded with a single GET when the check applies (see
+ * {@link com.amazonaws.services.s3.transfer.internal.TransferManagerUtils#shouldUseMultipartDownload}).
+ * Each range is constrained to the ETag captured when the download started.
+ * <p>
+ * The download is stopped by {@link DownloadImpl#isStopRequested()} rather
+ * than by interruption, since interrupting a thread blocked in
+ * {@link FileChannel} I/O closes the channel shared by all the parts.
+ */
+final class MultipartDownloadCallable implements Callable<File> {
+    private static final Log log = LogFactory.getLog(MultipartDownloadCallable.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final AmazonS3 s3;
+    private final ExecutorService threadPool;
+    private final CountDownLatch latch;
+    private final GetObjectRequest req;
+    private final DownloadImpl download;
+    private final File dstfile;
+    private final long contentLength;
+    private final long partSize;
+    private final String eTag;
+    private final int parallelism;
+    private final BitSet completedParts;
+
+    private final ConcurrentLinkedQueue<Integer> pendingParts =
+            new ConcurrentLinkedQueue<Integer>();
+    private final AtomicReference<Throwable> failure =
+            new AtomicReference<Throwable>();
+    private volatile boolean stopped;
+    private CountDownLatch remainingParts;
+    private FileChannel channel;
+
+    MultipartDownloadCallable(AmazonS3 s3, ExecutorService threadPool,
+            CountDownLatch latch, GetObjectRequest req, DownloadImpl download,
+            File dstfile, long contentLength, long partSize, String eTag,
+            int parallelism, int[] completedParts) {
+        if (s3 == null || threadPool == null || latch == null || req == null
+                || dstfile == null || download == null || partSize <= 0)
+            throw new IllegalArgumentException();
+        this.s3 = s3;
+        this.threadPool = threadPool;
+        this.latch = latch;
+        this.req = req;
+        this.download = download;
+        this.dstfile = dstfile;
+        this.contentLength = contentLength;
+        this.partSize = partSize;
+        this.eTag = eTag;
+        this.parallelism = Math.max(1, parallelism);
+        this.completedParts = new BitSet();
+        if (completedParts != null) {
+            for (int part : completedParts)
+                this.completedParts.set(part);
+        }
+    }
+
+    /**
+     * Returns the number of parts of an object of the given length.
+     */
+    static int getNumberOfParts(long contentLength, long partSize) {
+        return (int) ((contentLength + partSize - 1) / partSize);
+    }
+
+    /**
+     * This method must return a non-null object, or else the existing
+     * implementation in {@link AbstractTransfer#waitForCompletion()}
+     * would block forever.
+     *
+     * @return the downloaded file
+     */
+    @Override
+    public File call() throws Exception {
+        try {
+            latch.await();
+            download.setState(TransferState.InProgress);
+            downloadParts();
+            download.setState(TransferState.Completed);
+            return dstfile;
+        } catch (Throwable t) {
+            // Downloads aren't allowed to move from canceled to failed
+            if (download.getState() != TransferState.Canceled) {
+                download.setState(TransferState.Failed);
+            }
+            if (t instanceof Exception)
+                throw (Exception) t;
+            else
+                throw (Error) t;
+        }
+    }
+
+    private void downloadParts() throws Exception {
+        File parentDirectory = dstfile.getParentFile();
+        if (parentDirectory != null && !parentDirectory.exists()) {
+            if (!(parentDirectory.mkdirs())) {
+                throw new AmazonClientException(
+                        "Unable to create directory in the path"
+                                + parentDirectory.getAbsolutePath());
+            }
+        }
+        if (!FileLocks.lock(dstfile)) {
+            throw new FileLockException("Fail to lock " + dstfile
+                    + " for multi-part download");
+        }
+        RandomAccessFile raf = null;
+        List<Future<?>> workers = new ArrayList<Future<?>>();
+        try {
+            raf = new RandomAccessFile(dstfile, "rw");
+            // Drop any stale content beyond the object, and preallocate the
+            // file so that each part can be written at its own offset.
+            raf.setLength(contentLength);
+            channel = raf.getChannel();
+
+            final int numParts = getNumberOfParts(contentLength, partSize);
+            for (int part = 0; part < numParts; part++) {
+                if (!completedParts.get(part))
+                    pendingParts.add(part);
+            }
+            remainingParts = new CountDownLatch(pendingParts.size());
+            int numWorkers = Math.min(parallelism, pendingParts.size()) - 1;
+            for (int i = 0; i < numWorkers; i++) {
+                workers.add(threadPool.submit(new PartWorker()));
+            }
+            new PartWorker().run();
+            remainingParts.await();
+        } finally {
+            stopped = true;
+            // Workers are never interrupted, as interrupting a thread
+            // blocked in FileChannel I/O closes the channel
+            for (Future<?> worker : workers)
+                worker.cancel(false);
+            IOUtils.closeQuietly(raf, log);
+            FileLocks.unlock(dstfile);
+        }
+        Throwable t = failure.get();
+        if (t instanceof RuntimeException)
+            throw (RuntimeException) t;
+        if (t instanceof Error)
+            throw (Error) t;
+        if (t != null) {
+            throw new AmazonClientException("Unable to download "
+                    + req.getKey() + " to " + dstfile + ": " + t.getMessage(), t);
+        }
+    }
+
+    /**
+     * Fetches parts from the shared queue until the queue is drained or the
+     * download is stopped.
+     */
+    private final class PartWorker implements Runnable {
+        @Override
+        public void run() {
+            Integer part;
+            while (!isStopped() && (part = pendingParts.poll()) != null) {
+                try {
+                    downloadPart(part);
+                    download.partCompleted(part);
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    remainingParts.countDown();
+                }
+            }
+            // Account for the parts that will never be fetched
+            while ((part = pendingParts.poll()) != null)
+                remainingParts.countDown();
+        }
+    }
+
+    private boolean isStopped() {
+        return stopped || failure.get() != null || download.isStopRequested();
+    }
+
+    /**
+     * Downloads the given part to its offset in the destination file,
+     * retrying once if the content fails to be written.
+     */
+    private void downloadPart(int part) {
+        final long firstByte = part * partSize;
+        final long lastByte = Math.min(firstByte + partSize, contentLength) - 1;
+        // The end of the bytes of the part reported as transferred, which a
+        // retry doesn't report again
+        final long[] reportedEnd = { firstByte };
+        boolean hasRetried = false;
+        for (;;) {
+            try {
+                downloadRange(firstByte, lastByte, reportedEnd);
+                return;
+            } catch (AmazonClientException ace) {
+                if (!ace.isRetryable() || hasRetried || isStopped()
+                        || ace.getCause() instanceof SocketException
+                        || ace.getCause() instanceof SSLProtocolException)
+                    throw ace;
+                log.info("Retry the download of range [" + firstByte + ", "
+                        + lastByte + "] of object " + req.getKey()
+                        + " (bucket " + req.getBucketName() + ")", ace);
+                hasRetried = true;
+            }
+        }
+    }
+
+    private void downloadRange(long firstByte, long lastByte, long[] reportedEnd) {
+        S3Object s3Object = s3.getObject(newRangeRequest(firstByte, lastByte));
+        if (s3Object == null) {
+            throw new AmazonClientException("Object " + req.getKey()
+                    + " (bucket " + req.getBucketName()
+                    + ") has changed since the download started");
+        }
+        S3ObjectInputStream content = s3Object.getObjectContent();
+        boolean fullyRead = false;
+        try {
+            long position = firstByte;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int bytesRead;
+            while ((bytesRead = content.read(buffer)) > -1) {
+                if (isStopped()) {
+                    throw new AmazonClientException("Download of " + req.getKey()
+                            + " was interrupted");
+                }
+                ByteBuffer bb = ByteBuffer.wrap(buffer, 0, bytesRead);
+                while (bb.hasRemaining())
+                    position += channel.write(bb, position);
+                if (position > reportedEnd[0]) {
+                    publishResponseBytesTransferred(req.getGeneralProgressListener(),
+                            position - reportedEnd[0]);
+                    reportedEnd[0] = position;
+                }
+            }
+            if (position != lastByte + 1) {
+                throw new AmazonClientException("Unexpected end of range ["
+                        + firstByte + ", " + lastByte + "] at byte " + position);
+            }
+            fullyRead = true;
+        } catch (IOException e) {
+            throw new AmazonClientException(
+                    "Unable to store object contents to disk: " + e.getMessage(), e);
+        } finally {
+            if (fullyRead)
+                IOUtils.closeQuietly(content, log);
+            else
+                content.abort();
+        }
+    }
+
+    /**
+     * Returns a request for the given range of the object, constrained to the
+     * ETag captured when the download started.
+     */
+    private GetObjectRequest newRangeRequest(long firstByte, long lastByte) {
+        GetObjectRequest rangeRequest = new GetObjectRequest(
+                req.getBucketName(), req.getKey(), req.getVersionId())
+            .withRange(firstByte, lastByte)
+            .withResponseHeaders(req.getResponseHeaders())
+            .withSSECustomerKey(req.getSSECustomerKey());
+        rangeRequest.setRequesterPays(req.isRequesterPays());
+        // Bytes are reported once written, so that retries aren't counted
+        rangeRequest.setGeneralProgressListener(ProgressListener.NOOP);
+        rangeRequest.setRequestMetricCollector(req.getRequestMetricCollector());
+        rangeRequest.setRequestCredentials(req.getRequestCredentials());
+        if (eTag != null)
+            rangeRequest.setMatchingETagConstraints(Arrays.asList(eTag));
+        return TransferManager.appendSingleObjectUserAgent(rangeRequest);
+    }
+}
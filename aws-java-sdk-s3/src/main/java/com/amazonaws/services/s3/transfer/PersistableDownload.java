@@ -63,10 +63,39 @@ public final class PersistableDownload extends PersistableTransfer {
     @JsonProperty
     private final String file;
 
+    /**
+     * The ETag of the object at the time the download was started; only
+     * captured for multi-part downloads, where it is used to make sure the
+     * remaining parts are fetched from the same object version.
+     */
+    @JsonProperty
+    private final String eTag;
+
+    /**
+     * The size of each ranged GET of a multi-part download; or -1 if the
+     * download is performed using a single GET.
+     */
+    @JsonProperty
+    private final long partSize;
+
+    /**
+     * The zero-based indices of the parts of a multi-part download that have
+     * already been written to the file.
+     */
+    @JsonProperty
+    private final int[] completedParts;
+
     public PersistableDownload() {
         this(null, null, null, null, null, false, null);
     }
 
+    public PersistableDownload(String bucketName, String key, String versionId,
+            long[] range, ResponseHeaderOverrides responseHeaders,
+            boolean isRequesterPays, String file) {
+        this(bucketName, key, versionId, range, responseHeaders,
+                isRequesterPays, file, null, -1, null);
+    }
+
     public PersistableDownload(
             @JsonProperty(value = "bucketName") String bucketName,
             @JsonProperty(value = "key") String key,
@@ -74,7 +103,10 @@ public final class PersistableDownload extends PersistableTransfer {
             @JsonProperty(value = "range") long[] range,
             @JsonProperty(value = "responseHeaders") ResponseHeaderOverrides responseHeaders,
             @JsonProperty(value = "isRequesterPays") boolean isRequesterPays,
-            @JsonProperty(value = "file") String file) {
+            @JsonProperty(value = "file") String file,
+            @JsonProperty(value = "eTag") String eTag,
+            @JsonProperty(value = "partSize") long partSize,
+            @JsonProperty(value = "completedParts") int[] completedParts) {
         this.bucketName = bucketName;
         this.key = key;
         this.versionId = versionId;
@@ -82,6 +114,10 @@ public final class PersistableDownload extends PersistableTransfer {
         this.responseHeaders = responseHeaders;
         this.isRequesterPays = isRequesterPays;
         this.file = file;
+        this.eTag = eTag;
+        // Older serialized states carry no part size
+        this.partSize = partSize == 0 ? -1 : partSize;
+        this.completedParts = completedParts == null ? null : completedParts.clone();
     }
 
     /**
@@ -134,6 +170,53 @@ public final class PersistableDownload extends PersistableTransfer {
         return file;
     }
 
+    /**
+     * Returns a copy of this download state recording the progress of a
+     * multi-part download.
+     *
+     * @param eTag
+     *            the ETag of the object being downloaded.
+     * @param partSize
+     *            the size of each ranged GET of the download.
+     * @param completedParts
+     *            the indices of the parts already written to the file.
+     */
+    public PersistableDownload withParts(String eTag, long partSize,
+            int[] completedParts) {
+        return new PersistableDownload(bucketName, key, versionId, range,
+                responseHeaders, isRequesterPays, file, eTag, partSize,
+                completedParts);
+    }
+
+    /**
+     * Returns the ETag of the object captured for a multi-part download.
+     */
+    String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Returns the part size of a multi-part download; or -1 if the download
+     * was performed using a single GET.
+     */
+    long getPartSize() {
+        return partSize;
+    }
+
+    /**
+     * Returns the indices of the parts already written to the file.
+     */
+    int[] getCompletedParts() {
+        return completedParts == null ? null : completedParts.clone();
+    }
+
+    /**
+     * Returns true if this is the state of a multi-part download.
+     */
+    boolean isMultipart() {
+        return partSize > 0;
+    }
+
     String getPauseType() {
         return pauseType;
     }
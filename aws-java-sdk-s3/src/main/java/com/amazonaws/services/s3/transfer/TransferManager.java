@@ -46,6 +46,7 @@ import com.amazonaws.event.ProgressListener;
 import com.amazonaws.event.ProgressListenerChain;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.AmazonS3Encryption;
 import com.amazonaws.services.s3.internal.FileLocks;
 import com.amazonaws.services.s3.internal.Mimetypes;
 import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
@@ -688,7 +689,8 @@ public class TransferManager {
      *             request.
      */
     public Download download(final GetObjectRequest getObjectRequest, final File file) {
-        return doDownload(getObjectRequest, file, null, null, OVERWRITE_MODE);
+        return doDownload(getObjectRequest, file, null, null, OVERWRITE_MODE,
+                null);
     }
 
     /**
@@ -730,19 +732,24 @@ public class TransferManager {
     public Download download(final GetObjectRequest getObjectRequest,
             final File file, final S3ProgressListener progressListener) {
         return doDownload(getObjectRequest, file, null, progressListener,
-                OVERWRITE_MODE);
+                OVERWRITE_MODE, null);
     }
 
     /**
      * Same as public interface, but adds a state listener so that callers can
      * be notified of state changes to the download.
      *
+     * @param resumedDownload
+     *            the state of the paused download being resumed; or null if
+     *            this is not a resumed download.
+     *
      * @see TransferManager#download(GetObjectRequest, File)
      */
     private Download doDownload(final GetObjectRequest getObjectRequest,
             final File file, final TransferStateChangeListener stateListener,
             final S3ProgressListener s3progressListener,
-            final boolean resumeExistingDownload)
+            final boolean resumeExistingDownload,
+            final PersistableDownload resumedDownload)
     {
         appendSingleObjectUserAgent(getObjectRequest);
         String description = "Downloading from " + getObjectRequest.getBucketName() + "/" + getObjectRequest.getKey();
@@ -763,6 +770,7 @@ public class TransferManager {
 
         long startingByte = 0;
         long lastByte;
+        ObjectMetadata objectMetadata = null;
 
         long[] range = getObjectRequest.getRange();
         if (range != null
@@ -776,11 +784,12 @@ public class TransferManager {
                 getObjectMetadataRequest.setSSECustomerKey(getObjectRequest.getSSECustomerKey());
             if (getObjectRequest.getVersionId() != null)
                 getObjectMetadataRequest.setVersionId(getObjectRequest.getVersionId());
-            final ObjectMetadata objectMetadata = s3.getObjectMetadata(getObjectMetadataRequest);
+            objectMetadata = s3.getObjectMetadata(getObjectMetadataRequest);
 
             lastByte = objectMetadata.getContentLength() - 1;
         }
         final long origStartingByte = startingByte;
+        final boolean isWholeObjectDownload = objectMetadata != null;
         // We still pass the unfiltered listener chain into DownloadImpl
         final DownloadImpl download = new DownloadImpl(description,
                 transferProgress, listenerChain, null, stateListener,
@@ -789,6 +798,28 @@ public class TransferManager {
         long totalBytesToDownload = lastByte - startingByte + 1;
         transferProgress.setTotalBytesToTransfer(totalBytesToDownload);
 
+        final boolean isUsingEncryption = s3 instanceof AmazonS3Encryption;
+        if (resumedDownload != null && resumedDownload.isMultipart()) {
+            if (objectMetadata == null || !objectMetadata.getETag().equals(
+                    resumedDownload.getETag())) {
+                throw new AmazonClientException("Unable to resume the download of "
+                        + getObjectRequest.getKey() + " as the object has changed"
+                        + " since the download was paused");
+            }
+            return doMultipartDownload(getObjectRequest, file, download,
+                    objectMetadata, resumedDownload.getPartSize(),
+                    resumedDownload.getCompletedParts());
+        }
+        if (objectMetadata != null
+                && TransferManagerUtils.shouldUseMultipartDownload(
+                        getObjectRequest, objectMetadata,
+                        isUsingEncryption, configuration)) {
+            return doMultipartDownload(getObjectRequest, file, download,
+                    objectMetadata,
+                    TransferManagerUtils.calculateOptimalPartSizeForDownload(
+                            objectMetadata, configuration), null);
+        }
+
         long fileLength = -1;
         if (resumeExistingDownload) {
             if (!FileLocks.lock(file)) {
@@ -825,7 +856,41 @@ public class TransferManager {
         Future<?> future = threadPool.submit(
             new DownloadCallable(s3, latch,
                 getObjectRequest, resumeExistingDownload, download, file,
-                origStartingByte, fileLength));
+                origStartingByte, fileLength, isWholeObjectDownload));
+        download.setMonitor(new DownloadMonitor(download, future));
+        latch.countDown();
+        return download;
+    }
+
+    /**
+     * Schedules the download of the whole object as byte ranges of the given
+     * size fetched concurrently on the thread pool.
+     *
+     * @param completedParts
+     *            the parts already written to the file by a paused download;
+     *            or null if this is a new download.
+     */
+    private Download doMultipartDownload(final GetObjectRequest getObjectRequest,
+            final File file, final DownloadImpl download,
+            final ObjectMetadata objectMetadata, final long partSize,
+            final int[] completedParts) {
+        final long contentLength = objectMetadata.getContentLength();
+        final String eTag = objectMetadata.getETag();
+        download.setMultipartDownload(eTag, partSize, completedParts);
+        if (completedParts != null) {
+            long bytesDownloaded = 0;
+            for (int part : completedParts) {
+                bytesDownloaded += Math.min(partSize,
+                        contentLength - part * partSize);
+            }
+            download.getProgress().updateProgress(bytesDownloaded);
+        }
+        final CountDownLatch latch = new CountDownLatch(1);
+        Future<?> future = threadPool.submit(
+            new MultipartDownloadCallable(s3, threadPool, latch,
+                getObjectRequest, download, file, contentLength, partSize,
+                eTag, configuration.getMultipartDownloadParallelism(),
+                completedParts));
         download.setMonitor(new DownloadMonitor(download, future));
         latch.countDown();
         return download;
@@ -935,7 +1000,7 @@ public class TransferManager {
                                     .<GetObjectRequest>withGeneralProgressListener(
                                             listener),
                             f,
-                            transferListener, null, false));
+                            transferListener, null, false, null));
         }
 
         if ( downloads.isEmpty() ) {
@@ -1546,7 +1611,7 @@ public class TransferManager {
         request.setResponseHeaders(persistableDownload.getResponseHeaders());
 
         return doDownload(request, new File(persistableDownload.getFile()), null, null,
-                APPEND_MODE);
+                APPEND_MODE, persistableDownload);
     }
 
     /**
@@ -39,6 +39,12 @@ public class TransferManagerConfiguration {
     /** Default minimum size of each part for multi-part copy. */
     private static final long DEFAULT_MINIMUM_COPY_PART_SIZE = 100 * MB;
 
+    /** Default minimum size of each ranged GET for multi-part download. */
+    private static final long DEFAULT_MINIMUM_DOWNLOAD_PART_SIZE = 16 * MB;
+
+    /** Default maximum number of parts of a single download fetched concurrently. */
+    private static final int DEFAULT_MULTIPART_DOWNLOAD_PARALLELISM = 10;
+
     /**
      * The minimum part size for upload parts. Decreasing the minimum part size
      * will cause multipart uploads to be split into a larger number of smaller
@@ -77,6 +83,35 @@ public class TransferManagerConfiguration {
      */
     private long multipartCopyPartSize = DEFAULT_MINIMUM_COPY_PART_SIZE;
 
+    /**
+     * The size threshold, in bytes, for when to use multi-part downloads.
+     * Downloads of objects over this size are split into byte ranges that are
+     * fetched concurrently and written at their offsets in the destination
+     * file. Multi-part downloads are disabled by default.
+     */
+    private long multipartDownloadThreshold = Long.MAX_VALUE;
+
+    /**
+     * The minimum size in bytes of each ranged GET of a multi-part download.
+     * For objects that were uploaded in multiple parts, the actual part size
+     * is aligned to a multiple of the upload part size.
+     */
+    private long minimumDownloadPartSize = DEFAULT_MINIMUM_DOWNLOAD_PART_SIZE;
+
+    /**
+     * The maximum number of parts of a single multi-part download that are
+     * fetched concurrently.
+     */
+    private int multipartDownloadParallelism = DEFAULT_MULTIPART_DOWNLOAD_PARALLELISM;
+
+    /**
+     * The maximum number of part-sized buffers held in memory by a single
+     * upload from an input stream. Parts read into these buffers are uploaded
+     * concurrently, and reading from the stream blocks while all the buffers
+     * are in use. Buffered stream uploads are disabled by default.
+     */
+    private int streamUploadBufferCount = 0;
+
     /**
      * Returns the minimum part size for upload parts.
      * Decreasing the minimum part size causes
@@ -192,4 +227,121 @@ public class TransferManagerConfiguration {
     public void setMultipartCopyThreshold(long multipartCopyThreshold) {
         this.multipartCopyThreshold = multipartCopyThreshold;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the size threshold in bytes for when to use multi-part
+     * downloads. Downloads of objects over this size are split into byte
+     * ranges that are fetched concurrently. Multi-part downloads are disabled
+     * by default.
+     *
+     * @return The size threshold in bytes for when to use multi-part
+     *         downloads.
+     */
+    public long getMultipartDownloadThreshold() {
+        return multipartDownloadThreshold;
+    }
+
+    /**
+     * Sets the size threshold in bytes for when to use multi-part downloads.
+     * Downloads of objects over this size are split into byte ranges that are
+     * fetched concurrently on the transfer manager thread pool and written at
+     * their offsets in the destination file.
+     * <p>
+     * Multi-part downloads are only used when the whole object is downloaded
+     * (no range is specified in the request), and never for objects
+     * downloaded through the Amazon S3 encryption client.
+     *
+     * @param multipartDownloadThreshold
+     *            The size threshold in bytes for when to use multi-part
+     *            downloads.
+     */
+    public void setMultipartDownloadThreshold(long multipartDownloadThreshold) {
+        this.multipartDownloadThreshold = multipartDownloadThreshold;
+    }
+
+    /**
+     * Returns the minimum size in bytes of each ranged GET of a multi-part
+     * download.
+     *
+     * @return The minimum size in bytes of each part of a multi-part download.
+     */
+    public long getMinimumDownloadPartSize() {
+        return minimumDownloadPartSize;
+    }
+
+    /**
+     * Sets the minimum size in bytes of each ranged GET of a multi-part
+     * download. For objects that were uploaded in multiple parts, the actual
+     * part size is rounded up to a multiple of the upload part size.
+     *
+     * @param minimumDownloadPartSize
+     *            The minimum size in bytes of each part of a multi-part
+     *            download.
+     */
+    public void setMinimumDownloadPartSize(long minimumDownloadPartSize) {
+        this.minimumDownloadPartSize = minimumDownloadPartSize;
+    }
+
+    /**
+     * Returns the maximum number of parts of a single multi-part download
+     * that are fetched concurrently.
+     *
+     * @return The maximum number of concurrent ranged GETs per download.
+     */
+    public int getMultipartDownloadParallelism() {
+        return multipartDownloadParallelism;
+    }
+
+    /**
+     * Sets the maximum number of parts of a single multi-part download that
+     * are fetched concurrently. The effective parallelism is also bounded by
+     * the size of the transfer manager thread pool.
+     *
+     * @param multipartDownloadParallelism
+     *            The maximum number of concurrent ranged GETs per download.
+     */
+    public void setMultipartDownloadParallelism(int multipartDownloadParallelism) {
+        this.multipartDownloadParallelism = multipartDownloadParallelism;
+    }
+
+    /**
+     * Returns the maximum number of part-sized buffers held in memory by a
+     * single upload from an input stream, or zero if the parts of such uploads
+     * are not buffered.
+     *
+     * @return The maximum number of part buffers per stream upload.
+     */
+    public int getStreamUploadBufferCount() {
+        return streamUploadBufferCount;
+    }
+
+    /**
+     * Sets the maximum number of part-sized buffers held in memory by a single
+     * upload from an input stream.
+     * <p>
+     * When set to a positive number, uploads from an input stream (of known or
+     * unknown length) read the stream into buffers of the upload part size,
+     * and upload the filled parts concurrently on the transfer manager thread
+     * pool. Reading from the stream blocks while all the buffers are in use,
+     * so that at most <code>streamUploadBufferCount * partSize</code> bytes
+     * are held in memory per upload. A multipart upload is only started once
+     * the first part is full; streams that fit in a single part are uploaded
+     * with a single request. For streams of unknown length, the part size
+     * starts at the minimum upload part size and doubles every 1,000 parts,
+     * up to 1 GB, so that at most 10,000 parts hold several terabytes; the
+     * buffers grow accordingly.
+     * <p>
+     * When zero (the default), uploads from an input stream of known length
+     * above the multipart upload threshold upload their parts one at a time,
+     * and uploads of unknown length use a single request. Buffered stream
+     * uploads are never used with the Amazon S3 encryption client, nor when
+     * resuming a paused upload.
+     *
+     * @param streamUploadBufferCount
+     *            The maximum number of part buffers per stream upload, or zero
+     *            to disable buffered stream uploads.
+     */
+    public void setStreamUploadBufferCount(int streamUploadBufferCount) {
+        this.streamUploadBufferCount = streamUploadBufferCount;
+    }
+}
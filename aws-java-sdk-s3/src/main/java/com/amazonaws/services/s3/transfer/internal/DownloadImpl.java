@@ -16,6 +16,7 @@ package com.amazonaws.services.s3.transfer.internal;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.BitSet;
 
 import com.amazonaws.event.ProgressEventType;
 import com.amazonaws.event.ProgressListenerChain;
@@ -35,6 +36,21 @@ public class DownloadImpl extends AbstractTransfer implements Download {
      */
     private final PersistableDownload persistableDownload;
 
+    /**
+     * The part size of a multi-part download; or -1 if the download is
+     * performed using a single GET.
+     */
+    private long partSize = -1;
+
+    /** The ETag of the object being downloaded in multiple parts. */
+    private String eTag;
+
+    /** The parts of a multi-part download already written to the file. */
+    private final BitSet completedParts = new BitSet();
+
+    /** Whether the parts of a multi-part download should stop being fetched. */
+    private volatile boolean stopRequested;
+
     public DownloadImpl(String description, TransferProgress transferProgress,
             ProgressListenerChain progressListenerChain, S3Object s3Object,
             TransferStateChangeListener listener,
@@ -80,9 +96,9 @@ public class DownloadImpl extends AbstractTransfer implements Download {
      */
     public synchronized void abort() throws IOException {
 
-        this.monitor.getFuture().cancel(true);
+        cancelFuture();
 
-        if ( s3Object != null ) {
+        if ( s3Object != null && s3Object.getObjectContent() != null ) {
               s3Object.getObjectContent().abort();
         }
         setState(TransferState.Canceled);
@@ -94,7 +110,7 @@ public class DownloadImpl extends AbstractTransfer implements Download {
      * @throws IOException
      */
     public synchronized void abortWithoutNotifyingStateChangeListener() throws IOException {
-        this.monitor.getFuture().cancel(true);
+        cancelFuture();
         this.state = TransferState.Canceled;
     }
 
@@ -105,6 +121,64 @@ public class DownloadImpl extends AbstractTransfer implements Download {
         this.s3Object = s3Object;
     }
 
+    /**
+     * Marks this download as a multi-part download of the object with the
+     * given ETag, with the given parts already written to the file.
+     */
+    public synchronized void setMultipartDownload(String eTag, long partSize,
+            int[] completedParts) {
+        this.eTag = eTag;
+        this.partSize = partSize;
+        if (completedParts != null) {
+            for (int part : completedParts)
+                this.completedParts.set(part);
+        }
+    }
+
+    /**
+     * Records that the given part of a multi-part download has been written
+     * to the file.
+     */
+    public synchronized void partCompleted(int partIndex) {
+        completedParts.set(partIndex);
+    }
+
+    /**
+     * Returns whether the parts of a multi-part download should stop being
+     * fetched, as the download has been paused or aborted.
+     */
+    public boolean isStopRequested() {
+        return stopRequested;
+    }
+
+    /**
+     * Cancels the future of the download. The threads of a multi-part download
+     * are asked to stop rather than interrupted, since interrupting a thread
+     * blocked in file channel I/O closes the channel shared by all the parts.
+     */
+    private synchronized void cancelFuture() {
+        if (partSize > 0) {
+            stopRequested = true;
+            this.monitor.getFuture().cancel(false);
+        } else {
+            this.monitor.getFuture().cancel(true);
+        }
+    }
+
+    /**
+     * Returns the indices of the parts of a multi-part download that have
+     * been written to the file.
+     */
+    private synchronized int[] getCompletedParts() {
+        int[] parts = new int[completedParts.cardinality()];
+        int i = 0;
+        for (int part = completedParts.nextSetBit(0); part >= 0;
+                part = completedParts.nextSetBit(part + 1)) {
+            parts[i++] = part;
+        }
+        return parts;
+    }
+
     /**
      * This method is also responsible for firing COMPLETED signal to the
      * listeners.
@@ -144,12 +218,23 @@ public class DownloadImpl extends AbstractTransfer implements Download {
     public PersistableDownload pause() throws PauseException {
         boolean forceCancel = true;
         TransferState currentState = getState();
-        this.monitor.getFuture().cancel(true);
+        cancelFuture();
 
         if (persistableDownload == null) {
             throw new PauseException(TransferManagerUtils.determinePauseStatus(
                     currentState, forceCancel));
         }
-        return persistableDownload;
+        return capturePartState(persistableDownload);
+    }
+
+    /**
+     * Returns the given download state augmented with the parts written so
+     * far, if this is a multi-part download.
+     */
+    private synchronized PersistableDownload capturePartState(
+            PersistableDownload state) {
+        if (partSize <= 0)
+            return state;
+        return state.withParts(eTag, partSize, getCompletedParts());
     }
 }
\ No newline at end of file
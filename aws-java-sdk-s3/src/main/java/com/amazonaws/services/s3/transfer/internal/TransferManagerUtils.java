@@ -15,13 +15,17 @@
 package com.amazonaws.services.s3.transfer.internal;
 
 import static com.amazonaws.services.s3.internal.Constants.MAXIMUM_UPLOAD_PARTS;
+import static com.amazonaws.services.s3.internal.Constants.MB;
 
 import java.io.File;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 
+import com.amazonaws.services.s3.internal.ServiceUtils;
 import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.transfer.PauseStatus;
 import com.amazonaws.services.s3.transfer.Transfer.TransferState;
@@ -164,6 +168,96 @@ public class TransferManagerUtils {
                 configuration.getMultipartCopyPartSize());
     }
 
+    /**
+     * Returns true if the specified download request should be processed as
+     * a multi-part download, fetching byte ranges of the object concurrently.
+     *
+     * @param getObjectRequest
+     *            The request containing all the details of the download.
+     * @param objectMetadata
+     *            The metadata of the Amazon S3 object.
+     * @param isUsingEncryption
+     *            True if the download is performed by the encryption client.
+     * @param configuration
+     *            Configuration settings controlling how transfer manager
+     *            processes requests.
+     */
+    public static boolean shouldUseMultipartDownload(
+            GetObjectRequest getObjectRequest, ObjectMetadata objectMetadata,
+            boolean isUsingEncryption,
+            TransferManagerConfiguration configuration) {
+        // Decrypting an encrypted object requires the content to be read
+        // sequentially, and an explicit range is honored as a single GET.
+        if (isUsingEncryption || getObjectRequest.getRange() != null)
+            return false;
+        // The MD5 of an object uploaded in a single part can only be computed
+        // by reading its content in order, which a single GET does inline.
+        String eTag = objectMetadata.getETag();
+        if (eTag != null && !ServiceUtils.isMultipartUploadETag(eTag)
+                && !ServiceUtils.skipMd5CheckPerRequest(getObjectRequest)
+                && !ServiceUtils.skipMd5CheckPerObjectContent(getObjectRequest)
+                && !ServiceUtils.skipMd5CheckPerResponse(objectMetadata))
+            return false;
+        final long contentLength = objectMetadata.getContentLength();
+        return contentLength > configuration.getMultipartDownloadThreshold()
+            && contentLength > configuration.getMinimumDownloadPartSize();
+    }
+
+    /**
+     * Calculates the size of each ranged GET of a multi-part download. If the
+     * object was uploaded in multiple parts (as indicated by its ETag), the
+     * returned size is a multiple of the estimated upload part size, so that
+     * each ranged GET is served from whole upload parts.
+     *
+     * @param objectMetadata
+     *            the metadata of the Amazon S3 object.
+     * @param configuration
+     *            configuration containing the minimum download part size.
+     * @return the part size for each ranged GET of the download.
+     */
+    public static long calculateOptimalPartSizeForDownload(
+            ObjectMetadata objectMetadata,
+            TransferManagerConfiguration configuration) {
+        final long contentLength = objectMetadata.getContentLength();
+        long partSize = Math.max(configuration.getMinimumDownloadPartSize(),
+                (long) Math.ceil((double) contentLength / MAXIMUM_UPLOAD_PARTS));
+        long uploadPartSize = estimateUploadPartSize(objectMetadata.getETag(),
+                contentLength);
+        if (uploadPartSize > 0) {
+            long uploadParts = (partSize + uploadPartSize - 1) / uploadPartSize;
+            partSize = uploadParts * uploadPartSize;
+        }
+        return partSize;
+    }
+
+    /**
+     * Returns the part size the given object was most likely uploaded with;
+     * or -1 if the object was not uploaded in multiple parts or the part size
+     * cannot be determined. Multipart ETags carry the number of parts, and
+     * uploaders almost always use a whole number of megabytes per part.
+     */
+    private static long estimateUploadPartSize(String eTag, long contentLength) {
+        if (eTag == null || !ServiceUtils.isMultipartUploadETag(eTag))
+            return -1;
+        eTag = ServiceUtils.removeQuotes(eTag);
+        final long numParts;
+        try {
+            numParts = Long.parseLong(eTag.substring(eTag.lastIndexOf('-') + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        if (numParts < 2)
+            return -1;
+        long perPart = (contentLength + numParts - 1) / numParts;
+        long candidate = ((perPart + MB - 1) / MB) * MB;
+        // All but the last part must be of the same size
+        if ((numParts - 1) * candidate < contentLength
+                && numParts * candidate >= contentLength) {
+            return candidate;
+        }
+        return -1;
+    }
+
     /**
      * Determines the pause status based on the current state of transfer.
      */
@@ -15,20 +15,27 @@
 package com.amazonaws.services.s3.transfer.internal;
 
 import static com.amazonaws.event.SDKProgressPublisher.publishProgress;
+import static com.amazonaws.services.s3.internal.Constants.MAXIMUM_UPLOAD_PARTS;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.amazonaws.AmazonClientException;
 import com.amazonaws.event.ProgressEventType;
 import com.amazonaws.event.ProgressListenerChain;
 import com.amazonaws.services.s3.AmazonS3;
@@ -62,6 +69,16 @@ public class UploadCallable implements Callable<UploadResult> {
     private final UploadImpl upload;
 
     private static final Log log = LogFactory.getLog(UploadCallable.class);
+
+    /**
+     * The number of parts of a stream of unknown length uploaded with the
+     * same part size, after which the part size is doubled.
+     */
+    private static final int PARTS_PER_STREAM_PART_SIZE = 1000;
+
+    /** The maximum size of the part buffers of a stream upload. */
+    private static final int MAXIMUM_STREAM_PART_SIZE = 1 << 30;
+
     private final TransferManagerConfiguration configuration;
     private final List<Future<PartETag>> futures = new ArrayList<Future<PartETag>>();
     private final ProgressListenerChain listener;
@@ -112,12 +129,15 @@ public class UploadCallable implements Callable<UploadResult> {
      * @return True if this UploadCallable is processing a multipart upload.
      */
     public boolean isMultipartUpload() {
-        return TransferManagerUtils.shouldUseMultipartUpload(origReq, configuration);
+        return multipartUploadId != null
+            || TransferManagerUtils.shouldUseMultipartUpload(origReq, configuration);
     }
 
     public UploadResult call() throws Exception {
         upload.setState(TransferState.InProgress);
-        if ( isMultipartUpload() ) {
+        if ( isBufferedStreamUpload() ) {
+            return uploadStreamInParts();
+        } else if ( isMultipartUpload() ) {
             publishProgress(listener, ProgressEventType.TRANSFER_STARTED_EVENT);
             return uploadInParts();
         } else {
@@ -139,6 +159,24 @@ public class UploadCallable implements Callable<UploadResult> {
         return uploadResult;
     }
 
+    /**
+     * Returns true if the request is a new upload from an input stream whose
+     * parts are to be buffered in memory and uploaded concurrently.
+     */
+    private boolean isBufferedStreamUpload() {
+        if (configuration.getStreamUploadBufferCount() <= 0
+                || multipartUploadId != null
+                || s3 instanceof AmazonS3Encryption
+                || TransferManagerUtils.getRequestFile(origReq) != null
+                || origReq.getInputStream() == null) {
+            return false;
+        }
+        // Streams of unknown length are only uploaded in parts once the first
+        // part is full
+        return TransferManagerUtils.getContentLength(origReq) < 0
+            || TransferManagerUtils.shouldUseMultipartUpload(origReq, configuration);
+    }
+
     /**
      * Captures the state of the upload.
      */
@@ -273,6 +311,182 @@ public class UploadCallable implements Callable<UploadResult> {
         return uploadResult;
     }
 
+    /**
+     * Reads the input stream of the request into part-sized buffers, and
+     * submits a task for each filled part to our thread pool, recording its
+     * corresponding Future. The multipart upload is only initiated once the
+     * first part is full; otherwise the data read is uploaded in a single
+     * chunk, and its result returned.
+     * <p>
+     * At most {@link TransferManagerConfiguration#getStreamUploadBufferCount()}
+     * buffers are held at a time. Once they are all in use, reading the stream
+     * waits for the oldest part in flight to complete, uploading it in this
+     * thread if no thread of the pool has picked it up yet, so that uploads
+     * can't starve the pool they are waiting on.
+     * <p>
+     * Streams of unknown length start with parts of the minimum upload part
+     * size, which is doubled every {@link #PARTS_PER_STREAM_PART_SIZE} parts
+     * so that the stream fits in the maximum number of parts of a multipart
+     * upload: several terabytes with the default minimum part size.
+     */
+    private UploadResult uploadStreamInParts() throws Exception {
+        final InputStream input = origReq.getInputStream();
+        final int partSize = (int) Math.min(getOptimalPartSize(false), MAXIMUM_STREAM_PART_SIZE);
+        final boolean isLengthKnown = TransferManagerUtils.getContentLength(origReq) >= 0;
+        final LinkedList<BufferedPart> partsInFlight = new LinkedList<BufferedPart>();
+
+        try {
+            byte[] buffer = new byte[partSize];
+            int length = readPart(input, buffer);
+            if (length < partSize) {
+                return uploadBufferInOneChunk(buffer, length);
+            }
+
+            publishProgress(listener, ProgressEventType.TRANSFER_STARTED_EVENT);
+            multipartUploadId = initiateMultipartUpload(origReq, false);
+
+            int partNumber = 1;
+            while (length > 0) {
+                if (threadPool.isShutdown()) throw new CancellationException("TransferManager has been shutdown");
+                if (partNumber > MAXIMUM_UPLOAD_PARTS) {
+                    throw new AmazonClientException("Unable to upload the input stream in at most "
+                            + MAXIMUM_UPLOAD_PARTS + " parts");
+                }
+                boolean isLastPart = length < buffer.length;
+                BufferedPart part = new BufferedPart(buffer, new FutureTask<PartETag>(
+                        new UploadPartCallable(s3, newUploadPartRequest(
+                                buffer, length, partNumber++, isLastPart))));
+                partsInFlight.add(part);
+                futures.add(part.task);
+                threadPool.execute(part.task);
+                if (isLastPart) break;
+
+                buffer = nextPartBuffer(partsInFlight,
+                        isLengthKnown ? partSize : streamPartSize(partSize, partNumber));
+                length = readPart(input, buffer);
+            }
+            return null;
+        } catch (Exception e) {
+            publishProgress(listener, ProgressEventType.TRANSFER_FAILED_EVENT);
+            for (BufferedPart part : partsInFlight) {
+                part.task.cancel(true);
+            }
+            performAbortMultipartUpload();
+            throw e;
+        } finally {
+            try {input.close(); } catch (Exception e) {
+                log.warn("Unable to cleanly close input stream: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Returns the size of the given part of a stream of unknown length, whose
+     * first part has the given size.
+     */
+    private static int streamPartSize(int firstPartSize, int partNumber) {
+        int doublings = Math.min((partNumber - 1) / PARTS_PER_STREAM_PART_SIZE, 31);
+        return (int) Math.min((long) firstPartSize << doublings, MAXIMUM_STREAM_PART_SIZE);
+    }
+
+    /**
+     * Returns a buffer of the given size to read the next part into: the
+     * buffer of a completed part if any, a new buffer if fewer than the
+     * configured number of buffers are in use, or else the buffer of the
+     * oldest part in flight once it has been uploaded. Buffers of a smaller
+     * size than the given one are dropped.
+     */
+    private byte[] nextPartBuffer(LinkedList<BufferedPart> partsInFlight, int partSize) {
+        if (partsInFlight.isEmpty()
+                || (!partsInFlight.getFirst().task.isDone()
+                        && partsInFlight.size() < configuration.getStreamUploadBufferCount())) {
+            return new byte[partSize];
+        }
+        BufferedPart part = partsInFlight.removeFirst();
+        // Runs the task in this thread unless it has already been started
+        part.task.run();
+        try {
+            part.task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Upload interrupted");
+        } catch (ExecutionException e) {
+            throw new AmazonClientException(
+                    "Unable to complete multi-part upload. Individual part upload failed : "
+                            + e.getCause().getMessage(), e.getCause());
+        }
+        return part.buffer.length == partSize ? part.buffer : new byte[partSize];
+    }
+
+    /**
+     * Reads from the stream until the given buffer is full or the end of the
+     * stream is reached, and returns the number of bytes read.
+     */
+    private static int readPart(InputStream input, byte[] buffer) throws IOException {
+        int length = 0;
+        while (length < buffer.length) {
+            int read = input.read(buffer, length, buffer.length - length);
+            if (read == -1) break;
+            length += read;
+        }
+        return length;
+    }
+
+    /**
+     * Uploads the given data, read from the input stream of the request, in a
+     * single chunk and returns the result.
+     */
+    private UploadResult uploadBufferInOneChunk(byte[] buffer, int length) {
+        PutObjectRequest req = origReq.clone();
+        req.getMetadata().setContentLength(length);
+        req.setInputStream(new ByteArrayInputStream(buffer, 0, length));
+
+        PutObjectResult putObjectResult = s3.putObject(req);
+
+        UploadResult uploadResult = new UploadResult();
+        uploadResult.setBucketName(origReq.getBucketName());
+        uploadResult.setKey(origReq.getKey());
+        uploadResult.setETag(putObjectResult.getETag());
+        uploadResult.setVersionId(putObjectResult.getVersionId());
+        return uploadResult;
+    }
+
+    /**
+     * Returns a request to upload the given part buffer.
+     */
+    private UploadPartRequest newUploadPartRequest(byte[] buffer, int length,
+            int partNumber, boolean isLastPart) {
+        UploadPartRequest req = new UploadPartRequest()
+            .withBucketName(origReq.getBucketName())
+            .withKey(origReq.getKey())
+            .withUploadId(multipartUploadId)
+            .withInputStream(new ByteArrayInputStream(buffer, 0, length))
+            .withPartNumber(partNumber)
+            .withPartSize(length)
+            .withLastPart(isLastPart)
+            .withSSECustomerKey(origReq.getSSECustomerKey());
+        TransferManager.appendMultipartUserAgent(req);
+
+        req.withGeneralProgressListener(origReq.getGeneralProgressListener())
+           .withRequestMetricCollector(origReq.getRequestMetricCollector())
+           ;
+        return req;
+    }
+
+    /**
+     * A part of a buffered stream upload, and the buffer holding its data
+     * until it has been uploaded.
+     */
+    private static final class BufferedPart {
+        private final byte[] buffer;
+        private final FutureTask<PartETag> task;
+
+        private BufferedPart(byte[] buffer, FutureTask<PartETag> task) {
+            this.buffer = buffer;
+            this.task = task;
+        }
+    }
+
     /**
      * Submits a callable for each part to upload to our thread pool and records its corresponding Future.
      */
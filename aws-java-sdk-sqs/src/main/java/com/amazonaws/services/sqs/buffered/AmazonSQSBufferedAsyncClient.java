@@ -329,6 +329,19 @@ public class AmazonSQSBufferedAsyncClient implements AmazonSQSAsync {
         return buffer.deleteMessage(deleteMessageRequest, null);
     }
 
+    /**
+     * Returns a snapshot of the state of the receive buffer of the given queue, such as the number
+     * of prefetched messages it holds, or null if this client hasn't buffered any request to the
+     * queue.
+     * 
+     * @param queueUrl
+     *            the url of the queue
+     */
+    public synchronized QueueBufferMetrics getQueueBufferMetrics(String queueUrl) {
+        QueueBuffer buffer = buffers.get(queueUrl);
+        return buffer == null ? null : buffer.getMetrics();
+    }
+
     /**
      * Returns (creating it if necessary) a queue buffer for a particular queue Since we are only
      * storing a limited number of queue buffers, it is possible that as a result of calling this
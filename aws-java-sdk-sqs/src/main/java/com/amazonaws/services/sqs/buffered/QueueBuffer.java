@@ -18,6 +18,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -62,11 +63,18 @@ class QueueBuffer {
      */
     static ExecutorService executor = Executors.newCachedThreadPool(new DaemonThreadFactory());;
 
+    /**
+     * The timer closing the outbound batches of all queue buffers when their batch open time
+     * elapses. It only hands the closed batches over to the executor, so a single thread is enough.
+     */
+    static ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(
+            "SQSQueueBufferTimerThread-"));
+
     QueueBuffer(QueueBufferConfig paramConfig, String url, AmazonSQSAsync sqs) {
         realSqs = sqs;
         config = paramConfig;
-        sendBuffer = new SendQueueBuffer(sqs, executor, paramConfig, url);
-        receiveBuffer = new ReceiveQueueBuffer(sqs, executor, paramConfig, url);
+        sendBuffer = new SendQueueBuffer(sqs, executor, timer, paramConfig, url);
+        receiveBuffer = new ReceiveQueueBuffer(sqs, executor, timer, paramConfig, url);
     }
 
     /**
@@ -199,6 +207,13 @@ class QueueBuffer {
         receiveBuffer.shutdown();
     }
 
+    /**
+     * @return a snapshot of the state of the receive buffer of this queue
+     */
+    public QueueBufferMetrics getMetrics() {
+        return receiveBuffer.getMetrics();
+    }
+
     /**
      * this method carefully waits for futures. If waiting throws, it converts the exceptions to the
      * exceptions that SQS clients expect. This is what we use to turn asynchronous calls into
@@ -241,11 +256,21 @@ class QueueBuffer {
     private static class DaemonThreadFactory implements ThreadFactory {
         static AtomicInteger threadCount = new AtomicInteger(0);
 
+        private final String namePrefix;
+
+        DaemonThreadFactory() {
+            this("SQSQueueBufferWorkerThread-");
+        }
+
+        DaemonThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+
         public Thread newThread(Runnable r) {
             int threadNumber = threadCount.addAndGet(1);
             Thread thread = new Thread(r);
             thread.setDaemon(true);
-            thread.setName("SQSQueueBufferWorkerThread-" + threadNumber);
+            thread.setName(namePrefix + threadNumber);
             return thread;
         }
 
@@ -38,6 +38,17 @@ public class QueueBufferConfig {
     /** 200 milliseconds */
     public static final long MAX_BATCH_OPEN_MS_DEFAULT = 200;
 
+    /**
+     * Whether the time a send batch is held open adapts to the observed rate of outbound requests.
+     * When enabled, a batch is sent right away if no other request is expected to arrive within
+     * {@code maxBatchOpenMs}, and otherwise held open for about the time it is expected to take to
+     * fill up, but never longer than {@code maxBatchOpenMs}.
+     */
+    private boolean adaptiveBatchOpen = ADAPTIVE_BATCH_OPEN_DEFAULT;
+
+    /** false */
+    public static final boolean ADAPTIVE_BATCH_OPEN_DEFAULT = false;
+
     /**
      * Should we use long polling or not?
      */
@@ -81,6 +92,29 @@ public class QueueBufferConfig {
     /** 10 batches */
     public static final int MAX_DONE_RECEIVE_BATCHES_DEFAULT = 10;
 
+    /**
+     * Whether the number of prefetched and in flight receive batches adapts to the rate at which
+     * messages are received from the buffer. When enabled, {@code maxDoneReceiveBatches} and
+     * {@code maxInflightReceiveBatches} are upper bounds, and the buffer prefetches about as many
+     * messages as are received while a receive call completes, but stops prefetching while
+     * buffered messages are older than half of their visibility timeout.
+     */
+    private boolean adaptivePrefetching = ADAPTIVE_PREFETCHING_DEFAULT;
+
+    /** false */
+    public static final boolean ADAPTIVE_PREFETCHING_DEFAULT = false;
+
+    /**
+     * The maximum number of times the visibility timeout of a prefetched message is extended while
+     * it waits in the buffer. Extensions are made with a ChangeMessageVisibilityBatch call per
+     * receive batch shortly before the messages would become visible again. Zero disables the
+     * extension.
+     */
+    private int maxVisibilityExtensions = MAX_VISIBILITY_EXTENSIONS_DEFAULT;
+
+    /** 0, no extension */
+    public static final int MAX_VISIBILITY_EXTENSIONS_DEFAULT = 0;
+
     /**
      * Maximum permitted size of a SendMessage or SendMessageBatch message, in bytes
      */
@@ -136,9 +170,12 @@ public class QueueBufferConfig {
         longPoll = other.longPoll;
         longPollWaitTimeoutSeconds = other.longPollWaitTimeoutSeconds;
         maxBatchOpenMs = other.maxBatchOpenMs;
+        adaptiveBatchOpen = other.adaptiveBatchOpen;
         maxBatchSize = other.maxBatchSize;
         maxBatchSizeBytes = other.maxBatchSizeBytes;
         maxDoneReceiveBatches = other.maxDoneReceiveBatches;
+        adaptivePrefetching = other.adaptivePrefetching;
+        maxVisibilityExtensions = other.maxVisibilityExtensions;
         maxInflightOutboundBatches = other.maxInflightOutboundBatches;
         maxInflightReceiveBatches = other.maxInflightReceiveBatches;
         visibilityTimeoutSeconds = other.visibilityTimeoutSeconds;
@@ -146,10 +183,11 @@ public class QueueBufferConfig {
 
     @Override
     public String toString() {
-        return "QueueBufferConfig [maxBatchSize=" + maxBatchSize + ", maxBatchOpenMs=" + maxBatchOpenMs + ", longPoll="
-                + longPoll + ", maxInflightOutboundBatches=" + maxInflightOutboundBatches
+        return "QueueBufferConfig [maxBatchSize=" + maxBatchSize + ", maxBatchOpenMs=" + maxBatchOpenMs
+                + ", adaptiveBatchOpen=" + adaptiveBatchOpen + ", longPoll=" + longPoll + ", maxInflightOutboundBatches=" + maxInflightOutboundBatches
                 + ", maxInflightReceiveBatches=" + maxInflightReceiveBatches + ", maxDoneReceiveBatches="
-                + maxDoneReceiveBatches + ", maxBatchSizeBytes=" + maxBatchSizeBytes + ", visibilityTimeoutSeconds="
+                + maxDoneReceiveBatches + ", adaptivePrefetching=" + adaptivePrefetching
+                + ", maxVisibilityExtensions=" + maxVisibilityExtensions + ", maxBatchSizeBytes=" + maxBatchSizeBytes + ", visibilityTimeoutSeconds="
                 + visibilityTimeoutSeconds + ", longPollWaitTimeoutSeconds=" + longPollWaitTimeoutSeconds + "]";
     }
 
@@ -180,6 +218,30 @@ public class QueueBufferConfig {
         return this;
     }
 
+    /**
+     * @return true if the time a send batch is held open adapts to the observed rate of outbound
+     *         requests, false if batches are always held open for {@code maxBatchOpenMs}.
+     */
+    public boolean isAdaptiveBatchOpen() {
+        return adaptiveBatchOpen;
+    }
+
+    /**
+     * Specify "true" for the time a send batch is held open to adapt to the observed rate of
+     * outbound requests: a batch is sent right away if no other request is expected to arrive
+     * within {@code maxBatchOpenMs}, and otherwise held open for about the time it is expected to
+     * take to fill up, but never longer than {@code maxBatchOpenMs}. This reduces the latency of
+     * low traffic queues without reducing the size of the batches of high traffic ones.
+     */
+    public void setAdaptiveBatchOpen(boolean adaptiveBatchOpen) {
+        this.adaptiveBatchOpen = adaptiveBatchOpen;
+    }
+
+    public QueueBufferConfig withAdaptiveBatchOpen(boolean adaptiveBatchOpen) {
+        this.adaptiveBatchOpen = adaptiveBatchOpen;
+        return this;
+    }
+
     /**
      * @return true if the queue buffer will use long polling while retrieveing messages from the
      *         SQS server, false otherwise.
@@ -286,6 +348,55 @@ public class QueueBufferConfig {
         return this;
     }
 
+    /**
+     * @return true if the number of prefetched and in flight receive batches adapts to the rate at
+     *         which messages are received, false if it is fixed by {@code maxDoneReceiveBatches}
+     *         and {@code maxInflightReceiveBatches}.
+     */
+    public boolean isAdaptivePrefetching() {
+        return adaptivePrefetching;
+    }
+
+    /**
+     * Specify "true" for the number of prefetched and in flight receive batches to adapt to the
+     * rate at which messages are received from the buffer. {@code maxDoneReceiveBatches} and
+     * {@code maxInflightReceiveBatches} then become upper bounds: the buffer prefetches about as
+     * many messages as are received while a receive call completes, so that fast consumers don't
+     * wait, and stops prefetching while buffered messages are older than half of their visibility
+     * timeout, so that slow consumers don't hold messages until they become visible again.
+     */
+    public void setAdaptivePrefetching(boolean adaptivePrefetching) {
+        this.adaptivePrefetching = adaptivePrefetching;
+    }
+
+    public QueueBufferConfig withAdaptivePrefetching(boolean adaptivePrefetching) {
+        this.adaptivePrefetching = adaptivePrefetching;
+        return this;
+    }
+
+    /**
+     * The maximum number of times the visibility timeout of a prefetched message is extended while
+     * it waits in the buffer. Zero, the default, disables the extension.
+     */
+    public int getMaxVisibilityExtensions() {
+        return maxVisibilityExtensions;
+    }
+
+    /**
+     * The maximum number of times the visibility timeout of a prefetched message is extended while
+     * it waits in the buffer. Extensions are made with a ChangeMessageVisibilityBatch call per
+     * receive batch shortly before the messages would become visible again, so that they aren't
+     * redelivered to another consumer. Zero, the default, disables the extension.
+     */
+    public void setMaxVisibilityExtensions(int maxVisibilityExtensions) {
+        this.maxVisibilityExtensions = maxVisibilityExtensions;
+    }
+
+    public QueueBufferConfig withMaxVisibilityExtensions(int maxVisibilityExtensions) {
+        this.maxVisibilityExtensions = maxVisibilityExtensions;
+        return this;
+    }
+
     /**
      * Maximum permitted size of a SendMessage or SendMessageBatch message, in bytes. This setting
      * is also enforced on the server, and if this client submits a request of a size larger than
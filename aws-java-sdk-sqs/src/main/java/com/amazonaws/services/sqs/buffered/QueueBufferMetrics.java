@@ -0,0 +1,93 @@
+/*
+ * Copyright 2012-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.buffered;
+
+/**
+ * A snapshot of the state of the receive buffer of a queue, as returned by
+ * {@link AmazonSQSBufferedAsyncClient#getQueueBufferMetrics(String)}.
+ * <p>
+ * Instances of this class are immutable.
+ */
+public class QueueBufferMetrics {
+
+    private final int bufferedMessages;
+    private final int doneReceiveBatches;
+    private final int inflightReceiveBatches;
+    private final int targetReceiveBatches;
+    private final long visibilityExtendedMessages;
+    private final long redeliveriesAvoided;
+
+    QueueBufferMetrics(int bufferedMessages, int doneReceiveBatches, int inflightReceiveBatches,
+            int targetReceiveBatches, long visibilityExtendedMessages, long redeliveriesAvoided) {
+        this.bufferedMessages = bufferedMessages;
+        this.doneReceiveBatches = doneReceiveBatches;
+        this.inflightReceiveBatches = inflightReceiveBatches;
+        this.targetReceiveBatches = targetReceiveBatches;
+        this.visibilityExtendedMessages = visibilityExtendedMessages;
+        this.redeliveriesAvoided = redeliveriesAvoided;
+    }
+
+    /**
+     * @return the number of prefetched messages waiting in the buffer to be received
+     */
+    public int getBufferedMessages() {
+        return bufferedMessages;
+    }
+
+    /**
+     * @return the number of completed receive batches held in the buffer
+     */
+    public int getDoneReceiveBatches() {
+        return doneReceiveBatches;
+    }
+
+    /**
+     * @return the number of receive batches currently in flight
+     */
+    public int getInflightReceiveBatches() {
+        return inflightReceiveBatches;
+    }
+
+    /**
+     * @return the number of receive batches the buffer currently aims to keep prefetched. Equal to
+     *         {@code maxDoneReceiveBatches} unless adaptive prefetching is enabled.
+     */
+    public int getTargetReceiveBatches() {
+        return targetReceiveBatches;
+    }
+
+    /**
+     * @return the total number of times the visibility timeout of a buffered message was extended
+     */
+    public long getVisibilityExtendedMessages() {
+        return visibilityExtendedMessages;
+    }
+
+    /**
+     * @return the total number of messages received after their original visibility timeout had
+     *         expired, which would have been redelivered by SQS without a visibility extension
+     */
+    public long getRedeliveriesAvoided() {
+        return redeliveriesAvoided;
+    }
+
+    @Override
+    public String toString() {
+        return "QueueBufferMetrics [bufferedMessages=" + bufferedMessages + ", doneReceiveBatches="
+                + doneReceiveBatches + ", inflightReceiveBatches=" + inflightReceiveBatches
+                + ", targetReceiveBatches=" + targetReceiveBatches + ", visibilityExtendedMessages="
+                + visibilityExtendedMessages + ", redeliveriesAvoided=" + redeliveriesAvoided + "]";
+    }
+}
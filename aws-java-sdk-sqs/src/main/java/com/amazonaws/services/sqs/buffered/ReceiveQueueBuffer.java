@@ -20,15 +20,19 @@ import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
 import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequest;
 import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchResult;
 import com.amazonaws.services.sqs.model.GetQueueAttributesRequest;
 import com.amazonaws.services.sqs.model.Message;
 import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
@@ -39,6 +43,9 @@ import com.amazonaws.services.sqs.model.ReceiveMessageResult;
  * It uses the provided executor to pre-fetch messages from the server and keeps them in a buffer
  * which it uses to satisfy incoming requests. The number of requests pre-fetched and kept in the
  * buffer, as well as the maximum number of threads used to retrieve the messages are configurable.
+ * With adaptive prefetching, these are upper bounds, and the buffer sizes the number of batches
+ * from the rate at which messages are received. The visibility timeout of buffered messages can be
+ * extended while they wait, so that they aren't redelivered to other consumers.
  * <p>
  * Synchronization strategy: - Threads must hold the TaskSpawnSyncPoint object monitor to spawn a
  * new task or modify the number of inflight tasks - Threads must hold the monitor of the "futures"
@@ -72,6 +79,11 @@ public class ReceiveQueueBuffer {
 
     private final AmazonSQS sqsClient;
 
+    /**
+     * The timer scheduling the visibility extensions of buffered messages.
+     */
+    private final ScheduledExecutorService timer;
+
     private long bufferCounter = 0;
 
     /**
@@ -101,9 +113,41 @@ public class ReceiveQueueBuffer {
     /** finished batches are stored in this list. */
     private LinkedList<ReceiveMessageBatchTask> finishedTasks = new LinkedList<ReceiveMessageBatchTask>();
 
-    ReceiveQueueBuffer(AmazonSQS paramSQS, Executor paramExecutor, QueueBufferConfig paramConfig, String url) {
+    /**
+     * The rate at which messages are received from the buffer. Synchronized by
+     * {@code finishedTasks}.
+     */
+    private final ConsumptionRate consumptionRate = new ConsumptionRate();
+
+    /**
+     * Moving average of the duration of successful receive calls, in seconds. Synchronized by
+     * {@code taskSpawnSyncPoint}. Negative until the first call completes.
+     */
+    private double meanReceiveSeconds = -1;
+
+    /**
+     * Moving average of the number of messages returned by successful receive calls. Synchronized
+     * by {@code taskSpawnSyncPoint}.
+     */
+    private double meanMessagesPerBatch = -1;
+
+    /** Weight of the latest sample in the moving averages */
+    private static final double SAMPLE_WEIGHT = 0.25;
+
+    /** The minimum time (seconds) ahead for which messages are prefetched */
+    private static final double MIN_PREFETCH_SECONDS = 1.0;
+
+    /** Number of times the visibility of a buffered message was extended */
+    private final AtomicLong visibilityExtendedMessages = new AtomicLong();
+
+    /** Number of messages received after their original visibility deadline */
+    private final AtomicLong redeliveriesAvoided = new AtomicLong();
+
+    ReceiveQueueBuffer(AmazonSQS paramSQS, Executor paramExecutor, ScheduledExecutorService paramTimer,
+            QueueBufferConfig paramConfig, String url) {
         config = paramConfig;
         executor = paramExecutor;
+        timer = paramTimer;
         sqsClient = paramSQS;
         qUrl = url;
 
@@ -216,6 +260,7 @@ public class ReceiveQueueBuffer {
                 break;
             }
         }
+        consumptionRate.onConsumed(numRetrieved);
         // we may have just drained the batch.
         batchDone = batchDone || task.isEmpty() || (exception != null);
         if (batchDone) {
@@ -288,8 +333,7 @@ public class ReceiveQueueBuffer {
             return;
         }
 
-        int desiredBatches = config.getMaxDoneReceiveBatches();
-        desiredBatches = desiredBatches < 1 ? 1 : desiredBatches;
+        int desiredBatches = getTargetReceiveBatches();
 
         synchronized (finishedTasks) {
             if (finishedTasks.size() >= desiredBatches)
@@ -318,6 +362,9 @@ public class ReceiveQueueBuffer {
             // must allow at least one inflight receive task, or receive won't
             // work at all.
             max = max > 0 ? max : 1;
+            if (config.isAdaptivePrefetching()) {
+                max = Math.min(max, desiredBatches);
+            }
             int toSpawn = max - inflightReceiveMessageBatches;
             if (toSpawn > 0) {
                 ReceiveMessageBatchTask task = new ReceiveMessageBatchTask(this);
@@ -332,6 +379,70 @@ public class ReceiveQueueBuffer {
         }
     }
 
+    /**
+     * Returns the number of receive batches to keep prefetched. Unless adaptive prefetching is
+     * enabled, this is {@code maxDoneReceiveBatches}. Otherwise it's the number of batches needed
+     * to cover the messages expected to be received while receive calls complete, bounded by
+     * {@code maxDoneReceiveBatches} and by the messages expected to be received within half of the
+     * visibility timeout. It drops to one while the oldest buffered batch is older than half of its
+     * visibility timeout, as consumers aren't keeping up.
+     */
+    private int getTargetReceiveBatches() {
+        int max = config.getMaxDoneReceiveBatches();
+        max = max < 1 ? 1 : max;
+        if (!config.isAdaptivePrefetching()) {
+            return max;
+        }
+
+        double rate;
+        synchronized (finishedTasks) {
+            ReceiveMessageBatchTask oldest = finishedTasks.peek();
+            if (oldest != null && oldest.size() > 0 && oldest.isPastHalfVisibility()) {
+                return 1;
+            }
+            rate = consumptionRate.getMessagesPerSecond();
+        }
+
+        double prefetchSeconds;
+        double messagesPerBatch;
+        synchronized (taskSpawnSyncPoint) {
+            prefetchSeconds = Math.max(MIN_PREFETCH_SECONDS, 2 * meanReceiveSeconds);
+            messagesPerBatch = meanMessagesPerBatch < 1 ? config.getMaxBatchSize() : meanMessagesPerBatch;
+        }
+        if (visibilityTimeoutNanos > 0) {
+            prefetchSeconds = Math.min(prefetchSeconds, getVisibilityTimeoutSeconds() / 2.0);
+        }
+
+        double batches = Math.ceil(rate * prefetchSeconds / Math.max(1.0, messagesPerBatch));
+        return (int) Math.max(1, Math.min(max, batches));
+    }
+
+    /**
+     * @return the visibility timeout of the received messages, in seconds
+     */
+    private int getVisibilityTimeoutSeconds() {
+        if (config.getVisibilityTimeoutSeconds() > 0) {
+            return config.getVisibilityTimeoutSeconds();
+        }
+        return (int) TimeUnit.SECONDS.convert(visibilityTimeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return a snapshot of the state of this buffer
+     */
+    QueueBufferMetrics getMetrics() {
+        int bufferedMessages = 0;
+        int doneBatches;
+        synchronized (finishedTasks) {
+            doneBatches = finishedTasks.size();
+            for (ReceiveMessageBatchTask task : finishedTasks) {
+                bufferedMessages += task.size();
+            }
+        }
+        return new QueueBufferMetrics(bufferedMessages, doneBatches, inflightReceiveMessageBatches,
+                getTargetReceiveBatches(), visibilityExtendedMessages.get(), redeliveriesAvoided.get());
+    }
+
     /**
      * This method is called by the batches after they have finished retrieving the messages.
      */
@@ -344,6 +455,14 @@ public class ReceiveQueueBuffer {
         }
         synchronized (taskSpawnSyncPoint) {
             --inflightReceiveMessageBatches;
+            if (batch.exception == null) {
+                double seconds = (double) batch.receiveNanos / TimeUnit.SECONDS.toNanos(1);
+                int count = batch.receivedCount;
+                meanReceiveSeconds = meanReceiveSeconds < 0 ? seconds : meanReceiveSeconds + SAMPLE_WEIGHT
+                        * (seconds - meanReceiveSeconds);
+                meanMessagesPerBatch = meanMessagesPerBatch < 0 ? count : meanMessagesPerBatch + SAMPLE_WEIGHT
+                        * (count - meanMessagesPerBatch);
+            }
         }
         satisfyFuturesFromBuffer();
         spawnMoreReceiveTasks();
@@ -384,19 +503,80 @@ public class ReceiveQueueBuffer {
 
     }
 
+    /**
+     * The rate at which messages are received from the buffer, measured over windows of
+     * {@code WINDOW_NANOS} and smoothed with a moving average. Not thread-safe.
+     */
+    private static class ConsumptionRate {
+        private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+        private long windowStartNanos = System.nanoTime();
+        private int windowCount;
+        private double messagesPerSecond = -1;
+
+        void onConsumed(int count) {
+            windowCount += count;
+            long now = System.nanoTime();
+            long elapsed = now - windowStartNanos;
+            if (elapsed >= WINDOW_NANOS) {
+                double sample = windowCount * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+                messagesPerSecond = messagesPerSecond < 0 ? sample : messagesPerSecond + SAMPLE_WEIGHT
+                        * (sample - messagesPerSecond);
+                windowStartNanos = now;
+                windowCount = 0;
+            }
+        }
+
+        /**
+         * @return the smoothed rate, or the rate in the current window if no window completed
+         *         recently, such as when consumption starts or stops
+         */
+        double getMessagesPerSecond() {
+            long elapsed = System.nanoTime() - windowStartNanos;
+            if (messagesPerSecond < 0 || elapsed > 2 * WINDOW_NANOS) {
+                return windowCount * (double) TimeUnit.SECONDS.toNanos(1) / Math.max(elapsed, WINDOW_NANOS / 10);
+            }
+            return messagesPerSecond;
+        }
+    }
+
     /**
      * Task to receive messages from SQS.
      * <p>
      * The batch task is constructed {@code !open} until the {@code ReceiveMessage} completes. At
-     * that point, the batch opens and its messages (if any) become available to read.
+     * that point, the batch opens and its messages (if any) become available to read. While it
+     * holds messages, their visibility timeout may be extended, up to
+     * {@code maxVisibilityExtensions} times.
      */
     private class ReceiveMessageBatchTask implements Runnable {
         private Exception exception = null;
         private List<Message> messages;
-        private long visibilityDeadlineNano;
+        private volatile long visibilityDeadlineNano;
         private boolean open = false;
         private ReceiveQueueBuffer parentBuffer;
 
+        /** When the receive call was made */
+        private volatile long receivedAtNano;
+
+        /** The visibility deadline of the messages before any extension */
+        private long originalDeadlineNano;
+
+        /** Duration of the receive call */
+        private long receiveNanos;
+
+        /** Number of messages received */
+        private int receivedCount;
+
+        /** Number of visibility extensions made so far */
+        private int extensions;
+
+        /**
+         * Serializes the changes of visibility of the messages of this batch. Taken before the
+         * monitor of the batch, which is not held during calls to SQS for extensions, so as not to
+         * hold up receives.
+         */
+        private final Object visibilityLock = new Object();
+
         /**
          * Constructs a receive task waiting the specified time before calling SQS.
          * 
@@ -408,6 +588,22 @@ public class ReceiveQueueBuffer {
             messages = Collections.emptyList();
         }
 
+        /**
+         * @return the number of messages left in the batch
+         */
+        synchronized int size() {
+            return open ? messages.size() : 0;
+        }
+
+        /**
+         * @return whether the messages have been held for more than half of their visibility
+         *         timeout
+         */
+        boolean isPastHalfVisibility() {
+            long received = receivedAtNano;
+            return System.nanoTime() - received > (visibilityDeadlineNano - received) / 2;
+        }
+
         synchronized boolean isEmpty() {
             if (!open) {
                 throw new IllegalStateException("batch is not open");
@@ -447,18 +643,109 @@ public class ReceiveQueueBuffer {
 
             if (messages.isEmpty())
                 return null;
-            else
-                return messages.remove(messages.size() - 1);
+            if (System.nanoTime() > originalDeadlineNano) {
+                redeliveriesAvoided.incrementAndGet();
+            }
+            return messages.remove(messages.size() - 1);
         }
 
         boolean isExpired() {
             return System.nanoTime() > visibilityDeadlineNano;
         }
 
+        /**
+         * Schedules the next extension of the visibility timeout of the messages of this batch
+         * shortly before they become visible again, if more extensions are allowed.
+         */
+        private void scheduleVisibilityExtension() {
+            if (shutDown || extensions >= config.getMaxVisibilityExtensions()) {
+                return;
+            }
+            long remaining = visibilityDeadlineNano - System.nanoTime();
+            // leave a quarter of the timeout, which is at least a second, for the call to complete
+            long delay = remaining - Math.max(TimeUnit.SECONDS.toNanos(1), (visibilityDeadlineNano - receivedAtNano) / 4);
+            if (delay <= 0) {
+                return;
+            }
+            try {
+                timer.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        executor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                extendVisibility();
+                            }
+                        });
+                    }
+                }, delay, TimeUnit.NANOSECONDS);
+            } catch (RuntimeException e) {
+                log.warn("ReceiveMessageBatchTask: failed to schedule visibility extension " + e);
+            }
+        }
+
+        /**
+         * Extends the visibility timeout of the messages left in this batch with a single
+         * ChangeMessageVisibilityBatch call. Messages whose visibility couldn't be extended are
+         * dropped from the batch, as they will be redelivered.
+         */
+        void extendVisibility() {
+            synchronized (visibilityLock) {
+                List<Message> toExtend;
+                synchronized (this) {
+                    if (shutDown || messages.isEmpty() || isExpired()) {
+                        return;
+                    }
+                    toExtend = new ArrayList<Message>(messages);
+                }
+
+                int timeoutSeconds = getVisibilityTimeoutSeconds();
+                ChangeMessageVisibilityBatchRequest batchRequest = new ChangeMessageVisibilityBatchRequest()
+                        .withQueueUrl(qUrl);
+                ResultConverter.appendUserAgent(batchRequest, AmazonSQSBufferedAsyncClient.USER_AGENT);
+                List<ChangeMessageVisibilityBatchRequestEntry> entries = new ArrayList<ChangeMessageVisibilityBatchRequestEntry>(
+                        toExtend.size());
+                for (int i = 0, n = toExtend.size(); i < n; i++) {
+                    entries.add(new ChangeMessageVisibilityBatchRequestEntry().withId(Integer.toString(i))
+                            .withReceiptHandle(toExtend.get(i).getReceiptHandle())
+                            .withVisibilityTimeout(timeoutSeconds));
+                }
+                batchRequest.setEntries(entries);
+
+                long start = System.nanoTime();
+                ChangeMessageVisibilityBatchResult result;
+                try {
+                    result = sqsClient.changeMessageVisibilityBatch(batchRequest);
+                } catch (AmazonClientException e) {
+                    // Log and ignore, the messages will expire.
+                    log.warn("ReceiveMessageBatchTask: visibility extension failed " + e);
+                    return;
+                }
+
+                synchronized (this) {
+                    for (BatchResultErrorEntry errorEntry : result.getFailed()) {
+                        messages.remove(toExtend.get(Integer.parseInt(errorEntry.getId())));
+                    }
+                    if (!messages.isEmpty()) {
+                        visibilityDeadlineNano = start + TimeUnit.NANOSECONDS.convert(timeoutSeconds, TimeUnit.SECONDS);
+                    }
+                    ++extensions;
+                }
+                visibilityExtendedMessages.addAndGet(result.getSuccessful().size());
+                scheduleVisibilityExtension();
+            }
+        }
+
         /**
          * Nacks and clears all messages remaining in the batch.
          */
-        synchronized void clear() {
+        void clear() {
+            synchronized (visibilityLock) {
+                clearMessages();
+            }
+        }
+
+        private synchronized void clearMessages() {
             if (!open) {
                 throw new IllegalStateException("batch is not open");
             }
@@ -497,27 +784,36 @@ public class ReceiveQueueBuffer {
         public void run() {
 
             try {
-                visibilityDeadlineNano = System.nanoTime() + visibilityTimeoutNanos;
+                receivedAtNano = System.nanoTime();
+                visibilityDeadlineNano = receivedAtNano + visibilityTimeoutNanos;
                 ReceiveMessageRequest request = new ReceiveMessageRequest(qUrl).withMaxNumberOfMessages(config
                         .getMaxBatchSize());
                 ResultConverter.appendUserAgent(request, AmazonSQSBufferedAsyncClient.USER_AGENT);
 
                 if (config.getVisibilityTimeoutSeconds() > 0) {
                     request.setVisibilityTimeout(config.getVisibilityTimeoutSeconds());
-                    visibilityDeadlineNano = System.nanoTime()
+                    visibilityDeadlineNano = receivedAtNano
                             + TimeUnit.NANOSECONDS.convert(config.getVisibilityTimeoutSeconds(), TimeUnit.SECONDS);
                 }
+                originalDeadlineNano = visibilityDeadlineNano;
 
                 if (config.isLongPoll()) {
                     request.withWaitTimeSeconds(config.getLongPollWaitTimeoutSeconds());
                 }
 
                 messages = sqsClient.receiveMessage(request).getMessages();
+                receiveNanos = System.nanoTime() - receivedAtNano;
+                receivedCount = messages.size();
             } catch (AmazonClientException e) {
                 exception = e;
             } finally {
                 // whatever happened, we are done and can be considered open
-                open = true;
+                synchronized (this) {
+                    open = true;
+                }
+                if (exception == null && !messages.isEmpty()) {
+                    scheduleVisibilityExtension();
+                }
                 parentBuffer.reportBatchFinished(this);
             }
 
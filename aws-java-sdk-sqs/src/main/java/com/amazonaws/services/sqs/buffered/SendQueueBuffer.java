@@ -17,6 +17,8 @@ package com.amazonaws.services.sqs.buffered;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
@@ -50,7 +52,8 @@ import com.amazonaws.services.sqs.model.SendMessageResult;
  * When a request arrives, the buffer adds the message to a message batch of an appropriate type
  * (creating such a batch if there currently isn't one outstanding). When the outstanding batch
  * becomes full, or when a configurable timeout expires, the buffer makes a call to SQS to execute
- * the current batch. <br>
+ * the current batch. The timeouts of all buffers are handled by a shared timer, and an executor
+ * thread is only used once a batch is closed, to make the call. <br>
  * Internally, the batch objects maintain a list of futures corresponding to the requests added to
  * them. When a batch completes, it loads the results into the futures and marks the futures as
  * complete.
@@ -79,6 +82,11 @@ public class SendQueueBuffer {
      */
     private final Executor executor;
 
+    /**
+     * The timer closing the batches whose open time has elapsed.
+     */
+    private final ScheduledExecutorService timer;
+
     /**
      * Object used to serialize sendMessage calls.
      */
@@ -127,9 +135,27 @@ public class SendQueueBuffer {
      */
     private final Semaphore inflightChangeMessageVisibilityBatches;
 
-    SendQueueBuffer(AmazonSQS sqsClient, Executor executor, QueueBufferConfig paramConfig, String url) {
+    /**
+     * Arrival rate of sendMessage calls. Synchronized by {@code sendMessageLock}.
+     */
+    private final ArrivalRate sendMessageArrivals = new ArrivalRate();
+
+    /**
+     * Arrival rate of deleteMessage calls. Synchronized by {@code deleteMessageLock}.
+     */
+    private final ArrivalRate deleteMessageArrivals = new ArrivalRate();
+
+    /**
+     * Arrival rate of changeMessageVisibility calls. Synchronized by
+     * {@code changeMessageVisibilityLock}.
+     */
+    private final ArrivalRate changeMessageVisibilityArrivals = new ArrivalRate();
+
+    SendQueueBuffer(AmazonSQS sqsClient, Executor executor, ScheduledExecutorService timer,
+            QueueBufferConfig paramConfig, String url) {
         this.sqsClient = sqsClient;
         this.executor = executor;
+        this.timer = timer;
         this.config = paramConfig;
         qUrl = url;
         int maxBatch = config.getMaxInflightOutboundBatches();
@@ -151,7 +177,7 @@ public class SendQueueBuffer {
     public QueueBufferFuture<SendMessageRequest, SendMessageResult> sendMessage(SendMessageRequest request,
                                                                                 QueueBufferCallback<SendMessageRequest, SendMessageResult> callback) {
         QueueBufferFuture<SendMessageRequest, SendMessageResult> result = submitOutboundRequest(sendMessageLock,
-                openSendMessageBatchTask, request, inflightSendMessageBatches, callback);
+                openSendMessageBatchTask, request, inflightSendMessageBatches, sendMessageArrivals, callback);
         return result;
     }
 
@@ -161,7 +187,7 @@ public class SendQueueBuffer {
     public QueueBufferFuture<DeleteMessageRequest, Void> deleteMessage(DeleteMessageRequest request,
                                                                        QueueBufferCallback<DeleteMessageRequest, Void> callback) {
         return submitOutboundRequest(deleteMessageLock, openDeleteMessageBatchTask, request,
-                inflightDeleteMessageBatches, callback);
+                inflightDeleteMessageBatches, deleteMessageArrivals, callback);
     }
 
     /**
@@ -170,7 +196,7 @@ public class SendQueueBuffer {
     public QueueBufferFuture<ChangeMessageVisibilityRequest, Void> changeMessageVisibility(ChangeMessageVisibilityRequest request,
                                                                                            QueueBufferCallback<ChangeMessageVisibilityRequest, Void> callback) {
         return submitOutboundRequest(changeMessageVisibilityLock, openChangeMessageVisibilityBatchTask, request,
-                inflightChangeMessageVisibilityBatches, callback);
+                inflightChangeMessageVisibilityBatches, changeMessageVisibilityArrivals, callback);
     }
 
     /**
@@ -190,6 +216,24 @@ public class SendQueueBuffer {
             throw new IllegalArgumentException("Unsupported request type " + request.getClass().getName());
     }
 
+    /**
+     * Returns the time (milliseconds) a new batch is held open for additional requests, given the
+     * arrival rate of its type of requests.
+     */
+    private long getBatchOpenMs(ArrivalRate arrivals) {
+        long maxBatchOpenMs = config.getMaxBatchOpenMs();
+        if (!config.isAdaptiveBatchOpen()) {
+            return maxBatchOpenMs;
+        }
+        double meanIntervalMs = arrivals.getMeanIntervalMs();
+        if (meanIntervalMs >= maxBatchOpenMs) {
+            // no other request is expected while the batch is open
+            return 0;
+        }
+        // about the time it takes for the rest of the batch to fill up
+        return (long) Math.min(maxBatchOpenMs, Math.ceil(meanIntervalMs * (config.getMaxBatchSize() - 1)));
+    }
+
     /**
      * Flushes all outstanding outbound requests ({@code SendMessage}, {@code DeleteMessage},
      * {@code ChangeMessageVisibility}) in this buffer.
@@ -201,14 +245,17 @@ public class SendQueueBuffer {
 
         try {
             synchronized (sendMessageLock) {
+                closeOpenBatch(openSendMessageBatchTask);
                 inflightSendMessageBatches.acquire(config.getMaxInflightOutboundBatches());
                 inflightSendMessageBatches.release(config.getMaxInflightOutboundBatches());
             }
             synchronized (deleteMessageLock) {
+                closeOpenBatch(openDeleteMessageBatchTask);
                 inflightDeleteMessageBatches.acquire(config.getMaxInflightOutboundBatches());
                 inflightDeleteMessageBatches.release(config.getMaxInflightOutboundBatches());
             }
             synchronized (changeMessageVisibilityLock) {
+                closeOpenBatch(openChangeMessageVisibilityBatchTask);
                 inflightChangeMessageVisibilityBatches.acquire(config.getMaxInflightOutboundBatches());
                 inflightChangeMessageVisibilityBatches.release(config.getMaxInflightOutboundBatches());
             }
@@ -217,6 +264,16 @@ public class SendQueueBuffer {
         }
     }
 
+    /**
+     * Closes the open batch task of a call type, if any, without waiting for its open time to
+     * elapse. Called with the lock of the call type held.
+     */
+    private void closeOpenBatch(OutboundBatchTask<?, ?>[] openOutboundBatchTask) {
+        if (openOutboundBatchTask[0] != null) {
+            openOutboundBatchTask[0].close();
+        }
+    }
+
     /**
      * Submits an outbound request for delivery to the queue associated with this buffer.
      * <p>
@@ -230,6 +287,8 @@ public class SendQueueBuffer {
      *            the request to submit
      * @param inflightOperationBatches
      *            the permits controlling the batches for this type of request
+     * @param arrivals
+     *            the arrival rate of this type of request
      * @return never null
      * @throws AmazonClientException
      *             (see the various outbound calls for details)
@@ -239,18 +298,29 @@ public class SendQueueBuffer {
                                                                                                                                              OBT[] openOutboundBatchTask,
                                                                                                                                              R request,
                                                                                                                                              final Semaphore inflightOperationBatches,
+                                                                                                                                             ArrivalRate arrivals,
                                                                                                                                              QueueBufferCallback<R, Result> callback) {
         /*
          * Callers add requests to a single batch task (openOutboundBatchTask) until it is full or
-         * maxBatchOpenMs elapses. The total number of batch task in flight is controlled by the
-         * inflightOperationBatch semaphore capped at maxInflightOutboundBatches.
+         * its batch open time elapses. The total number of batch task in flight is controlled by the
+         * inflightOperationBatch semaphore capped at maxInflightOutboundBatches. Batch tasks are
+         * handed over to the executor once closed. A batch found full is closed before waiting for
+         * a permit, so that it doesn't wait for its timer while the operation lock is held; other
+         * batches are closed outside of the operation lock.
          */
         QueueBufferFuture<R, Result> theFuture = null;
+        OutboundBatchTask<R, Result> task;
+        long batchOpenMs = -1;
         try {
             synchronized (operationLock) {
-                if (openOutboundBatchTask[0] == null
-                        || ((theFuture = openOutboundBatchTask[0].addRequest(request, callback))) == null) {
+                arrivals.onArrival();
+                task = openOutboundBatchTask[0];
+                if (task == null || ((theFuture = task.addRequest(request, callback))) == null) {
 
+                    // the open task, if any, is closed now: full or timed out
+                    if (task != null) {
+                        task.close();
+                    }
                     OBT obt = (OBT) newOutboundBatchTask(request);
                     inflightOperationBatches.acquire();
                     openOutboundBatchTask[0] = obt;
@@ -269,14 +339,9 @@ public class SendQueueBuffer {
                                 + inflightOperationBatches.availablePermits() + " free slots remain");
                     }
 
-                    theFuture = openOutboundBatchTask[0].addRequest(request, callback);
-                    executor.execute(openOutboundBatchTask[0]);
-                    if (null == theFuture) {
-                        // this can happen only if the request itself is flawed,
-                        // so that it can't be added to any batch, even a brand
-                        // new one
-                        throw new AmazonClientException("Failed to schedule request " + request + " for execution");
-                    }
+                    task = obt;
+                    theFuture = task.addRequest(request, callback);
+                    batchOpenMs = getBatchOpenMs(arrivals);
                 }
             }
 
@@ -287,16 +352,29 @@ public class SendQueueBuffer {
             throw toThrow;
         }
 
+        if (task.isClosed()) {
+            task.close();
+        } else if (batchOpenMs >= 0) {
+            task.closeAfter(batchOpenMs);
+        }
+
+        if (null == theFuture) {
+            // this can happen only if the request itself is flawed,
+            // so that it can't be added to any batch, even a brand
+            // new one
+            throw new AmazonClientException("Failed to schedule request " + request + " for execution");
+        }
+
         return theFuture;
     }
 
     /**
      * Task to send a batch of outbound requests to SQS.
      * <p>
-     * The batch task is constructed open and accepts requests until full, or until
-     * {@code maxBatchOpenMs} elapses. At that point, the batch closes and the collected requests
-     * are assembled into a single batch request to SQS. Specialized for each type of outbound
-     * request.
+     * The batch task is constructed open and accepts requests until full, or until its batch open
+     * time elapses. At that point, the batch closes, is handed over to the executor, and the
+     * collected requests are assembled into a single batch request to SQS. Specialized for each
+     * type of outbound request.
      * <p>
      * Instances of this class (and subclasses) are thread-safe.
      * 
@@ -312,6 +390,12 @@ public class SendQueueBuffer {
 
         private boolean closed;
 
+        /** Whether the task has been handed over to the executor. */
+        private boolean dispatched;
+
+        /** The timer task closing this batch, if scheduled and not yet run. */
+        private ScheduledFuture<?> closeTimeout;
+
         private volatile Listener<OutboundBatchTask<R, Result>> onCompleted;
 
         public OutboundBatchTask() {
@@ -338,15 +422,76 @@ public class SendQueueBuffer {
             QueueBufferFuture<R, Result> theFuture = addIfAllowed(request, callback);
 
             // if the addition did not work, or this addition made us full,
-            // we can close the request.
+            // we can close the request. The caller hands it over to the
+            // executor.
             if ((null == theFuture) || isFull()) {
                 closed = true;
-                notify();
             }
 
             return theFuture;
         }
 
+        public synchronized boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * Closes the batch after the given time (milliseconds), unless it is closed before. A
+         * non-positive time closes the batch right away.
+         */
+        public void closeAfter(long delayMs) {
+            if (delayMs <= 0) {
+                close();
+                return;
+            }
+            ScheduledFuture<?> timeout;
+            try {
+                timeout = timer.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        close();
+                    }
+                }, delayMs, TimeUnit.MILLISECONDS);
+            } catch (RuntimeException e) {
+                // the timer can't take it, send the batch as it is
+                close();
+                return;
+            }
+            synchronized (this) {
+                if (!dispatched) {
+                    closeTimeout = timeout;
+                    return;
+                }
+            }
+            timeout.cancel(false);
+        }
+
+        /**
+         * Closes the batch, if not closed yet, and hands it over to the executor, unless already
+         * done. Must not be called with a lock on {@code this} held.
+         */
+        public void close() {
+            ScheduledFuture<?> timeout;
+            synchronized (this) {
+                if (dispatched) {
+                    return;
+                }
+                closed = true;
+                dispatched = true;
+                timeout = closeTimeout;
+                closeTimeout = null;
+            }
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            try {
+                executor.execute(this);
+            } catch (RuntimeException e) {
+                failAll(new AmazonClientException("Failed to execute batch of " + futures.size() + " requests", e));
+                onCompleted();
+            }
+        }
+
         /**
          * Adds the request to the batch if capacity allows it. Called by {@code addRequest} with a
          * lock on {@code this} held.
@@ -412,36 +557,23 @@ public class SendQueueBuffer {
          */
         protected abstract void process(List<R> requests, List<QueueBufferFuture<R, Result>> futures);
 
+        /**
+         * Processes the batch. Only run once the batch is closed.
+         */
         @Override
         public final void run() {
             try {
 
-                long deadlineMs = TimeUnit.MILLISECONDS.convert(System.nanoTime(), TimeUnit.NANOSECONDS)
-                        + config.getMaxBatchOpenMs() + 1;
-                long t = TimeUnit.MILLISECONDS.convert(System.nanoTime(), TimeUnit.NANOSECONDS);
-
                 List<R> requests;
                 List<QueueBufferFuture<R, Result>> futures;
 
                 synchronized (this) {
-                    while (!closed && (t < deadlineMs)) {
-                        t = TimeUnit.MILLISECONDS.convert(System.nanoTime(), TimeUnit.NANOSECONDS);
-
-                        // zero means "wait forever", can't have that.
-                        long toWait = Math.max(1, deadlineMs - t);
-                        wait(toWait);
-                    }
-
-                    closed = true;
-
                     requests = new ArrayList<R>(this.requests);
                     futures = new ArrayList<QueueBufferFuture<R, Result>>(this.futures);
                 }
 
                 process(requests, futures);
 
-            } catch (InterruptedException e) {
-                failAll(e);
             } catch (AmazonClientException e) {
                 failAll(e);
             } catch (RuntimeException e) {
@@ -451,12 +583,16 @@ public class SendQueueBuffer {
                 failAll(new AmazonClientException("Error encountered", e));
                 throw e;
             } finally {
-                // make a copy of the listener since it (theoretically) can be
-                // modified from the outside.
-                Listener<OutboundBatchTask<R, Result>> listener = onCompleted;
-                if (listener != null) {
-                    listener.invoke(this);
-                }
+                onCompleted();
+            }
+        }
+
+        private void onCompleted() {
+            // make a copy of the listener since it (theoretically) can be
+            // modified from the outside.
+            Listener<OutboundBatchTask<R, Result>> listener = onCompleted;
+            if (listener != null) {
+                listener.invoke(this);
             }
         }
 
@@ -467,6 +603,44 @@ public class SendQueueBuffer {
         }
     }
 
+    /**
+     * The rate at which requests of one type arrive, tracked as a moving average of the interval
+     * between consecutive requests. Intervals longer than twice {@code maxBatchOpenMs} count as
+     * twice {@code maxBatchOpenMs}, so that the average catches up quickly when traffic resumes
+     * after an idle period.
+     * <p>
+     * Instances of this class are not thread-safe; each is synchronized by the lock of its request
+     * type.
+     */
+    private class ArrivalRate {
+
+        /** Weight of the latest interval in the moving average */
+        private static final double WEIGHT = 0.25;
+
+        private boolean arrived;
+        private long lastArrivalNanos;
+        private double meanIntervalMs = Double.POSITIVE_INFINITY;
+
+        void onArrival() {
+            long now = System.nanoTime();
+            if (arrived) {
+                double intervalMs = Math.min((double) (now - lastArrivalNanos) / TimeUnit.MILLISECONDS.toNanos(1),
+                        2.0 * config.getMaxBatchOpenMs());
+                meanIntervalMs = Double.isInfinite(meanIntervalMs) ? intervalMs : meanIntervalMs + WEIGHT
+                        * (intervalMs - meanIntervalMs);
+            }
+            lastArrivalNanos = now;
+            arrived = true;
+        }
+
+        /**
+         * @return the mean interval between requests, infinite until two requests have arrived
+         */
+        double getMeanIntervalMs() {
+            return meanIntervalMs;
+        }
+    }
+
     private class SendMessageBatchTask extends OutboundBatchTask<SendMessageRequest, SendMessageResult> {
 
         int batchSizeBytes = 0;
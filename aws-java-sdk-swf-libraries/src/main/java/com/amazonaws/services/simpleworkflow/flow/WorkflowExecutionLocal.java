@@ -15,7 +15,9 @@
 package com.amazonaws.services.simpleworkflow.flow;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Contains value that is bound to a currently executing workflow. Has the same
@@ -68,6 +70,53 @@ public class WorkflowExecutionLocal<T> {
         }
     }
 
+    /**
+     * Must be called at the end of a decision instead of {@link #after()} if
+     * the workflow execution is going to be continued by a later decision,
+     * possibly on another thread. Returns the values bound to the execution,
+     * to be passed to {@link #resume(Object)} at the beginning of that
+     * decision. It is not a good idea to call this method from non framework
+     * code.
+     */
+    public static Object suspend() {
+        List<WorkflowExecutionLocal<?>> currentLocals;
+        synchronized (locals) {
+            currentLocals = new ArrayList<WorkflowExecutionLocal<?>>(locals);
+        }
+        Map<WorkflowExecutionLocal<?>, Wrapper<?>> result = new IdentityHashMap<WorkflowExecutionLocal<?>, Wrapper<?>>();
+        for (WorkflowExecutionLocal<?> local : currentLocals) {
+            Wrapper<?> w = local.value.get();
+            if (w != null) {
+                result.put(local, w);
+            }
+            local.removeAfter();
+        }
+        return result;
+    }
+
+    /**
+     * Must be called instead of {@link #before()} at the beginning of a
+     * decision that continues a workflow execution suspended with
+     * {@link #suspend()}. It is not a good idea to call this method from non
+     * framework code.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public static void resume(Object suspended) {
+        Map<WorkflowExecutionLocal<?>, Wrapper<?>> values = (Map<WorkflowExecutionLocal<?>, Wrapper<?>>) suspended;
+        List<WorkflowExecutionLocal<?>> currentLocals;
+        synchronized (locals) {
+            currentLocals = new ArrayList<WorkflowExecutionLocal<?>>(locals);
+        }
+        for (WorkflowExecutionLocal local : currentLocals) {
+            Wrapper w = values.get(local);
+            if (w == null) {
+                w = new Wrapper();
+                w.wrapped = local.initialValue();
+            }
+            local.set(w);
+        }
+    }
+
     @SuppressWarnings({ "unchecked", "rawtypes" })
     public WorkflowExecutionLocal() {
         Wrapper w = new Wrapper();
@@ -161,6 +161,17 @@ public class WorkflowWorker implements WorkerBase {
         genericWorker.setPollThreadCount(threadCount);
     }
 
+    /**
+     * @see GenericWorkflowWorker#setWorkflowStateCacheSize(int)
+     */
+    public int getWorkflowStateCacheSize() {
+        return genericWorker.getWorkflowStateCacheSize();
+    }
+
+    public void setWorkflowStateCacheSize(int workflowStateCacheSize) {
+        genericWorker.setWorkflowStateCacheSize(workflowStateCacheSize);
+    }
+
     @Override
     public void registerTypesToPoll() {
         genericWorker.registerTypesToPoll();
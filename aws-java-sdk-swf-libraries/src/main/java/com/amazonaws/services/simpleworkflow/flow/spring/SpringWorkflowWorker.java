@@ -205,6 +205,17 @@ public class SpringWorkflowWorker implements WorkerBase, SmartLifecycle {
         genericWorker.setPollThreadCount(threadCount);
     }
 
+    /**
+     * @see GenericWorkflowWorker#setWorkflowStateCacheSize(int)
+     */
+    public int getWorkflowStateCacheSize() {
+        return genericWorker.getWorkflowStateCacheSize();
+    }
+
+    public void setWorkflowStateCacheSize(int workflowStateCacheSize) {
+        genericWorker.setWorkflowStateCacheSize(workflowStateCacheSize);
+    }
+
     @Override
     public void suspendPolling() {
         genericWorker.suspendPolling();
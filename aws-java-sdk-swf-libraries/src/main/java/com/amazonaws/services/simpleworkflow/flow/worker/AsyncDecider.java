@@ -25,6 +25,7 @@ import com.amazonaws.AmazonServiceException;
 import com.amazonaws.AmazonServiceException.ErrorType;
 import com.amazonaws.services.simpleworkflow.flow.DecisionContext;
 import com.amazonaws.services.simpleworkflow.flow.WorkflowException;
+import com.amazonaws.services.simpleworkflow.flow.WorkflowExecutionLocal;
 import com.amazonaws.services.simpleworkflow.flow.core.AsyncScope;
 import com.amazonaws.services.simpleworkflow.flow.core.AsyncTaskInfo;
 import com.amazonaws.services.simpleworkflow.flow.core.Promise;
@@ -131,7 +132,7 @@ class AsyncDecider {
 
     private WorkflowDefinition definition;
 
-    private final HistoryHelper historyHelper;
+    private HistoryHelper historyHelper;
 
     private final DecisionsHelper decisionsHelper;
 
@@ -155,6 +156,12 @@ class AsyncDecider {
 
     private Throwable failure;
 
+    /**
+     * The workflow execution locals of the workflow definition while the
+     * decider is suspended between decision tasks; or null if not suspended.
+     */
+    private Object suspendedExecutionLocals;
+
     public AsyncDecider(WorkflowDefinitionFactory workflowDefinitionFactory, HistoryHelper historyHelper,
             DecisionsHelper decisionsHelper) throws Exception {
         this.workflowDefinitionFactory = workflowDefinitionFactory;
@@ -424,11 +431,28 @@ class AsyncDecider {
         decisionsHelper.handleDecisionCompletion(event.getDecisionTaskCompletedEventAttributes());
     }
 
+    /**
+     * Continues the decisions of a decider {@link #suspend() suspended} after
+     * its previous decision task, given the history events since the start of
+     * that task only.
+     */
+    void decide(HistoryHelper newEvents) throws Exception {
+        if (suspendedExecutionLocals == null) {
+            throw new IllegalStateException("Decider is not suspended");
+        }
+        this.historyHelper = newEvents;
+        WorkflowExecutionLocal.resume(suspendedExecutionLocals);
+        suspendedExecutionLocals = null;
+        decide();
+    }
+
     public void decide() throws Exception {
         try {
-            definition = workflowDefinitionFactory.getWorkflowDefinition(context);
             if (definition == null) {
-                throw new IllegalStateException("Unknown workflow type: " + context.getWorkflowContext().getWorkflowType());
+                definition = workflowDefinitionFactory.getWorkflowDefinition(context);
+                if (definition == null) {
+                    throw new IllegalStateException("Unknown workflow type: " + context.getWorkflowContext().getWorkflowType());
+                }
             }
             long lastNonReplayedEventId = historyHelper.getLastNonReplayEventId();
             // Buffer events until the next DecisionTaskStarted and then process them
@@ -534,8 +558,39 @@ class AsyncDecider {
             catch (Throwable e) {
                 decisionsHelper.setWorkflowContextData(e.getMessage());
             }
-            workflowDefinitionFactory.deleteWorkflowDefinition(this.definition);
+            // The events of the decision task are not needed past this point
+            historyHelper = null;
+        }
+    }
+
+    /**
+     * Returns true if the decider can be suspended to continue the workflow
+     * execution with its next decision task, which is not the case if the
+     * workflow has completed or failed.
+     */
+    boolean isSuspendable() {
+        return definition != null && !completed && !decisionsHelper.isWorkflowFailed();
+    }
+
+    /**
+     * Suspends the decider after a decision, so that the decisions can be
+     * continued with {@link #decide(HistoryHelper)}, possibly on another
+     * thread, without replaying the history.
+     */
+    void suspend() {
+        suspendedExecutionLocals = WorkflowExecutionLocal.suspend();
+    }
+
+    /**
+     * Deletes the workflow definition once the decider is not used for any
+     * further decision.
+     */
+    void deleteWorkflowDefinition() {
+        if (suspendedExecutionLocals != null) {
+            WorkflowExecutionLocal.resume(suspendedExecutionLocals);
+            suspendedExecutionLocals = null;
         }
+        workflowDefinitionFactory.deleteWorkflowDefinition(this.definition);
     }
 
     private boolean isDecisionEvent(EventType eventType) {
@@ -15,8 +15,11 @@
 package com.amazonaws.services.simpleworkflow.flow.worker;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -37,17 +40,101 @@ public class AsyncDecisionTaskHandler extends DecisionTaskHandler {
     private static final Log asyncThreadDumpLog = LogFactory.getLog(AsyncDecisionTaskHandler.class.getName()
             + ".waitingTasksStacks");
 
+    /**
+     * A decider suspended after the decision task started with the given event.
+     */
+    private static final class CachedDecider {
+
+        private final AsyncDecider decider;
+
+        private final long startedEventId;
+
+        CachedDecider(AsyncDecider decider, long startedEventId) {
+            this.decider = decider;
+            this.startedEventId = startedEventId;
+        }
+    }
+
     private final WorkflowDefinitionFactoryFactory definitionFactoryFactory;
 
+    private final int workflowStateCacheSize;
+
+    /**
+     * Suspended deciders by workflow run id, in access order; guarded by
+     * itself. A decider is removed from the cache while it is deciding.
+     */
+    private final Map<String, CachedDecider> cachedDeciders;
+
     public AsyncDecisionTaskHandler(WorkflowDefinitionFactoryFactory definitionFactoryFactory) {
+        this(definitionFactoryFactory, 0);
+    }
+
+    /**
+     * @param workflowStateCacheSize
+     *            the maximum number of workflow executions whose state is kept
+     *            between their decision tasks, so that a decision task only
+     *            needs the history events since the previous one instead of
+     *            replaying the whole history. Zero disables caching.
+     */
+    public AsyncDecisionTaskHandler(WorkflowDefinitionFactoryFactory definitionFactoryFactory, final int workflowStateCacheSize) {
+        if (workflowStateCacheSize < 0) {
+            throw new IllegalArgumentException("Negative workflowStateCacheSize: " + workflowStateCacheSize);
+        }
         this.definitionFactoryFactory = definitionFactoryFactory;
+        this.workflowStateCacheSize = workflowStateCacheSize;
+        this.cachedDeciders = new LinkedHashMap<String, CachedDecider>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedDecider> eldest) {
+                if (size() <= workflowStateCacheSize) {
+                    return false;
+                }
+                eldest.getValue().decider.deleteWorkflowDefinition();
+                return true;
+            }
+        };
+    }
+
+    public int getWorkflowStateCacheSize() {
+        return workflowStateCacheSize;
+    }
+
+    @Override
+    public boolean isCachingWorkflowState() {
+        return workflowStateCacheSize > 0;
     }
 
     @Override
     public RespondDecisionTaskCompletedRequest handleDecisionTask(Iterator<DecisionTask> decisionTaskIterator) throws Exception {
-        HistoryHelper historyHelper = new HistoryHelper(decisionTaskIterator);
-        AsyncDecider decider = createDecider(historyHelper);
-        decider.decide();
+        HistoryHelper historyHelper = null;
+        AsyncDecider decider = null;
+        if (decisionTaskIterator instanceof DecisionTaskPoller.ReverseOrderDecisionTaskIterator) {
+            DecisionTask newEventsTask = ((DecisionTaskPoller.ReverseOrderDecisionTaskIterator) decisionTaskIterator).getNewEventsDecisionTask();
+            decider = takeCachedDecider(newEventsTask);
+            if (decider != null) {
+                historyHelper = new HistoryHelper(Collections.singletonList(newEventsTask).iterator());
+            }
+        }
+        boolean suspend = false;
+        try {
+            if (decider == null) {
+                historyHelper = new HistoryHelper(decisionTaskIterator);
+                decider = createDecider(historyHelper);
+                decider.decide();
+            }
+            else {
+                decider.decide(historyHelper);
+            }
+            suspend = isCachingWorkflowState() && decider.isSuspendable();
+        }
+        finally {
+            if (suspend) {
+                decider.suspend();
+            }
+            else if (decider != null) {
+                decider.deleteWorkflowDefinition();
+            }
+        }
         DecisionsHelper decisionsHelper = decider.getDecisionsHelper();
         Collection<Decision> decisions = decisionsHelper.getDecisions();
         String context = decisionsHelper.getWorkflowContextDataToReturn();
@@ -64,14 +151,60 @@ public class AsyncDecisionTaskHandler extends DecisionTaskHandler {
         completedRequest.setTaskToken(decisionTask.getTaskToken());
         completedRequest.setDecisions(decisions);
         completedRequest.setExecutionContext(context);
+        if (suspend) {
+            cacheDecider(decisionTask, decider);
+        }
         return completedRequest;
     }
 
+    /**
+     * Removes and returns the decider cached for the workflow execution of the
+     * given decision task, if it was suspended after the previous decision task
+     * of the execution; or returns null.
+     */
+    private AsyncDecider takeCachedDecider(DecisionTask decisionTask) {
+        String runId = decisionTask.getWorkflowExecution().getRunId();
+        Long previousStartedEventId = decisionTask.getPreviousStartedEventId();
+        CachedDecider cached;
+        synchronized (cachedDeciders) {
+            cached = cachedDeciders.remove(runId);
+            if (cached == null) {
+                return null;
+            }
+            if (previousStartedEventId != null && previousStartedEventId.longValue() == cached.startedEventId) {
+                return cached.decider;
+            }
+            // The previous decisions of the decider didn't make it to the
+            // history, so it has to be replayed
+            cached.decider.deleteWorkflowDefinition();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Discarded stale workflow state: workflowExecution=" + decisionTask.getWorkflowExecution()
+                    + ", cachedStartedEventId=" + cached.startedEventId + ", previousStartedEventId=" + previousStartedEventId);
+        }
+        return null;
+    }
+
+    private void cacheDecider(DecisionTask decisionTask, AsyncDecider decider) {
+        String runId = decisionTask.getWorkflowExecution().getRunId();
+        synchronized (cachedDeciders) {
+            CachedDecider previous = cachedDeciders.put(runId, new CachedDecider(decider, decisionTask.getStartedEventId()));
+            if (previous != null) {
+                previous.decider.deleteWorkflowDefinition();
+            }
+        }
+    }
+
     @Override
     public WorkflowDefinition loadWorkflowThroughReplay(Iterator<DecisionTask> decisionTaskIterator) throws Exception {
         HistoryHelper historyHelper = new HistoryHelper(decisionTaskIterator);
         AsyncDecider decider = createDecider(historyHelper);
-        decider.decide();
+        try {
+            decider.decide();
+        }
+        finally {
+            decider.deleteWorkflowDefinition();
+        }
         DecisionsHelper decisionsHelper = decider.getDecisionsHelper();
         if (decisionsHelper.isWorkflowFailed()) {
             throw new IllegalStateException("Cannot load failed workflow", decisionsHelper.getWorkflowFailureCause());
@@ -83,7 +216,12 @@ public class AsyncDecisionTaskHandler extends DecisionTaskHandler {
     public List<AsyncTaskInfo> getAsynchronousThreadDump(Iterator<DecisionTask> decisionTaskIterator) throws Exception {
         HistoryHelper historyHelper = new HistoryHelper(decisionTaskIterator);
         AsyncDecider decider = createDecider(historyHelper);
-        decider.decide();
+        try {
+            decider.decide();
+        }
+        finally {
+            decider.deleteWorkflowDefinition();
+        }
         return decider.getAsynchronousThreadDump();
     }
 
@@ -91,7 +229,12 @@ public class AsyncDecisionTaskHandler extends DecisionTaskHandler {
     public String getAsynchronousThreadDumpAsString(Iterator<DecisionTask> decisionTaskIterator) throws Exception {
         HistoryHelper historyHelper = new HistoryHelper(decisionTaskIterator);
         AsyncDecider decider = createDecider(historyHelper);
-        decider.decide();
+        try {
+            decider.decide();
+        }
+        finally {
+            decider.deleteWorkflowDefinition();
+        }
         return decider.getAsynchronousThreadDumpAsString();
     }
 
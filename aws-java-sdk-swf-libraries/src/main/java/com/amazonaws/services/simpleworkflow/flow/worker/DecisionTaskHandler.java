@@ -59,4 +59,15 @@ public abstract class DecisionTaskHandler {
 
     public abstract Object loadWorkflowThroughReplay(Iterator<DecisionTask> decisionTaskIterator) throws Exception;
 
+    /**
+     * Returns true if the handler keeps the state of workflow executions
+     * between their decision tasks, in which case the {@link DecisionTaskPoller}
+     * fetches the history of each task in reverse order, so that only the
+     * events since the previous decision task are fetched when the handler
+     * holds the state of the execution. Returns false unless overridden.
+     */
+    public boolean isCachingWorkflowState() {
+        return false;
+    }
+
 }
@@ -15,7 +15,10 @@
 package com.amazonaws.services.simpleworkflow.flow.worker;
 
 import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
@@ -24,6 +27,7 @@ import org.apache.commons.logging.LogFactory;
 import com.amazonaws.services.simpleworkflow.AmazonSimpleWorkflow;
 import com.amazonaws.services.simpleworkflow.flow.common.WorkflowExecutionUtils;
 import com.amazonaws.services.simpleworkflow.model.DecisionTask;
+import com.amazonaws.services.simpleworkflow.model.HistoryEvent;
 import com.amazonaws.services.simpleworkflow.model.PollForDecisionTaskRequest;
 import com.amazonaws.services.simpleworkflow.model.RespondDecisionTaskCompletedRequest;
 import com.amazonaws.services.simpleworkflow.model.TaskList;
@@ -41,7 +45,7 @@ public class DecisionTaskPoller implements TaskPoller {
         private DecisionTask next;
 
         public DecisionTaskIterator() {
-            next = firstDecisionTask = poll(null);
+            next = firstDecisionTask = poll(null, false);
         }
 
         @Override
@@ -59,7 +63,7 @@ public class DecisionTaskPoller implements TaskPoller {
                 next = null;
             }
             else {
-                next = poll(next.getNextPageToken());
+                next = poll(next.getNextPageToken(), false);
                 // Just to not keep around the history page
                 if (firstDecisionTask != result) {
                     firstDecisionTask.setEvents(null);
@@ -79,6 +83,117 @@ public class DecisionTaskPoller implements TaskPoller {
 
     }
 
+    /**
+     * Fetches the history of a decision task in reverse order, used when the
+     * decision task handler caches workflow state. Only the events since the
+     * previous decision task are fetched up front, and are available through
+     * {@link #getNewEventsDecisionTask()}. The rest of the history is only
+     * fetched if the whole history is iterated, in which case it is returned
+     * in order as a single decision task.
+     */
+    class ReverseOrderDecisionTaskIterator implements Iterator<DecisionTask> {
+
+        private final DecisionTask firstDecisionTask;
+
+        /**
+         * The events fetched so far, in reverse order.
+         */
+        private final List<HistoryEvent> reversedEvents = new ArrayList<HistoryEvent>();
+
+        private final int newEventCount;
+
+        private String nextPageToken;
+
+        private boolean hasNext;
+
+        public ReverseOrderDecisionTaskIterator() {
+            firstDecisionTask = poll(null, true);
+            if (firstDecisionTask == null) {
+                newEventCount = 0;
+                return;
+            }
+            hasNext = true;
+            Long previous = firstDecisionTask.getPreviousStartedEventId();
+            long previousStartedEventId = previous == null ? 0 : previous;
+            DecisionTask page = firstDecisionTask;
+            while (true) {
+                reversedEvents.addAll(page.getEvents());
+                nextPageToken = page.getNextPageToken();
+                if (nextPageToken == null || !reversedEvents.isEmpty()
+                        && reversedEvents.get(reversedEvents.size() - 1).getEventId() <= previousStartedEventId) {
+                    break;
+                }
+                page = pollPage(nextPageToken);
+            }
+            int count = 0;
+            while (count < reversedEvents.size() && reversedEvents.get(count).getEventId() > previousStartedEventId) {
+                count++;
+            }
+            newEventCount = count;
+        }
+
+        /**
+         * Returns the decision task with the history events since the start of
+         * the previous decision task only.
+         */
+        public DecisionTask getNewEventsDecisionTask() {
+            return copyWithEvents(reversedEvents.subList(0, newEventCount));
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasNext;
+        }
+
+        /**
+         * Fetches the rest of the history, and returns it in order together
+         * with the events already fetched as a single decision task.
+         */
+        @Override
+        public DecisionTask next() {
+            if (!hasNext()) {
+                throw new IllegalStateException("hasNext() == false");
+            }
+            hasNext = false;
+            while (nextPageToken != null) {
+                DecisionTask page = pollPage(nextPageToken);
+                reversedEvents.addAll(page.getEvents());
+                nextPageToken = page.getNextPageToken();
+            }
+            return copyWithEvents(reversedEvents);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        public DecisionTask getFirstDecisionTask() {
+            return firstDecisionTask;
+        }
+
+        private DecisionTask pollPage(String pageToken) {
+            DecisionTask page = poll(pageToken, true);
+            if (page == null) {
+                throw new IllegalStateException("No history page returned for decision task: taskId="
+                        + firstDecisionTask.getStartedEventId() + ", workflowExecution=" + firstDecisionTask.getWorkflowExecution());
+            }
+            return page;
+        }
+
+        private DecisionTask copyWithEvents(List<HistoryEvent> reversed) {
+            List<HistoryEvent> events = new ArrayList<HistoryEvent>(reversed);
+            Collections.reverse(events);
+            return new DecisionTask()
+                .withTaskToken(firstDecisionTask.getTaskToken())
+                .withStartedEventId(firstDecisionTask.getStartedEventId())
+                .withWorkflowExecution(firstDecisionTask.getWorkflowExecution())
+                .withWorkflowType(firstDecisionTask.getWorkflowType())
+                .withPreviousStartedEventId(firstDecisionTask.getPreviousStartedEventId())
+                .withEvents(events);
+        }
+    }
+
     private AmazonSimpleWorkflow service;
 
     private String domain;
@@ -151,17 +266,22 @@ public class DecisionTaskPoller implements TaskPoller {
      * Poll for a task using {@link #getPollTimeoutInSeconds()}
      * 
      * @param nextResultToken
+     * @param reverseOrder
+     *            whether the history is to be returned in reverse order
      * 
      * @return null if poll timed out
      * @throws DeciderExecutorConfigurationException
      */
-    private DecisionTask poll(String nextResultToken) {
+    private DecisionTask poll(String nextResultToken, boolean reverseOrder) {
         validate();
         PollForDecisionTaskRequest pollRequest = new PollForDecisionTaskRequest();
 
         pollRequest.setDomain(domain);
         pollRequest.setIdentity(identity);
         pollRequest.setNextPageToken(nextResultToken);
+        if (reverseOrder) {
+            pollRequest.setReverseOrder(true);
+        }
 
         pollRequest.setTaskList(new TaskList().withName(taskListToPoll));
 
@@ -191,10 +311,20 @@ public class DecisionTaskPoller implements TaskPoller {
      */
     @Override
     public boolean pollAndProcessSingleTask() throws Exception {
-        DecisionTaskIterator tasks = null;
+        Iterator<DecisionTask> tasks = null;
+        DecisionTask firstTask = null;
         RespondDecisionTaskCompletedRequest taskCompletedRequest = null;
         try {
-            tasks = new DecisionTaskIterator();
+            if (decisionTaskHandler != null && decisionTaskHandler.isCachingWorkflowState()) {
+                ReverseOrderDecisionTaskIterator reverseOrderTasks = new ReverseOrderDecisionTaskIterator();
+                firstTask = reverseOrderTasks.getFirstDecisionTask();
+                tasks = reverseOrderTasks;
+            }
+            else {
+                DecisionTaskIterator forwardTasks = new DecisionTaskIterator();
+                firstTask = forwardTasks.getFirstDecisionTask();
+                tasks = forwardTasks;
+            }
             if (!tasks.hasNext()) {
                 return false;
             }
@@ -206,7 +336,6 @@ public class DecisionTaskPoller implements TaskPoller {
         }
         catch (Exception e) {
             if (tasks != null) {
-                DecisionTask firstTask = tasks.getFirstDecisionTask();
                 if (firstTask != null) {
                     if (log.isWarnEnabled()) {
                         log.warn("DecisionTask failure: taskId= " + firstTask.getStartedEventId() + ", workflowExecution="
@@ -38,6 +38,8 @@ public class GenericWorkflowWorker extends GenericWorker {
 
     private WorkflowDefinitionFactoryFactory workflowDefinitionFactoryFactory;
 
+    private int workflowStateCacheSize;
+
     public GenericWorkflowWorker() {
         setIdentity(ManagementFactory.getRuntimeMXBean().getName());
     }
@@ -57,6 +59,23 @@ public class GenericWorkflowWorker extends GenericWorker {
         this.workflowDefinitionFactoryFactory = workflowDefinitionFactoryFactory;
     }
 
+    public int getWorkflowStateCacheSize() {
+        return workflowStateCacheSize;
+    }
+
+    /**
+     * Sets the maximum number of workflow executions whose state is kept in
+     * memory between their decision tasks. A decision task of such an
+     * execution only fetches and applies the history events since its
+     * previous decision task, instead of replaying the whole history. Falls
+     * back to replaying the whole history if the state is not found, or is
+     * not up to date. Zero, the default, disables caching.
+     */
+    public void setWorkflowStateCacheSize(int workflowStateCacheSize) {
+        checkStarted();
+        this.workflowStateCacheSize = workflowStateCacheSize;
+    }
+
     protected DecisionTaskPoller createWorkflowPoller() {
         DecisionTaskPoller poller = new DecisionTaskPoller();
         return poller;
@@ -75,7 +94,7 @@ public class GenericWorkflowWorker extends GenericWorker {
     @Override
     protected TaskPoller createPoller() {
         DecisionTaskPoller result = new DecisionTaskPoller();
-        result.setDecisionTaskHandler(new AsyncDecisionTaskHandler(workflowDefinitionFactoryFactory));
+        result.setDecisionTaskHandler(new AsyncDecisionTaskHandler(workflowDefinitionFactoryFactory, workflowStateCacheSize));
         result.setDomain(getDomain());
         result.setIdentity(getIdentity());
         result.setService(getService());
@@ -29,22 +29,31 @@ import com.amazonaws.services.simpleworkflow.model.WorkflowType;
 
 class WorkfowContextImpl implements WorkflowContext {
 
-    private final DecisionTask decisionTask;
+    private final WorkflowExecution workflowExecution;
+    private final WorkflowType workflowType;
+    private final WorkflowExecutionStartedEventAttributes workflowStartedEventAttributes;
     private boolean cancelRequested;
     private ContinueAsNewWorkflowExecutionParameters continueAsNewOnCompletion;
     
     public WorkfowContextImpl(DecisionTask decisionTask) {
-        this.decisionTask = decisionTask;
+        this.workflowExecution = decisionTask.getWorkflowExecution();
+        this.workflowType = decisionTask.getWorkflowType();
+        // Captured up front, as the history pages of the task are not kept
+        // around for the lifetime of the workflow definition
+        List<HistoryEvent> events = decisionTask.getEvents();
+        HistoryEvent firstHistoryEvent = events == null || events.isEmpty() ? null : events.get(0);
+        this.workflowStartedEventAttributes = firstHistoryEvent == null ? null
+                : firstHistoryEvent.getWorkflowExecutionStartedEventAttributes();
     }
     
     @Override
     public WorkflowExecution getWorkflowExecution() {
-        return decisionTask.getWorkflowExecution();
+        return workflowExecution;
     }
 
     @Override
     public WorkflowType getWorkflowType() {
-        return decisionTask.getWorkflowType();
+        return workflowType;
     }
 
     @Override
@@ -104,9 +113,7 @@ class WorkfowContextImpl implements WorkflowContext {
     }
     
     private WorkflowExecutionStartedEventAttributes getWorkflowStartedEventAttributes() {
-        HistoryEvent firstHistoryEvent = decisionTask.getEvents().get(0);
-        WorkflowExecutionStartedEventAttributes attributes = firstHistoryEvent.getWorkflowExecutionStartedEventAttributes();
-        return attributes;
+        return workflowStartedEventAttributes;
     }
 
     @Override
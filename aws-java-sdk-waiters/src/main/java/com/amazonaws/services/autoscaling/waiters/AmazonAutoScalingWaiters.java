@@ -0,0 +1,160 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.autoscaling.waiters;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+
+import com.amazonaws.services.autoscaling.AmazonAutoScaling;
+import com.amazonaws.services.autoscaling.model.AutoScalingGroup;
+import com.amazonaws.services.autoscaling.model.DescribeAutoScalingGroupsRequest;
+import com.amazonaws.services.autoscaling.model.DescribeAutoScalingGroupsResult;
+import com.amazonaws.services.autoscaling.model.Instance;
+import com.amazonaws.waiters.BatchingWaiter;
+import com.amazonaws.waiters.ResourceDescriber;
+import com.amazonaws.waiters.WaiterAcceptor;
+import com.amazonaws.waiters.WaiterPolicy;
+import com.amazonaws.waiters.WaiterState;
+
+/**
+ * Waits for Auto Scaling groups to reach a given state. The groups of all the
+ * pending waits are described together, with one
+ * {@code DescribeAutoScalingGroups} call per {@value #MAX_BATCH_SIZE} groups
+ * and poll, however many waits are pending.
+ *
+ * @see BatchingWaiter
+ */
+public class AmazonAutoScalingWaiters {
+    /** The maximum number of group names passed to a single call. */
+    static final int MAX_BATCH_SIZE = 50;
+
+    private final BatchingWaiter<String, AutoScalingGroup> groupWaiter;
+
+    /**
+     * Constructs waiters polling with the given client, using the default
+     * policy and the shared scheduler.
+     *
+     * @param autoScaling
+     *            The client describing the groups.
+     */
+    public AmazonAutoScalingWaiters(AmazonAutoScaling autoScaling) {
+        this(autoScaling, null, new WaiterPolicy());
+    }
+
+    /**
+     * Constructs waiters polling with the given client.
+     *
+     * @param autoScaling
+     *            The client describing the groups.
+     * @param scheduler
+     *            The scheduler running the polls, or null to use the shared
+     *            scheduler.
+     * @param policy
+     *            The timing settings of the waiters.
+     */
+    public AmazonAutoScalingWaiters(AmazonAutoScaling autoScaling,
+            ScheduledExecutorService scheduler, WaiterPolicy policy) {
+        this.groupWaiter = new BatchingWaiter<String, AutoScalingGroup>(
+                new GroupDescriber(autoScaling), scheduler, policy);
+    }
+
+    /**
+     * Waits for the given group to exist.
+     *
+     * @return The future description of the group.
+     */
+    public Future<AutoScalingGroup> waitForGroupExists(String autoScalingGroupName) {
+        return groupWaiter.waitFor(autoScalingGroupName, new WaiterAcceptor<AutoScalingGroup>() {
+            public WaiterState matches(AutoScalingGroup group) {
+                return group != null ? WaiterState.SUCCESS : WaiterState.RETRY;
+            }
+        });
+    }
+
+    /**
+     * Waits for the given group to be deleted.
+     *
+     * @return The future description of the group, which is always null.
+     */
+    public Future<AutoScalingGroup> waitForGroupNotExists(String autoScalingGroupName) {
+        return groupWaiter.waitFor(autoScalingGroupName, new WaiterAcceptor<AutoScalingGroup>() {
+            public WaiterState matches(AutoScalingGroup group) {
+                return group == null ? WaiterState.SUCCESS : WaiterState.RETRY;
+            }
+        });
+    }
+
+    /**
+     * Waits for at least the minimum number of instances of the given group
+     * to be in service.
+     *
+     * @return The future description of the group.
+     */
+    public Future<AutoScalingGroup> waitForGroupInService(String autoScalingGroupName) {
+        return groupWaiter.waitFor(autoScalingGroupName, new WaiterAcceptor<AutoScalingGroup>() {
+            public WaiterState matches(AutoScalingGroup group) {
+                if (group == null)
+                    return WaiterState.RETRY;
+                int inService = 0;
+                for (Instance instance : group.getInstances()) {
+                    if ("InService".equals(instance.getLifecycleState()))
+                        inService++;
+                }
+                int minSize = group.getMinSize() == null ? 0 : group.getMinSize();
+                return inService >= minSize ? WaiterState.SUCCESS : WaiterState.RETRY;
+            }
+        });
+    }
+
+    /**
+     * Waits for the given group to satisfy the given acceptor, which is
+     * passed null while the group doesn't exist.
+     *
+     * @return The future description of the group.
+     */
+    public Future<AutoScalingGroup> waitForGroup(String autoScalingGroupName,
+            WaiterAcceptor<AutoScalingGroup> acceptor) {
+        return groupWaiter.waitFor(autoScalingGroupName, acceptor);
+    }
+
+    private static final class GroupDescriber implements ResourceDescriber<String, AutoScalingGroup> {
+        private final AmazonAutoScaling autoScaling;
+
+        GroupDescriber(AmazonAutoScaling autoScaling) {
+            this.autoScaling = autoScaling;
+        }
+
+        public int getMaxBatchSize() {
+            return MAX_BATCH_SIZE;
+        }
+
+        public Map<String, AutoScalingGroup> describe(List<String> autoScalingGroupNames) {
+            Map<String, AutoScalingGroup> groups = new HashMap<String, AutoScalingGroup>();
+            DescribeAutoScalingGroupsRequest request = new DescribeAutoScalingGroupsRequest()
+                    .withAutoScalingGroupNames(autoScalingGroupNames);
+            do {
+                DescribeAutoScalingGroupsResult result = autoScaling.describeAutoScalingGroups(request);
+                for (AutoScalingGroup group : result.getAutoScalingGroups()) {
+                    groups.put(group.getAutoScalingGroupName(), group);
+                }
+                request.setNextToken(result.getNextToken());
+            } while (request.getNextToken() != null);
+            return groups;
+        }
+    }
+}
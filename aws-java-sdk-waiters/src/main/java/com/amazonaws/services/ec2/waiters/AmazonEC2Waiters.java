@@ -0,0 +1,199 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.ec2.waiters;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.model.DescribeInstancesRequest;
+import com.amazonaws.services.ec2.model.DescribeInstancesResult;
+import com.amazonaws.services.ec2.model.Filter;
+import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.ec2.model.InstanceStateName;
+import com.amazonaws.services.ec2.model.Reservation;
+import com.amazonaws.waiters.BatchingWaiter;
+import com.amazonaws.waiters.ResourceDescriber;
+import com.amazonaws.waiters.WaiterAcceptor;
+import com.amazonaws.waiters.WaiterPolicy;
+import com.amazonaws.waiters.WaiterState;
+
+/**
+ * Waits for Amazon EC2 instances to reach a given state. The instances of all
+ * the pending waits are described together, with one
+ * {@code DescribeInstances} call per {@value #MAX_BATCH_SIZE} instances and
+ * poll, however many waits are pending.
+ *
+ * @see BatchingWaiter
+ */
+public class AmazonEC2Waiters {
+    /** The maximum number of instance ids filtered on by a single call. */
+    static final int MAX_BATCH_SIZE = 200;
+
+    private final BatchingWaiter<String, Instance> instanceWaiter;
+
+    /**
+     * Constructs waiters polling with the given client, using the default
+     * policy and the shared scheduler.
+     *
+     * @param ec2
+     *            The client describing the instances.
+     */
+    public AmazonEC2Waiters(AmazonEC2 ec2) {
+        this(ec2, null, new WaiterPolicy());
+    }
+
+    /**
+     * Constructs waiters polling with the given client.
+     *
+     * @param ec2
+     *            The client describing the instances.
+     * @param scheduler
+     *            The scheduler running the polls, or null to use the shared
+     *            scheduler.
+     * @param policy
+     *            The timing settings of the waiters.
+     */
+    public AmazonEC2Waiters(AmazonEC2 ec2, ScheduledExecutorService scheduler, WaiterPolicy policy) {
+        this.instanceWaiter = new BatchingWaiter<String, Instance>(
+                new InstanceDescriber(ec2), scheduler, policy);
+    }
+
+    /**
+     * Waits for the given instance to be running. The wait fails if the
+     * instance is shutting down or terminated.
+     *
+     * @return The future description of the running instance.
+     */
+    public Future<Instance> waitForInstanceRunning(String instanceId) {
+        return waitForInstanceState(instanceId, InstanceStateName.Running);
+    }
+
+    /**
+     * Waits for the given instance to be stopped. The wait fails if the
+     * instance is shutting down or terminated.
+     *
+     * @return The future description of the stopped instance.
+     */
+    public Future<Instance> waitForInstanceStopped(String instanceId) {
+        return waitForInstanceState(instanceId, InstanceStateName.Stopped);
+    }
+
+    /**
+     * Waits for the given instance to be terminated, or no longer described.
+     * The wait fails if the instance is pending or stopping.
+     *
+     * @return The future description of the terminated instance, or null if
+     *         the instance isn't described anymore.
+     */
+    public Future<Instance> waitForInstanceTerminated(String instanceId) {
+        return waitForInstanceState(instanceId, InstanceStateName.Terminated);
+    }
+
+    /**
+     * Waits for the given instance to reach the given state. The wait fails
+     * once the instance is in a state from which it can't reach the expected
+     * state.
+     *
+     * @return The future description of the instance.
+     */
+    public Future<Instance> waitForInstanceState(String instanceId, InstanceStateName state) {
+        return instanceWaiter.waitFor(instanceId, new InstanceStateAcceptor(state));
+    }
+
+    /**
+     * Waits for the given instance to satisfy the given acceptor, which is
+     * passed null while the instance isn't described.
+     *
+     * @return The future description of the instance.
+     */
+    public Future<Instance> waitForInstance(String instanceId, WaiterAcceptor<Instance> acceptor) {
+        return instanceWaiter.waitFor(instanceId, acceptor);
+    }
+
+    private static final class InstanceStateAcceptor implements WaiterAcceptor<Instance> {
+        private final InstanceStateName expected;
+
+        InstanceStateAcceptor(InstanceStateName expected) {
+            this.expected = expected;
+        }
+
+        public WaiterState matches(Instance instance) {
+            if (instance == null) {
+                // Terminated instances are eventually not described anymore
+                return expected == InstanceStateName.Terminated
+                        ? WaiterState.SUCCESS : WaiterState.RETRY;
+            }
+            String state = instance.getState() == null ? null : instance.getState().getName();
+            if (expected.toString().equals(state))
+                return WaiterState.SUCCESS;
+            if (isFinal(state))
+                return WaiterState.FAILURE;
+            return WaiterState.RETRY;
+        }
+
+        /**
+         * Returns whether the expected state can't be reached from the given
+         * state.
+         */
+        private boolean isFinal(String state) {
+            if (InstanceStateName.Terminated.toString().equals(state))
+                return true;
+            if (InstanceStateName.ShuttingDown.toString().equals(state))
+                return expected != InstanceStateName.Terminated;
+            if (expected == InstanceStateName.Terminated) {
+                // Only running and shutting down instances can terminate on their own
+                return InstanceStateName.Pending.toString().equals(state)
+                        || InstanceStateName.Stopping.toString().equals(state);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Describes instances by filtering on their ids, so that instances which
+     * don't exist yet are left out instead of failing the call.
+     */
+    private static final class InstanceDescriber implements ResourceDescriber<String, Instance> {
+        private final AmazonEC2 ec2;
+
+        InstanceDescriber(AmazonEC2 ec2) {
+            this.ec2 = ec2;
+        }
+
+        public int getMaxBatchSize() {
+            return MAX_BATCH_SIZE;
+        }
+
+        public Map<String, Instance> describe(List<String> instanceIds) {
+            Map<String, Instance> instances = new HashMap<String, Instance>();
+            DescribeInstancesRequest request = new DescribeInstancesRequest()
+                    .withFilters(new Filter("instance-id", instanceIds));
+            do {
+                DescribeInstancesResult result = ec2.describeInstances(request);
+                for (Reservation reservation : result.getReservations()) {
+                    for (Instance instance : reservation.getInstances()) {
+                        instances.put(instance.getInstanceId(), instance);
+                    }
+                }
+                request.setNextToken(result.getNextToken());
+            } while (request.getNextToken() != null);
+            return instances;
+        }
+    }
+}
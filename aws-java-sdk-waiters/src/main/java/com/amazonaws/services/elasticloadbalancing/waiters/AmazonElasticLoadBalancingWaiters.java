@@ -0,0 +1,197 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.elasticloadbalancing.waiters;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+
+import com.amazonaws.services.elasticloadbalancing.AmazonElasticLoadBalancing;
+import com.amazonaws.services.elasticloadbalancing.model.DescribeInstanceHealthRequest;
+import com.amazonaws.services.elasticloadbalancing.model.InstanceState;
+import com.amazonaws.services.elasticloadbalancing.model.LoadBalancerNotFoundException;
+import com.amazonaws.waiters.BatchingWaiter;
+import com.amazonaws.waiters.ResourceDescriber;
+import com.amazonaws.waiters.WaiterAcceptor;
+import com.amazonaws.waiters.WaiterPolicy;
+import com.amazonaws.waiters.WaiterState;
+
+/**
+ * Waits for instances registered with Elastic Load Balancing load balancers
+ * to reach a given state. Each poll makes a single
+ * {@code DescribeInstanceHealth} call per load balancer, returning the health
+ * of all the instances registered with it, however many of its instances are
+ * being waited for.
+ *
+ * @see BatchingWaiter
+ */
+public class AmazonElasticLoadBalancingWaiters {
+    private final BatchingWaiter<InstanceKey, InstanceState> instanceWaiter;
+
+    /**
+     * Constructs waiters polling with the given client, using the default
+     * policy and the shared scheduler.
+     *
+     * @param elb
+     *            The client describing the health of the instances.
+     */
+    public AmazonElasticLoadBalancingWaiters(AmazonElasticLoadBalancing elb) {
+        this(elb, null, new WaiterPolicy());
+    }
+
+    /**
+     * Constructs waiters polling with the given client.
+     *
+     * @param elb
+     *            The client describing the health of the instances.
+     * @param scheduler
+     *            The scheduler running the polls, or null to use the shared
+     *            scheduler.
+     * @param policy
+     *            The timing settings of the waiters.
+     */
+    public AmazonElasticLoadBalancingWaiters(AmazonElasticLoadBalancing elb,
+            ScheduledExecutorService scheduler, WaiterPolicy policy) {
+        this.instanceWaiter = new BatchingWaiter<InstanceKey, InstanceState>(
+                new InstanceHealthDescriber(elb), scheduler, policy);
+    }
+
+    /**
+     * Waits for the given instance to be registered with the given load
+     * balancer and in service.
+     *
+     * @return The future health of the instance.
+     */
+    public Future<InstanceState> waitForInstanceInService(String loadBalancerName, String instanceId) {
+        return instanceWaiter.waitFor(new InstanceKey(loadBalancerName, instanceId),
+                new WaiterAcceptor<InstanceState>() {
+                    public WaiterState matches(InstanceState health) {
+                        if (health != null && "InService".equals(health.getState()))
+                            return WaiterState.SUCCESS;
+                        return WaiterState.RETRY;
+                    }
+                });
+    }
+
+    /**
+     * Waits for the given instance to be deregistered from the given load
+     * balancer, or for the load balancer to be deleted.
+     *
+     * @return The future health of the instance, which is always null.
+     */
+    public Future<InstanceState> waitForInstanceDeregistered(String loadBalancerName, String instanceId) {
+        return instanceWaiter.waitFor(new InstanceKey(loadBalancerName, instanceId),
+                new WaiterAcceptor<InstanceState>() {
+                    public WaiterState matches(InstanceState health) {
+                        return health == null ? WaiterState.SUCCESS : WaiterState.RETRY;
+                    }
+                });
+    }
+
+    /**
+     * Waits for the health of the given instance of the given load balancer
+     * to satisfy the given acceptor, which is passed null while the instance
+     * isn't registered with the load balancer.
+     *
+     * @return The future health of the instance.
+     */
+    public Future<InstanceState> waitForInstance(String loadBalancerName, String instanceId,
+            WaiterAcceptor<InstanceState> acceptor) {
+        return instanceWaiter.waitFor(new InstanceKey(loadBalancerName, instanceId), acceptor);
+    }
+
+    /**
+     * Identifies an instance registered with a load balancer.
+     */
+    private static final class InstanceKey {
+        private final String loadBalancerName;
+        private final String instanceId;
+
+        InstanceKey(String loadBalancerName, String instanceId) {
+            if (loadBalancerName == null || instanceId == null)
+                throw new IllegalArgumentException();
+            this.loadBalancerName = loadBalancerName;
+            this.instanceId = instanceId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof InstanceKey))
+                return false;
+            InstanceKey other = (InstanceKey) o;
+            return loadBalancerName.equals(other.loadBalancerName)
+                    && instanceId.equals(other.instanceId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * loadBalancerName.hashCode() + instanceId.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return instanceId + " of load balancer " + loadBalancerName;
+        }
+    }
+
+    /**
+     * Describes the health of all the instances of each load balancer, so
+     * that unregistered instances are left out instead of failing the call.
+     */
+    private static final class InstanceHealthDescriber
+            implements ResourceDescriber<InstanceKey, InstanceState> {
+        private final AmazonElasticLoadBalancing elb;
+
+        InstanceHealthDescriber(AmazonElasticLoadBalancing elb) {
+            this.elb = elb;
+        }
+
+        public int getMaxBatchSize() {
+            // Calls are made per load balancer, not per instance
+            return Integer.MAX_VALUE;
+        }
+
+        public Map<InstanceKey, InstanceState> describe(List<InstanceKey> keys) {
+            Map<String, Map<String, InstanceState>> healthByLoadBalancer =
+                    new LinkedHashMap<String, Map<String, InstanceState>>();
+            for (InstanceKey key : keys)
+                healthByLoadBalancer.put(key.loadBalancerName, null);
+
+            for (Map.Entry<String, Map<String, InstanceState>> e : healthByLoadBalancer.entrySet()) {
+                Map<String, InstanceState> health = new HashMap<String, InstanceState>();
+                try {
+                    for (InstanceState state : elb.describeInstanceHealth(
+                            new DescribeInstanceHealthRequest(e.getKey())).getInstanceStates()) {
+                        health.put(state.getInstanceId(), state);
+                    }
+                } catch (LoadBalancerNotFoundException ex) {
+                    // No instance is registered with a deleted load balancer
+                }
+                e.setValue(health);
+            }
+
+            Map<InstanceKey, InstanceState> states = new HashMap<InstanceKey, InstanceState>();
+            for (InstanceKey key : keys) {
+                InstanceState state = healthByLoadBalancer.get(key.loadBalancerName).get(key.instanceId);
+                if (state != null)
+                    states.put(key, state);
+            }
+            return states;
+        }
+    }
+}
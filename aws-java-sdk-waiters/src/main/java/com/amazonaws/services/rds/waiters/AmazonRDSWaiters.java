@@ -0,0 +1,193 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.rds.waiters;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+
+import com.amazonaws.services.rds.AmazonRDS;
+import com.amazonaws.services.rds.model.DBInstance;
+import com.amazonaws.services.rds.model.DBInstanceNotFoundException;
+import com.amazonaws.services.rds.model.DescribeDBInstancesRequest;
+import com.amazonaws.services.rds.model.DescribeDBInstancesResult;
+import com.amazonaws.waiters.BatchingWaiter;
+import com.amazonaws.waiters.ResourceDescriber;
+import com.amazonaws.waiters.WaiterAcceptor;
+import com.amazonaws.waiters.WaiterPolicy;
+import com.amazonaws.waiters.WaiterState;
+
+/**
+ * Waits for Amazon RDS DB instances to reach a given state. A single DB
+ * instance is described by its identifier; when waiting for several DB
+ * instances, each poll pages through all the DB instances of the account
+ * instead, since {@code DescribeDBInstances} can't filter on a list of
+ * identifiers.
+ *
+ * @see BatchingWaiter
+ */
+public class AmazonRDSWaiters {
+    /** The default interval between two polls of the DB instances. */
+    public static final long DEFAULT_POLL_INTERVAL_MILLIS = 30 * 1000;
+
+    /** The default maximum time to wait for a DB instance. */
+    public static final long DEFAULT_MAX_WAIT_MILLIS = 30 * 60 * 1000;
+
+    private static final List<String> NOT_AVAILABLE_STATES = Arrays.asList(
+            "deleted", "deleting", "failed", "incompatible-restore", "incompatible-parameters");
+
+    private static final List<String> NOT_DELETED_STATES = Arrays.asList(
+            "creating", "modifying", "rebooting", "resetting-master-credentials");
+
+    private final BatchingWaiter<String, DBInstance> dbInstanceWaiter;
+
+    /**
+     * Constructs waiters polling with the given client, using the shared
+     * scheduler, a poll interval of {@value #DEFAULT_POLL_INTERVAL_MILLIS} ms
+     * and a maximum wait time of {@value #DEFAULT_MAX_WAIT_MILLIS} ms.
+     *
+     * @param rds
+     *            The client describing the DB instances.
+     */
+    public AmazonRDSWaiters(AmazonRDS rds) {
+        this(rds, null, new WaiterPolicy()
+                .withPollIntervalMillis(DEFAULT_POLL_INTERVAL_MILLIS)
+                .withMaxWaitMillis(DEFAULT_MAX_WAIT_MILLIS));
+    }
+
+    /**
+     * Constructs waiters polling with the given client.
+     *
+     * @param rds
+     *            The client describing the DB instances.
+     * @param scheduler
+     *            The scheduler running the polls, or null to use the shared
+     *            scheduler.
+     * @param policy
+     *            The timing settings of the waiters.
+     */
+    public AmazonRDSWaiters(AmazonRDS rds, ScheduledExecutorService scheduler, WaiterPolicy policy) {
+        this.dbInstanceWaiter = new BatchingWaiter<String, DBInstance>(
+                new DBInstanceDescriber(rds), scheduler, policy);
+    }
+
+    /**
+     * Waits for the given DB instance to be available. The wait fails if the
+     * DB instance is deleted or failed.
+     *
+     * @return The future description of the available DB instance.
+     */
+    public Future<DBInstance> waitForDBInstanceAvailable(String dbInstanceIdentifier) {
+        return dbInstanceWaiter.waitFor(dbInstanceIdentifier, new WaiterAcceptor<DBInstance>() {
+            public WaiterState matches(DBInstance dbInstance) {
+                if (dbInstance == null)
+                    return WaiterState.RETRY;
+                String status = dbInstance.getDBInstanceStatus();
+                if ("available".equals(status))
+                    return WaiterState.SUCCESS;
+                if (NOT_AVAILABLE_STATES.contains(status))
+                    return WaiterState.FAILURE;
+                return WaiterState.RETRY;
+            }
+        });
+    }
+
+    /**
+     * Waits for the given DB instance to be deleted. The wait fails if the
+     * DB instance is being created, modified or rebooted.
+     *
+     * @return The future description of the deleted DB instance, or null if
+     *         the DB instance isn't described anymore.
+     */
+    public Future<DBInstance> waitForDBInstanceDeleted(String dbInstanceIdentifier) {
+        return dbInstanceWaiter.waitFor(dbInstanceIdentifier, new WaiterAcceptor<DBInstance>() {
+            public WaiterState matches(DBInstance dbInstance) {
+                if (dbInstance == null || "deleted".equals(dbInstance.getDBInstanceStatus()))
+                    return WaiterState.SUCCESS;
+                if (NOT_DELETED_STATES.contains(dbInstance.getDBInstanceStatus()))
+                    return WaiterState.FAILURE;
+                return WaiterState.RETRY;
+            }
+        });
+    }
+
+    /**
+     * Waits for the given DB instance to satisfy the given acceptor, which is
+     * passed null while the DB instance isn't described.
+     *
+     * @return The future description of the DB instance.
+     */
+    public Future<DBInstance> waitForDBInstance(String dbInstanceIdentifier,
+            WaiterAcceptor<DBInstance> acceptor) {
+        return dbInstanceWaiter.waitFor(dbInstanceIdentifier, acceptor);
+    }
+
+    /**
+     * Describes DB instances, matching their identifiers without regard to
+     * case as RDS does.
+     */
+    private static final class DBInstanceDescriber implements ResourceDescriber<String, DBInstance> {
+        private static final int PAGE_SIZE = 100;
+
+        private final AmazonRDS rds;
+
+        DBInstanceDescriber(AmazonRDS rds) {
+            this.rds = rds;
+        }
+
+        public int getMaxBatchSize() {
+            // All the DB instances are listed anyway
+            return Integer.MAX_VALUE;
+        }
+
+        public Map<String, DBInstance> describe(List<String> identifiers) {
+            Map<String, DBInstance> described = new HashMap<String, DBInstance>();
+            if (identifiers.size() == 1) {
+                try {
+                    addAll(described, rds.describeDBInstances(new DescribeDBInstancesRequest()
+                            .withDBInstanceIdentifier(identifiers.get(0))));
+                } catch (DBInstanceNotFoundException e) {
+                    // Not created yet, or deleted
+                }
+            } else {
+                DescribeDBInstancesRequest request = new DescribeDBInstancesRequest()
+                        .withMaxRecords(PAGE_SIZE);
+                do {
+                    DescribeDBInstancesResult result = rds.describeDBInstances(request);
+                    addAll(described, result);
+                    request.setMarker(result.getMarker());
+                } while (request.getMarker() != null);
+            }
+
+            Map<String, DBInstance> dbInstances = new HashMap<String, DBInstance>();
+            for (String identifier : identifiers) {
+                DBInstance dbInstance = described.get(identifier.toLowerCase(Locale.ENGLISH));
+                if (dbInstance != null)
+                    dbInstances.put(identifier, dbInstance);
+            }
+            return dbInstances;
+        }
+
+        private static void addAll(Map<String, DBInstance> described, DescribeDBInstancesResult result) {
+            for (DBInstance dbInstance : result.getDBInstances()) {
+                described.put(dbInstance.getDBInstanceIdentifier().toLowerCase(Locale.ENGLISH), dbInstance);
+            }
+        }
+    }
+}
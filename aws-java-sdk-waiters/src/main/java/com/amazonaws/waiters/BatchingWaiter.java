@@ -0,0 +1,364 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.waiters;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.annotation.ThreadSafe;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonServiceException.ErrorType;
+import com.amazonaws.retry.RetryUtils;
+
+/**
+ * Waits for resources to reach a given state, polling the state of all the
+ * resources being waited for with as few describe calls as possible.
+ * <p>
+ * Instead of each wait polling its own resource, the pending waits are
+ * coalesced: a single scheduled poll describes the distinct resources of all
+ * the waits in batches of {@link ResourceDescriber#getMaxBatchSize()}, and
+ * hands each wait the state of its resource. Polls are spaced with a jittered
+ * interval, which backs off exponentially while the describe calls fail (for
+ * example when throttled).
+ * <p>
+ * A wait completes its future with the state of the resource once its
+ * acceptor returns {@link WaiterState#SUCCESS}, or fails it with a
+ * {@link WaiterFailedException} once its acceptor returns
+ * {@link WaiterState#FAILURE}, with a {@link WaiterTimedOutException} once the
+ * maximum wait time of the policy has elapsed, or with the error of the
+ * describe call if it can't be retried. Cancelling the future stops the wait.
+ *
+ * @param <K>
+ *            The type of the keys identifying the resources.
+ * @param <S>
+ *            The type of the states of the resources.
+ */
+@ThreadSafe
+public class BatchingWaiter<K, S> {
+    private static final Log log = LogFactory.getLog(BatchingWaiter.class);
+
+    /** The task of the waits, which are never run. */
+    @SuppressWarnings("rawtypes")
+    private static final Callable NEVER_RUN = new Callable<Object>() {
+        public Object call() {
+            return null;
+        }
+    };
+
+    /** The scheduler shared by the waiters that weren't given their own. */
+    private static ScheduledExecutorService defaultScheduler;
+
+    private final ResourceDescriber<K, S> describer;
+    private final ScheduledExecutorService scheduler;
+    private final long pollIntervalMillis;
+    private final long maxBackoffMillis;
+    private final long maxWaitMillis;
+    private final Random random = new Random();
+
+    /** The pending waits, guarded by itself. */
+    private final List<Wait> waits = new ArrayList<Wait>();
+    /** Whether a poll is scheduled, guarded by {@link #waits}. */
+    private boolean scheduled;
+    /** The number of polls that failed in a row; only used by the poll. */
+    private int consecutiveFailures;
+
+    /**
+     * Constructs a waiter using the default policy and the shared scheduler.
+     *
+     * @param describer
+     *            Describes the state of the resources.
+     */
+    public BatchingWaiter(ResourceDescriber<K, S> describer) {
+        this(describer, null, new WaiterPolicy());
+    }
+
+    /**
+     * Constructs a waiter.
+     *
+     * @param describer
+     *            Describes the state of the resources.
+     * @param scheduler
+     *            The scheduler running the polls, or null to use a scheduler
+     *            shared by all waiters, whose threads are daemons.
+     * @param policy
+     *            The timing settings of the waiter, which are read once.
+     */
+    public BatchingWaiter(ResourceDescriber<K, S> describer,
+            ScheduledExecutorService scheduler, WaiterPolicy policy) {
+        if (describer == null || policy == null)
+            throw new IllegalArgumentException();
+        this.describer = describer;
+        this.scheduler = scheduler == null ? defaultScheduler() : scheduler;
+        this.pollIntervalMillis = policy.getPollIntervalMillis();
+        this.maxBackoffMillis = Math.max(pollIntervalMillis, policy.getMaxBackoffMillis());
+        this.maxWaitMillis = policy.getMaxWaitMillis();
+    }
+
+    /**
+     * Starts waiting for the given resource to satisfy the given acceptor.
+     *
+     * @param key
+     *            The key of the resource.
+     * @param acceptor
+     *            Decides whether the wait succeeds, fails or goes on, given
+     *            the state of the resource.
+     * @return The future state of the resource once the acceptor succeeds.
+     */
+    public Future<S> waitFor(K key, WaiterAcceptor<S> acceptor) {
+        if (key == null || acceptor == null)
+            throw new IllegalArgumentException();
+        Wait wait = new Wait(key, acceptor, System.currentTimeMillis() + maxWaitMillis);
+        synchronized (waits) {
+            waits.add(wait);
+            if (!scheduled) {
+                scheduled = true;
+                schedulePoll(0);
+            }
+        }
+        return wait;
+    }
+
+    /**
+     * Returns the number of waits that haven't completed yet.
+     */
+    public int getPendingWaitCount() {
+        synchronized (waits) {
+            int count = 0;
+            for (Wait wait : waits) {
+                if (!wait.isDone())
+                    count++;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Polls the state of the resources of all the pending waits, completes
+     * the waits whose acceptors are satisfied, and schedules the next poll if
+     * waits remain.
+     */
+    private void poll() {
+        try {
+            List<Wait> pending;
+            synchronized (waits) {
+                pending = new ArrayList<Wait>(waits);
+            }
+            Throwable error = null;
+            try {
+                dispatch(pending, describeAll(pending));
+                consecutiveFailures = 0;
+            } catch (AmazonClientException e) {
+                if (!isRetryable(e)) {
+                    for (Wait wait : pending)
+                        wait.fail(e);
+                } else {
+                    consecutiveFailures++;
+                    error = e;
+                    if (log.isDebugEnabled())
+                        log.debug("Unable to describe the resources being waited for, backing off", e);
+                }
+            } catch (RuntimeException e) {
+                for (Wait wait : pending)
+                    wait.fail(e);
+            }
+            long now = System.currentTimeMillis();
+            for (Wait wait : pending) {
+                if (!wait.isDone() && now >= wait.deadline) {
+                    wait.fail(new WaiterTimedOutException(
+                            "Timed out waiting for resource " + wait.key, error));
+                }
+            }
+        } finally {
+            synchronized (waits) {
+                for (int i = waits.size() - 1; i >= 0; i--) {
+                    if (waits.get(i).isDone())
+                        waits.remove(i);
+                }
+                if (waits.isEmpty()) {
+                    scheduled = false;
+                } else {
+                    schedulePoll(nextDelayMillis());
+                }
+            }
+        }
+    }
+
+    /**
+     * Describes the distinct resources of the given waits, in batches.
+     */
+    private Map<K, S> describeAll(List<Wait> pending) {
+        Set<K> keys = new LinkedHashSet<K>();
+        for (Wait wait : pending) {
+            if (!wait.isDone())
+                keys.add(wait.key);
+        }
+        Map<K, S> states = new HashMap<K, S>();
+        int batchSize = Math.max(1, describer.getMaxBatchSize());
+        List<K> batch = new ArrayList<K>(Math.min(batchSize, keys.size()));
+        for (K key : keys) {
+            batch.add(key);
+            if (batch.size() == batchSize) {
+                states.putAll(describer.describe(batch));
+                batch = new ArrayList<K>();
+            }
+        }
+        if (!batch.isEmpty())
+            states.putAll(describer.describe(batch));
+        return states;
+    }
+
+    private void dispatch(List<Wait> pending, Map<K, S> states) {
+        for (Wait wait : pending) {
+            if (wait.isDone())
+                continue;
+            S state = states.get(wait.key);
+            WaiterState result;
+            try {
+                result = wait.acceptor.matches(state);
+            } catch (RuntimeException e) {
+                wait.fail(e);
+                continue;
+            }
+            if (result == WaiterState.SUCCESS) {
+                wait.succeed(state);
+            } else if (result == WaiterState.FAILURE) {
+                wait.fail(new WaiterFailedException("Resource " + wait.key
+                        + " reached a state from which the wait can't succeed: " + state));
+            }
+        }
+    }
+
+    /**
+     * Returns whether the given error of a describe call may go away by
+     * polling again: throttling, service and client side errors are retried,
+     * other errors caused by the request are not. EC2 reports throttling with
+     * its own error code.
+     */
+    private static boolean isRetryable(AmazonClientException e) {
+        if (!(e instanceof AmazonServiceException))
+            return true;
+        AmazonServiceException ase = (AmazonServiceException) e;
+        return ase.getErrorType() != ErrorType.Client
+                || RetryUtils.isThrottlingException(ase)
+                || "RequestLimitExceeded".equals(ase.getErrorCode())
+                || ase.getStatusCode() == 429;
+    }
+
+    /**
+     * Returns the delay before the next poll: the poll interval, doubled for
+     * each poll that failed in a row up to the maximum back-off, of which a
+     * random half is taken so that waiters don't poll in lock step.
+     */
+    private long nextDelayMillis() {
+        long delay = pollIntervalMillis;
+        for (int i = 0; i < consecutiveFailures && delay < maxBackoffMillis; i++)
+            delay <<= 1;
+        delay = Math.min(delay, maxBackoffMillis);
+        long half = delay / 2;
+        synchronized (random) {
+            return half + (long) (random.nextDouble() * (delay - half));
+        }
+    }
+
+    /**
+     * Schedules the next poll, or fails all the pending waits if the
+     * scheduler doesn't accept it, such as once shut down. Must be called
+     * with the lock on {@link #waits} held.
+     */
+    private void schedulePoll(long delayMillis) {
+        try {
+            scheduler.schedule(new Runnable() {
+                public void run() {
+                    poll();
+                }
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            AmazonClientException ace = new AmazonClientException(
+                    "Unable to schedule the polling of the resources being waited for", e);
+            for (Wait wait : waits)
+                wait.fail(ace);
+            waits.clear();
+            scheduled = false;
+        }
+    }
+
+    private static synchronized ScheduledExecutorService defaultScheduler() {
+        if (defaultScheduler == null) {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(2,
+                    new ThreadFactory() {
+                        private final AtomicInteger threadCount = new AtomicInteger(0);
+
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r);
+                            thread.setDaemon(true);
+                            thread.setName("aws-waiter-scheduler-" + threadCount.incrementAndGet());
+                            return thread;
+                        }
+                    });
+            defaultScheduler = executor;
+        }
+        return defaultScheduler;
+    }
+
+    /**
+     * A pending wait, whose future is completed by the polls through
+     * {@link #succeed(Object)} and {@link #fail(Throwable)}. The task itself
+     * is never run.
+     */
+    private final class Wait extends FutureTask<S> {
+        private final K key;
+        private final WaiterAcceptor<S> acceptor;
+        private final long deadline;
+
+        @SuppressWarnings("unchecked")
+        Wait(K key, WaiterAcceptor<S> acceptor, long deadline) {
+            super(NEVER_RUN);
+            this.key = key;
+            this.acceptor = acceptor;
+            this.deadline = deadline;
+        }
+
+        /** Does nothing, as the wait is completed by the polls. */
+        @Override
+        public void run() {
+        }
+
+        void succeed(S state) {
+            set(state);
+        }
+
+        void fail(Throwable t) {
+            setException(t);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.waiters;
+
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.AmazonClientException;
+
+/**
+ * Describes the state of several resources of the same type with as few
+ * service calls as possible, typically a single describe call taking a list
+ * of identifiers or a filter.
+ *
+ * @param <K>
+ *            The type of the keys identifying the resources.
+ * @param <S>
+ *            The type of the state of the resources.
+ */
+public interface ResourceDescriber<K, S> {
+    /**
+     * Returns the maximum number of resources that can be described at once,
+     * ie the maximum number of keys passed to {@link #describe(List)}.
+     */
+    int getMaxBatchSize();
+
+    /**
+     * Returns the current state of the resources identified by the given
+     * keys. Resources that weren't found are left out of the returned map.
+     *
+     * @param keys
+     *            The keys of the resources to describe; never empty.
+     * @throws AmazonClientException
+     *             if the resources couldn't be described.
+     */
+    Map<K, S> describe(List<K> keys);
+}
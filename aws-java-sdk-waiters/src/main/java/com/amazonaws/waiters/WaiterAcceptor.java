@@ -0,0 +1,33 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.waiters;
+
+/**
+ * The condition of a wait on a resource.
+ *
+ * @param <S>
+ *            The type of the state of the resource.
+ */
+public interface WaiterAcceptor<S> {
+    /**
+     * Returns whether the given state of the resource satisfies the
+     * condition of the wait.
+     *
+     * @param state
+     *            The state of the resource, or null if the resource wasn't
+     *            found.
+     */
+    WaiterState matches(S state);
+}
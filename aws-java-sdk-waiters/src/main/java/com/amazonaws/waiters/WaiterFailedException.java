@@ -0,0 +1,30 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.waiters;
+
+import com.amazonaws.AmazonClientException;
+
+/**
+ * Thrown (wrapped in an {@link java.util.concurrent.ExecutionException}) by
+ * the future of a wait when the resource has reached a state from which the
+ * awaited state can no longer be reached.
+ */
+public class WaiterFailedException extends AmazonClientException {
+    private static final long serialVersionUID = 1L;
+
+    public WaiterFailedException(String message) {
+        super(message);
+    }
+}
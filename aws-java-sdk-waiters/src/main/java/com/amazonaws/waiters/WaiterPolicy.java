@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.waiters;
+
+/**
+ * Timing settings of a {@link BatchingWaiter}.
+ */
+public class WaiterPolicy {
+    /** The default interval between two polls of the state of resources. */
+    public static final long DEFAULT_POLL_INTERVAL_MILLIS = 15 * 1000;
+
+    /** The default maximum interval between two polls when backing off. */
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS = 2 * 60 * 1000;
+
+    /** The default maximum time to wait for a resource. */
+    public static final long DEFAULT_MAX_WAIT_MILLIS = 10 * 60 * 1000;
+
+    private long pollIntervalMillis = DEFAULT_POLL_INTERVAL_MILLIS;
+    private long maxBackoffMillis = DEFAULT_MAX_BACKOFF_MILLIS;
+    private long maxWaitMillis = DEFAULT_MAX_WAIT_MILLIS;
+
+    /**
+     * Returns the interval in milliseconds between two polls of the state of
+     * resources. Each actual interval is randomly chosen between half of this
+     * value and this value, so that waiters started together don't poll in
+     * lock step.
+     */
+    public long getPollIntervalMillis() {
+        return pollIntervalMillis;
+    }
+
+    /**
+     * Sets the interval in milliseconds between two polls of the state of
+     * resources. Each actual interval is randomly chosen between half of this
+     * value and this value, so that waiters started together don't poll in
+     * lock step.
+     *
+     * @param pollIntervalMillis
+     *            The interval between two polls, in milliseconds.
+     */
+    public void setPollIntervalMillis(long pollIntervalMillis) {
+        if (pollIntervalMillis <= 0) {
+            throw new IllegalArgumentException("The poll interval must be positive");
+        }
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    /**
+     * Sets the interval in milliseconds between two polls of the state of
+     * resources, and returns the updated policy.
+     *
+     * @see #setPollIntervalMillis(long)
+     */
+    public WaiterPolicy withPollIntervalMillis(long pollIntervalMillis) {
+        setPollIntervalMillis(pollIntervalMillis);
+        return this;
+    }
+
+    /**
+     * Returns the maximum interval in milliseconds between two polls when
+     * backing off. The poll interval is doubled after each failure to
+     * describe the resources (such as when throttled), up to this value.
+     */
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    /**
+     * Sets the maximum interval in milliseconds between two polls when
+     * backing off. The poll interval is doubled after each failure to
+     * describe the resources (such as when throttled), up to this value.
+     *
+     * @param maxBackoffMillis
+     *            The maximum interval between two polls, in milliseconds.
+     */
+    public void setMaxBackoffMillis(long maxBackoffMillis) {
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * Sets the maximum interval in milliseconds between two polls when
+     * backing off, and returns the updated policy.
+     *
+     * @see #setMaxBackoffMillis(long)
+     */
+    public WaiterPolicy withMaxBackoffMillis(long maxBackoffMillis) {
+        setMaxBackoffMillis(maxBackoffMillis);
+        return this;
+    }
+
+    /**
+     * Returns the maximum time in milliseconds to wait for a resource, after
+     * which its wait fails with a {@link WaiterTimedOutException}.
+     */
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * Sets the maximum time in milliseconds to wait for a resource, after
+     * which its wait fails with a {@link WaiterTimedOutException}.
+     *
+     * @param maxWaitMillis
+     *            The maximum time to wait, in milliseconds.
+     */
+    public void setMaxWaitMillis(long maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    /**
+     * Sets the maximum time in milliseconds to wait for a resource, and
+     * returns the updated policy.
+     *
+     * @see #setMaxWaitMillis(long)
+     */
+    public WaiterPolicy withMaxWaitMillis(long maxWaitMillis) {
+        setMaxWaitMillis(maxWaitMillis);
+        return this;
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.waiters;
+
+/**
+ * The outcome of matching the state of a resource against the condition of a
+ * wait.
+ */
+public enum WaiterState {
+    /** The resource has reached the awaited state. */
+    SUCCESS,
+    /** The resource hasn't reached the awaited state yet. */
+    RETRY,
+    /** The resource can no longer reach the awaited state. */
+    FAILURE,
+    ;
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.ec2.waiters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonServiceException.ErrorType;
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.model.DescribeInstancesRequest;
+import com.amazonaws.services.ec2.model.DescribeInstancesResult;
+import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.ec2.model.InstanceState;
+import com.amazonaws.services.ec2.model.Reservation;
+import com.amazonaws.waiters.WaiterFailedException;
+import com.amazonaws.waiters.WaiterPolicy;
+import com.amazonaws.waiters.WaiterTimedOutException;
+
+public class AmazonEC2WaitersTest {
+
+    private static final long POLL_INTERVAL_MILLIS = 10;
+
+    private ScheduledExecutorService scheduler;
+    private FakeEC2 fake;
+    private AmazonEC2Waiters waiters;
+
+    @Before
+    public void setUp() {
+        scheduler = new ScheduledThreadPoolExecutor(1);
+        fake = new FakeEC2();
+        waiters = new AmazonEC2Waiters(fake.client(), scheduler, new WaiterPolicy()
+                .withPollIntervalMillis(POLL_INTERVAL_MILLIS)
+                .withMaxBackoffMillis(1000)
+                .withMaxWaitMillis(10 * 1000));
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void waitsCoalescedIntoBatchedCalls() throws Exception {
+        int count = 2 * AmazonEC2Waiters.MAX_BATCH_SIZE + 50;
+        List<Future<Instance>> futures = new ArrayList<Future<Instance>>();
+        CountDownLatch registered = blockScheduler();
+        for (int i = 0; i < count; i++) {
+            String id = "i-" + i;
+            fake.states.put(id, "running");
+            futures.add(waiters.waitForInstanceRunning(id));
+        }
+        registered.countDown();
+
+        for (int i = 0; i < count; i++) {
+            assertEquals("i-" + i, futures.get(i).get(5, TimeUnit.SECONDS).getInstanceId());
+        }
+        assertEquals(3, fake.batchSizes.size());
+        assertEquals(AmazonEC2Waiters.MAX_BATCH_SIZE, (int) fake.batchSizes.get(0));
+        assertEquals(AmazonEC2Waiters.MAX_BATCH_SIZE, (int) fake.batchSizes.get(1));
+        assertEquals(50, (int) fake.batchSizes.get(2));
+    }
+
+    @Test
+    public void sameInstanceDescribedOncePerPoll() throws Exception {
+        fake.states.put("i-1", "pending");
+        CountDownLatch registered = blockScheduler();
+        Future<Instance> running = waiters.waitForInstanceRunning("i-1");
+        Future<Instance> stopped = waiters.waitForInstanceStopped("i-1");
+        registered.countDown();
+
+        fake.awaitCalls(1);
+        fake.states.put("i-1", "running");
+        running.get(5, TimeUnit.SECONDS);
+        stopped.cancel(false);
+        for (int size : fake.batchSizes) {
+            assertEquals(1, size);
+        }
+    }
+
+    @Test
+    public void backsOffWhileThrottledThenRecovers() throws Exception {
+        fake.states.put("i-1", "running");
+        fake.throttledCalls = 3;
+
+        Instance instance = waiters.waitForInstanceRunning("i-1").get(5, TimeUnit.SECONDS);
+        assertEquals("i-1", instance.getInstanceId());
+        assertEquals(4, fake.callTimes.size());
+        // The interval is doubled after each failure, and at least half of it is waited
+        long lastDelay = TimeUnit.NANOSECONDS.toMillis(fake.callTimes.get(3) - fake.callTimes.get(2));
+        assertTrue("delay " + lastDelay, lastDelay >= 4 * POLL_INTERVAL_MILLIS);
+    }
+
+    @Test
+    public void clientErrorFailsWaits() throws Exception {
+        fake.error = serviceException("InvalidParameterValue", 400);
+        Future<Instance> first = waiters.waitForInstanceRunning("i-1");
+        Future<Instance> second = waiters.waitForInstanceRunning("i-2");
+
+        assertSame(fake.error, failure(first));
+        assertSame(fake.error, failure(second));
+        assertEquals(1, fake.callTimes.size());
+    }
+
+    @Test
+    public void unreachableStateFailsWait() throws Exception {
+        fake.states.put("i-1", "shutting-down");
+        assertTrue(failure(waiters.waitForInstanceRunning("i-1")) instanceof WaiterFailedException);
+    }
+
+    @Test
+    public void waitTimesOut() throws Exception {
+        waiters = new AmazonEC2Waiters(fake.client(), scheduler, new WaiterPolicy()
+                .withPollIntervalMillis(POLL_INTERVAL_MILLIS)
+                .withMaxWaitMillis(100));
+        fake.states.put("i-1", "pending");
+        long start = System.nanoTime();
+        assertTrue(failure(waiters.waitForInstanceRunning("i-1")) instanceof WaiterTimedOutException);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 100);
+    }
+
+    @Test
+    public void rejectedPollFailsPendingWaits() throws Exception {
+        fake.states.put("i-1", "pending");
+        fake.states.put("i-2", "pending");
+        Future<Instance> first = waiters.waitForInstanceRunning("i-1");
+        Future<Instance> second = waiters.waitForInstanceRunning("i-2");
+        fake.awaitCalls(1);
+        scheduler.shutdown();
+
+        assertRejected(first);
+        assertRejected(second);
+        assertRejected(waiters.waitForInstanceRunning("i-3"));
+    }
+
+    private static void assertRejected(Future<?> future) throws Exception {
+        Throwable t = failure(future);
+        assertTrue(t instanceof AmazonClientException);
+        assertTrue(t.getCause() instanceof RejectedExecutionException);
+    }
+
+    /**
+     * Keeps the scheduler busy until the returned latch is counted down, so
+     * that the first poll only runs once all the waits are registered.
+     */
+    private CountDownLatch blockScheduler() {
+        final CountDownLatch latch = new CountDownLatch(1);
+        scheduler.execute(new Runnable() {
+            public void run() {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        return latch;
+    }
+
+    private static Throwable failure(Future<?> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+        fail("The wait should have failed");
+        return null;
+    }
+
+    private static AmazonServiceException serviceException(String errorCode, int statusCode) {
+        AmazonServiceException e = new AmazonServiceException(errorCode);
+        e.setErrorCode(errorCode);
+        e.setErrorType(ErrorType.Client);
+        e.setStatusCode(statusCode);
+        return e;
+    }
+
+    /**
+     * An EC2 client describing the instances of {@link #states}, or failing
+     * with the configured errors, and recording its calls.
+     */
+    private static class FakeEC2 implements InvocationHandler {
+        final Map<String, String> states = new ConcurrentHashMap<String, String>();
+        final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<Long> callTimes = Collections.synchronizedList(new ArrayList<Long>());
+        volatile int throttledCalls;
+        volatile AmazonServiceException error;
+
+        AmazonEC2 client() {
+            return (AmazonEC2) Proxy.newProxyInstance(AmazonEC2.class.getClassLoader(),
+                    new Class<?>[] {AmazonEC2.class}, this);
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (!method.getName().equals("describeInstances") || args == null) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+            synchronized (this) {
+                callTimes.add(System.nanoTime());
+                notifyAll();
+            }
+            if (throttledCalls > 0) {
+                throttledCalls--;
+                throw serviceException("RequestLimitExceeded", 503);
+            }
+            if (error != null) {
+                throw error;
+            }
+            List<String> ids = ((DescribeInstancesRequest) args[0]).getFilters().get(0).getValues();
+            batchSizes.add(ids.size());
+            Reservation reservation = new Reservation();
+            for (String id : ids) {
+                String state = states.get(id);
+                if (state != null) {
+                    reservation.withInstances(new Instance()
+                            .withInstanceId(id)
+                            .withState(new InstanceState().withName(state)));
+                }
+            }
+            return new DescribeInstancesResult().withReservations(reservation);
+        }
+
+        synchronized void awaitCalls(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (callTimes.size() < count) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    fail("Expected " + count + " calls");
+                }
+                wait(remaining);
+            }
+        }
+    }
+}